@@ -0,0 +1,87 @@
+package org.musicbrainz.search.analysis;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.musicbrainz.search.index.BenchmarkIndexes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of analyzing names, the analyzer runs for every field of every document indexed and for every term of
+ * every query so is a hot path for both the indexer and the servlet.
+ *
+ * Latin names are plain Ascii, mixed names also include accented and CJK words which take the slower paths through
+ * the filters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AnalyzerBenchmark {
+
+    private static final int NO_OF_NAMES = 1000;
+
+    @Param({"latin", "mixed"})
+    public String names;
+
+    private Analyzer analyzer;
+    private String[] values;
+    private int next;
+
+    @Setup
+    public void setup() {
+        analyzer = new MusicbrainzAnalyzer();
+
+        // Ascii words come first in the word list
+        int noOfWords = names.equals("latin") ? 30 : BenchmarkIndexes.WORDS.length;
+        Random random = new Random(1);
+        values = new String[NO_OF_NAMES];
+        for (int i = 0; i < values.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(5);
+            for (int j = 0; j < length; j++) {
+                if (j > 0) {
+                    sb.append(' ');
+                }
+                sb.append(BenchmarkIndexes.WORDS[random.nextInt(noOfWords)]);
+            }
+            values[i] = sb.toString();
+        }
+    }
+
+    /**
+     * Analyze one name, reusing the token stream as the indexer does
+     *
+     * @param blackhole
+     * @throws IOException
+     */
+    @Benchmark
+    public void analyze(Blackhole blackhole) throws IOException {
+        String value = values[next];
+        next = (next + 1) % values.length;
+
+        TokenStream stream = analyzer.tokenStream("name", value);
+        CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+        try {
+            stream.reset();
+            while (stream.incrementToken()) {
+                blackhole.consume(term.length());
+            }
+            stream.end();
+        }
+        finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.musicbrainz.search.index;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.RAMDirectory;
+
+import java.sql.Statement;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Builds indexes for the benchmarks from the same in memory database as the index tests, filled with generated rows
+ * so the benchmarks search indexes with many documents rather than the handful each index test adds.
+ *
+ * Names are made up of words picked at random from a fixed list, with a fixed seed so every run builds the same
+ * indexes.
+ */
+public class BenchmarkIndexes extends AbstractIndexTest {
+
+    public static final String[] WORDS = {
+            "love", "night", "dark", "light", "blue", "song", "dream", "heart", "fire", "rain",
+            "bunnymen", "crocodiles", "echo", "incident", "farming", "gravitational", "lens", "plan", "glorious", "year",
+            "clean", "do", "it", "the", "of", "a", "in", "my", "your", "we",
+            "café", "résumé", "naïve", "Beyoncé", "Sigur", "Rós", "Björk", "Motörhead", "東京", "音楽",
+    };
+
+    // Recordings on each release and by each artist
+    private static final int RECORDINGS_PER_RELEASE = 10;
+
+    private final Random random = new Random(1);
+
+    public BenchmarkIndexes() throws Exception {
+        setup();
+    }
+
+    private String createName() {
+        int noOfWords = 1 + random.nextInt(4);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < noOfWords; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static String createGid(int type, int id) {
+        return new UUID(type, id).toString();
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    /**
+     * Add artists, each with an artist credit of their own
+     *
+     * @param noOfArtists
+     * @throws Exception
+     */
+    public void addArtists(int noOfArtists) throws Exception {
+        Statement stmt = conn.createStatement();
+        for (int id = 1; id <= noOfArtists; id++) {
+            String name = createName();
+            stmt.addBatch("INSERT INTO artist (id, gid, name, sort_name, type, gender, comment)" +
+                    " VALUES (" + id + ", " + quote(createGid(1, id)) + ", " + quote(name) + ", " + quote(name) + ", " +
+                    (1 + random.nextInt(2)) + ", " + (1 + random.nextInt(2)) + ", '')");
+            stmt.addBatch("INSERT INTO artist_credit (id, name, artist_count, ref_count)" +
+                    " VALUES (" + id + ", " + quote(name) + ", 1, 1)");
+            stmt.addBatch("INSERT INTO artist_credit_name (artist_credit, position, artist, name, join_phrase)" +
+                    " VALUES (" + id + ", 0, " + id + ", " + quote(name) + ", '')");
+        }
+        stmt.executeBatch();
+        stmt.close();
+    }
+
+    /**
+     * Add recordings, with a release for every ten recordings, credited to the artists already added
+     *
+     * @param noOfRecordings
+     * @param noOfArtists artists previously added by addArtists()
+     * @throws Exception
+     */
+    public void addRecordings(int noOfRecordings, int noOfArtists) throws Exception {
+        Statement stmt = conn.createStatement();
+        for (int id = 1; id <= noOfRecordings; id++) {
+            int releaseId = (id - 1) / RECORDINGS_PER_RELEASE + 1;
+            int position = (id - 1) % RECORDINGS_PER_RELEASE + 1;
+            int artistCredit = (releaseId - 1) % noOfArtists + 1;
+            if (position == 1) {
+                String releaseName = createName();
+                stmt.addBatch("INSERT INTO release_group (id, gid, name, artist_credit, type)" +
+                        " VALUES (" + releaseId + ", " + quote(createGid(2, releaseId)) + ", " + quote(releaseName) +
+                        ", " + artistCredit + ", 1)");
+                stmt.addBatch("INSERT INTO release (id, gid, name, artist_credit, release_group, status, packaging," +
+                        " language, script)" +
+                        " VALUES (" + releaseId + ", " + quote(createGid(3, releaseId)) + ", " + quote(releaseName) +
+                        ", " + artistCredit + ", " + releaseId + ", 1, 1, 1, 1)");
+                stmt.addBatch("INSERT INTO medium (id, track_count, release, position, format)" +
+                        " VALUES (" + releaseId + ", " + RECORDINGS_PER_RELEASE + ", " + releaseId + ", 1, 7)");
+            }
+
+            String name = createName();
+            int length = 60000 + random.nextInt(300000);
+            stmt.addBatch("INSERT INTO recording (id, gid, name, artist_credit, length, comment, video)" +
+                    " VALUES (" + id + ", " + quote(createGid(4, id)) + ", " + quote(name) + ", " + artistCredit +
+                    ", " + length + ", '', false)");
+            stmt.addBatch("INSERT INTO track (id, gid, recording, medium, position, number, name, artist_credit," +
+                    " length, is_data_track)" +
+                    " VALUES (" + id + ", " + quote(createGid(5, id)) + ", " + id + ", " + releaseId + ", " + position +
+                    ", '" + position + "', " + quote(name) + ", " + artistCredit + ", " + length + ", false)");
+        }
+        stmt.executeBatch();
+        stmt.close();
+    }
+
+    public RAMDirectory createArtistIndex() throws Exception {
+        RAMDirectory ramDir = new RAMDirectory();
+        IndexWriter writer = createIndexWriter(ramDir, ArtistIndexField.class);
+        ArtistIndex ai = new ArtistIndex(conn);
+        CommonTables ct = new CommonTables(conn, ai.getName());
+        ct.createTemporaryTables(false);
+        ai.init(writer, false);
+        ai.addMetaInformation(writer);
+        ai.indexData(writer, 0, Integer.MAX_VALUE);
+        ai.destroy();
+        ct.dropTables();
+        writer.close();
+        return ramDir;
+    }
+
+    public RAMDirectory createRecordingIndex() throws Exception {
+        RAMDirectory ramDir = new RAMDirectory();
+        IndexWriter writer = createIndexWriter(ramDir, RecordingIndexField.class);
+        RecordingIndex ri = new RecordingIndex(conn);
+        CommonTables ct = new CommonTables(conn, ri.getName());
+        ct.createTemporaryTables(false);
+        ri.init(writer, false);
+        ri.addMetaInformation(writer);
+        ri.indexData(writer, 0, Integer.MAX_VALUE);
+        ri.destroy();
+        ct.dropTables();
+        writer.close();
+        return ramDir;
+    }
+
+    public void close() throws Exception {
+        conn.close();
+    }
+}
@@ -0,0 +1,87 @@
+package org.musicbrainz.search.index;
+
+import org.musicbrainz.mmd2.*;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of decoding a stored Recording from Xml and from the binary format. Decoding needs no index, so this runs
+ * against a Recording built in memory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MMDSerializerBenchmark {
+
+    private String xml;
+    private byte[] binary;
+
+    private static Recording createRecording() {
+        ObjectFactory of = new ObjectFactory();
+        Recording recording = of.createRecording();
+        recording.setId("2f250ed2-6285-40f1-aa2a-14f1c05e9765");
+        recording.setTitle("Gravitational Lensing");
+        recording.setLength(BigInteger.valueOf(234000));
+
+        ArtistCredit ac = of.createArtistCredit();
+        NameCredit nc = of.createNameCredit();
+        ArtistCreditArtist artist = of.createArtistCreditArtist();
+        artist.setId("4302e264-1cf0-4d1f-aca7-2a6f89e34b36");
+        artist.setName("Farming Incident");
+        artist.setSortName("Incident, Farming");
+        nc.setArtist(artist);
+        ac.getNameCredit().add(nc);
+        recording.setArtistCredit(ac);
+
+        ReleaseList releaseList = of.createReleaseList();
+        for (int i = 0; i < 10; i++) {
+            Release release = of.createRelease();
+            release.setId("1d9e8ed6-3893-4d3b-aa7d-6cd79609e38" + i);
+            release.setTitle("Our Glorious 5 Year Plan " + i);
+            release.setStatus("Official");
+            release.setDate("2005-0" + (i % 9 + 1));
+            release.setCountry("GB");
+            releaseList.getRelease().add(release);
+        }
+        recording.setReleaseList(releaseList);
+
+        IsrcList isrcList = of.createIsrcList();
+        Isrc isrc = of.createIsrc();
+        isrc.setId("GBAAA0500001");
+        isrcList.getIsrc().add(isrc);
+        recording.setIsrcList(isrcList);
+
+        TagList tagList = of.createTagList();
+        Tag tag = of.createTag();
+        tag.setName("indie");
+        tag.setCount(BigInteger.valueOf(3));
+        tagList.getTag().add(tag);
+        recording.setTagList(tagList);
+        return recording;
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        Recording recording = createRecording();
+        xml = MMDSerializer.serialize(recording);
+        binary = MMDSerializer.serializeBinary(recording);
+    }
+
+    @Benchmark
+    public Object decodeXml() {
+        return MMDSerializer.unserialize(xml, Recording.class);
+    }
+
+    @Benchmark
+    public Object decodeBinary() throws Exception {
+        return MMDBinaryCodec.decode(binary, 0, binary.length);
+    }
+}
@@ -0,0 +1,108 @@
+package org.musicbrainz.search.servlet;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.NumericUtils;
+import org.musicbrainz.search.LuceneVersion;
+import org.musicbrainz.search.MbDocument;
+import org.musicbrainz.search.index.RecordingIndexField;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a duration range search on the recording index when durations are indexed as a single prefix coded term
+ * (precision step 0) searched with a TermRangeQuery, and when they are indexed as trie fields searched with the
+ * NumericRangeQuery created by RecordingQueryParser. Each is searched against its own in memory index of random
+ * durations rather than the benchmark indexes, which only hold one of the two.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NumericRangeQueryBenchmark {
+
+    private static final String QUERY = "dur:[200000 TO 210000]";
+
+    @Param({"500000"})
+    public int noOfDocs;
+
+    private IndexSearcher termSearcher;
+    private Query termQuery;
+    private IndexSearcher trieSearcher;
+    private Query trieQuery;
+
+    private static String toPrefixCoded(int value) {
+        BytesRefBuilder bytes = new BytesRefBuilder();
+        NumericUtils.intToPrefixCoded(value, 0, bytes);
+        return bytes.toBytesRef().utf8ToString();
+    }
+
+    private static IndexSearcher createIndex(int noOfDocs, boolean isTrie) throws Exception {
+        RAMDirectory ramDir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(ramDir, new IndexWriterConfig(LuceneVersion.LUCENE_VERSION, new KeywordAnalyzer()));
+        Random random = new Random(1);
+        for (int i = 0; i < noOfDocs; i++) {
+            int duration = random.nextInt(600000);
+            if (isTrie) {
+                MbDocument doc = new MbDocument();
+                doc.addNumericField(RecordingIndexField.DURATION, duration);
+                writer.addDocument(doc.getLuceneDocument());
+            } else {
+                Document doc = new Document();
+                doc.add(new Field(RecordingIndexField.DURATION.getName(), toPrefixCoded(duration), StringField.TYPE_NOT_STORED));
+                writer.addDocument(doc);
+            }
+        }
+        writer.close();
+        return new IndexSearcher(DirectoryReader.open(ramDir));
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        termSearcher = createIndex(noOfDocs, false);
+        termQuery = TermRangeQuery.newStringRange(RecordingIndexField.DURATION.getName(),
+                toPrefixCoded(200000), toPrefixCoded(210000), true, true);
+
+        trieSearcher = createIndex(noOfDocs, true);
+        RecordingQueryParser parser = new RecordingQueryParser(
+                new String[]{RecordingIndexField.RECORDING.getName()}, new KeywordAnalyzer());
+        trieQuery = parser.parse(QUERY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        termSearcher.getIndexReader().close();
+        trieSearcher.getIndexReader().close();
+    }
+
+    @Benchmark
+    public TopDocs termRange() throws Exception {
+        return termSearcher.search(termQuery, 10);
+    }
+
+    @Benchmark
+    public TopDocs numericRange() throws Exception {
+        return trieSearcher.search(trieQuery, 10);
+    }
+}
@@ -0,0 +1,61 @@
+package org.musicbrainz.search.servlet;
+
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parsing a query for each kind of query parser, without the query cache so every query is parsed. Parsing
+ * needs no index, so this runs against search servers without one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryParserBenchmark {
+
+    @Param({
+            "do it clean",
+            "recording:\"do it clean\" AND artist:bunnymen",
+            "recording:clean~ AND dur:[60000 TO 120000]",
+            "東京 café",
+    })
+    public String query;
+
+    private AbstractSearchServer searchServer;
+    private AbstractDismaxSearchServer dismaxSearchServer;
+
+    @Setup
+    public void setup() throws Exception {
+        searchServer = new RecordingSearch();
+        dismaxSearchServer = new RecordingDismaxSearch(searchServer);
+    }
+
+    /**
+     * Parse with a new parser each time, as before parsers were reused
+     *
+     * @return
+     * @throws Exception
+     */
+    @Benchmark
+    public Query parseWithNewParser() throws Exception {
+        return searchServer.getParser().parse(query);
+    }
+
+    @Benchmark
+    public Query parse() throws Exception {
+        return searchServer.parseQuery(query);
+    }
+
+    @Benchmark
+    public Query parseDismax() throws Exception {
+        return dismaxSearchServer.parseQuery(query);
+    }
+}
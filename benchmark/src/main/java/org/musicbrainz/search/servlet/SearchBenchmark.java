@@ -0,0 +1,55 @@
+package org.musicbrainz.search.servlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a search of the recording index, including parsing the query, collecting the hits and loading the documents
+ * of the hits returned, but not writing the results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+
+    @Param({"love", "dark night", "recording:clean~", "東京"})
+    public String query;
+
+    @Param({"25"})
+    public int limit;
+
+    @Benchmark
+    public Results search(SearchServers searchServers) throws Exception {
+        return searchServers.recordingSearch.search(query, 0, limit);
+    }
+
+    @Benchmark
+    public Results searchDismax(SearchServers searchServers) throws Exception {
+        return searchServers.recordingDismaxSearch.search(query, 0, limit);
+    }
+
+    /**
+     * Only collect the hits, so the cost of loading the documents can be told apart from the cost of the search
+     *
+     * @param searchServers
+     * @return
+     * @throws Exception
+     */
+    @Benchmark
+    public int searchTopHits(SearchServers searchServers) throws Exception {
+        TopHits topHits = searchServers.recordingSearch.searchTopHits(query, limit);
+        try {
+            return topHits.getTopDocs().totalHits;
+        }
+        finally {
+            topHits.release();
+        }
+    }
+}
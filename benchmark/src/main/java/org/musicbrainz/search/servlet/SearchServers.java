@@ -0,0 +1,61 @@
+package org.musicbrainz.search.servlet;
+
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.RAMDirectory;
+import org.musicbrainz.search.index.BenchmarkIndexes;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Search servers over artist and recording indexes built by BenchmarkIndexes, shared by all the threads of a
+ * benchmark as the servlet shares them between requests
+ */
+@State(Scope.Benchmark)
+public class SearchServers {
+
+    @Param({"10000"})
+    public int noOfRecordings;
+
+    AbstractSearchServer artistSearch;
+    AbstractSearchServer recordingSearch;
+    AbstractDismaxSearchServer artistDismaxSearch;
+    AbstractDismaxSearchServer recordingDismaxSearch;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        int noOfArtists = Math.max(1, noOfRecordings / 10);
+        BenchmarkIndexes indexes = new BenchmarkIndexes();
+        RAMDirectory artistDir;
+        RAMDirectory recordingDir;
+        try {
+            indexes.addArtists(noOfArtists);
+            indexes.addRecordings(noOfRecordings, noOfArtists);
+            artistDir = indexes.createArtistIndex();
+            recordingDir = indexes.createRecordingIndex();
+        }
+        finally {
+            indexes.close();
+        }
+
+        artistSearch = new ArtistSearch(new SearcherManager(artistDir,
+                new MusicBrainzSearcherFactory(ResourceType.ARTIST)));
+        artistDismaxSearch = new ArtistDismaxSearch(artistSearch);
+        recordingSearch = new RecordingSearch(new SearcherManager(recordingDir,
+                new MusicBrainzSearcherFactory(ResourceType.RECORDING)));
+        recordingDismaxSearch = new RecordingDismaxSearch(recordingSearch);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        artistSearch.close();
+        recordingSearch.close();
+    }
+
+    AbstractSearchServer getSearchServer(ResourceType resourceType) {
+        return resourceType == ResourceType.ARTIST ? artistSearch : recordingSearch;
+    }
+}
@@ -0,0 +1,98 @@
+package org.musicbrainz.search.servlet;
+
+import org.musicbrainz.mmd2.Artist;
+import org.musicbrainz.mmd2.Recording;
+import org.musicbrainz.search.index.ArtistIndexField;
+import org.musicbrainz.search.index.IndexField;
+import org.musicbrainz.search.index.MMDSerializer;
+import org.musicbrainz.search.index.RecordingIndexField;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a page of results into the response, both unserializing the stored entities and writing them with
+ * the mmd2 writer of the resource type in each response format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"artist", "recording"})
+    public String resourceType;
+
+    @Param({SearchServerServlet.RESPONSE_XML, SearchServerServlet.RESPONSE_JSON_NEW})
+    public String format;
+
+    @Param({"25"})
+    public int limit;
+
+    @Param({"false"})
+    public boolean isPretty;
+
+    private Results results;
+    private ResultsWriter writer;
+    private IndexField storeField;
+    private Class storeClass;
+
+    /**
+     * Discards the output, so only the cost of writing is measured
+     */
+    private static class NullWriter extends Writer {
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup(SearchServers searchServers) throws Exception {
+        ResourceType type = ResourceType.getValue(resourceType);
+        AbstractSearchServer searchServer = searchServers.getSearchServer(type);
+        writer = searchServer.getWriter(SearchServerServlet.WS_VERSION_2);
+
+        // Most common word so there is always a full page of results
+        results = searchServer.search(type == ResourceType.ARTIST ? "artist:love" : "recording:love", 0, limit);
+        if (type == ResourceType.ARTIST) {
+            storeField = ArtistIndexField.ARTIST_STORE;
+            storeClass = Artist.class;
+        }
+        else {
+            storeField = RecordingIndexField.RECORDING_STORE;
+            storeClass = Recording.class;
+        }
+    }
+
+    @Benchmark
+    public void unserialize(Blackhole blackhole) {
+        for (Result result : results.results) {
+            blackhole.consume(MMDSerializer.unserialize(result.getDoc(), storeField, storeClass));
+        }
+    }
+
+    @Benchmark
+    public void write() throws Exception {
+        PrintWriter out = new PrintWriter(new NullWriter());
+        writer.write(out, results, format, isPretty);
+        out.close();
+    }
+}
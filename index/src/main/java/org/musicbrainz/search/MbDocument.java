@@ -30,9 +30,6 @@ package org.musicbrainz.search;
 
 import org.apache.lucene.document.*;
 import org.apache.lucene.index.IndexableField;
-import org.apache.lucene.util.BytesRefBuilder;
-import org.apache.lucene.util.BytesRef;
-import org.apache.lucene.util.NumericUtils;
 import org.musicbrainz.search.index.Index;
 import org.musicbrainz.search.index.IndexField;
 import org.musicbrainz.search.index.MetaIndexField;
@@ -70,6 +67,16 @@ public class MbDocument {
         doc.add(new Field(field.getName(), value, field.getFieldType()));
     }
 
+    /**
+     * Add binary field, only used for stored fields such as the serialized entity
+     *
+     * @param field
+     * @param value
+     */
+    public void addField(IndexField field, byte[] value) {
+        doc.add(new StoredField(field.getName(), value));
+    }
+
     /**
      * Used to add database ids, just added as string because range searches ectera make no sense for them
      *
@@ -82,43 +89,39 @@ public class MbDocument {
     
     
     /**
-     * Add integral numeric field, handled specially so that ranges searches work properly
+     * Add integral numeric field, indexed as a trie field so that range searches can be done with a
+     * NumericRangeQuery. The full precision term is the same as the term previously indexed so exact
+     * matches can still be searched for using a TermQuery.
      *
      * @param field
      * @param value
      */
     public void addNumericField(IndexField field, Integer value) {
-
-        BytesRefBuilder bytes = new BytesRefBuilder();
-        NumericUtils.intToPrefixCoded(value, 0, bytes);
-        doc.add(new Field(field.getName(),bytes.toBytesRef().utf8ToString(), field.getFieldType()));
+        doc.add(new IntField(field.getName(), value,
+                field.getFieldType().stored() ? IntField.TYPE_STORED : IntField.TYPE_NOT_STORED));
     }
 
     /**
-     * Add float numeric field, handled specially so that ranges searches work properly
+     * Add float numeric field, indexed as a trie field so that range searches can be done with a NumericRangeQuery
      *
      * @param field
      * @param value
      */
     public void addNumericField(IndexField field,Float value) {
-
-        BytesRefBuilder bytes = new BytesRefBuilder();
-        NumericUtils.intToPrefixCoded(NumericUtils.floatToSortableInt(value), 0, bytes);
-        doc.add(new Field(field.getName(),bytes.toBytesRef().utf8ToString(), field.getFieldType()));
+        doc.add(new FloatField(field.getName(), value,
+                field.getFieldType().stored() ? FloatField.TYPE_STORED : FloatField.TYPE_NOT_STORED));
     }
 
 
     /**
-     * Add long numeric field, handled specially so that ranges searches work properly
+     * Add long numeric field, indexed as a trie field so that range searches can be done with a NumericRangeQuery
      *
      * @param field
      * @param value
      */
     public void addNumericField(IndexField field, Long value) {
-
-        BytesRefBuilder bytes = new BytesRefBuilder();
-        NumericUtils.longToPrefixCoded(value, 0, bytes);
-        doc.add(new Field(field.getName(),bytes.toBytesRef().utf8ToString(), field.getFieldType()));
+        doc.add(new LongField(field.getName(), value,
+                field.getFieldType().stored() ? LongField.TYPE_STORED : LongField.TYPE_NOT_STORED));
     }
 
     /**
@@ -3,6 +3,7 @@ package org.musicbrainz.search.analysis;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.ArrayUtil;
 
 import java.io.IOException;
 import java.text.Normalizer;
@@ -22,6 +23,11 @@ import java.util.regex.Pattern;
  * InCombiningDiacriticalMarks: special marks that are part of "normal" ä, ö, î etc..
  * IsSk: Symbol, Modifier see http://www.fileformat.info/info/unicode/category/Sk/list.htm
  * IsLm: Letter, Modifier see http://www.fileformat.info/info/unicode/category/Lm/list.htm
+ *
+ * Most tokens only contain characters below TABLE_SIZE, these are folded a character at a time using a table built
+ * from the result of folding each character on its own, so no strings are created. The table can only be used if
+ * none of the characters leave a combining mark behind, because decomposing the whole token may reorder such marks,
+ * any other token is folded the slow way.
  */
 public final class AccentFilter extends TokenFilter
 {
@@ -29,22 +35,87 @@ public final class AccentFilter extends TokenFilter
     public static final Pattern DIACRITICS_AND_FRIENDS
             = Pattern.compile("[\\p{InCombiningDiacriticalMarks}\\p{IsLm}\\p{IsSk}]+");
 
+    // Covers Latin, Greek, Cyrillic and the other alphabetic scripts but not CJK
+    private static final int TABLE_SIZE = 0x3000;
+
+    // Folded form of each character, null if folding leaves the character unchanged
+    private static final char[][] FOLDED = new char[TABLE_SIZE][];
+
+    // Marks characters whose folded form contains a combining mark, so tokens containing them can't use the table
+    private static final char[] NOT_FOLDABLE = new char[0];
+
+    static {
+        for (char c = 0; c < TABLE_SIZE; c++) {
+            String folded = stripDiacritics(String.valueOf(c));
+            for (int i = 0; i < folded.length(); i++) {
+                if (isCombiningMark(folded.charAt(i))) {
+                    FOLDED[c] = NOT_FOLDABLE;
+                    break;
+                }
+            }
+            if (FOLDED[c] == null && !(folded.length() == 1 && folded.charAt(0) == c)) {
+                FOLDED[c] = folded.toCharArray();
+            }
+        }
+    }
 
     private CharTermAttribute termAtt;
 
+    // Reused to hold the folded token
+    private char[] folded = new char[16];
+
     public AccentFilter(TokenStream input) {
         super(input);
         termAtt = (CharTermAttribute) addAttribute(CharTermAttribute.class);
     }
 
+    private static boolean isCombiningMark(char c) {
+        int type = Character.getType(c);
+        return type == Character.NON_SPACING_MARK
+                || type == Character.COMBINING_SPACING_MARK
+                || type == Character.ENCLOSING_MARK;
+    }
+
     @Override
     public final boolean incrementToken() throws IOException
     {
         if (input.incrementToken()) {
-            String result = stripDiacritics(new String(termAtt.buffer()).substring(0,termAtt.length()));
-            char[] newBuffer = result.toCharArray();
-            termAtt.copyBuffer(newBuffer, 0, newBuffer.length);
-            termAtt.setLength(newBuffer.length);
+            char[] buffer = termAtt.buffer();
+            int length = termAtt.length();
+
+            // Nothing to do for most tokens
+            int firstChanged = 0;
+            while (firstChanged < length && buffer[firstChanged] < TABLE_SIZE && FOLDED[buffer[firstChanged]] == null) {
+                firstChanged++;
+            }
+            if (firstChanged == length) {
+                return true;
+            }
+
+            for (int i = firstChanged; i < length; i++) {
+                if (buffer[i] >= TABLE_SIZE || FOLDED[buffer[i]] == NOT_FOLDABLE) {
+                    String result = stripDiacritics(termAtt.toString());
+                    termAtt.setEmpty().append(result);
+                    return true;
+                }
+            }
+
+            int foldedLength = 0;
+            for (int i = 0; i < length; i++) {
+                char[] chars = FOLDED[buffer[i]];
+                int charsLength = chars == null ? 1 : chars.length;
+                if (foldedLength + charsLength > folded.length) {
+                    folded = ArrayUtil.grow(folded, foldedLength + charsLength);
+                }
+                if (chars == null) {
+                    folded[foldedLength++] = buffer[i];
+                }
+                else {
+                    System.arraycopy(chars, 0, folded, foldedLength, charsLength);
+                    foldedLength += charsLength;
+                }
+            }
+            termAtt.copyBuffer(folded, 0, foldedLength);
             return true;
         } else {
             return false;
@@ -57,4 +128,4 @@ public final class AccentFilter extends TokenFilter
         //System.out.println(str+":"+normalizedString+":"+simplifiedString);
         return simplifiedString;
     }
-}
\ No newline at end of file
+}
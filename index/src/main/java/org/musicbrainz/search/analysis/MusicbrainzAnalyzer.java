@@ -36,14 +36,13 @@ import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.charfilter.MappingCharFilter;
 import org.apache.lucene.analysis.charfilter.NormalizeCharMap;
 import org.apache.lucene.analysis.cjk.CJKBigramFilter;
-import org.apache.lucene.analysis.icu.ICUTransformFilter;
 import org.musicbrainz.search.LuceneVersion;
 
 import java.io.IOException;
 import java.io.Reader;
 
 /**
- * Filters MusicbrainzTokenizer with MusicbrainzTokenizerFilter, ICUTransformFilter, AccentFilter, LowerCaseFilter
+ * Filters MusicbrainzTokenizer with MusicbrainzTokenizerFilter, ScriptTransformFilter, AccentFilter, LowerCaseFilter
  * and no stop words.
  */
 public class MusicbrainzAnalyzer extends Analyzer {
@@ -67,8 +66,8 @@ public class MusicbrainzAnalyzer extends Analyzer {
     @Override
     protected TokenStreamComponents createComponents(String fieldName, Reader reader) {
         Tokenizer source = new MusicbrainzTokenizer(LuceneVersion.LUCENE_VERSION,reader);
-        TokenStream filter = new ICUTransformFilter(source, Transliterator.getInstance("[ー[:Script=Katakana:]]Katakana-Hiragana"));
-        filter = new ICUTransformFilter(filter, Transliterator.getInstance("Traditional-Simplified"));
+        TokenStream filter = new ScriptTransformFilter(source, Transliterator.getInstance("[ー[:Script=Katakana:]]Katakana-Hiragana"));
+        filter = new ScriptTransformFilter(filter, Transliterator.getInstance("Traditional-Simplified"));
         filter = new AccentFilter(filter);
         filter = new MusicbrainzTokenizerFilter(filter);
         filter = new CJKBigramFilter(filter);
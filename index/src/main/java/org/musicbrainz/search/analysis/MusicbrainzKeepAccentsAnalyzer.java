@@ -36,7 +36,6 @@ import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.charfilter.MappingCharFilter;
 import org.apache.lucene.analysis.charfilter.NormalizeCharMap;
 import org.apache.lucene.analysis.cjk.CJKBigramFilter;
-import org.apache.lucene.analysis.icu.ICUTransformFilter;
 import org.musicbrainz.search.LuceneVersion;
 
 import java.io.IOException;
@@ -65,8 +64,8 @@ public class MusicbrainzKeepAccentsAnalyzer extends Analyzer {
     @Override
     protected TokenStreamComponents createComponents(String fieldName, Reader reader) {
         Tokenizer source = new MusicbrainzTokenizer(LuceneVersion.LUCENE_VERSION,reader );
-        TokenStream filter = new ICUTransformFilter(source, Transliterator.getInstance("[ー[:Script=Katakana:]]Katakana-Hiragana"));
-        filter = new ICUTransformFilter(filter, Transliterator.getInstance("Traditional-Simplified"));
+        TokenStream filter = new ScriptTransformFilter(source, Transliterator.getInstance("[ー[:Script=Katakana:]]Katakana-Hiragana"));
+        filter = new ScriptTransformFilter(filter, Transliterator.getInstance("Traditional-Simplified"));
         filter = new MusicbrainzTokenizerFilter(filter);
         filter = new CJKBigramFilter(filter);
         filter = new LowercaseFilter(filter);
@@ -0,0 +1,59 @@
+package org.musicbrainz.search.analysis;
+
+import com.ibm.icu.text.Transliterator;
+import com.ibm.icu.text.UnicodeSet;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.IOException;
+
+/**
+ * Transliterates tokens the same as ICUTransformFilter, but only tokens that contain characters the transliterator
+ * could change.
+ *
+ * The transliterators used by the analyzers only change characters of particular scripts (e.g. Katakana or Han), so
+ * tokens written entirely in scripts that come before them in Unicode, such as Latin, are passed straight through
+ * without going through the transliterator at all.
+ */
+public final class ScriptTransformFilter extends TokenFilter
+{
+    private final Transliterator transform;
+
+    // Tokens with no character at or above this are never changed by the transliterator
+    private final int lowestSourceChar;
+
+    private final CharTermAttribute termAtt;
+
+    public ScriptTransformFilter(TokenStream input, Transliterator transform) {
+        super(input);
+        this.transform = transform;
+        termAtt = addAttribute(CharTermAttribute.class);
+
+        // As ICUTransformFilter does, limit an unfiltered transliterator to the characters it could change
+        UnicodeSet sourceSet = transform.getSourceSet();
+        if (transform.getFilter() == null && !sourceSet.isEmpty()) {
+            transform.setFilter(sourceSet);
+        }
+        lowestSourceChar = sourceSet.isEmpty() ? Integer.MAX_VALUE : sourceSet.getRangeStart(0);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException
+    {
+        if (!input.incrementToken()) {
+            return false;
+        }
+
+        char[] buffer = termAtt.buffer();
+        int length = termAtt.length();
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] >= lowestSourceChar) {
+                String result = transform.transliterate(termAtt.toString());
+                termAtt.setEmpty().append(result);
+                break;
+            }
+        }
+        return true;
+    }
+}
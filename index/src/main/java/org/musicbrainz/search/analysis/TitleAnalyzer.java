@@ -37,7 +37,6 @@ import org.apache.lucene.analysis.charfilter.MappingCharFilter;
 import org.apache.lucene.analysis.charfilter.NormalizeCharMap;
 import org.apache.lucene.analysis.cjk.CJKBigramFilter;
 import org.apache.lucene.analysis.core.KeywordTokenizer;
-import org.apache.lucene.analysis.icu.ICUTransformFilter;
 import org.musicbrainz.search.LuceneVersion;
 
 import java.io.IOException;
@@ -48,7 +47,7 @@ import java.util.regex.Pattern;
  * Should be used for for analysing titles such as track title,release title or recording title
  * because contains special processing for titles that isn't required for other text fields such as artist name.
  *
- * Filters MusicbrainzTokenizer with MusicbrainzTokenizerFilter, ICUTransformFilter, AccentFilter, LowerCaseFilter
+ * Filters MusicbrainzTokenizer with MusicbrainzTokenizerFilter, ScriptTransformFilter, AccentFilter, LowerCaseFilter
  * and no stop words.
  */
 public class TitleAnalyzer extends Analyzer {
@@ -76,8 +75,8 @@ public class TitleAnalyzer extends Analyzer {
     @Override
     protected TokenStreamComponents createComponents(String fieldName, Reader reader) {
         Tokenizer source = new MusicbrainzTokenizer(LuceneVersion.LUCENE_VERSION, reader);
-        TokenStream filter = new ICUTransformFilter(source, Transliterator.getInstance("[ー[:Script=Katakana:]]Katakana-Hiragana"));
-        filter = new ICUTransformFilter(filter, Transliterator.getInstance("Traditional-Simplified"));
+        TokenStream filter = new ScriptTransformFilter(source, Transliterator.getInstance("[ー[:Script=Katakana:]]Katakana-Hiragana"));
+        filter = new ScriptTransformFilter(filter, Transliterator.getInstance("Traditional-Simplified"));
         filter = new AccentFilter(filter);
         filter = new MusicbrainzTokenizerFilter(filter);
         filter = new CJKBigramFilter(filter);
@@ -62,6 +62,11 @@ public class AreaIndex extends DatabaseIndex {
 	public IndexField getIdentifierField() {
 		return AreaIndexField.ID;
 	}
+
+	@Override
+	public SlimSchema getSlimSchema() {
+		return new SlimSchema(AreaIndexField.class, AreaIndexField.AREA_STORE, AreaIndexField.AREA_ID, AreaIndexField.AREA);
+	}
 	
     public Analyzer getAnalyzer() {
         return DatabaseIndex.getAnalyzer(AreaIndexField.class);
@@ -353,8 +358,14 @@ public class AreaIndex extends DatabaseIndex {
             area.setTagList(tagList);
         }
 
-        String store = MMDSerializer.serialize(areaList);
+        byte[] store = MMDSerializer.serializeBinary(areaList);
         doc.addField(AreaIndexField.AREA_STORE, store);
+        if (isPreRenderFragments()) {
+            area.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+            Metadata metadata = of.createMetadata();
+            metadata.setAreaList(areaList);
+            MMDSerializer.addXmlFragment(doc, metadata);
+        }
 
         AreaBoostDoc.boost(area.getType(), doc.getLuceneDocument());
         return doc.getLuceneDocument();
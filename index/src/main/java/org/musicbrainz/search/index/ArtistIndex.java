@@ -80,6 +80,11 @@ public class ArtistIndex extends DatabaseIndex {
         return ArtistIndexField.ID;
     }
 
+    @Override
+    public SlimSchema getSlimSchema() {
+        return new SlimSchema(ArtistIndexField.class, ArtistIndexField.ARTIST_STORE, ArtistIndexField.ARTIST_ID, ArtistIndexField.ARTIST);
+    }
+
     public int getMaxId() throws SQLException {
         Statement st = dbConnection.createStatement();
         ResultSet rs = st.executeQuery("SELECT MAX(id) FROM artist");
@@ -383,8 +388,16 @@ public class ArtistIndex extends DatabaseIndex {
 
         ArtistBoostDoc.boost(artistGuid, doc);
 
-        String store = MMDSerializer.serialize(artist);
+        byte[] store = MMDSerializer.serializeBinary(artist);
         doc.addField(ArtistIndexField.ARTIST_STORE, store);
+        if (isPreRenderFragments()) {
+            artist.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+            ArtistList artistList = of.createArtistList();
+            artistList.getArtist().add(artist);
+            Metadata metadata = of.createMetadata();
+            metadata.setArtistList(artistList);
+            MMDSerializer.addXmlFragment(doc, metadata);
+        }
 
         return doc.getLuceneDocument();
     }
@@ -24,6 +24,7 @@ import org.apache.commons.lang.time.StopWatch;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -34,6 +35,8 @@ public class CommonTables  {
 
     protected Connection dbConnection;
     private   List<String> indexesToBeBuilt ;
+    private   boolean      isShared;
+    private   List<String> createdTables = new ArrayList<String>();
 
 
     public CommonTables(Connection dbConnection, String indexToBeBuilt) {
@@ -51,6 +54,53 @@ public class CommonTables  {
             return dbConnection;
         }
 
+    /**
+     * Create the tables as unlogged tables rather than temporary tables so they can also be used by indexes built
+     * using other connections, they are not dropped automatically so dropTables() must be called once all the
+     * indexes have been built.
+     *
+     * @param isShared
+     */
+    public void setShared(boolean isShared) {
+        this.isShared = isShared;
+    }
+
+    /**
+     * Start of sql to create table from a select
+     *
+     * @param tableName
+     * @return
+     * @throws SQLException
+     */
+    private String createTable(String tableName) throws SQLException
+    {
+        createdTables.add(tableName);
+        if(isShared)
+        {
+            //Could be left over from a previous build that failed
+            getDbConnection().createStatement().execute("DROP TABLE IF EXISTS " + tableName);
+            return "CREATE UNLOGGED TABLE " + tableName + " AS ";
+        }
+        return "CREATE TEMPORARY TABLE " + tableName + " AS ";
+    }
+
+    /**
+     * Drop the tables that have been created, required for shared tables and for temporary tables if they are going
+     * to be created again on the same connection. Tables that could not be dropped are dropped again by the next call,
+     * including the one made before the tables are created again.
+     *
+     * @throws SQLException
+     */
+    public void dropTables() throws SQLException
+    {
+        Iterator<String> i = createdTables.iterator();
+        while(i.hasNext())
+        {
+            getDbConnection().createStatement().execute("DROP TABLE IF EXISTS " + i.next());
+            i.remove();
+        }
+    }
+
     /**
      * Create table showing all artist credits, then create index
      * for the table, a merge of required artist credit_name & artist information
@@ -63,7 +113,7 @@ public class CommonTables  {
         StopWatch clock = new StopWatch();
         clock.start();
         getDbConnection().createStatement().execute(
-            "CREATE TEMPORARY TABLE tmp_artistcredit AS " +
+            createTable("tmp_artistcredit") +
                 "SELECT acn.artist_credit as artist_credit, " +
                 "  acn.position as pos, " +
                 "  acn.join_phrase as joinphrase, " +
@@ -94,7 +144,7 @@ public class CommonTables  {
         clock.start();
 
         getDbConnection().createStatement().execute(
-            "CREATE TEMPORARY TABLE tmp_release AS " +
+            createTable("tmp_release") +
                 "SELECT r.id, r.gid, r.name as name, " +
                 "  barcode, " +
                 "  rgt.name as type, rg.id as rg_id, rg.gid as rg_gid, rm.amazon_asin, " +
@@ -132,7 +182,7 @@ public class CommonTables  {
 
         //Note:assumes a release country always only maps to an area with a single 3166_1 code
         getDbConnection().createStatement().execute(
-                "CREATE TEMPORARY TABLE tmp_release_event AS " +
+                createTable("tmp_release_event") +
                         " SELECT r1.release, r2.code as country, " +
                         "  r1.date_year, r1.date_month, r1.date_day," +
                         "  a1.gid as gid, a1.name as name" +
@@ -165,7 +215,7 @@ public class CommonTables  {
         clock.start();
 
         getDbConnection().createStatement().execute(
-            "CREATE TEMPORARY TABLE tmp_track AS " +
+            createTable("tmp_track") +
                 "SELECT t.id, t.gid, t.recording, t.length, t.name as track_name, t.position as track_position, t.number as track_number, m.track_count, " +
                 "  m.release as release_id, m.position as medium_position, mf.name as format " +
                 " FROM track t " +
@@ -187,6 +237,8 @@ public class CommonTables  {
 
     public void createTemporaryTables(boolean isUpdater)  throws SQLException
     {
+        //Tables left over from a previous call that failed would stop them being created again
+        dropTables();
 
         if(
             (indexesToBeBuilt.contains(ReleaseIndex.INDEX_NAME))||
@@ -0,0 +1,78 @@
+/*
+ * MusicBrainz Search Server
+ * Copyright (C) 2009  Aurelien Mino
+
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+
+package org.musicbrainz.search.index;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fixed set of database connections shared by the indexes being built, so that several indexes can be built at the
+ * same time each using its own connection.
+ */
+public class ConnectionPool {
+
+    private final List<Connection>          connections;
+    private final BlockingQueue<Connection> available;
+
+    /**
+     *
+     * @param connections connections in the pool, the pool takes ownership of them
+     */
+    public ConnectionPool(List<Connection> connections) {
+        this.connections = new ArrayList<Connection>(connections);
+        this.available = new ArrayBlockingQueue<Connection>(Math.max(1, connections.size()), false, connections);
+    }
+
+    public int size() {
+        return connections.size();
+    }
+
+    /**
+     * Take a connection, waiting until one is released if they are all in use
+     *
+     * @return
+     * @throws InterruptedException
+     */
+    public Connection take() throws InterruptedException {
+        return available.take();
+    }
+
+    public void release(Connection connection) {
+        available.offer(connection);
+    }
+
+    /**
+     * Close all connections in the pool
+     */
+    public void close() {
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            }
+            catch (SQLException sqle) {
+                sqle.printStackTrace();
+            }
+        }
+    }
+}
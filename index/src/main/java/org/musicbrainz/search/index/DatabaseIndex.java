@@ -45,10 +45,11 @@ import java.util.Map;
 public abstract class DatabaseIndex implements Index {
 
     /* This is appended to the getName() method of each index to create the index folder  */
-    private static final String INDEX_SUFFIX = "_index";
+    static final String INDEX_SUFFIX = "_index";
 
     protected HashMap<String, PreparedStatement> preparedStatements;
     protected Connection dbConnection;
+    private boolean isPreRenderFragments;
     
     public String getFilename() {
         return getName() + INDEX_SUFFIX;
@@ -63,6 +64,19 @@ public abstract class DatabaseIndex implements Index {
 
     }
 
+    /**
+     * If set indexes that store the entity also store the rendered Xml in FragmentIndexField.XML
+     *
+     * @param isPreRenderFragments
+     */
+    public void setPreRenderFragments(boolean isPreRenderFragments) {
+        this.isPreRenderFragments = isPreRenderFragments;
+    }
+
+    public boolean isPreRenderFragments() {
+        return isPreRenderFragments;
+    }
+
     public static Analyzer getAnalyzer(Class indexFieldClass) {
         Map<String,Analyzer> fieldAnalyzers = new HashMap<String, Analyzer>();
         for(Object o : EnumSet.allOf(indexFieldClass)) {
@@ -182,6 +196,15 @@ public abstract class DatabaseIndex implements Index {
         return dbConnection;
     }
 
+    /**
+     * Use a different connection, must be called before init()
+     *
+     * @param dbConnection
+     */
+    public void setDbConnection(Connection dbConnection) {
+        this.dbConnection = dbConnection;
+    }
+
     /**
      * Initialize the indexer, usually this includes creation of prepared statements
      * and any temporary tables or indexes that re reuired.
@@ -199,6 +222,26 @@ public abstract class DatabaseIndex implements Index {
         }
     }
 
+    /**
+     * Must be checked before calling createChunkWorker()
+     *
+     * @return true if chunks of this index can be indexed at the same time using createChunkWorker()
+     */
+    public boolean supportsChunkWorkers() {
+        return false;
+    }
+
+    /**
+     * Create another instance of this index using a different connection so that chunks can be indexed at the
+     * same time, the instance must be initialized before use. Only called if supportsChunkWorkers() is true.
+     *
+     * @param dbConnection
+     * @return
+     */
+    protected DatabaseIndex createChunkWorker(Connection dbConnection) {
+        throw new UnsupportedOperationException(getName() + " does not support chunk workers");
+    }
+
     public abstract int getNoOfRows(int maxId) throws SQLException ;
     
     /**
@@ -219,6 +262,17 @@ public abstract class DatabaseIndex implements Index {
 
     public abstract IndexField getIdentifierField();
 
+    /**
+     * Schema used instead of the field types of the index fields when the --slim option is set, only indexes whose
+     * search results are written from the stored entity alone can stop storing their other fields.
+     *
+     * @return slim schema, or null if documents are always written with the field types of the index fields
+     */
+    public SlimSchema getSlimSchema()
+    {
+        return null;
+    }
+
     public Similarity getSimilarity()
     {
         return null;
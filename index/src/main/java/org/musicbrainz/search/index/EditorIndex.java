@@ -25,6 +25,8 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.search.similarities.Similarity;
 import org.musicbrainz.mmd2.Editor;
+import org.musicbrainz.mmd2.EditorList;
+import org.musicbrainz.mmd2.Metadata;
 import org.musicbrainz.mmd2.ObjectFactory;
 import org.musicbrainz.search.MbDocument;
 import org.musicbrainz.search.analysis.MusicbrainzSimilarity;
@@ -57,6 +59,11 @@ public class EditorIndex extends DatabaseIndex {
 	public IndexField getIdentifierField() {
 		return EditorIndexField.ID;
 	}
+
+	@Override
+	public SlimSchema getSlimSchema() {
+		return new SlimSchema(EditorIndexField.class, EditorIndexField.EDITOR_STORE, EditorIndexField.EDITOR);
+	}
     
     public int getMaxId() throws SQLException {
         Statement st = dbConnection.createStatement();
@@ -127,8 +134,16 @@ public class EditorIndex extends DatabaseIndex {
             editor.setBio(bio);
         }
 
-        String store = MMDSerializer.serialize(editor);
+        byte[] store = MMDSerializer.serializeBinary(editor);
         doc.addField(EditorIndexField.EDITOR_STORE, store);
+        if (isPreRenderFragments()) {
+            editor.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+            EditorList editorList = of.createEditorList();
+            editorList.getEditor().add(editor);
+            Metadata metadata = of.createMetadata();
+            metadata.setEditorList(editorList);
+            MMDSerializer.addXmlFragment(doc, metadata);
+        }
         return doc.getLuceneDocument();
     }
 
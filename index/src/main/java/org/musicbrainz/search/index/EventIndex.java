@@ -61,6 +61,11 @@ public class EventIndex extends DatabaseIndex {
 	public IndexField getIdentifierField() {
 		return EventIndexField.ID;
 	}
+
+	@Override
+	public SlimSchema getSlimSchema() {
+		return new SlimSchema(EventIndexField.class, EventIndexField.EVENT_STORE, EventIndexField.EVENT_ID, EventIndexField.EVENT);
+	}
 	
     public Analyzer getAnalyzer() {
         return DatabaseIndex.getAnalyzer(EventIndexField.class);
@@ -204,8 +209,16 @@ public class EventIndex extends DatabaseIndex {
             event.setTagList(TagHelper.addTagsToDocAndConstructTagList(of, doc, tags, eventId, EventIndexField.TAG));
         }
 
-        String store = MMDSerializer.serialize(event);
+        byte[] store = MMDSerializer.serializeBinary(event);
         doc.addField(EventIndexField.EVENT_STORE, store);
+        if (isPreRenderFragments()) {
+            event.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+            EventList eventList = of.createEventList();
+            eventList.getEvent().add(event);
+            Metadata metadata = of.createMetadata();
+            metadata.setEventList(eventList);
+            MMDSerializer.addXmlFragment(doc, metadata);
+        }
         return doc.getLuceneDocument();
     }
 
@@ -0,0 +1,61 @@
+/*
+ * MusicBrainz Search Server
+ * Copyright (C) 2010  Paul Taylor
+
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+
+package org.musicbrainz.search.index;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.FieldType;
+
+/**
+ * Pre-rendered output stored with each entity when the index is built with the --prerender option, so the search
+ * server can write it straight into the results rather than having to unserialize and marshall the entity
+ *
+ * Only Xml is pre-rendered, json results are always marshalled from the serialized entity because the json
+ * marshallers can only write a complete list.
+ */
+public enum FragmentIndexField implements IndexField {
+
+    // Xml of the entity element without the value of its score attribute
+    XML                     ("fragment_xml",        MusicBrainzFieldTypes.TEXT_STORED_NOT_INDEXED),
+    // Offset within XML of the score attribute, where the actual score is written
+    XML_SCORE_OFFSET        ("fragment_xml_score",  MusicBrainzFieldTypes.TEXT_STORED_NOT_INDEXED),
+    ;
+
+    private String name;
+    private Analyzer analyzer;
+    private FieldType fieldType;
+
+    private FragmentIndexField(String name, FieldType fieldType) {
+        this.name = name;
+        this.fieldType=fieldType;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Analyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    public FieldType getFieldType()
+    {
+        return fieldType;
+    }
+}
@@ -51,8 +51,6 @@ import java.util.concurrent.*;
 public class IndexBuilder
 {
 
-    private static final int MAX_THREADS_FOR_CONCURRENT_OPTIMIZATION = 1;
-
     public static void main(String[] args) throws SQLException, IOException, InterruptedException
     {
 
@@ -133,11 +131,15 @@ public class IndexBuilder
         };
 
         List<String> indexesToBeBuilt = new ArrayList<String>();
+        boolean isChunkWorkersUsed = false;
         for (DatabaseIndex index : indexes) {
 
             // Check if this index should be built
             if (options.buildIndex(index.getName())) {
                 indexesToBeBuilt.add(index.getName());
+                if (options.getChunkWorkers() > 1 && index.supportsChunkWorkers()) {
+                    isChunkWorkersUsed = true;
+                }
             }
         }
 
@@ -146,12 +148,50 @@ public class IndexBuilder
         if(indexesToBeBuilt.size()>0) {
             initialReplicationInformation = indexes[0].readReplicationInformationFromDatabase();
         }
-        // Create temporary tables used by multiple indexes
+        // Connections used to build the indexes, the main connection is always used so when only building one
+        // index at a time it can still use temporary tables. Chunk workers open their own connections, which are
+        // taken out of the same budget so the database is never sent more than --dbconnections connections.
+        int buildConnections = options.getDbConnections();
+        if (isChunkWorkersUsed) {
+            buildConnections = Math.max(1, buildConnections - (options.getChunkWorkers() - 1));
+        }
+        List<Connection> connections = new ArrayList<Connection>();
+        if(mainDbConn!=null)
+        {
+            connections.add(mainDbConn);
+            for(int i=1;i<Math.min(buildConnections, indexesToBeBuilt.size());i++)
+            {
+                Connection dbConn = options.getMainDatabaseConnection();
+                if(dbConn==null)
+                {
+                    System.err.println("Couldn't open additional database connection");
+                    System.exit(1);
+                }
+                connections.add(dbConn);
+            }
+        }
+        ConnectionPool connectionPool = new ConnectionPool(connections);
+
+        // Create temporary tables used by multiple indexes, if using more than one connection (either to build
+        // indexes at the same time or for recording chunk workers) they have to be created as real tables so they
+        // can be seen by all connections
         CommonTables commonTables = new CommonTables(mainDbConn, indexesToBeBuilt);
+        commonTables.setShared(connectionPool.size() > 1 || isChunkWorkersUsed);
         commonTables.createTemporaryTables(false);
 
-        ExecutorService es = Executors.newFixedThreadPool(MAX_THREADS_FOR_CONCURRENT_OPTIMIZATION);
+        // The indexes built at the same time share the cpu budget, so an index built on its own gets all of it
+        int cpuThreadsPerIndex = Math.max(1, options.getCpuThreads() / Math.max(1, connectionPool.size()));
+
+        // An index being optimized needs about as much cpu as an index being built, so as many can be optimized at
+        // the same time as can be built within the cpu budget
+        int optimizerThreads = Math.max(1, Math.min(connectionPool.size(), options.getCpuThreads() / cpuThreadsPerIndex));
+        ExecutorService es = Executors.newFixedThreadPool(optimizerThreads);
         CompletionService<Boolean> cs = new ExecutorCompletionService<Boolean>(es);
+
+        // Build as many indexes at the same time as we have connections, they are submitted in the order of the
+        // indexes array which lists the largest first
+        ExecutorService buildService = Executors.newFixedThreadPool(Math.max(1, connectionPool.size()));
+        List<Future<Boolean>> builds = new ArrayList<Future<Boolean>>();
         for (DatabaseIndex index : indexes) {
 
             // Check if this index should be built
@@ -160,10 +200,11 @@ public class IndexBuilder
                 continue;
             }
 
-            IndexWriter indexWriter = createIndexWriter(index,options);
-            int maxId = buildDatabaseIndex(indexWriter, index, options, initialReplicationInformation);
-            cs.submit(new IndexWriterOptimizerAndClose(maxId,indexWriter, index, options));
+            index.setPreRenderFragments(options.isPreRenderFragments());
+            builds.add(buildService.submit(
+                    new DatabaseIndexBuilder(index, options, initialReplicationInformation, connectionPool, cpuThreadsPerIndex, cs)));
         }
+        buildService.shutdown();
 
         // FreeDB data indexing
         if(options.buildIndex("freedb")) {
@@ -179,9 +220,25 @@ public class IndexBuilder
             }
         }
 
+        //Wait for each index to be built, only indexes that were built successfully are optimized
+        int noOfBuiltIndexes = 0;
+        for (Future<Boolean> build : builds) {
+            try
+            {
+                build.get();
+                noOfBuiltIndexes++;
+            }
+            catch(ExecutionException ee)
+            {
+                System.out.println("Build Failed");
+                ee.getCause().printStackTrace();
+            }
+        }
+        commonTables.dropTables();
+
         //Wait for each index to be optimized and closed before exiting from Index Build
         System.out.println("Waiting for any indexes to finish optimizing:"+ Utils.formatCurrentTimeForOutput());
-        for (int i =0;i<indexesToBeBuilt.size();i++) {
+        for (int i =0;i<noOfBuiltIndexes;i++) {
             Future<Boolean> result = cs.take();
             try
             {
@@ -196,11 +253,12 @@ public class IndexBuilder
             }
         }
         es.shutdown();
-        if(mainDbConn!=null)
+        connectionPool.close();
+        System.out.println("Index Builder Finished:"+ Utils.formatCurrentTimeForOutput());
+        if(noOfBuiltIndexes < builds.size())
         {
-            mainDbConn.close();
+            System.exit(1);
         }
-        System.out.println("Index Builder Finished:"+ Utils.formatCurrentTimeForOutput());
     }
 
 
@@ -208,18 +266,19 @@ public class IndexBuilder
      * Initialize IndexWriter for populating index
      *
      * All addDocuments request are put on a queue to allow another query to be made to database without waiting
-     * for all added documents to be analysed, queue is serviced by available processor no of threads.
+     * for all added documents to be analysed, queue is serviced by cpuThreads threads.
      * If the max query outperforms the lucene analysis then analysis will switch to main thread because
      * the pool queue size cannot be larger than the max number of documents returned from one query.
      * Will get best results on multicpu systems accessing database on another system.
      *
      * @param index
      * @param options
+     * @param cpuThreads threads used to analyze the documents
      * @return
      * @throws IOException
      * @throws SQLException
      */
-    private static IndexWriter createIndexWriter(DatabaseIndex index, IndexOptions options) throws IOException, SQLException
+    private static IndexWriter createIndexWriter(DatabaseIndex index, IndexOptions options, int cpuThreads) throws IOException, SQLException
     {
         IndexWriter indexWriter;
         String path = options.getIndexesDir() + index.getFilename();
@@ -237,9 +296,13 @@ public class IndexBuilder
         indexWriter = new ThreadedIndexWriter(
                                                 fsDir,
                                                 config,
-                                                Runtime.getRuntime().availableProcessors(),
+                                                cpuThreads,
                                                 options.getDatabaseChunkSize()
                                                 );
+        if(options.isSlimSchema())
+        {
+            ((ThreadedIndexWriter)indexWriter).setSlimSchema(index.getSlimSchema());
+        }
 
         return indexWriter;
     }
@@ -268,12 +331,17 @@ public class IndexBuilder
 
                 if (options.isTest() && options.getTestIndexSize() < maxId)
                     maxId = options.getTestIndexSize();
-                int j = 0;
-                while (j <= maxId) {
-                    int k = Math.min(j + options.getDatabaseChunkSize() - 1, maxId);
-                    System.out.print(index.getName()+":Indexing " + j + "..." + k + " / " + maxId + " (" + (100*k/maxId) + "%)\r");
-                    index.indexData(indexWriter, j, k);
-                    j += options.getDatabaseChunkSize();
+                if (options.getChunkWorkers() > 1 && index.supportsChunkWorkers()) {
+                    indexChunksConcurrently(indexWriter, index, options, maxId);
+                }
+                else {
+                    int j = 0;
+                    while (j <= maxId) {
+                        int k = Math.min(j + options.getDatabaseChunkSize() - 1, maxId);
+                        System.out.print(index.getName()+":Indexing " + j + "..." + k + " / " + maxId + " (" + (100*k/maxId) + "%)\r");
+                        index.indexData(indexWriter, j, k);
+                        j += options.getDatabaseChunkSize();
+                    }
                 }
             }
             index.destroy();
@@ -288,6 +356,68 @@ public class IndexBuilder
         }
     }
 
+    /**
+     * Index the chunks using a number of workers each with its own connection, so whilst one worker is creating
+     * the documents for its chunk the others are retrieving the data for the following chunks.
+     *
+     * @param indexWriter
+     * @param index
+     * @param options
+     * @param maxId
+     * @throws IOException
+     * @throws SQLException
+     */
+    private static void indexChunksConcurrently(IndexWriter indexWriter, DatabaseIndex index, IndexOptions options, int maxId) throws IOException, SQLException
+    {
+        BlockingQueue<DatabaseIndex> workers = new ArrayBlockingQueue<DatabaseIndex>(options.getChunkWorkers());
+        List<DatabaseIndex> createdWorkers = new ArrayList<DatabaseIndex>();
+        ExecutorService es = Executors.newFixedThreadPool(options.getChunkWorkers());
+        try
+        {
+            workers.add(index);
+            for (int i = 1; i < options.getChunkWorkers(); i++) {
+                Connection dbConnection = options.getMainDatabaseConnection();
+                if (dbConnection == null) {
+                    throw new SQLException("Unable to open database connection for chunk worker");
+                }
+                DatabaseIndex worker = index.createChunkWorker(dbConnection);
+                createdWorkers.add(worker);
+                worker.init(indexWriter, false);
+                workers.add(worker);
+            }
+
+            List<Future<Boolean>> chunks = new ArrayList<Future<Boolean>>();
+            int j = 0;
+            while (j <= maxId) {
+                int k = Math.min(j + options.getDatabaseChunkSize() - 1, maxId);
+                chunks.add(es.submit(new ChunkIndexer(indexWriter, workers, j, k, maxId)));
+                j += options.getDatabaseChunkSize();
+            }
+            for (Future<Boolean> chunk : chunks) {
+                chunk.get();
+            }
+        }
+        catch (InterruptedException ie)
+        {
+            throw new IOException(ie);
+        }
+        catch (ExecutionException ee)
+        {
+            if (ee.getCause() instanceof SQLException) {
+                throw (SQLException) ee.getCause();
+            }
+            throw new IOException(ee.getCause());
+        }
+        finally
+        {
+            es.shutdownNow();
+            for (DatabaseIndex worker : createdWorkers) {
+                worker.destroy();
+                worker.getDbConnection().close();
+            }
+        }
+    }
+
     /**
      * Build a FreeDB index from a FreeDB dump
      * 
@@ -330,21 +460,21 @@ public class IndexBuilder
      */
    static class IndexWriterOptimizerAndClose implements Callable<Boolean>
     {
-        private int             maxId;
+        private int             dbRows;
         private IndexWriter     indexWriter;
         private DatabaseIndex   index;
         private IndexOptions    options;
 
         /**
          *
-         * @param maxId
+         * @param dbRows no of rows in database, for checking against the no of documents in the index
          * @param indexWriter
          * @param index
          * @param options
          */
-        public IndexWriterOptimizerAndClose(int maxId, IndexWriter indexWriter, DatabaseIndex index, IndexOptions options)
+        public IndexWriterOptimizerAndClose(int dbRows, IndexWriter indexWriter, DatabaseIndex index, IndexOptions options)
         {
-            this.maxId=maxId;
+            this.dbRows=dbRows;
             this.indexWriter= indexWriter;
             this.index=index;
             this.options=options;
@@ -364,10 +494,10 @@ public class IndexBuilder
                 clock.stop();
                 // For debugging to check sql is not creating too few/many rows
                 if(true) {
-                    int dbRows = index.getNoOfRows(maxId);
                     reader = DirectoryReader.open(FSDirectory.open(new File(path)));
                     System.out.println(index.getName()+":"+dbRows+" db rows:"+(reader.maxDoc() - 1)+" lucene docs");
                 }
+                System.out.println(index.getName()+":Size on disk:" + Utils.formatSize(Utils.getDirectorySize(new File(path))));
                 System.out.println(index.getName()+":Finished forceMerge:" + Utils.formatClock(clock));
                 return true;
             }
@@ -384,18 +514,100 @@ public class IndexBuilder
                 }
                 return false;
             }
-            catch(SQLException sqle)
+        }
+    }
+
+    /*
+     * Index one chunk using whichever worker is free
+     */
+    static class ChunkIndexer implements Callable<Boolean>
+    {
+        private IndexWriter                     indexWriter;
+        private BlockingQueue<DatabaseIndex>    workers;
+        private int                             min;
+        private int                             max;
+        private int                             maxId;
+
+        public ChunkIndexer(IndexWriter indexWriter, BlockingQueue<DatabaseIndex> workers, int min, int max, int maxId)
+        {
+            this.indexWriter=indexWriter;
+            this.workers=workers;
+            this.min=min;
+            this.max=max;
+            this.maxId=maxId;
+        }
+
+        public Boolean call() throws IOException, SQLException, InterruptedException
+        {
+            DatabaseIndex worker = workers.take();
+            try
             {
-                sqle.printStackTrace();
-                try
-                {
-                    indexWriter.close();
-                }
-                catch(Exception ex)
-                {
-                    ex.printStackTrace();
-                }
-                return false;
+                System.out.print(worker.getName()+":Indexing " + min + "..." + max + " / " + maxId + " (" + (100*max/maxId) + "%)\r");
+                worker.indexData(indexWriter, min, max);
+                return true;
+            }
+            finally
+            {
+                workers.add(worker);
+            }
+        }
+    }
+
+    /*
+     * Build an index using a connection from the pool, then pass it to the optimizer
+     *
+     * The connection is only held whilst the index is being built, it is returned to the pool before the index is
+     * optimized so that the next index can be started.
+     */
+    static class DatabaseIndexBuilder implements Callable<Boolean>
+    {
+        private DatabaseIndex               index;
+        private IndexOptions                options;
+        private ReplicationInformation      initialReplicationInformation;
+        private ConnectionPool              connectionPool;
+        private int                         cpuThreads;
+        private CompletionService<Boolean>  optimizerService;
+
+        /**
+         *
+         * @param index
+         * @param options
+         * @param initialReplicationInformation
+         * @param connectionPool
+         * @param cpuThreads threads used to analyze the documents of the index
+         * @param optimizerService
+         */
+        public DatabaseIndexBuilder(DatabaseIndex index,
+                                    IndexOptions options,
+                                    ReplicationInformation initialReplicationInformation,
+                                    ConnectionPool connectionPool,
+                                    int cpuThreads,
+                                    CompletionService<Boolean> optimizerService)
+        {
+            this.index=index;
+            this.options=options;
+            this.initialReplicationInformation=initialReplicationInformation;
+            this.connectionPool=connectionPool;
+            this.cpuThreads=cpuThreads;
+            this.optimizerService=optimizerService;
+        }
+
+        public Boolean call() throws IOException, SQLException, InterruptedException
+        {
+            Connection dbConnection = connectionPool.take();
+            try
+            {
+                index.setDbConnection(dbConnection);
+                IndexWriter indexWriter = createIndexWriter(index,options,cpuThreads);
+                int maxId = buildDatabaseIndex(indexWriter, index, options, initialReplicationInformation);
+                // Counted now whilst we still have the connection, reported once optimized
+                int dbRows = index.getNoOfRows(maxId);
+                optimizerService.submit(new IndexWriterOptimizerAndClose(dbRows, indexWriter, index, options));
+                return true;
+            }
+            finally
+            {
+                connectionPool.release(dbConnection);
             }
         }
     }
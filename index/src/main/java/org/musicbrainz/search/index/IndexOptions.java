@@ -109,5 +109,28 @@ public class IndexOptions {
     private int maxBufferedDocs = MAX_BUFFERED_DOCS;
     public int getMaxBufferedDocs() { return maxBufferedDocs; }
 
+    // Pre-render Xml
+    @Option(name="--prerender", usage="Store the rendered Xml of each entity so search results can be output without having to marshall them, the index must be rebuilt whenever the search server mmd schema changes.")
+    private boolean preRenderFragments = false;
+    public boolean isPreRenderFragments() { return preRenderFragments; }
+
+    // Slim schema
+    @Option(name="--slim", usage="Only store the fields read back by the search server, for the indexes whose results are written from the stored entity alone.")
+    private boolean slimSchema = false;
+    public boolean isSlimSchema() { return slimSchema; }
+
+    // Concurrency
+    @Option(name="--dbconnections", usage="The number of database connections used, each index built at the same time uses its own connection. (default: 1)")
+    private int dbConnections = 1;
+    public int getDbConnections() { return Math.max(1, dbConnections); }
+
+    @Option(name="--cputhreads", usage="The number of threads used to analyze documents, shared between the indexes being built at the same time. (default: no of processors)")
+    private int cpuThreads = Runtime.getRuntime().availableProcessors();
+    public int getCpuThreads() { return Math.max(1, cpuThreads); }
+
+    @Option(name="--chunkworkers", usage="The number of chunks of the recording index extracted from the database at the same time, each uses one of the --dbconnections so fewer indexes are built at the same time. (default: 1)")
+    private int chunkWorkers = 1;
+    public int getChunkWorkers() { return Math.max(1, Math.min(chunkWorkers, getDbConnections())); }
+
 
 }
@@ -0,0 +1,740 @@
+package org.musicbrainz.search.index;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Reports where the space in an index goes and how large its postings are, field by field, so that the effect of
+ * schema changes on index size and query cost can be seen.
+ *
+ * Lucene keeps the postings, positions and norms of all fields in the same files, so their sizes on disk are only
+ * reported for the index as a whole, each field reports the number of postings and positions it contributes. Stored
+ * fields are read back so their size is reported per field, as the uncompressed size of their values.
+ *
+ * Run with: java -cp index-2.0-SNAPSHOT-jar-with-dependencies.jar org.musicbrainz.search.index.IndexStatistics --indexes-dir ...
+ */
+public class IndexStatistics
+{
+    // Type of data held in each kind of index file
+    private static final Map<String, String> FILE_TYPES = new HashMap<String, String>();
+
+    static
+    {
+        FILE_TYPES.put("tim", "terms");
+        FILE_TYPES.put("tip", "terms");
+        FILE_TYPES.put("doc", "postings");
+        FILE_TYPES.put("pos", "positions");
+        FILE_TYPES.put("pay", "positions");
+        FILE_TYPES.put("nvd", "norms");
+        FILE_TYPES.put("nvm", "norms");
+        FILE_TYPES.put("fdt", "stored");
+        FILE_TYPES.put("fdx", "stored");
+        FILE_TYPES.put("dvd", "docvalues");
+        FILE_TYPES.put("dvm", "docvalues");
+        FILE_TYPES.put("tvd", "termvectors");
+        FILE_TYPES.put("tvx", "termvectors");
+        FILE_TYPES.put("liv", "deletions");
+        FILE_TYPES.put("cfs", "compound");
+        FILE_TYPES.put("cfe", "compound");
+    }
+
+    // Float trie fields, their terms are the same as those of int fields so the index alone cannot tell them apart
+    private static final Set<String> FLOAT_FIELDS = new HashSet<String>();
+
+    static
+    {
+        FLOAT_FIELDS.add(PlaceIndexField.LAT.getName());
+        FLOAT_FIELDS.add(PlaceIndexField.LONG.getName());
+    }
+
+    private final String name;
+    private int segmentCount;
+    private int docCount;
+    private int maxDoc;
+    private long sizeInBytes;
+    private final Map<String, Long> bytesByFileType = new TreeMap<String, Long>();
+    private final Map<String, FieldStatistics> fields = new TreeMap<String, FieldStatistics>();
+
+    /**
+     * Statistics of one field
+     */
+    public static class FieldStatistics
+    {
+        private final String name;
+        private boolean isIndexed;
+        private boolean hasNorms;
+        private long termCount;
+        private long postingsCount;
+        private long positionsCount = -1;
+        private long storedValueCount;
+        private long storedBytes;
+        private final List<TermCount> largestTerms = new ArrayList<TermCount>();
+
+        FieldStatistics(String name)
+        {
+            this.name = name;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public boolean isIndexed()
+        {
+            return isIndexed;
+        }
+
+        public boolean hasNorms()
+        {
+            return hasNorms;
+        }
+
+        /**
+         * @return number of unique terms
+         */
+        public long getTermCount()
+        {
+            return termCount;
+        }
+
+        /**
+         * @return number of postings, the sum of the document frequencies of the terms
+         */
+        public long getPostingsCount()
+        {
+            return postingsCount;
+        }
+
+        /**
+         * @return number of positions, the sum of the term frequencies of the terms, or -1 if not indexed with
+         *         frequencies
+         */
+        public long getPositionsCount()
+        {
+            return positionsCount;
+        }
+
+        public long getStoredValueCount()
+        {
+            return storedValueCount;
+        }
+
+        /**
+         * @return total size of the stored values in bytes, strings are counted as their UTF-8 encoded size
+         */
+        public long getStoredBytes()
+        {
+            return storedBytes;
+        }
+
+        /**
+         * @return terms in the most documents, most first
+         */
+        public List<TermCount> getLargestTerms()
+        {
+            return largestTerms;
+        }
+    }
+
+    /**
+     * A term and the number of documents containing it
+     */
+    public static class TermCount
+    {
+        private final String term;
+        private final int docFreq;
+
+        TermCount(String term, int docFreq)
+        {
+            this.term = term;
+            this.docFreq = docFreq;
+        }
+
+        public String getTerm()
+        {
+            return term;
+        }
+
+        public int getDocFreq()
+        {
+            return docFreq;
+        }
+    }
+
+    private static final Comparator<TermCount> SMALLEST_FIRST = new Comparator<TermCount>()
+    {
+        public int compare(TermCount t1, TermCount t2)
+        {
+            if (t1.docFreq != t2.docFreq)
+            {
+                return t1.docFreq < t2.docFreq ? -1 : 1;
+            }
+            // Of terms in as many documents, keep the first in term order
+            return t2.term.compareTo(t1.term);
+        }
+    };
+
+    private IndexStatistics(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Collect the statistics of an index
+     *
+     * @param name name reported for the index
+     * @param directory directory holding the index
+     * @param topTerms number of largest terms kept for each field
+     * @return statistics of the index
+     * @throws IOException
+     */
+    public static IndexStatistics collect(String name, Directory directory, int topTerms) throws IOException
+    {
+        IndexStatistics stats = new IndexStatistics(name);
+        stats.collectFileSizes(directory);
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        try
+        {
+            stats.segmentCount = reader.leaves().size();
+            stats.docCount = reader.numDocs();
+            stats.maxDoc = reader.maxDoc();
+            for (FieldInfo fieldInfo : MultiFields.getMergedFieldInfos(reader))
+            {
+                FieldStatistics field = stats.getField(fieldInfo.name);
+                field.isIndexed = fieldInfo.isIndexed();
+                field.hasNorms = fieldInfo.hasNorms();
+            }
+            stats.collectTerms(reader, topTerms);
+            stats.collectStoredFields(reader);
+        }
+        finally
+        {
+            reader.close();
+        }
+        return stats;
+    }
+
+    private FieldStatistics getField(String fieldName)
+    {
+        FieldStatistics field = fields.get(fieldName);
+        if (field == null)
+        {
+            field = new FieldStatistics(fieldName);
+            fields.put(fieldName, field);
+        }
+        return field;
+    }
+
+    private void collectFileSizes(Directory directory) throws IOException
+    {
+        for (String fileName : directory.listAll())
+        {
+            String fileType = FILE_TYPES.get(IndexFileNames.getExtension(fileName));
+            if (fileType == null)
+            {
+                fileType = "other";
+            }
+            long length = directory.fileLength(fileName);
+            Long bytes = bytesByFileType.get(fileType);
+            bytesByFileType.put(fileType, bytes == null ? length : bytes + length);
+            sizeInBytes += length;
+        }
+    }
+
+    private void collectTerms(DirectoryReader reader, int topTerms) throws IOException
+    {
+        Fields readerFields = MultiFields.getFields(reader);
+        if (readerFields == null)
+        {
+            return;
+        }
+
+        for (String fieldName : readerFields)
+        {
+            Terms terms = readerFields.terms(fieldName);
+            if (terms == null)
+            {
+                continue;
+            }
+
+            FieldStatistics field = getField(fieldName);
+            field.postingsCount = terms.getSumDocFreq();
+            field.positionsCount = terms.getSumTotalTermFreq();
+
+            PriorityQueue<TermCount> largest = new PriorityQueue<TermCount>(Math.max(1, topTerms), SMALLEST_FIRST);
+            TermsEnum termsEnum = terms.iterator(null);
+            BytesRef term;
+            int numericType = NOT_NUMERIC;
+            boolean isFloatField = FLOAT_FIELDS.contains(fieldName);
+            while ((term = termsEnum.next()) != null)
+            {
+                // Terms are in order, so the first term of a numeric field is a full precision numeric term
+                if (field.termCount++ == 0)
+                {
+                    numericType = getNumericType(term);
+                }
+                if (topTerms == 0)
+                {
+                    continue;
+                }
+                // Lower precision terms of numeric fields are only there to speed up range queries
+                if (numericType != NOT_NUMERIC && getNumericType(term) != numericType)
+                {
+                    continue;
+                }
+                int docFreq = termsEnum.docFreq();
+                if (largest.size() < topTerms || docFreq > largest.peek().docFreq)
+                {
+                    largest.add(new TermCount(termToString(term, numericType, isFloatField), docFreq));
+                    if (largest.size() > topTerms)
+                    {
+                        largest.poll();
+                    }
+                }
+            }
+            field.largestTerms.addAll(largest);
+            Collections.sort(field.largestTerms, Collections.reverseOrder(SMALLEST_FIRST));
+        }
+    }
+
+    private static final int NOT_NUMERIC = 0;
+    private static final int NUMERIC_INT = 1;
+    private static final int NUMERIC_LONG = 2;
+
+    /**
+     * @param term
+     * @return type of the term if it is a full precision term of a numeric field, otherwise NOT_NUMERIC
+     */
+    private static int getNumericType(BytesRef term)
+    {
+        if (term.length == 0)
+        {
+            return NOT_NUMERIC;
+        }
+        try
+        {
+            byte first = term.bytes[term.offset];
+            if (first == NumericUtils.SHIFT_START_LONG && term.length == NumericUtils.BUF_SIZE_LONG)
+            {
+                NumericUtils.prefixCodedToLong(term);
+                return NUMERIC_LONG;
+            }
+            if (first == NumericUtils.SHIFT_START_INT && term.length == NumericUtils.BUF_SIZE_INT)
+            {
+                NumericUtils.prefixCodedToInt(term);
+                return NUMERIC_INT;
+            }
+        }
+        catch (NumberFormatException nfe)
+        {
+            // Not a numeric term after all
+        }
+        return NOT_NUMERIC;
+    }
+
+    private static String termToString(BytesRef term, int numericType, boolean isFloatField)
+    {
+        switch (numericType)
+        {
+            case NUMERIC_LONG:
+                return Long.toString(NumericUtils.prefixCodedToLong(term));
+            case NUMERIC_INT:
+                if (isFloatField)
+                {
+                    return Float.toString(NumericUtils.sortableIntToFloat(NumericUtils.prefixCodedToInt(term)));
+                }
+                return Integer.toString(NumericUtils.prefixCodedToInt(term));
+            default:
+                return term.utf8ToString();
+        }
+    }
+
+    private void collectStoredFields(DirectoryReader reader) throws IOException
+    {
+        StoredFieldVisitor visitor = new StoredFieldVisitor()
+        {
+            @Override
+            public Status needsField(FieldInfo fieldInfo) throws IOException
+            {
+                return Status.YES;
+            }
+
+            @Override
+            public void binaryField(FieldInfo fieldInfo, byte[] value) throws IOException
+            {
+                addStoredValue(fieldInfo, value.length);
+            }
+
+            @Override
+            public void stringField(FieldInfo fieldInfo, String value) throws IOException
+            {
+                addStoredValue(fieldInfo, value.getBytes("UTF-8").length);
+            }
+
+            @Override
+            public void intField(FieldInfo fieldInfo, int value)
+            {
+                addStoredValue(fieldInfo, 4);
+            }
+
+            @Override
+            public void longField(FieldInfo fieldInfo, long value)
+            {
+                addStoredValue(fieldInfo, 8);
+            }
+
+            @Override
+            public void floatField(FieldInfo fieldInfo, float value)
+            {
+                addStoredValue(fieldInfo, 4);
+            }
+
+            @Override
+            public void doubleField(FieldInfo fieldInfo, double value)
+            {
+                addStoredValue(fieldInfo, 8);
+            }
+        };
+
+        Bits liveDocs = MultiFields.getLiveDocs(reader);
+        for (int docId = 0; docId < reader.maxDoc(); docId++)
+        {
+            if (liveDocs == null || liveDocs.get(docId))
+            {
+                reader.document(docId, visitor);
+            }
+        }
+    }
+
+    private void addStoredValue(FieldInfo fieldInfo, int bytes)
+    {
+        FieldStatistics field = getField(fieldInfo.name);
+        field.storedValueCount++;
+        field.storedBytes += bytes;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getSegmentCount()
+    {
+        return segmentCount;
+    }
+
+    /**
+     * @return number of documents, not including deleted documents
+     */
+    public int getDocCount()
+    {
+        return docCount;
+    }
+
+    /**
+     * @return number of documents, including deleted documents not yet merged away
+     */
+    public int getMaxDoc()
+    {
+        return maxDoc;
+    }
+
+    /**
+     * @return size of all the files in the index directory in bytes
+     */
+    public long getSizeInBytes()
+    {
+        return sizeInBytes;
+    }
+
+    /**
+     * @return size in bytes of the index files holding each type of data, such as postings or stored
+     */
+    public Map<String, Long> getBytesByFileType()
+    {
+        return bytesByFileType;
+    }
+
+    /**
+     * @return statistics of each field, in field name order
+     */
+    public Map<String, FieldStatistics> getFields()
+    {
+        return fields;
+    }
+
+    /**
+     * Output the statistics as a readable report
+     *
+     * @param out
+     */
+    public void write(PrintWriter out)
+    {
+        out.println(name + ":" + segmentCount + " segments:" + docCount + " docs (" + maxDoc + " including deleted)");
+        out.println(name + ":Size on disk:" + Utils.formatSize(sizeInBytes));
+        for (Map.Entry<String, Long> entry : bytesByFileType.entrySet())
+        {
+            out.println(String.format("  %-12s %s", entry.getKey(), Utils.formatSize(entry.getValue())));
+        }
+
+        out.println(String.format("  %-20s %12s %12s %12s %5s %12s %14s",
+                "field", "terms", "postings", "positions", "norms", "stored", "stored bytes"));
+        for (FieldStatistics field : fields.values())
+        {
+            out.println(String.format("  %-20s %12d %12d %12s %5s %12d %14d",
+                    field.name,
+                    field.termCount,
+                    field.postingsCount,
+                    field.positionsCount < 0 ? "-" : Long.toString(field.positionsCount),
+                    field.hasNorms ? "yes" : "no",
+                    field.storedValueCount,
+                    field.storedBytes));
+        }
+
+        for (FieldStatistics field : fields.values())
+        {
+            if (field.largestTerms.isEmpty())
+            {
+                continue;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (TermCount termCount : field.largestTerms)
+            {
+                if (sb.length() > 0)
+                {
+                    sb.append(", ");
+                }
+                sb.append(printable(termCount.term)).append('(').append(termCount.docFreq).append(')');
+            }
+            out.println("  largest terms of " + field.name + ": " + sb);
+        }
+    }
+
+    /**
+     * Output the statistics as a Json object, fields and file types are always output in the same order so that the
+     * output of different builds of an index can be compared
+     *
+     * @param out
+     */
+    public void writeJson(PrintWriter out)
+    {
+        out.println("{");
+        out.println("  \"name\": " + quote(name) + ",");
+        out.println("  \"segments\": " + segmentCount + ",");
+        out.println("  \"docs\": " + docCount + ",");
+        out.println("  \"maxDoc\": " + maxDoc + ",");
+        out.println("  \"bytes\": " + sizeInBytes + ",");
+        out.println("  \"files\": {");
+        int i = 0;
+        for (Map.Entry<String, Long> entry : bytesByFileType.entrySet())
+        {
+            out.println("    " + quote(entry.getKey()) + ": " + entry.getValue()
+                    + (++i < bytesByFileType.size() ? "," : ""));
+        }
+        out.println("  },");
+        out.println("  \"fields\": {");
+        i = 0;
+        for (FieldStatistics field : fields.values())
+        {
+            out.println("    " + quote(field.name) + ": {");
+            out.println("      \"indexed\": " + field.isIndexed + ",");
+            out.println("      \"norms\": " + field.hasNorms + ",");
+            out.println("      \"terms\": " + field.termCount + ",");
+            out.println("      \"postings\": " + field.postingsCount + ",");
+            out.println("      \"positions\": " + field.positionsCount + ",");
+            out.println("      \"storedValues\": " + field.storedValueCount + ",");
+            out.println("      \"storedBytes\": " + field.storedBytes + ",");
+            StringBuilder sb = new StringBuilder();
+            for (TermCount termCount : field.largestTerms)
+            {
+                if (sb.length() > 0)
+                {
+                    sb.append(", ");
+                }
+                sb.append("{\"term\": ").append(quote(termCount.term))
+                        .append(", \"docs\": ").append(termCount.docFreq).append('}');
+            }
+            out.println("      \"largestTerms\": [" + sb + "]");
+            out.println("    }" + (++i < fields.size() ? "," : ""));
+        }
+        out.println("  }");
+        out.print("}");
+    }
+
+    /**
+     * Escape characters that can't be output as they are, such as those in encoded numeric terms
+     */
+    private static String printable(String s)
+    {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if (c < 0x20 || c == 0x7f || c == 0xfffd)
+            {
+                sb.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String quote(String s)
+    {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            switch (c)
+            {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20 || c == 0x7f || (c >= 0x2028 && c <= 0x2029))
+                    {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+
+    /**
+     * Find the index directories to report on
+     *
+     * @param options
+     * @return index directories, in name order
+     */
+    private static List<File> findIndexDirs(IndexStatisticsOptions options) throws IOException
+    {
+        List<File> indexDirs = new ArrayList<File>();
+        File indexesDir = new File(options.getIndexesDir());
+        List<String> selectedIndexes = options.selectedIndexes();
+        if (!selectedIndexes.isEmpty())
+        {
+            for (String indexName : selectedIndexes)
+            {
+                indexDirs.add(new File(indexesDir, indexName + DatabaseIndex.INDEX_SUFFIX));
+            }
+            return indexDirs;
+        }
+
+        File[] files = indexesDir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                if (file.isDirectory() && DirectoryReader.indexExists(FSDirectory.open(file)))
+                {
+                    indexDirs.add(file);
+                }
+            }
+        }
+        Collections.sort(indexDirs);
+        return indexDirs;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        IndexStatisticsOptions options = new IndexStatisticsOptions();
+        CmdLineParser parser = new CmdLineParser(options);
+
+        try {
+            parser.parseArgument(args);
+        } catch (CmdLineException e) {
+            System.err.println("Couldn't parse command line parameters");
+            parser.printUsage(System.out);
+            System.exit(1);
+        }
+
+        // On request, print command line usage
+        if (options.isHelp()) {
+            parser.printUsage(System.out);
+            System.exit(1);
+        }
+
+        List<File> indexDirs = findIndexDirs(options);
+        if (indexDirs.isEmpty())
+        {
+            System.err.println("No indexes found in " + options.getIndexesDir());
+            System.exit(1);
+        }
+
+        PrintWriter out = new PrintWriter(System.out);
+        if (options.isJson())
+        {
+            out.println("[");
+        }
+        for (int i = 0; i < indexDirs.size(); i++)
+        {
+            File indexDir = indexDirs.get(i);
+            Directory directory = FSDirectory.open(indexDir);
+            try
+            {
+                IndexStatistics stats = IndexStatistics.collect(indexDir.getName(), directory, options.getTopTerms());
+                if (options.isJson())
+                {
+                    stats.writeJson(out);
+                    out.println(i < indexDirs.size() - 1 ? "," : "");
+                }
+                else
+                {
+                    stats.write(out);
+                    out.println();
+                }
+                out.flush();
+            }
+            finally
+            {
+                directory.close();
+            }
+        }
+        if (options.isJson())
+        {
+            out.println("]");
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,40 @@
+package org.musicbrainz.search.index;
+
+import org.kohsuke.args4j.Option;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class IndexStatisticsOptions {
+
+    public static final int DEFAULT_TOP_TERMS = 10;
+
+    @Option(name="--indexes-dir", usage="The directory containing the indexes. (default: ./data/)")
+    private String indexesDir = "." + System.getProperty("file.separator") + "data" + System.getProperty("file.separator");
+    public String getIndexesDir() {
+        if (indexesDir.endsWith(System.getProperty("file.separator"))) return indexesDir;
+        else return indexesDir + System.getProperty("file.separator");
+    }
+
+    // Selection of indexes to report on
+    @Option(name="--indexes", usage="A comma-separated list of indexes to report on, such as artist,recording (default: all indexes in --indexes-dir)")
+    private String indexes = "";
+    public List<String> selectedIndexes() {
+        if (indexes.length() == 0) return new ArrayList<String>();
+        return new ArrayList<String>(Arrays.asList(indexes.split(",")));
+    }
+
+    @Option(name="--top-terms", usage="The number of terms with the most postings listed for each field. (default: "+DEFAULT_TOP_TERMS+")")
+    private int topTerms = DEFAULT_TOP_TERMS;
+    public int getTopTerms() { return Math.max(0, topTerms); }
+
+    @Option(name="--json", usage="Output the report as Json, so that reports of different builds can be compared.")
+    private boolean json = false;
+    public boolean isJson() { return json; }
+
+    @Option(name="--help", usage="Print this usage information.")
+    private boolean help = false;
+    public boolean isHelp() { return help; }
+
+}
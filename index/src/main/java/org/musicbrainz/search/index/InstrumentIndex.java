@@ -59,6 +59,11 @@ public class InstrumentIndex extends DatabaseIndex {
 	public IndexField getIdentifierField() {
 		return InstrumentIndexField.ID;
 	}
+
+	@Override
+	public SlimSchema getSlimSchema() {
+		return new SlimSchema(InstrumentIndexField.class, InstrumentIndexField.INSTRUMENT_STORE, InstrumentIndexField.INSTRUMENT_ID, InstrumentIndexField.INSTRUMENT);
+	}
     
     public int getMaxId() throws SQLException {
         Statement st = dbConnection.createStatement();
@@ -168,8 +173,16 @@ public class InstrumentIndex extends DatabaseIndex {
             instrument.setTagList(tagList);
         }
 
-        String store = MMDSerializer.serialize(instrument);
+        byte[] store = MMDSerializer.serializeBinary(instrument);
         doc.addField(InstrumentIndexField.INSTRUMENT_STORE, store);
+        if (isPreRenderFragments()) {
+            instrument.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+            InstrumentList instrumentList = of.createInstrumentList();
+            instrumentList.getInstrument().add(instrument);
+            Metadata metadata = of.createMetadata();
+            metadata.setInstrumentList(instrumentList);
+            MMDSerializer.addXmlFragment(doc, metadata);
+        }
         return doc.getLuceneDocument();
     }
 
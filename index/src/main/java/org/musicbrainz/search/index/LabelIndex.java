@@ -61,6 +61,11 @@ public class LabelIndex extends DatabaseIndex {
 	public IndexField getIdentifierField() {
 		return LabelIndexField.ID;
 	}
+
+	@Override
+	public SlimSchema getSlimSchema() {
+		return new SlimSchema(LabelIndexField.class, LabelIndexField.LABEL_STORE, LabelIndexField.LABEL_ID, LabelIndexField.LABEL);
+	}
     
     public int getMaxId() throws SQLException {
         Statement st = dbConnection.createStatement();
@@ -264,8 +269,16 @@ public class LabelIndex extends DatabaseIndex {
 
         LabelBoostDoc.boost(labelGuid, doc);
 
-        String store = MMDSerializer.serialize(label);
+        byte[] store = MMDSerializer.serializeBinary(label);
         doc.addField(LabelIndexField.LABEL_STORE, store);
+        if (isPreRenderFragments()) {
+            label.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+            LabelList labelList = of.createLabelList();
+            labelList.getLabel().add(label);
+            Metadata metadata = of.createMetadata();
+            metadata.setLabelList(labelList);
+            MMDSerializer.addXmlFragment(doc, metadata);
+        }
 
 
 
@@ -0,0 +1,634 @@
+/*
+ * MusicBrainz Search Server
+ * Copyright (C) 2010  Paul Taylor
+
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+
+package org.musicbrainz.search.index;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary encoding of the MMD classes, used for the *_STORE fields instead of Xml.
+ *
+ * The encoding walks the fields of the JAXB generated classes directly so no Xml has to be parsed when a hit is
+ * returned. It is self describing: the first time a class is written within a record its name and the names of the
+ * fields that follow are written, later instances of the same class just refer back to it by number. Because fields
+ * are matched by name when decoded an index built with an older version of the MMD can still be read by a newer
+ * servlet, fields that no longer exist are skipped.
+ *
+ * Records always start with {@link #MAGIC} followed by {@link #VERSION} so the format can be changed in the future.
+ */
+public class MMDBinaryCodec {
+
+    public static final byte MAGIC   = (byte) 0xB1;
+    public static final byte VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    //Value tags
+    private static final int NULL           = 0;
+    private static final int STRING         = 1;
+    private static final int INT            = 2;
+    private static final int LONG           = 3;
+    private static final int BIG_INTEGER    = 4;
+    private static final int TRUE           = 5;
+    private static final int FALSE          = 6;
+    private static final int LIST           = 7;
+    private static final int NEW_OBJECT     = 8;
+    private static final int OBJECT         = 9;
+    private static final int ENUM           = 10;
+    private static final int FLOAT          = 11;
+    private static final int DOUBLE         = 12;
+    private static final int BIG_DECIMAL    = 13;
+    private static final int QNAME          = 14;
+    private static final int XML_CALENDAR   = 15;
+    private static final int MAP            = 16;
+    private static final int JAXB_ELEMENT   = 17;
+    private static final int CLASS          = 18;
+    private static final int SHORT          = 19;
+    private static final int BYTE           = 20;
+
+    private static final Map<Class, ClassInfo> classInfos = new ConcurrentHashMap<Class, ClassInfo>();
+    private static final Map<String, Class> classesByName = new ConcurrentHashMap<String, Class>();
+
+    private static DatatypeFactory datatypeFactory;
+
+    /**
+     * Cached reflection information about a class
+     */
+    private static class ClassInfo {
+        private final Class               type;
+        private final Constructor         constructor;
+        private final Field[]             fields;
+        private final String[]            fieldNames;
+        private final Map<String, Field>  fieldsByName;
+
+        private ClassInfo(Class type) {
+            this.type = type;
+            List<Field> fieldList = new ArrayList<Field>();
+            for (Class c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    fieldList.add(field);
+                }
+            }
+            this.fields = fieldList.toArray(new Field[fieldList.size()]);
+            this.fieldNames = new String[fields.length];
+            this.fieldsByName = new HashMap<String, Field>();
+            for (int i = 0; i < fields.length; i++) {
+                fieldNames[i] = fields[i].getName();
+                fieldsByName.put(fieldNames[i], fields[i]);
+            }
+
+            Constructor noArgs = null;
+            if (!type.isEnum()) {
+                try {
+                    noArgs = type.getDeclaredConstructor();
+                    noArgs.setAccessible(true);
+                } catch (NoSuchMethodException nsme) {
+                    //Only a problem if we actually need to decode an instance
+                }
+            }
+            this.constructor = noArgs;
+        }
+
+        private Object newInstance() throws IOException {
+            if (constructor == null) {
+                throw new IOException("No default constructor for " + type.getName());
+            }
+            try {
+                return constructor.newInstance();
+            } catch (Exception e) {
+                throw new IOException("Unable to create " + type.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Field names as written for one class within a record
+     */
+    private static class ClassLayout {
+        private final ClassInfo info;
+        private final Field[]   fields;
+
+        private ClassLayout(ClassInfo info, Field[] fields) {
+            this.info = info;
+            this.fields = fields;
+        }
+    }
+
+    private static ClassInfo getClassInfo(Class type) {
+        ClassInfo info = classInfos.get(type);
+        if (info == null) {
+            info = new ClassInfo(type);
+            classInfos.put(type, info);
+        }
+        return info;
+    }
+
+    private static Class getClass(String name) throws IOException {
+        Class type = classesByName.get(name);
+        if (type == null) {
+            try {
+                type = Class.forName(name, true, MMDBinaryCodec.class.getClassLoader());
+            } catch (ClassNotFoundException cnfe) {
+                throw new IOException("Unknown class in stored entity:" + name, cnfe);
+            }
+            classesByName.put(name, type);
+        }
+        return type;
+    }
+
+    private static synchronized XMLGregorianCalendar toXmlCalendar(String lexical) throws IOException {
+        try {
+            if (datatypeFactory == null) {
+                datatypeFactory = DatatypeFactory.newInstance();
+            }
+            return datatypeFactory.newXMLGregorianCalendar(lexical);
+        } catch (DatatypeConfigurationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Encode an MMD object
+     *
+     * @param o
+     * @return
+     * @throws IOException if the object contains a value that cannot be encoded
+     */
+    public static byte[] encode(Object o) throws IOException {
+        Encoder encoder = new Encoder();
+        encoder.writeByte(MAGIC);
+        encoder.writeByte(VERSION);
+        encoder.writeValue(o);
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Does the data start with the header written by {@link #encode(Object)}
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static boolean isEncoded(byte[] bytes, int offset, int length) {
+        return length >= 2 && bytes[offset] == MAGIC;
+    }
+
+    /**
+     * Decode an MMD object
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return
+     * @throws IOException if not a valid record or written by a newer version of the codec
+     */
+    public static Object decode(byte[] bytes, int offset, int length) throws IOException {
+        if (!isEncoded(bytes, offset, length)) {
+            throw new IOException("Not an encoded MMD entity");
+        }
+        int version = bytes[offset + 1];
+        if (version > VERSION) {
+            throw new IOException("Unsupported stored entity version:" + version);
+        }
+        Decoder decoder = new Decoder(bytes, offset + 2, offset + length);
+        return decoder.readValue(null);
+    }
+
+    private static class Encoder {
+
+        private byte[] buffer = new byte[1024];
+        private int    length = 0;
+        private final Map<Class, Integer> classIds = new HashMap<Class, Integer>();
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, length + extra));
+            }
+        }
+
+        private void writeByte(int b) {
+            ensureCapacity(1);
+            buffer[length++] = (byte) b;
+        }
+
+        private void writeVInt(int i) {
+            ensureCapacity(5);
+            while ((i & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((i & 0x7F) | 0x80);
+                i >>>= 7;
+            }
+            buffer[length++] = (byte) i;
+        }
+
+        private void writeVLong(long l) {
+            ensureCapacity(10);
+            while ((l & ~0x7FL) != 0L) {
+                buffer[length++] = (byte) ((l & 0x7FL) | 0x80L);
+                l >>>= 7;
+            }
+            buffer[length++] = (byte) l;
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void writeString(String s) {
+            writeBytes(s.getBytes(UTF8));
+        }
+
+        private void writeNullableString(String s) {
+            if (s == null) {
+                writeByte(0);
+            } else {
+                writeByte(1);
+                writeString(s);
+            }
+        }
+
+        private void writeQName(QName qname) {
+            writeString(qname.getNamespaceURI());
+            writeString(qname.getLocalPart());
+            writeString(qname.getPrefix());
+        }
+
+        /**
+         * Write reference to class, writing out the class name (and field names) the first time it is seen
+         */
+        private void writeClassRef(Class type, boolean withFields) {
+            Integer id = classIds.get(type);
+            if (id != null) {
+                writeVInt(id);
+                return;
+            }
+            writeVInt(classIds.size());
+            classIds.put(type, classIds.size());
+            writeString(type.getName());
+            if (withFields) {
+                ClassInfo info = getClassInfo(type);
+                writeVInt(info.fieldNames.length);
+                for (String name : info.fieldNames) {
+                    writeString(name);
+                }
+            }
+        }
+
+        private void writeValue(Object o) throws IOException {
+            if (o == null) {
+                writeByte(NULL);
+            } else if (o instanceof String) {
+                writeByte(STRING);
+                writeString((String) o);
+            } else if (o instanceof Integer) {
+                writeByte(INT);
+                writeVInt(zigZag((Integer) o));
+            } else if (o instanceof BigInteger) {
+                BigInteger bi = (BigInteger) o;
+                if (bi.bitLength() < 63) {
+                    writeByte(BIG_INTEGER);
+                    writeVLong(zigZag(bi.longValue()));
+                } else {
+                    writeByte(BIG_DECIMAL);
+                    writeString(bi.toString());
+                    writeByte(1);
+                }
+            } else if (o instanceof Boolean) {
+                writeByte(((Boolean) o) ? TRUE : FALSE);
+            } else if (o instanceof Long) {
+                writeByte(LONG);
+                writeVLong(zigZag((Long) o));
+            } else if (o instanceof Collection) {
+                Collection c = (Collection) o;
+                writeByte(LIST);
+                writeVInt(c.size());
+                for (Object next : c) {
+                    writeValue(next);
+                }
+            } else if (o instanceof Enum) {
+                writeByte(ENUM);
+                writeClassRef(((Enum) o).getDeclaringClass(), false);
+                writeString(((Enum) o).name());
+            } else if (o instanceof Float) {
+                writeByte(FLOAT);
+                writeVInt(Float.floatToIntBits((Float) o));
+            } else if (o instanceof Double) {
+                writeByte(DOUBLE);
+                writeVLong(Double.doubleToLongBits((Double) o));
+            } else if (o instanceof BigDecimal) {
+                writeByte(BIG_DECIMAL);
+                writeString(o.toString());
+                writeByte(0);
+            } else if (o instanceof Short) {
+                writeByte(SHORT);
+                writeVInt(zigZag((Short) o));
+            } else if (o instanceof Byte) {
+                writeByte(BYTE);
+                writeByte((Byte) o);
+            } else if (o instanceof QName) {
+                writeByte(QNAME);
+                writeQName((QName) o);
+            } else if (o instanceof XMLGregorianCalendar) {
+                writeByte(XML_CALENDAR);
+                writeString(((XMLGregorianCalendar) o).toXMLFormat());
+            } else if (o instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) o;
+                writeByte(MAP);
+                writeVInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else if (o instanceof JAXBElement) {
+                JAXBElement element = (JAXBElement) o;
+                writeByte(JAXB_ELEMENT);
+                writeQName(element.getName());
+                writeString(element.getDeclaredType().getName());
+                writeNullableString(element.isGlobalScope() ? null : element.getScope().getName());
+                writeByte(element.isNil() ? 1 : 0);
+                writeValue(element.getValue());
+            } else if (o instanceof Class) {
+                writeByte(CLASS);
+                writeString(((Class) o).getName());
+            } else if (o.getClass().getName().startsWith("java.")) {
+                throw new IOException("Unable to encode value of " + o.getClass());
+            } else {
+                writeObject(o);
+            }
+        }
+
+        private void writeObject(Object o) throws IOException {
+            Class type = o.getClass();
+            writeByte(classIds.containsKey(type) ? OBJECT : NEW_OBJECT);
+            writeClassRef(type, true);
+            ClassInfo info = getClassInfo(type);
+            try {
+                for (int i = 0; i < info.fields.length; i++) {
+                    Object value = info.fields[i].get(o);
+                    //Empty lists and maps are output in the same way as unset ones so there is no need to store them
+                    if (value == null
+                            || (value instanceof Collection && ((Collection) value).isEmpty())
+                            || (value instanceof Map && ((Map) value).isEmpty())) {
+                        continue;
+                    }
+                    writeVInt(i + 1);
+                    writeValue(value);
+                }
+            } catch (IllegalAccessException iae) {
+                throw new IOException(iae);
+            }
+            writeVInt(0);
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+
+    private static class Decoder {
+
+        private final byte[] bytes;
+        private int pos;
+        private final int end;
+        private final List<Object> classes = new ArrayList<Object>();
+
+        private Decoder(byte[] bytes, int pos, int end) {
+            this.bytes = bytes;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        private int readByte() throws IOException {
+            if (pos >= end) {
+                throw new IOException("Unexpected end of stored entity");
+            }
+            return bytes[pos++];
+        }
+
+        private int readVInt() throws IOException {
+            int b = readByte();
+            int i = b & 0x7F;
+            for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+                b = readByte();
+                i |= (b & 0x7F) << shift;
+            }
+            return i;
+        }
+
+        private long readVLong() throws IOException {
+            long b = readByte();
+            long l = b & 0x7FL;
+            for (int shift = 7; (b & 0x80L) != 0; shift += 7) {
+                b = readByte();
+                l |= (b & 0x7FL) << shift;
+            }
+            return l;
+        }
+
+        private String readString() throws IOException {
+            int length = readVInt();
+            if (pos + length > end) {
+                throw new IOException("Unexpected end of stored entity");
+            }
+            String s = new String(bytes, pos, length, UTF8);
+            pos += length;
+            return s;
+        }
+
+        private String readNullableString() throws IOException {
+            return readByte() == 0 ? null : readString();
+        }
+
+        private QName readQName() throws IOException {
+            String namespace = readString();
+            String localPart = readString();
+            String prefix = readString();
+            return new QName(namespace, localPart, prefix);
+        }
+
+        private Object readClassRef(boolean withFields) throws IOException {
+            int id = readVInt();
+            if (id < classes.size()) {
+                return classes.get(id);
+            }
+            Class type = MMDBinaryCodec.getClass(readString());
+            if (!withFields) {
+                classes.add(type);
+                return type;
+            }
+            ClassInfo info = getClassInfo(type);
+            Field[] fields = new Field[readVInt()];
+            for (int i = 0; i < fields.length; i++) {
+                //Null if field no longer exists, its value will be read and ignored
+                fields[i] = info.fieldsByName.get(readString());
+            }
+            ClassLayout layout = new ClassLayout(info, fields);
+            classes.add(layout);
+            return layout;
+        }
+
+        /**
+         * Read next value
+         *
+         * @param fieldType type of the field the value is assigned to, if known
+         * @return
+         * @throws IOException
+         */
+        private Object readValue(Class fieldType) throws IOException {
+            int tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case STRING:
+                    return readString();
+                case INT:
+                    return unZigZag(readVInt());
+                case LONG:
+                    return unZigZag(readVLong());
+                case BIG_INTEGER:
+                    return BigInteger.valueOf(unZigZag(readVLong()));
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case LIST: {
+                    int size = readVInt();
+                    List<Object> list = new ArrayList<Object>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue(null));
+                    }
+                    return list;
+                }
+                case NEW_OBJECT:
+                case OBJECT:
+                    return readObject((ClassLayout) readClassRef(true));
+                case ENUM: {
+                    Class type = (Class) readClassRef(false);
+                    return Enum.valueOf(type, readString());
+                }
+                case FLOAT:
+                    return Float.intBitsToFloat(readVInt());
+                case DOUBLE:
+                    return Double.longBitsToDouble(readVLong());
+                case BIG_DECIMAL: {
+                    String value = readString();
+                    return readByte() == 1 ? new BigInteger(value) : new BigDecimal(value);
+                }
+                case SHORT:
+                    return (short) unZigZag(readVInt());
+                case BYTE:
+                    return (byte) readByte();
+                case QNAME:
+                    return readQName();
+                case XML_CALENDAR:
+                    return toXmlCalendar(readString());
+                case MAP: {
+                    int size = readVInt();
+                    Map<Object, Object> map = new HashMap<Object, Object>();
+                    for (int i = 0; i < size; i++) {
+                        Object key = readValue(null);
+                        map.put(key, readValue(null));
+                    }
+                    return map;
+                }
+                case JAXB_ELEMENT: {
+                    QName name = readQName();
+                    Class declaredType = MMDBinaryCodec.getClass(readString());
+                    String scope = readNullableString();
+                    boolean nil = readByte() == 1;
+                    JAXBElement element = new JAXBElement(name, declaredType,
+                            scope == null ? JAXBElement.GlobalScope.class : MMDBinaryCodec.getClass(scope),
+                            readValue(declaredType));
+                    element.setNil(nil);
+                    return element;
+                }
+                case CLASS:
+                    return MMDBinaryCodec.getClass(readString());
+                default:
+                    throw new IOException("Invalid tag in stored entity:" + tag);
+            }
+        }
+
+        private Object readObject(ClassLayout layout) throws IOException {
+            Object o = layout.info.newInstance();
+            try {
+                for (int index = readVInt(); index != 0; index = readVInt()) {
+                    Field field = layout.fields[index - 1];
+                    Object value = readValue(field != null ? field.getType() : null);
+                    if (field == null) {
+                        continue;
+                    }
+                    if (value instanceof Map && field.get(o) instanceof Map) {
+                        //Keep map implementation created by the constructor
+                        ((Map) field.get(o)).putAll((Map) value);
+                    } else {
+                        field.set(o, value);
+                    }
+                }
+            } catch (IllegalAccessException iae) {
+                throw new IOException(iae);
+            } catch (IllegalArgumentException iae) {
+                throw new IOException("Stored entity does not match " + layout.info.type.getName(), iae);
+            }
+            return o;
+        }
+    }
+
+    private static int zigZag(int i) {
+        return (i << 1) ^ (i >> 31);
+    }
+
+    private static long zigZag(long l) {
+        return (l << 1) ^ (l >> 63);
+    }
+
+    private static int unZigZag(int i) {
+        return (i >>> 1) ^ -(i & 1);
+    }
+
+    private static long unZigZag(long l) {
+        return (l >>> 1) ^ -(l & 1);
+    }
+}
@@ -24,7 +24,11 @@ import com.sun.jersey.api.json.JSONJAXBContext;
 import com.sun.jersey.api.json.JSONMarshaller;
 import com.sun.jersey.api.json.JSONUnmarshaller;
 import com.sun.xml.bind.marshaller.NamespacePrefixMapper;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.BytesRef;
 import org.musicbrainz.mmd2.Metadata;
+import org.musicbrainz.search.MbDocument;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -40,6 +44,10 @@ import java.util.Map;
 /**
  * Handles Serializing classes in the MMD for storing within Index, and deserializing back into
  * the original class and little difference in space as stored fields are compressed by lucene anyway.
+ *
+ * The *_STORE fields are now written using the binary format of {@link MMDBinaryCodec} because parsing the Xml
+ * was a significant part of the cost of returning results, but the Xml form can still be read so existing indexes
+ * continue to work.
  */
 public class MMDSerializer {
 
@@ -47,6 +55,13 @@ public class MMDSerializer {
     static final JAXBContext            context                 = initContext();
     static final NamespacePrefixMapper prefixMapper            = new PreferredMapper();
 
+    /** Score given to the entity when rendering a fragment, so the score attribute can be found and removed */
+    public static final int    SCORE_PLACEHOLDER           = Integer.MIN_VALUE;
+    public static final String SCORE_PLACEHOLDER_ATTRIBUTE = "score=\"" + SCORE_PLACEHOLDER + "\"";
+
+    /** Depth of the list element containing the entity, the fragment is everything below this */
+    private static final int FRAGMENT_LIST_DEPTH = 2;
+
     private static JAXBContext initContext() {
         try {
             return JAXBContext.newInstance("org.musicbrainz.mmd2");
@@ -81,6 +96,49 @@ public class MMDSerializer {
         }
     }
 
+    /**
+     * Render the Xml of the single entity contained within metadata exactly as the search server would output it,
+     * without the enclosing metadata and list elements
+     *
+     * @param metadata containing a list with one entity, whose score should be set to SCORE_PLACEHOLDER
+     * @return
+     */
+    public static String serializeXmlFragment(Metadata metadata) {
+        try {
+            StringWriter sw = new StringWriter();
+            StreamingXMLStreamWriter xsw = new StreamingXMLStreamWriter(sw, FRAGMENT_LIST_DEPTH);
+            xsw.setOutput(false, false);
+            Marshaller m = context.createMarshaller();
+            m.setProperty("com.sun.xml.bind.namespacePrefixMapper", prefixMapper);
+            m.marshal(metadata, xsw);
+            return sw.toString();
+        }
+        catch (JAXBException je) {
+            throw new RuntimeException(je);
+        }
+    }
+
+    /**
+     * Add the Xml fragment of the single entity contained within metadata to the document. The score attribute is
+     * removed from the fragment and the offset it was at is stored with it, so the actual score can be written at
+     * that offset without having to search the fragment for it.
+     *
+     * @param doc
+     * @param metadata containing a list with one entity, whose score should be set to SCORE_PLACEHOLDER
+     */
+    public static void addXmlFragment(MbDocument doc, Metadata metadata) {
+        String fragment = serializeXmlFragment(metadata);
+
+        //Score is an attribute of the entity so must be within its start tag
+        int offset = fragment.indexOf(SCORE_PLACEHOLDER_ATTRIBUTE);
+        if (offset == -1 || offset > fragment.indexOf('>')) {
+            throw new IllegalArgumentException("Score of entity not set to SCORE_PLACEHOLDER");
+        }
+        doc.addField(FragmentIndexField.XML, fragment.substring(0, offset)
+                + fragment.substring(offset + SCORE_PLACEHOLDER_ATTRIBUTE.length()));
+        doc.addField(FragmentIndexField.XML_SCORE_OFFSET, offset);
+    }
+
     public static Object unserialize(String string, Class classType) {
         try {
             Unmarshaller m = context.createUnmarshaller();
@@ -92,4 +150,50 @@ public class MMDSerializer {
             throw new RuntimeException(ex);
         }
     }
+
+    /**
+     * Serialize into the binary format used for the *_STORE fields
+     *
+     * @param o
+     * @return
+     */
+    public static byte[] serializeBinary(Object o) {
+        try {
+            return MMDBinaryCodec.encode(o);
+        }
+        catch (IOException ioe) {
+            throw new RuntimeException(ioe);
+        }
+    }
+
+    /**
+     * Unserialize stored field, works with both the binary and the older Xml format
+     *
+     * @param field
+     * @param classType
+     * @return null if field does not exist
+     */
+    public static Object unserialize(IndexableField field, Class classType) {
+        if (field == null) {
+            return null;
+        }
+        BytesRef bytes = field.binaryValue();
+        if (bytes == null) {
+            return unserialize(field.stringValue(), classType);
+        }
+        try {
+            return MMDBinaryCodec.decode(bytes.bytes, bytes.offset, bytes.length);
+        }
+        catch (IOException ioe) {
+            throw new RuntimeException(ioe);
+        }
+    }
+
+    public static Object unserialize(Document doc, IndexField indexField, Class classType) {
+        return unserialize(doc.getField(indexField.getName()), classType);
+    }
+
+    public static Object unserialize(MbDocument doc, IndexField indexField, Class classType) {
+        return unserialize(doc.getLuceneDocument(), indexField, classType);
+    }
 }
@@ -63,6 +63,11 @@ public class PlaceIndex extends DatabaseIndex {
 	public IndexField getIdentifierField() {
 		return PlaceIndexField.ID;
 	}
+
+	@Override
+	public SlimSchema getSlimSchema() {
+		return new SlimSchema(PlaceIndexField.class, PlaceIndexField.PLACE_STORE, PlaceIndexField.PLACE_ID, PlaceIndexField.PLACE);
+	}
 	
     public Analyzer getAnalyzer() {
         return DatabaseIndex.getAnalyzer(PlaceIndexField.class);
@@ -237,8 +242,16 @@ public class PlaceIndex extends DatabaseIndex {
             place.setTagList(TagHelper.addTagsToDocAndConstructTagList(of, doc, tags, placeId, PlaceIndexField.TAG ));
         }
 
-        String store = MMDSerializer.serialize(place);
+        byte[] store = MMDSerializer.serializeBinary(place);
         doc.addField(PlaceIndexField.PLACE_STORE, store);
+        if (isPreRenderFragments()) {
+            place.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+            PlaceList placeList = of.createPlaceList();
+            placeList.getPlace().add(place);
+            Metadata metadata = of.createMetadata();
+            metadata.setPlaceList(placeList);
+            MMDSerializer.addXmlFragment(doc, metadata);
+        }
         return doc.getLuceneDocument();
     }
 
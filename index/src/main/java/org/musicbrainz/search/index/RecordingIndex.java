@@ -92,6 +92,29 @@ public class RecordingIndex extends DatabaseIndex {
         return RecordingIndexField.ID;
     }
 
+    @Override
+    public SlimSchema getSlimSchema() {
+        return new SlimSchema(RecordingIndexField.class, RecordingIndexField.RECORDING_STORE, RecordingIndexField.RECORDING_ID, RecordingIndexField.RECORDING);
+    }
+
+    /**
+     * Each chunk needs around ten queries before any documents can be created, so extracting chunks on separate
+     * connections allows the database work to overlap with creating the documents
+     *
+     * @return
+     */
+    @Override
+    public boolean supportsChunkWorkers() {
+        return true;
+    }
+
+    @Override
+    protected DatabaseIndex createChunkWorker(Connection dbConnection) {
+        RecordingIndex worker = new RecordingIndex(dbConnection);
+        worker.setPreRenderFragments(isPreRenderFragments());
+        return worker;
+    }
+
     public int getMaxId() throws SQLException {
         Statement st = dbConnection.createStatement();
         ResultSet rs = st.executeQuery("SELECT MAX(id) FROM recording");
@@ -1051,7 +1074,15 @@ public class RecordingIndex extends DatabaseIndex {
 
         buildClock.suspend();
         storeClock.resume();
-        doc.addField(RecordingIndexField.RECORDING_STORE, MMDSerializer.serialize(recording));
+        doc.addField(RecordingIndexField.RECORDING_STORE, MMDSerializer.serializeBinary(recording));
+        if (isPreRenderFragments()) {
+            recording.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+            RecordingList recordingList = of.createRecordingList();
+            recordingList.getRecording().add(recording);
+            Metadata metadata = of.createMetadata();
+            metadata.setRecordingList(recordingList);
+            MMDSerializer.addXmlFragment(doc, metadata);
+        }
         storeClock.suspend();
         return doc.getLuceneDocument();
     }
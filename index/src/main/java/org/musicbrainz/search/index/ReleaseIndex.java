@@ -90,6 +90,11 @@ public class  ReleaseIndex extends DatabaseIndex {
 		return ReleaseIndexField.ID;
 	}
 
+	@Override
+	public SlimSchema getSlimSchema() {
+		return new SlimSchema(ReleaseIndexField.class, ReleaseIndexField.RELEASE_STORE, ReleaseIndexField.RELEASE_ID, ReleaseIndexField.RELEASE);
+	}
+
     public int getMaxId() throws SQLException {
         Statement st = dbConnection.createStatement();
         ResultSet rs = st.executeQuery("SELECT MAX(id) FROM release");
@@ -637,8 +642,16 @@ public class  ReleaseIndex extends DatabaseIndex {
 
         buildClock.suspend();
         storeClock.resume();
-        String store = MMDSerializer.serialize(release);
+        byte[] store = MMDSerializer.serializeBinary(release);
         doc.addField(ReleaseIndexField.RELEASE_STORE, store);
+        if (isPreRenderFragments()) {
+            release.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+            ReleaseList releaseList = of.createReleaseList();
+            releaseList.getRelease().add(release);
+            Metadata metadata = of.createMetadata();
+            metadata.setReleaseList(releaseList);
+            MMDSerializer.addXmlFragment(doc, metadata);
+        }
         storeClock.suspend();
         return doc.getLuceneDocument();
     }
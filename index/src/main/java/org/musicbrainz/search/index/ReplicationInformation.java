@@ -5,6 +5,15 @@ public class ReplicationInformation implements Comparable<ReplicationInformation
 	public Integer schemaSequence;
 	public Integer replicationSequence;
 	public Integer changeSequence;
+
+	public ReplicationInformation() {
+	}
+
+	public ReplicationInformation(ReplicationInformation other) {
+		this.schemaSequence = other.schemaSequence;
+		this.replicationSequence = other.replicationSequence;
+		this.changeSequence = other.changeSequence;
+	}
 	
 	@Override
 	public int compareTo(ReplicationInformation other) {
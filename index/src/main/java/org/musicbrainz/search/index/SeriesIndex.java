@@ -59,6 +59,11 @@ public class SeriesIndex extends DatabaseIndex {
 	public IndexField getIdentifierField() {
 		return SeriesIndexField.ID;
 	}
+
+	@Override
+	public SlimSchema getSlimSchema() {
+		return new SlimSchema(SeriesIndexField.class, SeriesIndexField.SERIES_STORE, SeriesIndexField.SERIES_ID, SeriesIndexField.SERIES);
+	}
     
     public int getMaxId() throws SQLException {
         Statement st = dbConnection.createStatement();
@@ -161,8 +166,16 @@ public class SeriesIndex extends DatabaseIndex {
         }
 
 
-        String store = MMDSerializer.serialize(series);
+        byte[] store = MMDSerializer.serializeBinary(series);
         doc.addField(SeriesIndexField.SERIES_STORE, store);
+        if (isPreRenderFragments()) {
+            series.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+            SeriesList seriesList = of.createSeriesList();
+            seriesList.getSeries().add(series);
+            Metadata metadata = of.createMetadata();
+            metadata.setSeriesList(seriesList);
+            MMDSerializer.addXmlFragment(doc, metadata);
+        }
         return doc.getLuceneDocument();
     }
 
@@ -0,0 +1,161 @@
+package org.musicbrainz.search.index;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleField;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.FloatField;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.index.IndexableField;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Slimmer field types used when building indexes with the --slim option.
+ *
+ * For indexes whose results are written from the stored entity alone the other stored fields are never read back, so
+ * only the fields that are read are stored. Fields are indexed exactly as before, norms included, so scores and the
+ * order of results are unchanged. Fields that are not part of the index fields of the index, such as the meta
+ * information and pre-rendered fragments, are left unchanged.
+ */
+public class SlimSchema
+{
+    // Slimmer field type of each field that has one
+    private final Map<String, FieldType> fieldTypes = new HashMap<String, FieldType>();
+
+    /**
+     * @param indexFieldClass index fields of the index
+     * @param storedFields the only index fields to be stored, or null if all stored fields are still stored
+     */
+    public SlimSchema(Class indexFieldClass, IndexField... storedFields)
+    {
+        Set<IndexField> stored = null;
+        if (storedFields != null)
+        {
+            stored = new HashSet<IndexField>();
+            for (IndexField field : storedFields)
+            {
+                stored.add(field);
+            }
+        }
+
+        for (Object o : EnumSet.allOf(indexFieldClass))
+        {
+            IndexField indexField = (IndexField) o;
+            FieldType fieldType = indexField.getFieldType();
+            if (fieldType == null)
+            {
+                continue;
+            }
+
+            boolean isStored = fieldType.stored() && (stored == null || stored.contains(indexField));
+            if (isStored != fieldType.stored())
+            {
+                FieldType slimFieldType = new FieldType(fieldType);
+                slimFieldType.setStored(isStored);
+                slimFieldType.freeze();
+                fieldTypes.put(indexField.getName(), slimFieldType);
+            }
+        }
+    }
+
+    /**
+     * @param name
+     * @return slimmer field type of the field, or null if the field is unchanged
+     */
+    public FieldType getFieldType(String name)
+    {
+        return fieldTypes.get(name);
+    }
+
+    /**
+     * Replace the fields of the document by fields of the slimmer field type
+     *
+     * @param doc
+     * @return document with slimmer fields, fields neither indexed nor stored any more are left out, the same document
+     *         if no fields needed changing
+     */
+    public Document apply(Document doc)
+    {
+        Document slimDoc = null;
+        int i = 0;
+        for (IndexableField field : doc.getFields())
+        {
+            IndexableField slimField = slim(field);
+            if (slimField != field && slimDoc == null)
+            {
+                // Copy the fields before this one which were unchanged
+                slimDoc = new Document();
+                for (IndexableField previous : doc.getFields().subList(0, i))
+                {
+                    slimDoc.add(previous);
+                }
+            }
+            if (slimDoc != null && slimField != null)
+            {
+                slimDoc.add(slimField);
+            }
+            i++;
+        }
+        return slimDoc != null ? slimDoc : doc;
+    }
+
+    private IndexableField slim(IndexableField field)
+    {
+        FieldType fieldType = fieldTypes.get(field.name());
+        if (fieldType == null || !(field instanceof Field))
+        {
+            return field;
+        }
+
+        // Numeric fields keep their own numeric type, only whether they are stored can change
+        Number number = field.numericValue();
+        if (number != null)
+        {
+            if (fieldType.stored() == field.fieldType().stored())
+            {
+                return field;
+            }
+            FieldType numericFieldType = new FieldType((FieldType) field.fieldType());
+            numericFieldType.setStored(fieldType.stored());
+            if (number instanceof Integer)
+            {
+                return new IntField(field.name(), number.intValue(), numericFieldType);
+            }
+            else if (number instanceof Long)
+            {
+                return new LongField(field.name(), number.longValue(), numericFieldType);
+            }
+            else if (number instanceof Float)
+            {
+                return new FloatField(field.name(), number.floatValue(), numericFieldType);
+            }
+            else if (number instanceof Double)
+            {
+                return new DoubleField(field.name(), number.doubleValue(), numericFieldType);
+            }
+            return field;
+        }
+
+        // Stored only fields no longer stored are left out altogether
+        if (!fieldType.stored() && !fieldType.indexed())
+        {
+            return null;
+        }
+
+        // Binary fields are only ever stored
+        if (field.binaryValue() != null)
+        {
+            return field;
+        }
+
+        Field slimField = new Field(field.name(), field.stringValue(), fieldType);
+        slimField.setBoost(field.boost());
+        return slimField;
+    }
+}
@@ -0,0 +1,464 @@
+package org.musicbrainz.search.index;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes Xml directly to the output so that results can be streamed to the client one at a time rather than having to
+ * build the complete metadata tree first.
+ *
+ * The output is identical to that created by the JAXB marshaller when marshalling straight to a Writer (same xml
+ * declaration, same escaping, namespace declarations after the attributes, empty elements closed with '/>') so
+ * clients cannot tell which route was used.
+ *
+ * Each result is marshalled as its own metadata document containing just that result, the elements above
+ * listDepth (the metadata and the list element) are only output before the first result (head) and after the
+ * last result (tail) so the documents are joined into a single document.
+ *
+ * Also used at index time with neither head nor tail output to render the Xml of a single entity, which can then
+ * be written in place of marshalling the result using {@link #writeFragment(String)}.
+ */
+public class StreamingXMLStreamWriter implements XMLStreamWriter
+{
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+
+    private final Writer        out;
+    private final int           listDepth;
+    private final List<String>  elements = new ArrayList<String>();
+    private final List<Boolean> written  = new ArrayList<Boolean>();
+
+    //Written once the attributes have been written. JAXB declares namespaces to a stream writer in the reverse order
+    //to that it uses for a Writer, where they are held in a HashMap, so they are put into a HashMap in reverse
+    //to give the same order
+    private final List<String>            declaredNamespaces = new ArrayList<String>();
+    private final HashMap<String, String> namespaces         = new HashMap<String, String>();
+
+    private boolean isOutputHead = true;
+    private boolean isOutputTail = true;
+    private boolean isStartTagOpen;
+
+    /**
+     *
+     * @param out
+     * @param listDepth depth of the list element that the results are written into, metadata is at depth 1
+     */
+    public StreamingXMLStreamWriter(Writer out, int listDepth)
+    {
+        this.out = out;
+        this.listDepth = listDepth;
+    }
+
+    /**
+     * Control which parts of the next document are output
+     *
+     * @param isOutputHead output xml declaration and start of the elements enclosing the results
+     * @param isOutputTail output end of the elements enclosing the results
+     */
+    public void setOutput(boolean isOutputHead, boolean isOutputTail)
+    {
+        this.isOutputHead = isOutputHead;
+        this.isOutputTail = isOutputTail;
+    }
+
+    private boolean isCurrentElementWritten()
+    {
+        return written.isEmpty() || written.get(written.size() - 1);
+    }
+
+    private void closeStartTag() throws IOException
+    {
+        if (isStartTagOpen)
+        {
+            writeNamespaces();
+            out.write('>');
+            isStartTagOpen = false;
+        }
+    }
+
+    private void writeNamespaces() throws IOException
+    {
+        if (declaredNamespaces.isEmpty())
+        {
+            return;
+        }
+        for (int i = declaredNamespaces.size() - 2; i >= 0; i -= 2)
+        {
+            namespaces.put(declaredNamespaces.get(i), declaredNamespaces.get(i + 1));
+        }
+        declaredNamespaces.clear();
+        for (Map.Entry<String, String> namespace : namespaces.entrySet())
+        {
+            out.write(' ');
+            if (namespace.getKey().length() == 0)
+            {
+                out.write("xmlns=\"");
+            }
+            else
+            {
+                out.write("xmlns:");
+                out.write(namespace.getKey());
+                out.write("=\"");
+            }
+            escape(namespace.getValue(), true);
+            out.write('\"');
+        }
+        namespaces.clear();
+    }
+
+    /**
+     * Escape in the same way as JAXB, which also drops any carriage returns
+     *
+     * @param value
+     * @param isAttribute
+     * @throws IOException
+     */
+    private void escape(String value, boolean isAttribute) throws IOException
+    {
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++)
+        {
+            String replacement;
+            switch (value.charAt(i))
+            {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '\"':
+                    replacement = isAttribute ? "&quot;" : null;
+                    break;
+                case '\r':
+                    replacement = "";
+                    break;
+                default:
+                    replacement = null;
+            }
+            if (replacement != null)
+            {
+                out.write(value, start, i - start);
+                out.write(replacement);
+                start = i + 1;
+            }
+        }
+        out.write(value, start, length - start);
+    }
+
+    private String qualifiedName(String prefix, String localName)
+    {
+        if (prefix == null || prefix.length() == 0)
+        {
+            return localName;
+        }
+        return prefix + ':' + localName;
+    }
+
+    private void startElement(String name) throws XMLStreamException
+    {
+        boolean isWritten = elements.size() + 1 > listDepth || isOutputHead;
+        try
+        {
+            if (isWritten)
+            {
+                closeStartTag();
+                out.write('<');
+                out.write(name);
+                isStartTagOpen = true;
+            }
+        }
+        catch (IOException ioe)
+        {
+            throw new XMLStreamException(ioe);
+        }
+        elements.add(name);
+        written.add(isWritten);
+    }
+
+    private void writeXmlAttribute(String name, String value) throws XMLStreamException
+    {
+        if (!isCurrentElementWritten())
+        {
+            return;
+        }
+        try
+        {
+            out.write(' ');
+            out.write(name);
+            out.write("=\"");
+            escape(value, true);
+            out.write('\"');
+        }
+        catch (IOException ioe)
+        {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    public void writeStartElement(String localName) throws XMLStreamException
+    {
+        startElement(localName);
+    }
+
+    public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException
+    {
+        startElement(localName);
+    }
+
+    public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException
+    {
+        startElement(qualifiedName(prefix, localName));
+    }
+
+    public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException
+    {
+        startElement(localName);
+        writeEndElement();
+    }
+
+    public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException
+    {
+        startElement(qualifiedName(prefix, localName));
+        writeEndElement();
+    }
+
+    public void writeEmptyElement(String localName) throws XMLStreamException
+    {
+        startElement(localName);
+        writeEndElement();
+    }
+
+    public void writeEndElement() throws XMLStreamException
+    {
+        int last = elements.size() - 1;
+        boolean isWritten = last + 1 > listDepth || isOutputTail;
+        String name = elements.remove(last);
+        written.remove(last);
+        if (!isWritten)
+        {
+            return;
+        }
+        try
+        {
+            if (isStartTagOpen)
+            {
+                writeNamespaces();
+                out.write("/>");
+                isStartTagOpen = false;
+            }
+            else
+            {
+                out.write("</");
+                out.write(name);
+                out.write('>');
+            }
+        }
+        catch (IOException ioe)
+        {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    public void writeEndDocument() throws XMLStreamException
+    {
+        while (!elements.isEmpty())
+        {
+            writeEndElement();
+        }
+    }
+
+    public void close() throws XMLStreamException
+    {
+    }
+
+    /**
+     * Doesn't flush the underlying writer, the caller does this once all results have been written, flushing after
+     * every result would send lots of small packets.
+     *
+     * @throws XMLStreamException
+     */
+    public void flush() throws XMLStreamException
+    {
+    }
+
+    public void writeAttribute(String localName, String value) throws XMLStreamException
+    {
+        writeXmlAttribute(localName, value);
+    }
+
+    public void writeAttribute(String prefix, String namespaceURI, String localName, String value) throws XMLStreamException
+    {
+        writeXmlAttribute(qualifiedName(prefix, localName), value);
+    }
+
+    public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException
+    {
+        writeXmlAttribute(localName, value);
+    }
+
+    public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException
+    {
+        if (prefix == null || prefix.length() == 0 || prefix.equals("xmlns"))
+        {
+            writeDefaultNamespace(namespaceURI);
+        }
+        else if (isCurrentElementWritten())
+        {
+            declaredNamespaces.add(prefix);
+            declaredNamespaces.add(namespaceURI);
+        }
+    }
+
+    public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException
+    {
+        if (isCurrentElementWritten())
+        {
+            declaredNamespaces.add("");
+            declaredNamespaces.add(namespaceURI);
+        }
+    }
+
+    public void writeComment(String data) throws XMLStreamException
+    {
+        writeRaw("<!--" + data + "-->");
+    }
+
+    public void writeProcessingInstruction(String target) throws XMLStreamException
+    {
+        writeRaw("<?" + target + "?>");
+    }
+
+    public void writeProcessingInstruction(String target, String data) throws XMLStreamException
+    {
+        writeRaw("<?" + target + ' ' + data + "?>");
+    }
+
+    public void writeCData(String data) throws XMLStreamException
+    {
+        writeRaw("<![CDATA[" + data + "]]>");
+    }
+
+    public void writeDTD(String dtd) throws XMLStreamException
+    {
+        writeRaw(dtd);
+    }
+
+    public void writeEntityRef(String name) throws XMLStreamException
+    {
+        writeRaw('&' + name + ';');
+    }
+
+    private void writeRaw(String data) throws XMLStreamException
+    {
+        if (!isCurrentElementWritten())
+        {
+            return;
+        }
+        try
+        {
+            closeStartTag();
+            out.write(data);
+        }
+        catch (IOException ioe)
+        {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    /**
+     * Write pre-rendered Xml as is, it must already be escaped
+     *
+     * @param xml
+     * @throws XMLStreamException
+     */
+    public void writeFragment(String xml) throws XMLStreamException
+    {
+        writeRaw(xml);
+    }
+
+    public void writeStartDocument() throws XMLStreamException
+    {
+        if (!isOutputHead)
+        {
+            return;
+        }
+        try
+        {
+            out.write(XML_DECLARATION);
+        }
+        catch (IOException ioe)
+        {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    public void writeStartDocument(String version) throws XMLStreamException
+    {
+        writeStartDocument();
+    }
+
+    public void writeStartDocument(String encoding, String version) throws XMLStreamException
+    {
+        writeStartDocument();
+    }
+
+    public void writeCharacters(String text) throws XMLStreamException
+    {
+        if (!isCurrentElementWritten())
+        {
+            return;
+        }
+        try
+        {
+            closeStartTag();
+            escape(text, false);
+        }
+        catch (IOException ioe)
+        {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    public void writeCharacters(char[] text, int start, int len) throws XMLStreamException
+    {
+        writeCharacters(new String(text, start, len));
+    }
+
+    public String getPrefix(String uri) throws XMLStreamException
+    {
+        return null;
+    }
+
+    public void setPrefix(String prefix, String uri) throws XMLStreamException
+    {
+    }
+
+    public void setDefaultNamespace(String uri) throws XMLStreamException
+    {
+    }
+
+    public void setNamespaceContext(NamespaceContext context) throws XMLStreamException
+    {
+    }
+
+    public NamespaceContext getNamespaceContext()
+    {
+        return null;
+    }
+
+    public Object getProperty(String name) throws IllegalArgumentException
+    {
+        throw new IllegalArgumentException(name);
+    }
+}
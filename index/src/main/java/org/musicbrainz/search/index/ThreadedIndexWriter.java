@@ -27,7 +27,11 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.store.Directory;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -35,26 +39,77 @@ import java.util.concurrent.TimeUnit;
 public class ThreadedIndexWriter extends IndexWriter {
     private ExecutorService threadPool;
     private Analyzer defaultAnalyzer;
+    private String updateField;
+    // Values of the update field of the documents added since they were last taken
+    private final Set<String> addedValues = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private SlimSchema slimSchema;
+
+    // No of jobs passed to the thread pool that have not yet completed
+    private final Object queueLock = new Object();
+    private int queuedJobs;
 
     private class Job implements Runnable {
+        Term term;
         Document doc;
         Analyzer analyzer;
 
-        public Job(Document doc, Analyzer analyzer) {
+        public Job(Term term, Document doc, Analyzer analyzer) {
+            this.term = term;
             this.doc = doc;
             this.analyzer = analyzer;
         }
 
         public void run() {
             try {
-
-                ThreadedIndexWriter.super.addDocument(doc, analyzer);
+                if (slimSchema != null) {
+                    doc = slimSchema.apply(doc);
+                }
+                if (term != null) {
+                    ThreadedIndexWriter.super.updateDocument(term, doc, analyzer);
+                }
+                else {
+                    ThreadedIndexWriter.super.addDocument(doc, analyzer);
+                }
             } catch (IOException ioe) {
                 ioe.printStackTrace(System.err);
+            } finally {
+                synchronized (queueLock) {
+                    queuedJobs--;
+                    if (queuedJobs == 0) {
+                        queueLock.notifyAll();
+                    }
+                }
             }
         }
     }
 
+    private void execute(Job job) {
+        synchronized (queueLock) {
+            queuedJobs++;
+        }
+        threadPool.execute(job);
+    }
+
+    /**
+     * Wait until all documents passed to this writer have been added to the index, so that they are included in the
+     * next commit.
+     */
+    public void waitForQueuedDocuments() {
+        boolean isInterrupted = false;
+        synchronized (queueLock) {
+            while (queuedJobs > 0) {
+                try {
+                    queueLock.wait();
+                } catch (InterruptedException ie) {
+                    isInterrupted = true;
+                }
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public ThreadedIndexWriter(Directory dir,
                                IndexWriterConfig config,
                                int numThreads,
@@ -72,22 +127,63 @@ public class ThreadedIndexWriter extends IndexWriter {
                 new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
+    /**
+     * When set, documents added with addDocument() replace any existing document with the same value for this
+     * field, so indexes can be reindexed without having to delete the old documents first.
+     *
+     * @param updateField
+     */
+    public void setUpdateField(String updateField) {
+        this.updateField = updateField;
+    }
+
+    /**
+     * When set, fields of documents added are replaced by the slimmer fields of the schema before being written.
+     *
+     * @param slimSchema
+     */
+    public void setSlimSchema(SlimSchema slimSchema) {
+        this.slimSchema = slimSchema;
+    }
+
+    private Term getUpdateTerm(Document doc) {
+        if (updateField == null) {
+            return null;
+        }
+        String value = doc.get(updateField);
+        if (value == null) {
+            return null;
+        }
+        addedValues.add(value);
+        return new Term(updateField, value);
+    }
+
+    /**
+     * Take the values of the update field of the documents added since last taken, so that the caller can tell which
+     * of the documents it reindexed were not added again and so have to be deleted.
+     *
+     * @return
+     */
+    public Set<String> takeAddedValues() {
+        Set<String> values = new HashSet<String>(addedValues);
+        addedValues.removeAll(values);
+        return values;
+    }
+
     public void addDocument(Document doc) {
-        threadPool.execute(new Job(doc, defaultAnalyzer));
+        execute(new Job(getUpdateTerm(doc), doc, defaultAnalyzer));
     }
 
     public void addDocument(Document doc, Analyzer a) {
-        threadPool.execute(new Job(doc,  a));
+        execute(new Job(getUpdateTerm(doc), doc,  a));
     }
 
     public void updateDocument(Term term, Document doc) {
-        throw new UnsupportedOperationException();
-
+        execute(new Job(term, doc, defaultAnalyzer));
     }
 
     public void updateDocument(Term term, Document doc, Analyzer a) {
-
-        throw new UnsupportedOperationException();
+        execute(new Job(term, doc, a));
     }
 
     public void close() throws  IOException {
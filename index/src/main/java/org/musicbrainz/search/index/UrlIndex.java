@@ -49,6 +49,11 @@ public class UrlIndex extends DatabaseIndex {
 	public IndexField getIdentifierField() {
 		return TagIndexField.ID;
 	}
+
+	@Override
+	public SlimSchema getSlimSchema() {
+		return new SlimSchema(UrlIndexField.class, UrlIndexField.URL_STORE, UrlIndexField.ID, UrlIndexField.URL);
+	}
 	
     public Analyzer getAnalyzer() {
         return DatabaseIndex.getAnalyzer(TagIndexField.class);
@@ -141,8 +146,16 @@ public class UrlIndex extends DatabaseIndex {
         relationList.getRelation().add(relation);
         url.getRelationList().add(relationList);
 
-        String store = MMDSerializer.serialize(url);
+        byte[] store = MMDSerializer.serializeBinary(url);
         doc.addField(UrlIndexField.URL_STORE, store);
+        if (isPreRenderFragments()) {
+            url.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+            UrlList urlList = of.createUrlList();
+            urlList.getUrl().add(url);
+            Metadata metadata = of.createMetadata();
+            metadata.setUrlList(urlList);
+            MMDSerializer.addXmlFragment(doc, metadata);
+        }
 
         return doc.getLuceneDocument();
     }
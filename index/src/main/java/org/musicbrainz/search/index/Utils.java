@@ -2,6 +2,7 @@ package org.musicbrainz.search.index;
 
 import org.apache.commons.lang.time.StopWatch;
 
+import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Formatter;
@@ -48,6 +49,37 @@ public class Utils {
         return Float.toString(clock.getTime()/1000) + " secs";
     }
 
+    /**
+     * Format no of bytes for output
+     *
+     * @param bytes
+     * @return
+     */
+    public static String formatSize(long bytes)
+    {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0)) + " (" + bytes + " bytes)";
+    }
+
+    /**
+     * Total size of the files in a directory, such as an index directory
+     *
+     * @param dir
+     * @return size in bytes, 0 if the directory doesn't exist
+     */
+    public static long getDirectorySize(File dir)
+    {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                size += file.isDirectory() ? getDirectorySize(file) : file.length();
+            }
+        }
+        return size;
+    }
+
     /**
      * Format current date as time for output
      *
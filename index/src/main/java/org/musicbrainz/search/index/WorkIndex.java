@@ -61,6 +61,11 @@ public class WorkIndex extends DatabaseIndex {
         return WorkIndexField.ID;
     }
 
+    @Override
+    public SlimSchema getSlimSchema() {
+        return new SlimSchema(WorkIndexField.class, WorkIndexField.WORK_STORE, WorkIndexField.WORK_ID, WorkIndexField.WORK);
+    }
+
     public int getMaxId() throws SQLException {
         Statement st = dbConnection.createStatement();
         ResultSet rs = st.executeQuery("SELECT MAX(id) FROM work");
@@ -291,8 +296,16 @@ public class WorkIndex extends DatabaseIndex {
             work.setTagList(TagHelper.addTagsToDocAndConstructTagList(of, doc, tags, id, WorkIndexField.TAG));
         }
 
-        String store = MMDSerializer.serialize(work);
+        byte[] store = MMDSerializer.serializeBinary(work);
         doc.addField(WorkIndexField.WORK_STORE, store);
+        if (isPreRenderFragments()) {
+            work.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+            WorkList workList = of.createWorkList();
+            workList.getWork().add(work);
+            Metadata metadata = of.createMetadata();
+            metadata.setWorkList(workList);
+            MMDSerializer.addXmlFragment(doc, metadata);
+        }
 
         return doc.getLuceneDocument();
     }
@@ -1,7 +1,9 @@
 package org.musicbrainz.search.analysis;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.KeywordTokenizer;
 import org.apache.lucene.analysis.standard.StandardTokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
@@ -20,6 +22,8 @@ import org.junit.Test;
 import org.musicbrainz.search.LuceneVersion;
 
 import java.io.StringReader;
+import java.text.Normalizer;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -180,4 +184,51 @@ public class AccentFilterTest  {
         assertEquals("najiasn", termsEnum.term().utf8ToString());
         assertNull(termsEnum.next());
     }
+    private static String fold(String value) throws Exception
+    {
+        TokenStream stream = new AccentFilter(new KeywordTokenizer(new StringReader(value)));
+        CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+        stream.reset();
+        assertTrue(stream.incrementToken());
+        String result = term.toString();
+        stream.end();
+        stream.close();
+        return result;
+    }
+
+    private static String foldUsingNormalizer(String value)
+    {
+        return AccentFilter.DIACRITICS_AND_FRIENDS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+    }
+
+    /**
+     * Folding using the table must give exactly the same result as normalizing the whole token
+     */
+    @Test
+    public void testFoldingSameAsNormalizing() throws Exception
+    {
+        for (char c = 1; c < 0x3100; c++) {
+            if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+                continue;
+            }
+            String value = "a" + c + "b";
+            assertEquals(Integer.toHexString(c), foldUsingNormalizer(value), fold(value));
+        }
+
+        // Includes combining marks that are reordered when normalized
+        String[] values = { "tést", "x\u05B4\u05B0", "e\u0301\u0316", "Beyoncé東京", "ǆ", "がぱ", "\uD835\uDC00ê" };
+        for (String value : values) {
+            assertEquals(foldUsingNormalizer(value), fold(value));
+        }
+
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; i++) {
+            char[] chars = new char[1 + random.nextInt(6)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) (random.nextBoolean() ? 0x20 + random.nextInt(0x60) : 0xA0 + random.nextInt(0x700));
+            }
+            String value = new String(chars);
+            assertEquals(value, foldUsingNormalizer(value), fold(value));
+        }
+    }
 }
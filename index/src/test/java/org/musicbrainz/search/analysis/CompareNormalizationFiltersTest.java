@@ -1,10 +1,12 @@
 package org.musicbrainz.search.analysis;
 
 import com.ibm.icu.text.Normalizer;
+import com.ibm.icu.text.Transliterator;
 import org.apache.lucene.analysis.Token;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.icu.ICUTransformFilter;
 import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.junit.Test;
@@ -13,6 +15,10 @@ import org.musicbrainz.search.LuceneVersion;
 import java.io.IOException;
 import java.io.StringReader;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 /**
  * Compare Filters
  */
@@ -106,6 +112,41 @@ public class CompareNormalizationFiltersTest {
         System.out.println("ASCIIICU    Filter changed "+ changedByASCIIAndNFKC   + " chars");
     }
 
+    private void compareTransformFilters(String id) throws IOException
+    {
+        StringBuffer sb = new StringBuffer();
+        for(char i=0;i<65535;i++)
+        {
+            if(!Character.isWhitespace(i) && !Character.isHighSurrogate(i) && !Character.isLowSurrogate(i)) {
+                sb.append(i).append('a').append(i).append(' ');
+            }
+        }
+        sb.append("Beyoncé東京 テレビ 東京愛 ー");
+
+        TokenStream result0 = new ICUTransformFilter(new WhitespaceTokenizer(LuceneVersion.LUCENE_VERSION,new StringReader(sb.toString())), Transliterator.getInstance(id));
+        TokenStream result1 = new ScriptTransformFilter(new WhitespaceTokenizer(LuceneVersion.LUCENE_VERSION,new StringReader(sb.toString())), Transliterator.getInstance(id));
+        CharTermAttribute term0 = result0.addAttribute(CharTermAttribute.class);
+        CharTermAttribute term1 = result1.addAttribute(CharTermAttribute.class);
+        result0.reset();
+        result1.reset();
+        while(result0.incrementToken())
+        {
+            assertTrue(result1.incrementToken());
+            assertEquals(term0.toString(), term1.toString());
+        }
+        assertFalse(result1.incrementToken());
+    }
+
+    /**
+     * ScriptTransformFilter must only skip tokens that ICUTransformFilter would leave unchanged
+     */
+    @Test
+    public void testScriptTransformFilter() throws IOException
+    {
+        compareTransformFilters("[ー[:Script=Katakana:]]Katakana-Hiragana");
+        compareTransformFilters("Traditional-Simplified");
+    }
+
     private void printAsHexAndValue(String term)
     {
         System.out.print("0x" + Integer.toHexString(Character.valueOf(term.charAt(0)))+ " " + term + ":");
@@ -259,7 +259,7 @@ public class AreaIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            AreaList arealist = (AreaList) MMDSerializer.unserialize(doc.get(AreaIndexField.AREA_STORE.getName()), AreaList.class);
+            AreaList arealist = (AreaList) MMDSerializer.unserialize(doc, AreaIndexField.AREA_STORE, AreaList.class);
             org.musicbrainz.mmd2.DefAreaElementInner area = arealist.getArea().get(0);
             assertEquals("aa95182f-df0a-3ad6-8bfb-4b63482cd276", area.getId());
             assertEquals("Afghanistan", area.getName());
@@ -329,7 +329,7 @@ public class AreaIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            AreaList arealist = (AreaList) MMDSerializer.unserialize(doc.get(AreaIndexField.AREA_STORE.getName()), AreaList.class);
+            AreaList arealist = (AreaList) MMDSerializer.unserialize(doc, AreaIndexField.AREA_STORE, AreaList.class);
             org.musicbrainz.mmd2.DefAreaElementInner area = arealist.getArea().get(0);
             assertEquals("aa95182f-df0a-3ad6-8bfb-4b63482cd276", area.getId());
             assertEquals("San Francisco", area.getName());
@@ -370,7 +370,7 @@ public class AreaIndexTest extends AbstractIndexTest {
 
             //The parent in its own right
             doc = ir.document(2);
-            arealist = (AreaList) MMDSerializer.unserialize(doc.get(AreaIndexField.AREA_STORE.getName()), AreaList.class);
+            arealist = (AreaList) MMDSerializer.unserialize(doc, AreaIndexField.AREA_STORE, AreaList.class);
             area = arealist.getArea().get(0);
             assertEquals("aa95182f-df0a-3ad6-8bfb-4b63482cd400", area.getId());
             assertEquals("Argentina", area.getName());
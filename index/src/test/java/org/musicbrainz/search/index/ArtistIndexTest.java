@@ -649,7 +649,7 @@ public class ArtistIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            Artist artist = (Artist) MMDSerializer.unserialize(doc.get(ArtistIndexField.ARTIST_STORE.getName()), Artist.class);
+            Artist artist = (Artist) MMDSerializer.unserialize(doc, ArtistIndexField.ARTIST_STORE, Artist.class);
             assertEquals("4302e264-1cf0-4d1f-aca7-2a6f89e34b36", artist.getId());
             assertEquals("Farming Incident", artist.getName());
             assertEquals("AF", artist.getCountry());
@@ -683,7 +683,7 @@ public class ArtistIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            Artist artist = (Artist) MMDSerializer.unserialize(doc.get(ArtistIndexField.ARTIST_STORE.getName()), Artist.class);
+            Artist artist = (Artist) MMDSerializer.unserialize(doc, ArtistIndexField.ARTIST_STORE, Artist.class);
             assertEquals("ccd4879c-5e88-4385-b131-bf65296bf245", artist.getId());
             assertEquals("Echo & The Bunnymen", artist.getName());
             assertEquals(null, artist.getCountry());
@@ -197,7 +197,7 @@ public class EventIndexTest extends AbstractIndexTest {
         {
             Document doc = ir.document(1);
             Event event = (Event) MMDSerializer
-                    .unserialize(doc.get(EventIndexField.EVENT_STORE.getName()), Event.class);
+                    .unserialize(doc, EventIndexField.EVENT_STORE, Event.class);
             System.out.println(doc.get(EventIndexField.EVENT_STORE.getName()));
 
 
@@ -223,7 +223,7 @@ public class EventIndexTest extends AbstractIndexTest {
         {
             Document doc = ir.document(1);
             Event event = (Event) MMDSerializer
-                    .unserialize(doc.get(EventIndexField.EVENT_STORE.getName()), Event.class);
+                    .unserialize(doc, EventIndexField.EVENT_STORE, Event.class);
 
             RelationList placeList = event.getRelationList().get(1);
             assertNotNull(placeList);
@@ -247,7 +247,7 @@ public class EventIndexTest extends AbstractIndexTest {
         {
             Document doc = ir.document(1);
             Event event = (Event) MMDSerializer
-                    .unserialize(doc.get(EventIndexField.EVENT_STORE.getName()), Event.class);
+                    .unserialize(doc, EventIndexField.EVENT_STORE, Event.class);
 
             RelationList areaList = event.getRelationList().get(2);
             assertNotNull(areaList);
@@ -271,7 +271,7 @@ public class EventIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            Event event = (Event) MMDSerializer.unserialize(doc.get(EventIndexField.EVENT_STORE.getName()), Event.class);
+            Event event = (Event) MMDSerializer.unserialize(doc, EventIndexField.EVENT_STORE, Event.class);
             assertEquals("aa95182f-df0a-3ad6-8bfb-4b63482cd276", event.getId());
             assertEquals("Manor Studios", event.getName());
 
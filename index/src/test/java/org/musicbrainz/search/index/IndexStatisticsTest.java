@@ -0,0 +1,140 @@
+package org.musicbrainz.search.index;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Before;
+import org.junit.Test;
+import org.musicbrainz.search.LuceneVersion;
+import org.musicbrainz.search.MbDocument;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndexStatisticsTest {
+
+    private RAMDirectory ramDir;
+    private long lastUpdateTime = new Date().getTime();
+
+    @Before
+    public void setUp() throws Exception {
+        ramDir = new RAMDirectory();
+        IndexWriterConfig writerConfig = new IndexWriterConfig(LuceneVersion.LUCENE_VERSION,
+                DatabaseIndex.getAnalyzer(ArtistIndexField.class));
+        writerConfig.setUseCompoundFile(false);
+        IndexWriter writer = new IndexWriter(ramDir, writerConfig);
+        {
+            MbDocument doc = new MbDocument();
+            doc.addField(ArtistIndexField.ARTIST_ID, "4302e264-1cf0-4d1f-aca7-2a6f89e34b36");
+            doc.addField(ArtistIndexField.ARTIST, "Farming Incident");
+            doc.addField(ArtistIndexField.TAG, "thrash");
+            doc.addField(ArtistIndexField.ARTIST_STORE, "<artist/>");
+            writer.addDocument(doc.getLuceneDocument());
+        }
+        writer.commit();
+        {
+            MbDocument doc = new MbDocument();
+            doc.addField(ArtistIndexField.ARTIST_ID, "ccd4879c-5e88-4385-b131-bf65296bf245");
+            doc.addField(ArtistIndexField.ARTIST, "Echo & The Bunnymen");
+            doc.addField(ArtistIndexField.TAG, "thrash");
+            doc.addField(ArtistIndexField.TAG, "new wave");
+            doc.addField(ArtistIndexField.ARTIST_STORE, "<artist>é</artist>");
+            writer.addDocument(doc.getLuceneDocument());
+        }
+        {
+            MbDocument doc = new MbDocument();
+            doc.addField(MetaIndexField.META, MetaIndexField.META_VALUE);
+            doc.addNumericField(MetaIndexField.LAST_UPDATED, lastUpdateTime);
+            writer.addDocument(doc.getLuceneDocument());
+        }
+        writer.close();
+    }
+
+    @Test
+    public void testCollect() throws Exception {
+        IndexStatistics stats = IndexStatistics.collect("artist_index", ramDir, 2);
+        assertEquals(2, stats.getSegmentCount());
+        assertEquals(3, stats.getDocCount());
+        assertTrue(stats.getSizeInBytes() > 0);
+        assertTrue(stats.getBytesByFileType().containsKey("stored"));
+
+        IndexStatistics.FieldStatistics tag = stats.getFields().get(ArtistIndexField.TAG.getName());
+        assertEquals(3, tag.getTermCount());
+        assertEquals(4, tag.getPostingsCount());
+        assertEquals(4, tag.getPositionsCount());
+        assertTrue(tag.hasNorms());
+        assertEquals(0, tag.getStoredValueCount());
+        assertEquals(2, tag.getLargestTerms().size());
+        assertEquals("thrash", tag.getLargestTerms().get(0).getTerm());
+        assertEquals(2, tag.getLargestTerms().get(0).getDocFreq());
+        assertEquals("new", tag.getLargestTerms().get(1).getTerm());
+
+        IndexStatistics.FieldStatistics artistId = stats.getFields().get(ArtistIndexField.ARTIST_ID.getName());
+        assertEquals(2, artistId.getTermCount());
+        assertEquals(-1, artistId.getPositionsCount());
+        assertFalse(artistId.hasNorms());
+        assertEquals(2, artistId.getStoredValueCount());
+        assertEquals(72, artistId.getStoredBytes());
+
+        IndexStatistics.FieldStatistics store = stats.getFields().get(ArtistIndexField.ARTIST_STORE.getName());
+        assertFalse(store.isIndexed());
+        assertEquals(0, store.getTermCount());
+        assertEquals(2, store.getStoredValueCount());
+        assertEquals(9 + 19, store.getStoredBytes());
+
+        // Only full precision terms of numeric fields are listed
+        IndexStatistics.FieldStatistics lastUpdated = stats.getFields().get(MetaIndexField.LAST_UPDATED.getName());
+        assertTrue(lastUpdated.getTermCount() > 1);
+        assertEquals(1, lastUpdated.getLargestTerms().size());
+        assertEquals(lastUpdateTime, Long.parseLong(lastUpdated.getLargestTerms().get(0).getTerm()));
+    }
+
+    @Test
+    public void testFloatTermsDecoded() throws Exception {
+        RAMDirectory placeDir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(placeDir, new IndexWriterConfig(LuceneVersion.LUCENE_VERSION,
+                DatabaseIndex.getAnalyzer(PlaceIndexField.class)));
+        MbDocument doc = new MbDocument();
+        doc.addNumericField(PlaceIndexField.LAT, 51.5f);
+        doc.addNumericField(PlaceIndexField.LONG, -0.25f);
+        writer.addDocument(doc.getLuceneDocument());
+        writer.close();
+
+        IndexStatistics stats = IndexStatistics.collect("place_index", placeDir, 1);
+        assertEquals("51.5", stats.getFields().get(PlaceIndexField.LAT.getName()).getLargestTerms().get(0).getTerm());
+        assertEquals("-0.25", stats.getFields().get(PlaceIndexField.LONG.getName()).getLargestTerms().get(0).getTerm());
+    }
+
+    @Test
+    public void testWriteJson() throws Exception {
+        IndexStatistics stats = IndexStatistics.collect("artist_index", ramDir, 1);
+        StringWriter sw = new StringWriter();
+        PrintWriter out = new PrintWriter(sw);
+        stats.writeJson(out);
+        out.close();
+        String json = sw.toString();
+        assertTrue(json.startsWith("{"));
+        assertTrue(json.endsWith("}"));
+        assertTrue(json.contains("\"name\": \"artist_index\""));
+        assertTrue(json.contains("\"docs\": 3"));
+        assertTrue(json.contains("\"largestTerms\": [{\"term\": \"thrash\", \"docs\": 2}]"));
+        assertTrue(json.indexOf("\"arid\"") < json.indexOf("\"tag\""));
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        IndexStatistics stats = IndexStatistics.collect("artist_index", ramDir, 1);
+        StringWriter sw = new StringWriter();
+        PrintWriter out = new PrintWriter(sw);
+        stats.write(out);
+        out.close();
+        String output = sw.toString();
+        assertTrue(output.startsWith("artist_index:2 segments:3 docs"));
+        assertTrue(output.contains("largest terms of tag: thrash(2)"));
+    }
+}
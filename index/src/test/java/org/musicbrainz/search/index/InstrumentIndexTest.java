@@ -138,7 +138,7 @@ public class InstrumentIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            Instrument instrument = (Instrument) MMDSerializer.unserialize(doc.get(InstrumentIndexField.INSTRUMENT_STORE.getName()), Instrument.class);
+            Instrument instrument = (Instrument) MMDSerializer.unserialize(doc, InstrumentIndexField.INSTRUMENT_STORE, Instrument.class);
             assertEquals("aa95182f-df0a-3ad6-8bfb-4b63482cd276", instrument.getId());
             assertEquals("Trumpet", instrument.getName());
             assertEquals("Brass instrument", instrument.getDescription());
@@ -439,7 +439,7 @@ public class LabelIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            Label label = (Label) MMDSerializer.unserialize(doc.get(LabelIndexField.LABEL_STORE.getName()), Label.class);
+            Label label = (Label) MMDSerializer.unserialize(doc, LabelIndexField.LABEL_STORE, Label.class);
             assertEquals("a539bb1e-f2e1-4b45-9db8-8053841e7503", label.getId());
             assertEquals("4AD", label.getName());
             assertNull(label.getCountry());
@@ -465,7 +465,7 @@ public class LabelIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            Label label = (Label) MMDSerializer.unserialize(doc.get(LabelIndexField.LABEL_STORE.getName()), Label.class);
+            Label label = (Label) MMDSerializer.unserialize(doc, LabelIndexField.LABEL_STORE, Label.class);
             assertEquals("d8caa692-704d-412b-a410-4fbcf5b9c796", label.getId());
             assertEquals("MusicBrainz Data Testing Label", label.getName());
             assertEquals("CA", label.getCountry());
@@ -0,0 +1,150 @@
+package org.musicbrainz.search.index;
+
+import org.apache.lucene.document.Document;
+import org.junit.Test;
+import org.musicbrainz.mmd2.*;
+import org.musicbrainz.search.MbDocument;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MMDSerializerTest {
+
+    private Artist createArtist() {
+        ObjectFactory of = new ObjectFactory();
+        Artist artist = of.createArtist();
+        artist.setId("4302e264-1cf0-4d1f-aca7-2a6f89e34b36");
+        artist.setName("Farming Incident");
+        artist.setSortName("Incident, Farming");
+        artist.setType("Group");
+        artist.setDisambiguation("the real one ☺");
+
+        LifeSpan lifespan = of.createLifeSpan();
+        lifespan.setBegin("1999-04");
+        lifespan.setEnded("true");
+        artist.setLifeSpan(lifespan);
+
+        DefAreaElementInner area = of.createDefAreaElementInner();
+        area.setId("5302e264-1cf0-4d1f-aca7-2a6f89e34b36");
+        area.setName("Afghanistan");
+        area.setSortName("Afghanistan");
+        artist.setArea(area);
+
+        Gender gender = new Gender();
+        gender.setContent("male");
+        artist.setGender(gender);
+
+        TagList tagList = of.createTagList();
+        Tag tag = of.createTag();
+        tag.setName("thrash");
+        tag.setCount(BigInteger.valueOf(5));
+        tagList.getTag().add(tag);
+        tag = of.createTag();
+        tag.setName("güth");
+        tag.setCount(BigInteger.valueOf(-11));
+        tagList.getTag().add(tag);
+        artist.setTagList(tagList);
+
+        IpiList ipiList = of.createIpiList();
+        ipiList.getIpi().add("1001");
+        ipiList.getIpi().add("1002");
+        artist.setIpiList(ipiList);
+        return artist;
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        Artist artist = createArtist();
+        byte[] bytes = MMDSerializer.serializeBinary(artist);
+        assertEquals(MMDBinaryCodec.MAGIC, bytes[0]);
+        assertEquals(MMDBinaryCodec.VERSION, bytes[1]);
+
+        Artist decoded = (Artist) MMDBinaryCodec.decode(bytes, 0, bytes.length);
+        assertEquals(MMDSerializer.serialize(artist), MMDSerializer.serialize(decoded));
+        assertEquals("güth", decoded.getTagList().getTag().get(1).getName());
+        assertEquals(BigInteger.valueOf(-11), decoded.getTagList().getTag().get(1).getCount());
+        assertTrue(bytes.length < MMDSerializer.serialize(artist).length());
+    }
+
+    @Test
+    public void testUnserializeBinaryField() throws Exception {
+        Artist artist = createArtist();
+        MbDocument doc = new MbDocument();
+        doc.addField(ArtistIndexField.ARTIST_STORE, MMDSerializer.serializeBinary(artist));
+
+        Artist decoded = (Artist) MMDSerializer.unserialize(doc, ArtistIndexField.ARTIST_STORE, Artist.class);
+        assertEquals("Farming Incident", decoded.getName());
+        assertEquals("Afghanistan", decoded.getArea().getName());
+    }
+
+    /**
+     * Indexes built before the binary format was introduced must still be readable
+     */
+    @Test
+    public void testUnserializeXmlField() throws Exception {
+        Artist artist = createArtist();
+        MbDocument doc = new MbDocument();
+        doc.addField(ArtistIndexField.ARTIST_STORE, MMDSerializer.serialize(artist));
+
+        Artist decoded = (Artist) MMDSerializer.unserialize(doc, ArtistIndexField.ARTIST_STORE, Artist.class);
+        assertEquals(MMDSerializer.serialize(artist), MMDSerializer.serialize(decoded));
+    }
+
+    @Test
+    public void testUnserializeMissingField() throws Exception {
+        Document doc = new Document();
+        assertNull(MMDSerializer.unserialize(doc, ArtistIndexField.ARTIST_STORE, Artist.class));
+    }
+
+    @Test
+    public void testSerializeXmlFragment() throws Exception {
+        ObjectFactory of = new ObjectFactory();
+        Artist artist = createArtist();
+        artist.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+        ArtistList artistList = of.createArtistList();
+        artistList.getArtist().add(artist);
+        Metadata metadata = of.createMetadata();
+        metadata.setArtistList(artistList);
+
+        String fragment = MMDSerializer.serializeXmlFragment(metadata);
+        assertTrue(fragment.startsWith("<artist "));
+        assertTrue(fragment.endsWith("</artist>"));
+        assertTrue(fragment.contains("ext:" + MMDSerializer.SCORE_PLACEHOLDER_ATTRIBUTE));
+        assertTrue(fragment.contains("<name>Farming Incident</name>"));
+        assertFalse(fragment.contains("metadata"));
+        assertFalse(fragment.contains("artist-list"));
+    }
+
+    @Test
+    public void testAddXmlFragment() throws Exception {
+        ObjectFactory of = new ObjectFactory();
+        Artist artist = createArtist();
+        artist.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+        ArtistList artistList = of.createArtistList();
+        artistList.getArtist().add(artist);
+        Metadata metadata = of.createMetadata();
+        metadata.setArtistList(artistList);
+
+        MbDocument doc = new MbDocument();
+        MMDSerializer.addXmlFragment(doc, metadata);
+        String fragment = doc.get(FragmentIndexField.XML);
+        int offset = Integer.parseInt(doc.get(FragmentIndexField.XML_SCORE_OFFSET));
+        assertFalse(fragment.contains(MMDSerializer.SCORE_PLACEHOLDER_ATTRIBUTE));
+        assertEquals(MMDSerializer.serializeXmlFragment(metadata),
+                fragment.substring(0, offset) + MMDSerializer.SCORE_PLACEHOLDER_ATTRIBUTE + fragment.substring(offset));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddXmlFragmentWithoutPlaceholderScore() throws Exception {
+        ObjectFactory of = new ObjectFactory();
+        ArtistList artistList = of.createArtistList();
+        artistList.getArtist().add(createArtist());
+        Metadata metadata = of.createMetadata();
+        metadata.setArtistList(artistList);
+        MMDSerializer.addXmlFragment(new MbDocument(), metadata);
+    }
+}
@@ -246,7 +246,7 @@ public class PlaceIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            Place place = (Place) MMDSerializer.unserialize(doc.get(PlaceIndexField.PLACE_STORE.getName()), Place.class);
+            Place place = (Place) MMDSerializer.unserialize(doc, PlaceIndexField.PLACE_STORE, Place.class);
             assertEquals("aa95182f-df0a-3ad6-8bfb-4b63482cd276", place.getId());
             assertEquals("Manor Studios", place.getName());
             assertEquals("1 New Street", place.getAddress());
@@ -431,7 +431,7 @@ public class RecordingIndexTest extends AbstractIndexTest {
         {
             Document doc = ir.document(1);
 
-            Recording recording = (Recording) MMDSerializer.unserialize(doc.get(RecordingIndexField.RECORDING_STORE.getName()), Recording.class);
+            Recording recording = (Recording) MMDSerializer.unserialize(doc, RecordingIndexField.RECORDING_STORE, Recording.class);
             ArtistCredit ac = recording.getArtistCredit();
             assertNotNull(ac);
             assertEquals("Echo and The Bunnymen", ac.getNameCredit().get(0).getArtist().getSortName());
@@ -494,7 +494,7 @@ public class RecordingIndexTest extends AbstractIndexTest {
         {
             Document doc = ir.document(1);
 
-            Recording recording = (Recording) MMDSerializer.unserialize(doc.get(RecordingIndexField.RECORDING_STORE.getName()), Recording.class);
+            Recording recording = (Recording) MMDSerializer.unserialize(doc, RecordingIndexField.RECORDING_STORE, Recording.class);
             ArtistCredit ac = recording.getArtistCredit();
             assertNotNull(ac);
             assertNull(ac.getNameCredit().get(0).getArtist().getDisambiguation());
@@ -517,7 +517,7 @@ public class RecordingIndexTest extends AbstractIndexTest {
         {
             Document doc = ir.document(1);
 
-            Recording recording = (Recording) MMDSerializer.unserialize(doc.get(RecordingIndexField.RECORDING_STORE.getName()), Recording.class);
+            Recording recording = (Recording) MMDSerializer.unserialize(doc, RecordingIndexField.RECORDING_STORE, Recording.class);
             ArtistCredit ac = recording.getArtistCredit();
             assertNotNull(ac);
             assertEquals("a comment", ac.getNameCredit().get(0).getArtist().getDisambiguation());
@@ -540,7 +540,7 @@ public class RecordingIndexTest extends AbstractIndexTest {
         {
             Document doc = ir.document(1);
 
-            Recording recording = (Recording) MMDSerializer.unserialize(doc.get(RecordingIndexField.RECORDING_STORE.getName()), Recording.class);
+            Recording recording = (Recording) MMDSerializer.unserialize(doc, RecordingIndexField.RECORDING_STORE, Recording.class);
             ArtistCredit ac = recording.getArtistCredit();
             assertNotNull(ac);
             assertEquals("Echo & The Bunnymen", ac.getNameCredit().get(0).getArtist().getName());
@@ -564,7 +564,7 @@ public class RecordingIndexTest extends AbstractIndexTest {
             Document doc = ir.document(1);
 
 
-            Recording recording = (Recording) MMDSerializer.unserialize(doc.get(RecordingIndexField.RECORDING_STORE.getName()), Recording.class);
+            Recording recording = (Recording) MMDSerializer.unserialize(doc, RecordingIndexField.RECORDING_STORE, Recording.class);
             ArtistCredit ac = recording.getArtistCredit();
             assertNotNull(ac);
             assertEquals("Echo & The Bunnymen", ac.getNameCredit().get(0).getArtist().getName());
@@ -593,7 +593,7 @@ public class RecordingIndexTest extends AbstractIndexTest {
             Document doc = ir.document(1);
 
 
-            Recording recording = (Recording) MMDSerializer.unserialize(doc.get(RecordingIndexField.RECORDING_STORE.getName()), Recording.class);
+            Recording recording = (Recording) MMDSerializer.unserialize(doc, RecordingIndexField.RECORDING_STORE, Recording.class);
             ArtistCredit ac = recording.getArtistCredit();
             assertNotNull(ac);
             assertEquals("Echo & The Bunnymen", ac.getNameCredit().get(0).getArtist().getName());
@@ -623,7 +623,7 @@ public class RecordingIndexTest extends AbstractIndexTest {
             Document doc = ir.document(1);
 
 
-            Recording recording = (Recording) MMDSerializer.unserialize(doc.get(RecordingIndexField.RECORDING_STORE.getName()), Recording.class);
+            Recording recording = (Recording) MMDSerializer.unserialize(doc, RecordingIndexField.RECORDING_STORE, Recording.class);
             ArtistCredit ac = recording.getArtistCredit();
             assertNotNull(ac);
             assertEquals("Echo & The Bunnymen", ac.getNameCredit().get(0).getArtist().getName());
@@ -651,7 +651,7 @@ public class RecordingIndexTest extends AbstractIndexTest {
             Document doc = ir.document(1);
 
 
-            Recording recording = (Recording) MMDSerializer.unserialize(doc.get(RecordingIndexField.RECORDING_STORE.getName()), Recording.class);
+            Recording recording = (Recording) MMDSerializer.unserialize(doc, RecordingIndexField.RECORDING_STORE, Recording.class);
             ArtistCredit ac = recording.getArtistCredit();
             assertNotNull(ac);
             assertEquals("Echo & The Bunnymen", ac.getNameCredit().get(0).getArtist().getName());
@@ -892,7 +892,7 @@ public class RecordingIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            Recording recording = (Recording) MMDSerializer.unserialize(doc.get(RecordingIndexField.RECORDING_STORE.getName()), Recording.class);
+            Recording recording = (Recording) MMDSerializer.unserialize(doc, RecordingIndexField.RECORDING_STORE, Recording.class);
             assertEquals("2f250ed2-6285-40f1-aa2a-14f1c05e9765", recording.getId());
             assertEquals("Do It Clean", recording.getTitle());
 
@@ -283,7 +283,7 @@ public class ReleaseIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            Release release = (Release) MMDSerializer.unserialize(doc.get(ReleaseIndexField.RELEASE_STORE.getName()), Release.class);
+            Release release = (Release) MMDSerializer.unserialize(doc, ReleaseIndexField.RELEASE_STORE, Release.class);
             ArtistCredit ac = release.getArtistCredit();
             assertNotNull(ac);
             assertEquals("Echo & The Bunnymen", ac.getNameCredit().get(0).getArtist().getName());
@@ -346,7 +346,7 @@ public class ReleaseIndexTest extends AbstractIndexTest {
         assertEquals(2, ir.numDocs());
         {
             Document doc = ir.document(1);
-            Release release = (Release) MMDSerializer.unserialize(doc.get(ReleaseIndexField.RELEASE_STORE.getName()), Release.class);
+            Release release = (Release) MMDSerializer.unserialize(doc, ReleaseIndexField.RELEASE_STORE, Release.class);
             ArtistCredit ac = release.getArtistCredit();
             assertNotNull(ac);
             assertEquals("Echo and The Bunnymen", ac.getNameCredit().get(0).getArtist().getSortName());
@@ -865,7 +865,7 @@ public class ReleaseIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            Release release = (Release) MMDSerializer.unserialize(doc.get(ReleaseIndexField.RELEASE_STORE.getName()), Release.class);
+            Release release = (Release) MMDSerializer.unserialize(doc, ReleaseIndexField.RELEASE_STORE, Release.class);
             assertEquals("c3b8dbc9-c1ff-4743-9015-8d762819134e", release.getId());
             assertEquals("Crocodiles (bonus disc)", release.getTitle());
             assertEquals("B00005NTQ7", release.getAsin());
@@ -896,7 +896,7 @@ public class ReleaseIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            Release release = (Release) MMDSerializer.unserialize(doc.get(ReleaseIndexField.RELEASE_STORE.getName()), Release.class);
+            Release release = (Release) MMDSerializer.unserialize(doc, ReleaseIndexField.RELEASE_STORE, Release.class);
             assertEquals("c3b8dbc9-c1ff-4743-9015-8d762819134e", release.getId());
             assertEquals("Crocodiles (bonus disc)", release.getTitle());
             assertEquals("B00005NTQ7", release.getAsin());
@@ -954,7 +954,7 @@ public class ReleaseIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            Release release = (Release) MMDSerializer.unserialize(doc.get(ReleaseIndexField.RELEASE_STORE.getName()), Release.class);
+            Release release = (Release) MMDSerializer.unserialize(doc, ReleaseIndexField.RELEASE_STORE, Release.class);
             assertEquals("c3b8dbc9-c1ff-4743-9015-8d762819134e", release.getId());
             assertEquals("B00005NTQ7", release.getAsin());
 
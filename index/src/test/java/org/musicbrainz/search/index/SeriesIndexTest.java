@@ -143,7 +143,7 @@ public class SeriesIndexTest extends AbstractIndexTest {
         {
 
             Document doc = ir.document(1);
-            Series series = (Series) MMDSerializer.unserialize(doc.get(SeriesIndexField.SERIES_STORE.getName()), Series.class);
+            Series series = (Series) MMDSerializer.unserialize(doc, SeriesIndexField.SERIES_STORE, Series.class);
             assertEquals("aa95182f-df0a-3ad6-8bfb-4b63482cd276", series.getId());
             assertEquals("Trumpet", series.getName());
 
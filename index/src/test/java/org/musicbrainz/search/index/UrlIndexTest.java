@@ -118,7 +118,7 @@ public class UrlIndexTest extends AbstractIndexTest {
         assertEquals(2, ir.numDocs());
         {
             Document doc = ir.document(1);
-            Url url = (Url) MMDSerializer.unserialize(doc.get(UrlIndexField.URL_STORE.getName()), Url.class);
+            Url url = (Url) MMDSerializer.unserialize(doc, UrlIndexField.URL_STORE, Url.class);
             assertEquals("aa95182f-df0a-3ad6-8bfb-4b63482cd276",url.getId());
             assertEquals("http://en.wikipedia.org/wiki/Nine_Inch_Nails", url.getResource());
             assertEquals("artist", url.getRelationList().get(0).getTargetType());
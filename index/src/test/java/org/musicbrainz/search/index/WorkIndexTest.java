@@ -265,7 +265,7 @@ public class WorkIndexTest extends AbstractIndexTest {
         {
             Document doc = ir.document(1);
             Work work = (Work) MMDSerializer
-                    .unserialize(doc.get(WorkIndexField.WORK_STORE.getName()), Work.class);
+                    .unserialize(doc, WorkIndexField.WORK_STORE, Work.class);
             System.out.println(doc.get(WorkIndexField.WORK_STORE.getName()));
 
             RelationList artistList = work.getRelationList().get(0);
@@ -290,7 +290,7 @@ public class WorkIndexTest extends AbstractIndexTest {
         {
             Document doc = ir.document(1);
             Work work = (Work) MMDSerializer
-                    .unserialize(doc.get(WorkIndexField.WORK_STORE.getName()), Work.class);
+                    .unserialize(doc, WorkIndexField.WORK_STORE, Work.class);
             System.out.println(doc.get(WorkIndexField.WORK_STORE.getName()));
 
 
@@ -316,7 +316,7 @@ public class WorkIndexTest extends AbstractIndexTest {
         {
             Document doc = ir.document(1);
             Work work = (Work) MMDSerializer
-                    .unserialize(doc.get(WorkIndexField.WORK_STORE.getName()), Work.class);
+                    .unserialize(doc, WorkIndexField.WORK_STORE, Work.class);
             System.out.println(doc.get(WorkIndexField.WORK_STORE.getName()));
 
             assertNotNull(work);
@@ -340,7 +340,7 @@ public class WorkIndexTest extends AbstractIndexTest {
         {
             Document doc = ir.document(1);
             Work work = (Work) MMDSerializer
-                    .unserialize(doc.get(WorkIndexField.WORK_STORE.getName()), Work.class);
+                    .unserialize(doc, WorkIndexField.WORK_STORE, Work.class);
             System.out.println(doc.get(WorkIndexField.WORK_STORE.getName()));
 
             assertNotNull(work);
@@ -406,7 +406,7 @@ public class WorkIndexTest extends AbstractIndexTest {
             assertEquals(1, doc.getFields(WorkIndexField.TAG.getName()).length);
             assertEquals("Classical", doc.getField(WorkIndexField.TAG.getName()).stringValue());
 
-            Work work = (Work) MMDSerializer.unserialize(doc.get(WorkIndexField.WORK_STORE.getName()), Work.class);
+            Work work = (Work) MMDSerializer.unserialize(doc, WorkIndexField.WORK_STORE, Work.class);
             assertNotNull(work);
             assertEquals(10, work.getTagList().getTag().get(0).getCount().intValue());
         }
@@ -12,6 +12,7 @@ public abstract class AbstractDismaxSearchServer implements SearchServer {
 
   protected DismaxSearcher dismaxSearcher;
   protected AbstractSearchServer realSearchServer;
+  protected QueryCache queryCache;
 
   protected AbstractDismaxSearchServer(AbstractSearchServer mainSearchServer) {
     this.realSearchServer = mainSearchServer;
@@ -26,13 +27,54 @@ public abstract class AbstractDismaxSearchServer implements SearchServer {
     return dismaxSearcher.parseQuery(query, realSearchServer.getAnalyzer());
   }
 
+  // Parsed queries are cached separately from the real search server because the same query string parses differently
+  protected Query getQuery(String query) throws ParseException
+  {
+    long start = System.nanoTime();
+    try {
+      if (queryCache == null) {
+        return parseQuery(query);
+      }
+
+      Query parsedQuery = queryCache.get(query);
+      if (parsedQuery == null) {
+        parsedQuery = parseQuery(query);
+        queryCache.put(query, parsedQuery);
+      }
+      return parsedQuery;
+    } finally {
+      RequestTimer.record(RequestTimer.Stage.PARSE, start);
+    }
+  }
+
+  public QueryCache getQueryCache() {
+    return queryCache;
+  }
+
+  public void setQueryCache(QueryCache queryCache) {
+    this.queryCache = queryCache;
+  }
+
   @Override
   public Results search(String userQuery, int offset, int limit) throws IOException, ParseException {
     // Parse query with the dismaxSearcher, then delegate the search to the backend search server
-    Query query = parseQuery(userQuery);
+    Query query = getQuery(userQuery);
     return realSearchServer.search(query, offset, limit);
   }
 
+  @Override
+  public Results searchAfter(String userQuery, SearchCursor after, int limit)
+      throws IOException, ParseException, SearchCursor.ExpiredException {
+    Query query = getQuery(userQuery);
+    return realSearchServer.searchAfter(query, after, limit);
+  }
+
+  @Override
+  public TopHits searchTopHits(String userQuery, int noOfHits) throws IOException, ParseException {
+    Query query = getQuery(userQuery);
+    return realSearchServer.searchTopHits(query, noOfHits);
+  }
+
   @Override
   public Results search(Query query, int offset, int limit) throws IOException, ParseException {
     throw new UnsupportedOperationException();
@@ -40,7 +82,7 @@ public abstract class AbstractDismaxSearchServer implements SearchServer {
 
   @Override
   public String explain(String userQuery, int offset, int limit) throws IOException, ParseException {
-      Query query = parseQuery(userQuery);
+      Query query = getQuery(userQuery);
       return realSearchServer.explain(query, offset, limit);
   }
 
@@ -31,20 +31,27 @@ package org.musicbrainz.search.servlet;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
@@ -55,6 +62,8 @@ import org.apache.lucene.search.TimeLimitingCollector.TimeExceededException;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.NumericUtils;
 import org.musicbrainz.search.MbDocument;
+import org.musicbrainz.search.index.FragmentIndexField;
+import org.musicbrainz.search.index.IndexField;
 import org.musicbrainz.search.index.MetaIndexField;
 import org.musicbrainz.search.servlet.mmd1.Mmd1XmlWriter;
 import org.musicbrainz.search.servlet.mmd2.ResultsWriter;
@@ -73,6 +82,29 @@ public abstract class AbstractSearchServer implements SearchServer {
   protected Date serverLastUpdatedDate;
   protected SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm zz", Locale.US);
   protected AtomicInteger searchCount = new AtomicInteger();
+  protected QueryCache queryCache;
+
+  public static final long DEFAULT_TIME_ALLOWED_IN_MS = 1000;
+
+  // Time allowed for collecting the hits of a search
+  protected long timeAllowed = DEFAULT_TIME_ALLOWED_IN_MS;
+
+  // If the time allowed is exceeded return the hits collected so far rather than failing
+  protected boolean isPartialResultsAllowed = false;
+
+  // Stored fields of each hit needed by the results writers, null if they need all of them
+  protected Set<String> storedFields;
+
+  // Stored fields plus the pre-rendered fragment, for hits in segments built with fragments
+  private Set<String> storedFieldsWithFragments;
+
+  // Parsers can be reused for further queries once a query has been parsed, but not by more than one thread at a time
+  private final ThreadLocal<QueryParser> parsers = new ThreadLocal<QueryParser>() {
+    @Override
+    protected QueryParser initialValue() {
+      return getParser();
+    }
+  };
 
   protected AbstractSearchServer() {
   }
@@ -108,8 +140,12 @@ public abstract class AbstractSearchServer implements SearchServer {
       MbDocument doc = new MbDocument(searcher.doc(docId));
 
 
-      String lastUpdated = doc.get(MetaIndexField.LAST_UPDATED);
-      serverLastUpdatedDate = new Date(NumericUtils.prefixCodedToLong(new BytesRef(lastUpdated)));
+      // Indexes built before numeric fields were added as trie fields store it prefix coded
+      Number lastUpdated = doc.getNumericField(MetaIndexField.LAST_UPDATED);
+      if (lastUpdated == null) {
+        lastUpdated = NumericUtils.prefixCodedToLong(new BytesRef(doc.get(MetaIndexField.LAST_UPDATED)));
+      }
+      serverLastUpdatedDate = new Date(lastUpdated.longValue());
       dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
     } catch (Exception e) {
       System.out.println(e);
@@ -179,7 +215,7 @@ public abstract class AbstractSearchServer implements SearchServer {
    */
   @Override
   public Results search(String query, int offset, int limit) throws IOException, ParseException {
-    return this.search(parseQuery(query), offset, limit);
+    return this.search(getQuery(query), offset, limit);
   }
 
   /**
@@ -197,21 +233,228 @@ public abstract class AbstractSearchServer implements SearchServer {
 
     IndexSearcher searcher = searcherManager.acquire();
     try {
-      TopDocsCollector<?> collector = TopScoreDocCollector.create(offset + limit, true);
-      TimeLimitingCollector tCollector = new TimeLimitingCollector(collector, TimeLimitingCollector.getGlobalCounter(), 1000);
-      searcher.search(query, tCollector);
-      searchCount.incrementAndGet();
-      TopDocs topDocs = collector.topDocs();
+      TopDocs topDocs = searchTopDocs(searcher, query, offset + limit, null);
       if (topDocs == null)
       {
           return new Results();
       }
-      return processResults(searcher, topDocs, offset);
+      Results results = processResults(searcher, topDocs, offset);
+      results.setPartial(topDocs instanceof PartialTopDocs);
+      return results;
+    } finally {
+      searcherManager.release(searcher);
+    }
+  }
+
+  /**
+   * Parse and search lucene query, returning up to limit results after the cursor
+   *
+   * @param query
+   * @param after cursor returned with the previous page of results, or null for the first page
+   * @param limit
+   * @return
+   * @throws IOException
+   * @throws ParseException if the query was invalid
+   * @throws SearchCursor.ExpiredException if the index has changed since the cursor was returned
+   */
+  @Override
+  public Results searchAfter(String query, SearchCursor after, int limit)
+      throws IOException, ParseException, SearchCursor.ExpiredException {
+    return searchAfter(getQuery(query), after, limit);
+  }
+
+  /**
+   * Search lucene query, returning up to limit results after the cursor. Only limit hits are collected however far
+   * into the results the cursor is, and if there may be more results a cursor for the next page is set on the results.
+   * The offset of the results is their position in all the results, as carried by the cursor.
+   *
+   * @param query
+   * @param after cursor returned with the previous page of results, or null for the first page
+   * @param limit
+   * @return
+   * @throws IOException
+   * @throws SearchCursor.ExpiredException if the index has changed since the cursor was returned
+   */
+  public Results searchAfter(Query query, SearchCursor after, int limit)
+      throws IOException, SearchCursor.ExpiredException, TimeExceededException {
+
+    IndexSearcher searcher = searcherManager.acquire();
+    try {
+      long generation = SearchCursor.getGeneration(searcher);
+      if (after != null && after.getGeneration() != generation) {
+        throw new SearchCursor.ExpiredException();
+      }
+
+      TopDocs topDocs = searchTopDocs(searcher, query, limit, after != null ? after.getScoreDoc() : null);
+      if (topDocs == null)
+      {
+          return new Results();
+      }
+      // Only the hits of this page were collected, so they are all processed whatever the offset
+      int offset = after != null ? after.getOffset() : 0;
+      Results results = processResults(searcher, topDocs, 0);
+      results.setOffset(offset);
+      results.setPartial(topDocs instanceof PartialTopDocs);
+      ScoreDoc[] docs = topDocs.scoreDocs;
+      if (docs.length > 0 && docs.length == limit) {
+        ScoreDoc last = docs[docs.length - 1];
+        results.setNextCursor(new SearchCursor(generation, last.doc, last.score, offset + docs.length));
+      }
+      return results;
     } finally {
       searcherManager.release(searcher);
     }
   }
 
+  /**
+   * Parse and search query, only finding the top hits without loading their documents
+   *
+   * @param query
+   * @param noOfHits
+   * @return
+   * @throws IOException
+   * @throws ParseException if the query was invalid
+   */
+  @Override
+  public TopHits searchTopHits(String query, int noOfHits) throws IOException, ParseException {
+    return searchTopHits(getQuery(query), noOfHits);
+  }
+
+  /**
+   * Search query, only finding the top hits without loading their documents. The searcher stays acquired until the
+   * top hits are released.
+   *
+   * @param query
+   * @param noOfHits
+   * @return
+   * @throws IOException
+   */
+  public TopHits searchTopHits(Query query, int noOfHits) throws IOException, TimeExceededException {
+
+    IndexSearcher searcher = searcherManager.acquire();
+    try {
+      TopDocs topDocs = searchTopDocs(searcher, query, noOfHits, null);
+      if (topDocs == null)
+      {
+          topDocs = new TopDocs(0, new ScoreDoc[0], Float.NaN);
+      }
+      return new TopHits(this, searcher, topDocs);
+    } catch (IOException e) {
+      searcherManager.release(searcher);
+      throw e;
+    } catch (RuntimeException e) {
+      searcherManager.release(searcher);
+      throw e;
+    }
+  }
+
+  /**
+   * Top hits of a search that ran out of time, so only includes the hits collected before it did
+   */
+  static class PartialTopDocs extends TopDocs {
+    PartialTopDocs(TopDocs topDocs) {
+      super(topDocs.totalHits, topDocs.scoreDocs, topDocs.getMaxScore());
+    }
+  }
+
+  /**
+   * Thrown when the thread doing a search is interrupted because the search is no longer wanted
+   */
+  public static class SearchInterruptedException extends RuntimeException {
+    public SearchInterruptedException() {
+      super("Search was cancelled");
+    }
+  }
+
+  /**
+   * Stops collecting when the thread is interrupted, so that a search cancelled by the request waiting for it (e.g.
+   * because another search of the request failed) stops rather than running until it runs out of time
+   */
+  static class InterruptibleCollector extends Collector {
+    // Checked every so many hits as well as for each segment, because an optimized index only has one segment
+    private static final int CHECK_INTERVAL_MASK = 0x3FF;
+
+    private final Collector collector;
+    private int noOfHits;
+
+    InterruptibleCollector(Collector collector) {
+      this.collector = collector;
+    }
+
+    private static void checkInterrupted() {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new SearchInterruptedException();
+      }
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+      collector.setScorer(scorer);
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+      if ((++noOfHits & CHECK_INTERVAL_MASK) == 0) {
+        checkInterrupted();
+      }
+      collector.collect(doc);
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext context) throws IOException {
+      checkInterrupted();
+      collector.setNextReader(context);
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+      return collector.acceptsDocsOutOfOrder();
+    }
+  }
+
+  private TopDocs searchTopDocs(IndexSearcher searcher, Query query, int noOfHits, ScoreDoc after)
+      throws IOException, TimeExceededException {
+    TopDocsCollector<?> collector = TopScoreDocCollector.create(noOfHits, after, true);
+    TimeLimitingCollector tCollector = new TimeLimitingCollector(new InterruptibleCollector(collector),
+        TimeLimitingCollector.getGlobalCounter(), timeAllowed);
+    long start = System.nanoTime();
+    try {
+      searcher.search(query, tCollector);
+    } catch (TimeExceededException tee) {
+      if (!isPartialResultsAllowed) {
+        throw tee;
+      }
+      return new PartialTopDocs(collector.topDocs());
+    } finally {
+      searchCount.incrementAndGet();
+      RequestTimer.record(RequestTimer.Stage.SEARCH, start);
+    }
+    return collector.topDocs();
+  }
+
+  public long getTimeAllowed() {
+    return timeAllowed;
+  }
+
+  /**
+   * @param timeAllowed time in milliseconds allowed for collecting the hits of a search
+   */
+  public void setTimeAllowed(long timeAllowed) {
+    this.timeAllowed = timeAllowed;
+  }
+
+  public boolean isPartialResultsAllowed() {
+    return isPartialResultsAllowed;
+  }
+
+  /**
+   * @param isPartialResultsAllowed if true a search that runs out of time returns the hits collected so far, marked as
+   *                                partial, rather than throwing TimeExceededException
+   */
+  public void setPartialResultsAllowed(boolean isPartialResultsAllowed) {
+    this.isPartialResultsAllowed = isPartialResultsAllowed;
+  }
+
   /**
    * Parse the query
    *
@@ -221,10 +464,47 @@ public abstract class AbstractSearchServer implements SearchServer {
    */
   protected Query parseQuery(String query) throws ParseException
   {
-    QueryParser parser = getParser();
+    QueryParser parser = getThreadLocalParser();
     return parser.parse(query);
   }
 
+  /**
+   * Get the parsed query from the query cache, parsing it if not already cached
+   *
+   * @param query
+   * @return
+   * @throws ParseException
+   */
+  protected Query getQuery(String query) throws ParseException
+  {
+    long start = System.nanoTime();
+    try {
+      if (queryCache == null) {
+        return parseQuery(query);
+      }
+
+      Query parsedQuery = queryCache.get(query);
+      if (parsedQuery == null) {
+        parsedQuery = parseQuery(query);
+        queryCache.put(query, parsedQuery);
+      }
+      return parsedQuery;
+    } finally {
+      RequestTimer.record(RequestTimer.Stage.PARSE, start);
+    }
+  }
+
+  public QueryCache getQueryCache() {
+    return queryCache;
+  }
+
+  /**
+   * @param queryCache cache of parsed queries, or null to parse every query
+   */
+  public void setQueryCache(QueryCache queryCache) {
+    this.queryCache = queryCache;
+  }
+
   /**
    * @return count of searches done on this index since servlet started
    */
@@ -241,6 +521,69 @@ public abstract class AbstractSearchServer implements SearchServer {
    */
   public abstract QueryParser getParser();
 
+  /**
+   * Get Query Parser for this resourceType that is only used by the current thread, so can be reused for each query
+   * the thread parses rather than getting a new instance every time
+   *
+   * @return
+   */
+  protected QueryParser getThreadLocalParser() {
+    return parsers.get();
+  }
+
+  /**
+   * Only load the given stored fields of each hit rather than all of them, for resource types whose results writers
+   * only need the serialized entity. The pre-rendered fragment is also loaded for hits in segments that have one,
+   * because it is used instead of the serialized entity when present.
+   *
+   * @param fields stored fields needed, each must only have a single value
+   */
+  protected void setStoredFields(IndexField... fields) {
+    storedFields = new HashSet<String>();
+    for (IndexField field : fields) {
+      storedFields.add(field.getName());
+    }
+    storedFieldsWithFragments = new HashSet<String>(storedFields);
+    storedFieldsWithFragments.add(FragmentIndexField.XML.getName());
+    storedFieldsWithFragments.add(FragmentIndexField.XML_SCORE_OFFSET.getName());
+  }
+
+  public Set<String> getStoredFields() {
+    return storedFields;
+  }
+
+  /**
+   * Load the stored fields of a hit needed to write it
+   *
+   * @param searcher
+   * @param docId
+   * @return
+   * @throws IOException
+   */
+  protected MbDocument loadDocument(IndexSearcher searcher, int docId) throws IOException {
+    if (storedFields == null) {
+      return new MbDocument(searcher.doc(docId));
+    }
+    SelectedFieldsVisitor visitor = new SelectedFieldsVisitor(hasFragments(searcher, docId)
+        ? storedFieldsWithFragments : storedFields);
+    searcher.doc(docId, visitor);
+    return new MbDocument(visitor.getDocument());
+  }
+
+  /**
+   * Fragments are only stored when the index is built with --prerender and never by the updater, if they were asked
+   * for from a segment without them every stored field of the hit would be read looking for them
+   *
+   * @param searcher
+   * @param docId
+   * @return true if the segment containing the hit has pre-rendered fragments
+   */
+  private static boolean hasFragments(IndexSearcher searcher, int docId) {
+    List<AtomicReaderContext> leaves = searcher.getIndexReader().leaves();
+    AtomicReader reader = leaves.get(ReaderUtil.subIndex(docId, leaves)).reader();
+    return reader.getFieldInfos().fieldInfo(FragmentIndexField.XML.getName()) != null;
+  }
+
   /**
    * Process results of search
    *
@@ -256,17 +599,19 @@ public abstract class AbstractSearchServer implements SearchServer {
     results.setTotalHits(topDocs.totalHits);
     ScoreDoc docs[] = topDocs.scoreDocs;
     results.setMaxScore(topDocs.getMaxScore());
+    long start = System.nanoTime();
     for (int i = offset; i < docs.length; i++) {
       Result result     = new Result();
       result.setScore(docs[i].score);
-      result.setDoc(new MbDocument(searcher.doc(docs[i].doc)));
+      result.setDoc(loadDocument(searcher, docs[i].doc));
       results.results.add(result);
     }
+    RequestTimer.record(RequestTimer.Stage.LOAD, start);
     return results;
   }
 
   public String explain(String userQuery, int offset, int limit) throws IOException, ParseException {
-    Query parsedQuery = parseQuery(userQuery);
+    Query parsedQuery = getQuery(userQuery);
     return explain(parsedQuery, offset, limit);
   }
 
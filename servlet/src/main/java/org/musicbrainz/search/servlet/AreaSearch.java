@@ -26,6 +26,7 @@ public class AreaSearch extends AbstractSearchServer {
     resultsWriter = new AreaWriter();
     setupDefaultFields();
     analyzer = DatabaseIndex.getAnalyzer(AreaIndexField.class);
+    setStoredFields(AreaIndexField.AREA_STORE);
   }
 
   public AreaSearch(SearcherManager searcherManager) throws Exception {
@@ -33,6 +33,7 @@ public class ArtistSearch extends AbstractSearchServer
         mmd1Writer = new ArtistMmd1XmlWriter();
         setupDefaultFields();
         analyzer = DatabaseIndex.getAnalyzer(ArtistIndexField.class);
+        setStoredFields(ArtistIndexField.ARTIST_STORE);
     }
 
     /**
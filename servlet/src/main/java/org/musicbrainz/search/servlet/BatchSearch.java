@@ -0,0 +1,354 @@
+package org.musicbrainz.search.servlet;
+
+import com.google.common.base.Strings;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A batch of searches sent in one request, so that a client such as a tagger looking up every track of an album can
+ * do so with one request rather than one request per track.
+ *
+ * Each line of the body is one search, written as the query string of the equivalent GET request e.g.
+ * type=recording&query=...&limit=5, and the searches of a batch may be of different resource types. The output of each
+ * search is written as it would be for a GET request, wrapped within one document in the same order as the searches.
+ * A search that fails only gives an error for that search, the other searches of the batch are still returned.
+ */
+public class BatchSearch
+{
+    public static final String MIME_TYPE_XML = "application/xml; charset=UTF-8";
+    public static final String MIME_TYPE_JSON = "application/json; charset=UTF-8";
+
+    // Each search is written as a separate document, the declaration is only written once at the start of the batch
+    private static final Pattern XML_DECLARATION = Pattern.compile("^\\s*<\\?xml[^>]*\\?>\\s*");
+
+    private final List<Search> searches;
+    private final String responseFormat;
+    private boolean isFirstSearchWritten = false;
+
+    /**
+     * One search of the batch
+     */
+    public static class Search
+    {
+        private final ResourceType resourceType;
+        private final String query;
+        private final int offset;
+        private final int limit;
+        private final boolean isDismax;
+
+        Search(ResourceType resourceType, String query, int offset, int limit, boolean isDismax)
+        {
+            this.resourceType = resourceType;
+            this.query = query;
+            this.offset = offset;
+            this.limit = limit;
+            this.isDismax = isDismax;
+        }
+
+        public ResourceType getResourceType()
+        {
+            return resourceType;
+        }
+
+        public String getQuery()
+        {
+            return query;
+        }
+
+        public int getOffset()
+        {
+            return offset;
+        }
+
+        public int getLimit()
+        {
+            return limit;
+        }
+
+        public boolean isDismax()
+        {
+            return isDismax;
+        }
+    }
+
+    /**
+     * @param searches
+     * @param responseFormat one of the response formats of SearchServerServlet
+     */
+    public BatchSearch(List<Search> searches, String responseFormat)
+    {
+        this.searches = Collections.unmodifiableList(searches);
+        this.responseFormat = responseFormat;
+    }
+
+    /**
+     * Read the searches from the body of the request, one per line, blank lines are ignored
+     *
+     * @param body
+     * @param maxSearches
+     * @return
+     * @throws IOException
+     * @throws IllegalArgumentException if there are no searches, too many searches or a search is invalid, with the
+     * message to send back
+     */
+    public static List<Search> parse(BufferedReader body, int maxSearches) throws IOException
+    {
+        List<Search> searches = new ArrayList<Search>();
+        int lineNo = 0;
+        String line;
+        while ((line = body.readLine()) != null)
+        {
+            lineNo++;
+            if (line.trim().length() == 0)
+            {
+                continue;
+            }
+            if (searches.size() == maxSearches)
+            {
+                throw new IllegalArgumentException(ErrorMessage.TOO_MANY_BATCH_SEARCHES.getMsg(maxSearches));
+            }
+            searches.add(parseSearch(line.trim(), lineNo));
+        }
+
+        if (searches.isEmpty())
+        {
+            throw new IllegalArgumentException(ErrorMessage.NO_BATCH_SEARCHES.getMsg());
+        }
+        return searches;
+    }
+
+    /**
+     * Parse one search, accepting the same parameters as a GET request for a single resource type
+     *
+     * @param line
+     * @param lineNo
+     * @return
+     * @throws IOException
+     */
+    private static Search parseSearch(String line, int lineNo) throws IOException
+    {
+        Map<String, String> parameters = new HashMap<String, String>();
+        for (String next : line.split("&"))
+        {
+            int equals = next.indexOf('=');
+            if (equals > 0)
+            {
+                try
+                {
+                    parameters.put(URLDecoder.decode(next.substring(0, equals), SearchServerServlet.CHARSET),
+                            URLDecoder.decode(next.substring(equals + 1), SearchServerServlet.CHARSET));
+                }
+                catch (IllegalArgumentException e)
+                {
+                    throw new IllegalArgumentException(ErrorMessage.INVALID_BATCH_SEARCH.getMsg(lineNo, e.getMessage()));
+                }
+            }
+        }
+
+        // V1 Compatibility
+        String type = parameters.get(RequestParameter.TYPE.getName());
+        if (SearchServerServlet.TYPE_TRACK.equals(type))
+        {
+            type = ResourceType.RECORDING.getName();
+        }
+        ResourceType resourceType = ResourceType.getValue(type);
+        if (resourceType == null)
+        {
+            throw new IllegalArgumentException(ErrorMessage.INVALID_BATCH_SEARCH.getMsg(lineNo,
+                    ErrorMessage.UNKNOWN_RESOURCE_TYPE.getMsg(type == null ? "none" : type)));
+        }
+
+        String query = parameters.get(RequestParameter.QUERY.getName());
+        if (Strings.isNullOrEmpty(query))
+        {
+            throw new IllegalArgumentException(ErrorMessage.INVALID_BATCH_SEARCH.getMsg(lineNo,
+                    ErrorMessage.NO_QUERY_PARAMETER.getMsg()));
+        }
+
+        int offset = SearchServerServlet.DEFAULT_OFFSET;
+        int limit = SearchServerServlet.DEFAULT_MATCHES_LIMIT;
+        try
+        {
+            String strOffset = parameters.get(RequestParameter.OFFSET.getName());
+            if (!Strings.isNullOrEmpty(strOffset))
+            {
+                offset = Integer.parseInt(strOffset);
+            }
+            String strLimit = parameters.get(RequestParameter.LIMIT.getName());
+            if (!Strings.isNullOrEmpty(strLimit))
+            {
+                limit = Math.min(Integer.parseInt(strLimit), SearchServerServlet.MAX_MATCHES_LIMIT);
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException(ErrorMessage.INVALID_BATCH_SEARCH.getMsg(lineNo, e.getMessage()));
+        }
+
+        boolean isDismax = "true".equals(parameters.get(RequestParameter.DISMAX.getName()));
+        return new Search(resourceType, query, offset, limit, isDismax);
+    }
+
+    public List<Search> getSearches()
+    {
+        return searches;
+    }
+
+    public int size()
+    {
+        return searches.size();
+    }
+
+    public String getResponseFormat()
+    {
+        return responseFormat;
+    }
+
+    public boolean isJson()
+    {
+        return !SearchServerServlet.RESPONSE_XML.equals(responseFormat);
+    }
+
+    public String getMimeType()
+    {
+        return isJson() ? MIME_TYPE_JSON : MIME_TYPE_XML;
+    }
+
+    public void writeStart(PrintWriter out)
+    {
+        if (isJson())
+        {
+            out.write("{\"count\":" + size() + ",\"searches\":[");
+        }
+        else
+        {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<batch count=\"" + size() + "\">\n");
+        }
+    }
+
+    /**
+     * Write the output of a search, as written by the results writer of its resource type
+     *
+     * @param out
+     * @param searchNo position of the search within the batch
+     * @param output
+     * @param isPartial true if the search ran out of time so only the hits found in time are included
+     */
+    public void writeResults(PrintWriter out, int searchNo, String output, boolean isPartial)
+    {
+        if (isJson())
+        {
+            writeJsonStart(out, searchNo);
+            if (isPartial)
+            {
+                out.write(",\"partial\":true");
+            }
+            out.write(",\"results\":");
+            out.write(output.trim());
+            out.write('}');
+        }
+        else
+        {
+            writeXmlStart(out, searchNo);
+            if (isPartial)
+            {
+                out.write(" partial=\"true\"");
+            }
+            out.write('>');
+            out.write(XML_DECLARATION.matcher(output).replaceFirst("").trim());
+            out.write("</search>\n");
+        }
+    }
+
+    /**
+     * Write the error that stopped a search from being done
+     *
+     * @param out
+     * @param searchNo position of the search within the batch
+     * @param msg
+     */
+    public void writeError(PrintWriter out, int searchNo, String msg)
+    {
+        if (isJson())
+        {
+            writeJsonStart(out, searchNo);
+            out.write(",\"error\":" + quoteJson(msg) + "}");
+        }
+        else
+        {
+            writeXmlStart(out, searchNo);
+            out.write(" error=\"" + escapeXml(msg) + "\"/>\n");
+        }
+    }
+
+    public void writeEnd(PrintWriter out)
+    {
+        if (isJson())
+        {
+            out.write("]}");
+        }
+        else
+        {
+            out.write("</batch>\n");
+        }
+    }
+
+    private void writeJsonStart(PrintWriter out, int searchNo)
+    {
+        if (isFirstSearchWritten)
+        {
+            out.write(',');
+        }
+        isFirstSearchWritten = true;
+        out.write("{\"search\":" + searchNo + ",\"type\":" + quoteJson(searches.get(searchNo).getResourceType().getName()));
+    }
+
+    private void writeXmlStart(PrintWriter out, int searchNo)
+    {
+        out.write("<search no=\"" + searchNo + "\" type=\"" + searches.get(searchNo).getResourceType().getName() + "\"");
+    }
+
+    private static String escapeXml(String value)
+    {
+        if (value == null)
+        {
+            return "";
+        }
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String quoteJson(String value)
+    {
+        if (value == null)
+        {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                sb.append('\\').append(c);
+            }
+            else if (c < 0x20)
+            {
+                sb.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -2,7 +2,7 @@ package org.musicbrainz.search.servlet;
 
 import java.util.concurrent.Callable;
 
-// Used by doAllSearch()
+// Used by doBatchSearch()
 class CallableSearch implements Callable<Results>
 {
 
@@ -10,19 +10,34 @@ class CallableSearch implements Callable<Results>
     private final String query;
     private final Integer offset;
     private final Integer limit;
+    private final RequestTimer timer;
 
     public CallableSearch(SearchServer searchServer, String query, Integer offset, Integer limit)
+    {
+        this(searchServer, query, offset, limit, null);
+    }
+
+    public CallableSearch(SearchServer searchServer, String query, Integer offset, Integer limit, RequestTimer timer)
     {
         this.searchServer = searchServer;
         this.query = query;
         this.offset = offset;
         this.limit = limit;
+        this.timer = timer;
     }
 
     @Override
     public Results call() throws Exception
     {
-        return searchServer.search(query, offset, limit);
+        RequestTimer.attach(timer);
+        try
+        {
+            return searchServer.search(query, offset, limit);
+        }
+        finally
+        {
+            RequestTimer.detach();
+        }
     }
 
 }
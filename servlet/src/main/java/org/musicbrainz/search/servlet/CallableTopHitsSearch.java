@@ -0,0 +1,62 @@
+package org.musicbrainz.search.servlet;
+
+import java.util.concurrent.Callable;
+
+// Used by doAllSearch(), only finds the top hits so they can be merged with the other indexes before loading
+class CallableTopHitsSearch implements Callable<TopHits>
+{
+
+    private final SearchServer searchServer;
+    private final String query;
+    private final Integer noOfHits;
+    private final RequestTimer timer;
+
+    // Guarded by this, once abandoned the search releases the top hits itself rather than returning them
+    private boolean isAbandoned = false;
+    private boolean isReturned = false;
+
+    public CallableTopHitsSearch(SearchServer searchServer, String query, Integer noOfHits, RequestTimer timer)
+    {
+        this.searchServer = searchServer;
+        this.query = query;
+        this.noOfHits = noOfHits;
+        this.timer = timer;
+    }
+
+    @Override
+    public TopHits call() throws Exception
+    {
+        RequestTimer.attach(timer);
+        try
+        {
+            TopHits topHits = searchServer.searchTopHits(query, noOfHits);
+            synchronized (this)
+            {
+                if (!isAbandoned)
+                {
+                    isReturned = true;
+                    return topHits;
+                }
+            }
+            topHits.release();
+            return null;
+        }
+        finally
+        {
+            RequestTimer.detach();
+        }
+    }
+
+    /**
+     * The caller no longer wants the top hits, if they have not been returned yet the search releases them itself
+     * when it finishes so the caller can cancel it rather than wait for it
+     *
+     * @return true if the top hits have already been returned, so the caller must release them
+     */
+    synchronized boolean abandon()
+    {
+        isAbandoned = true;
+        return isReturned;
+    }
+
+}
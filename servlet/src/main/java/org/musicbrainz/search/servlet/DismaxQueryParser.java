@@ -96,6 +96,10 @@ public class DismaxQueryParser {
         dqp.addAlias(field, dismaxAlias);
     }
 
+    public org.apache.lucene.analysis.Analyzer getAnalyzer() {
+        return dqp.getAnalyzer();
+    }
+
     static class DisjunctionQueryParser extends QueryParser {
 
         //Only make search terms that are this length fuzzy searchable and only match to terms that are also this length
@@ -38,6 +38,9 @@ public class DismaxSearcher {
 
     private DismaxAlias dismaxAlias;
 
+    // Each thread keeps its parser, with the alias already added, for parsing further queries
+    private final ThreadLocal<DismaxQueryParser> parsers = new ThreadLocal<DismaxQueryParser>();
+
     public DismaxSearcher(DismaxAlias dismaxAlias)
     {
         this.dismaxAlias = dismaxAlias;
@@ -46,9 +49,13 @@ public class DismaxSearcher {
     public Query parseQuery(String query, Analyzer analyzer) throws ParseException
     {
         query= QueryParser.escape(query);
-        DismaxQueryParser queryParser = getParser(analyzer);
-
-        queryParser.addAlias(DismaxQueryParser.IMPOSSIBLE_FIELD_NAME, dismaxAlias);
+        DismaxQueryParser queryParser = parsers.get();
+        if (queryParser == null || queryParser.getAnalyzer() != analyzer)
+        {
+            queryParser = getParser(analyzer);
+            queryParser.addAlias(DismaxQueryParser.IMPOSSIBLE_FIELD_NAME, dismaxAlias);
+            parsers.set(queryParser);
+        }
         Query q = queryParser.parse(query);
         return q;
     }
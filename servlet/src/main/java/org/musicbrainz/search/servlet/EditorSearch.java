@@ -25,6 +25,7 @@ public class EditorSearch extends AbstractSearchServer {
     resultsWriter = new EditorWriter();
     setupDefaultFields();
     analyzer = DatabaseIndex.getAnalyzer(EditorIndexField.class);
+    setStoredFields(EditorIndexField.EDITOR_STORE);
   }
 
   public EditorSearch(SearcherManager searcherManager) throws Exception {
@@ -34,7 +34,14 @@ public enum ErrorMessage {
     NO_MATCHES ("zero search hits"),    //Formatting as is because depended on by mb_server
     UNKNOWN_COUNT_TYPE ("Count parameter {0} not valid, should be a type "),
     UNABLE_TO_PARSE_SEARCH_SLASHES_ARE_REGEXP ("Unable to parse search, forward slash is used for regex unless escaped:{0}"),
-    REQUEST_TIMEOUT_EXCEEDED ("Search request timed out -- please wait a moment and try again")
+    REQUEST_TIMEOUT_EXCEEDED ("Search request timed out -- please wait a moment and try again"),
+    SERVER_BUSY ("Server is too busy to handle the search -- please wait a moment and try again"),
+    INVALID_CURSOR ("Invalid cursor:{0}"),
+    CURSOR_EXPIRED ("Cursor is no longer valid because the index has been updated -- please search again"),
+    CURSOR_NOT_SUPPORTED_FOR_TYPE ("Cursor is not supported for resource type {0}"),
+    NO_BATCH_SEARCHES ("No searches supplied, the body should contain one search per line"),
+    TOO_MANY_BATCH_SEARCHES ("Too many searches, a batch can contain at most {0} searches"),
+    INVALID_BATCH_SEARCH ("Invalid search on line {0}:{1}")
     ;
 
     String msg;
@@ -26,6 +26,7 @@ public class EventSearch extends AbstractSearchServer {
     resultsWriter = new EventWriter();
     setupDefaultFields();
     analyzer = DatabaseIndex.getAnalyzer(EventIndexField.class);
+    setStoredFields(EventIndexField.EVENT_STORE);
   }
 
   public EventSearch(SearcherManager searcherManager) throws Exception {
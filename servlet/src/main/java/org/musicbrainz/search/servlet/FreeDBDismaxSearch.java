@@ -50,7 +50,7 @@ public class FreeDBDismaxSearch extends AbstractDismaxSearchServer {
   {
     //Treat all as text
     query=QueryParser.escape(query);
-    QueryParser parser = realSearchServer.getParser();
+    QueryParser parser = realSearchServer.getThreadLocalParser();
     return parser.parse(query);
   }
 
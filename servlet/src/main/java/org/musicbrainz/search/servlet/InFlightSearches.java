@@ -0,0 +1,201 @@
+package org.musicbrainz.search.servlet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Searches currently being done, so that when the same search is requested again before the first has finished the
+ * duplicate requests wait for the first and are sent its rendered results instead of all doing the same search.
+ *
+ * Unlike the results cache this also works for the burst of identical requests that arrive before any results have
+ * been cached. The first request for a search becomes its leader and must always complete the search, passing the
+ * rendered results or null if they can't be shared (e.g. the search failed or ran out of time). Requests that join a
+ * search only wait for so long, if the leader hasn't finished in time or its results can't be shared they do the
+ * search themselves.
+ */
+public class InFlightSearches
+{
+    private final long maxWaitInMs;
+    private final int maxSharedSizeInBytes;
+
+    private final ConcurrentMap<String, Search> searches = new ConcurrentHashMap<String, Search>();
+
+    private final AtomicLong leaderCount    = new AtomicLong(0);
+    private final AtomicLong coalescedCount = new AtomicLong(0);
+    private final AtomicLong timeoutCount   = new AtomicLong(0);
+    private final AtomicLong unsharedCount  = new AtomicLong(0);
+
+    /**
+     * A search being done by its leader, as seen by the leader or by a request that joined it
+     */
+    public static class Search
+    {
+        private final String key;
+        private final Search leader;
+        private final CountDownLatch done;
+        private volatile byte[] results;
+
+        private Search(String key)
+        {
+            this.key = key;
+            this.leader = this;
+            this.done = new CountDownLatch(1);
+        }
+
+        private Search(Search leader)
+        {
+            this.key = leader.key;
+            this.leader = leader;
+            this.done = leader.done;
+        }
+
+        /**
+         * @return true if this request has to do the search, false if it joined a search already being done
+         */
+        public boolean isLeader()
+        {
+            return leader == this;
+        }
+    }
+
+    /**
+     * @param maxWaitInMs max time a request waits for the results of the same search being done by another request
+     * @param maxSharedSizeInBytes results larger than this are not shared
+     */
+    public InFlightSearches(long maxWaitInMs, int maxSharedSizeInBytes)
+    {
+        this.maxWaitInMs = maxWaitInMs;
+        this.maxSharedSizeInBytes = maxSharedSizeInBytes;
+    }
+
+    /**
+     * Join the search if already being done, otherwise start it with this request as the leader
+     *
+     * @param key identifies the output of the search, as created by ResultsCache.createKey() plus the resource type
+     * @return
+     */
+    public Search join(String key)
+    {
+        Search leader = searches.get(key);
+        if (leader == null)
+        {
+            Search search = new Search(key);
+            leader = searches.putIfAbsent(key, search);
+            if (leader == null)
+            {
+                leaderCount.incrementAndGet();
+                return search;
+            }
+        }
+        return new Search(leader);
+    }
+
+    /**
+     * Wait for the leader of the search to complete it
+     *
+     * @param search search joined
+     * @return rendered results of the leader, or null if they were not available in time or could not be shared
+     * @throws InterruptedException
+     */
+    public byte[] await(Search search) throws InterruptedException
+    {
+        if (search.isLeader())
+        {
+            throw new IllegalArgumentException("Leader of search cannot wait for itself");
+        }
+
+        if (!search.done.await(maxWaitInMs, TimeUnit.MILLISECONDS))
+        {
+            timeoutCount.incrementAndGet();
+            return null;
+        }
+
+        byte[] results = search.leader.results;
+        if (results == null)
+        {
+            unsharedCount.incrementAndGet();
+            return null;
+        }
+        coalescedCount.incrementAndGet();
+        return results;
+    }
+
+    /**
+     * Complete the search, releasing the requests waiting for it. Must always be called by the leader once it has
+     * finished, whether or not the search succeeded.
+     *
+     * @param search search led by this request
+     * @param results rendered results to share, or null if they can't be shared
+     */
+    public void complete(Search search, byte[] results)
+    {
+        if (!search.isLeader())
+        {
+            return;
+        }
+
+        search.results = results != null && results.length <= maxSharedSizeInBytes ? results : null;
+        searches.remove(search.key, search);
+        search.done.countDown();
+    }
+
+    public long getMaxWaitInMs()
+    {
+        return maxWaitInMs;
+    }
+
+    public int getMaxSharedSizeInBytes()
+    {
+        return maxSharedSizeInBytes;
+    }
+
+    /**
+     * @return number of searches currently being done
+     */
+    public int getNoOfSearches()
+    {
+        return searches.size();
+    }
+
+    /**
+     * @return number of searches done by a leader
+     */
+    public long getLeaderCount()
+    {
+        return leaderCount.get();
+    }
+
+    /**
+     * @return number of requests sent the results of a search done by another request
+     */
+    public long getCoalescedCount()
+    {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return number of requests that gave up waiting for another request to finish the same search
+     */
+    public long getTimeoutCount()
+    {
+        return timeoutCount.get();
+    }
+
+    /**
+     * @return number of requests that waited for a search whose results could not be shared
+     */
+    public long getUnsharedCount()
+    {
+        return unsharedCount.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "inflight=" + getNoOfSearches() + " leaders=" + getLeaderCount() + " coalesced=" + getCoalescedCount()
+                + " timeouts=" + getTimeoutCount() + " unshared=" + getUnsharedCount();
+    }
+}
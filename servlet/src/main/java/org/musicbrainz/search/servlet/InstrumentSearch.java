@@ -25,6 +25,7 @@ public class InstrumentSearch extends AbstractSearchServer {
     resultsWriter = new InstrumentWriter();
     setupDefaultFields();
     analyzer = DatabaseIndex.getAnalyzer(InstrumentIndexField.class);
+    setStoredFields(InstrumentIndexField.INSTRUMENT_STORE);
   }
 
   public InstrumentSearch(SearcherManager searcherManager) throws Exception {
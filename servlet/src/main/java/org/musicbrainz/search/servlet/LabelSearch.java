@@ -28,6 +28,7 @@ public class LabelSearch extends AbstractSearchServer {
     mmd1Writer = new LabelMmd1XmlWriter();
     setupDefaultFields();
     analyzer = DatabaseIndex.getAnalyzer(LabelIndexField.class);
+    setStoredFields(LabelIndexField.LABEL_STORE);
   }
 
   public LabelSearch(SearcherManager searcherManager) throws Exception {
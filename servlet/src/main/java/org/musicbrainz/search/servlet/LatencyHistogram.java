@@ -0,0 +1,104 @@
+package org.musicbrainz.search.servlet;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies, recorded in microseconds.
+ *
+ * Each power of two range of latencies is split into eight buckets, so a percentile is accurate to within about one
+ * eighth of its value however large it is. Recording only increments counters, so it never blocks and costs the same
+ * however many latencies have been recorded.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Enough buckets for latencies up to 2^40 microseconds
+    private static final int NO_OF_BUCKETS = SUB_BUCKETS + (40 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NO_OF_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+
+    /**
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos)
+    {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+        buckets.incrementAndGet(Math.min(NO_OF_BUCKETS - 1, getBucket(micros)));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+    }
+
+    static int getBucket(long micros)
+    {
+        if (micros < SUB_BUCKETS)
+        {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param bucket
+     * @return smallest latency in microseconds that falls into the bucket
+     */
+    static long getLowestMicros(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket)) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    /**
+     * @return mean latency in milliseconds
+     */
+    public double getMeanMillis()
+    {
+        long n = count.get();
+        return n == 0 ? 0 : totalMicros.get() / (n * 1000.0);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return latency in milliseconds that the percentile of latencies are less than or equal to, 0 if none recorded
+     */
+    public double getPercentileMillis(double percentile)
+    {
+        long n = count.get();
+        if (n == 0)
+        {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < NO_OF_BUCKETS; i++)
+        {
+            seen += buckets.get(i);
+            if (seen >= rank)
+            {
+                // Middle of the bucket
+                long lowest = getLowestMicros(i);
+                long highest = i + 1 < NO_OF_BUCKETS ? getLowestMicros(i + 1) : lowest;
+                return (lowest + highest) / 2000.0;
+            }
+        }
+        return getLowestMicros(NO_OF_BUCKETS - 1) / 1000.0;
+    }
+}
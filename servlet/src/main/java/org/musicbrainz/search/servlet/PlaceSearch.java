@@ -27,6 +27,7 @@ public class PlaceSearch extends AbstractSearchServer {
     resultsWriter = new PlaceWriter();
     setupDefaultFields();
     analyzer = DatabaseIndex.getAnalyzer(PlaceIndexField.class);
+    setStoredFields(PlaceIndexField.PLACE_STORE);
   }
 
   public PlaceSearch(SearcherManager searcherManager) throws Exception {
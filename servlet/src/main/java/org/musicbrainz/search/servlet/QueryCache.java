@@ -0,0 +1,99 @@
+package org.musicbrainz.search.servlet;
+
+import org.apache.lucene.search.Query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of parsed queries for one search server, so that popular queries don't have to be analyzed and parsed again
+ * for every request.
+ *
+ * A parsed query only depends on the query string and the analyzer, not on the index, so unlike the results cache it
+ * does not have to be cleared when the index is reloaded. Cached queries are shared by all requests, so they must not
+ * be modified once parsed, searching rewrites them into new queries rather than changing them.
+ */
+public class QueryCache
+{
+    private final int maxEntries;
+    private final LinkedHashMap<String, Query> entries;
+
+    private final AtomicLong hitCount  = new AtomicLong(0);
+    private final AtomicLong missCount = new AtomicLong(0);
+
+    /**
+     * @param maxEntries max number of queries held, the least recently used is removed when full
+     */
+    public QueryCache(final int maxEntries)
+    {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, Query>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Query> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param query query string as given by the user
+     * @return parsed query, or null if not cached
+     */
+    public Query get(String query)
+    {
+        Query parsed;
+        synchronized (this)
+        {
+            parsed = entries.get(query);
+        }
+
+        if (parsed == null)
+        {
+            missCount.incrementAndGet();
+        }
+        else
+        {
+            hitCount.incrementAndGet();
+        }
+        return parsed;
+    }
+
+    /**
+     * @param query  query string as given by the user
+     * @param parsed
+     */
+    public synchronized void put(String query, Query parsed)
+    {
+        entries.put(query, parsed);
+    }
+
+    public synchronized int getNoOfEntries()
+    {
+        return entries.size();
+    }
+
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "entries=" + getNoOfEntries() + "/" + getMaxEntries()
+                + " hits=" + getHitCount() + " misses=" + getMissCount();
+    }
+}
@@ -2,16 +2,11 @@ package org.musicbrainz.search.servlet;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.SocketException;
-import java.rmi.UnknownHostException;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.net.InetSocketAddress;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 public class RateLimiterChecker {
 
@@ -30,27 +25,29 @@ public class RateLimiterChecker {
     
     private static String MSG_HEADER
             = "%s %s %s";
-    private static Pattern pe;
+    private static final Pattern pe = Pattern.compile("^(?:[0-9]{1,3}\\.){3}[0-9]{1,3}$");
     private static InetAddress  rateLimiterHost;
     private static Integer      rateLimiterPort;
     private static boolean      rateLimiterConfigured =false;
+    private static volatile RateLimiterClient rateLimiterClient;
+    private static volatile TokenBucketRateLimiter tokenBucketRateLimiter;
     private static final String OVER_LIMIT_SEARCH_IP = " over_limit search ip=";
-    private static AtomicInteger count = new AtomicInteger(0);
 
+    // If the rate limiter doesn't reply within this time the query is allowed
+    public static final long DEFAULT_TIMEOUT_IN_MS = 100;
 
+    public static final int DEFAULT_MAX_IP_ADDRESSES = 100000;
 
     private static final RateLimiterResponse ALWAYS_TRUE = new RateLimiterResponse();
-    private static final int MAX_SIZE_OFRESPONSE_PACKET = 100;
 
     public static void init(String host, String port)
     {
-        try {
-            pe = Pattern.compile("^(?:[0-9]{1,3}\\.){3}[0-9]{1,3}$");
-        }
-        catch(PatternSyntaxException pe) {
-                    log.log(Level.SEVERE, "Unable to compile pattern:"+pe.getMessage(),pe);
-            return;
-        }
+        init(host, port, null);
+    }
+
+    public static synchronized void init(String host, String port, String timeout)
+    {
+        close();
 
         try {
             rateLimiterHost=InetAddress.getByName(host);
@@ -68,9 +65,84 @@ public class RateLimiterChecker {
             return;
         }
 
+        long timeoutInMs = DEFAULT_TIMEOUT_IN_MS;
+        if(timeout!=null && timeout.length()>0) {
+            try {
+                timeoutInMs=Long.parseLong(timeout);
+            }
+            catch(NumberFormatException ne) {
+                log.log(Level.WARNING, "Invalid rate limiter timeout, using default:"+ne.getMessage(),ne);
+            }
+        }
+
+        try {
+            rateLimiterClient = new RateLimiterClient(new InetSocketAddress(rateLimiterHost, rateLimiterPort), timeoutInMs);
+        }
+        catch(IOException ioe) {
+            log.log(Level.SEVERE, "Unable to init rate limiter:"+ioe.getMessage(),ioe);
+            return;
+        }
+
         rateLimiterConfigured =true;
     }
 
+    /**
+     * Init in process rate limiter, used instead of the rate limiter server
+     *
+     * @param limit max number of requests an ip address can make in period
+     * @param period period in seconds
+     * @param maxIpAddresses max number of ip addresses to keep track of, if not set uses the default
+     */
+    public static synchronized void initInProcess(String limit, String period, String maxIpAddresses)
+    {
+        close();
+
+        try {
+            int max = DEFAULT_MAX_IP_ADDRESSES;
+            if(maxIpAddresses!=null && maxIpAddresses.length()>0) {
+                max=Integer.parseInt(maxIpAddresses);
+            }
+            tokenBucketRateLimiter = new TokenBucketRateLimiter(Integer.parseInt(limit), Integer.parseInt(period), max);
+        }
+        catch(IllegalArgumentException iae) {
+            log.log(Level.SEVERE, "Unable to init in process rate limiter:"+iae.getMessage(),iae);
+            return;
+        }
+
+        rateLimiterConfigured =true;
+    }
+
+    /**
+     * Stop using the rate limiter
+     */
+    public static synchronized void close()
+    {
+        rateLimiterConfigured =false;
+        tokenBucketRateLimiter=null;
+        if(rateLimiterClient!=null) {
+            rateLimiterClient.close();
+            rateLimiterClient=null;
+        }
+    }
+
+    /**
+     * @return client used to call rate limiter, or null if not configured
+     */
+    public static RateLimiterClient getRateLimiterClient()
+    {
+        return rateLimiterClient;
+    }
+
+    /**
+     * @return max number of requests a weighted request can count as and still be allowed, the limit of the in process
+     * rate limiter or Integer.MAX_VALUE if the rate limiter server is used because its limit is not known
+     */
+    public static int getMaxWeight()
+    {
+        TokenBucketRateLimiter inProcess = tokenBucketRateLimiter;
+        return inProcess != null ? inProcess.getLimit() : Integer.MAX_VALUE;
+    }
+
     /**
      * Is it a valid dot-quad IP address
      *
@@ -93,60 +165,33 @@ public class RateLimiterChecker {
     }
 
     /**
-     * Call Rate Limiter to see if query is allowed
+     * Call Rate Limiter to see if query is allowed, if the rate limiter cannot be reached or doesn't reply in time
+     * the query is allowed
+     *
+     * The rate limiter server has no notion of weight, so a weighted request is sent to it once for each request it
+     * counts as, all at once
      *
      * @param remoteIpAddress
+     * @param weight number of requests the request counts as
      * @return
      */
-    private static RateLimiterResponse validateAgainstRateLimiter(String remoteIpAddress)
+    private static RateLimiterResponse validateAgainstRateLimiter(String remoteIpAddress, int weight)
     {
-        DatagramSocket ds = null;
-        try {
-
-            int requestId = count.incrementAndGet();
-            String requestIdAsString = String.valueOf(requestId);
-
-            //Send Request
-            String rateLimiter=requestId+OVER_LIMIT_SEARCH_IP+remoteIpAddress;
-            byte[] msg = rateLimiter.getBytes();
-            ds = new DatagramSocket();
-            DatagramPacket dp = new DatagramPacket(msg,msg.length,rateLimiterHost,rateLimiterPort.intValue());
-            ds.send(dp);
-
-            //Get Response
-            byte[] receiveData = new byte[MAX_SIZE_OFRESPONSE_PACKET];
-            DatagramPacket dpReceive = new DatagramPacket(receiveData, receiveData.length);
-            ds.receive(dpReceive);
-
-            //Parse Response
-            String result = new String(dpReceive.getData(), dpReceive.getOffset(), dpReceive.getLength());
-            if(result.startsWith(requestIdAsString)) {
-                RateLimiterResponse rlr = new RateLimiterResponse(result.substring(requestIdAsString.length() + 1));
-                return rlr;
-            }
-            //RequestId not matching so just let through
-            else {
-                return ALWAYS_TRUE;
-            }
+        TokenBucketRateLimiter inProcess = tokenBucketRateLimiter;
+        if(inProcess!=null) {
+            return new RateLimiterResponse(inProcess.checkWeighted(remoteIpAddress, weight));
         }
-        catch(UnknownHostException uhe) {
-            log.log(Level.SEVERE, "ValidateAgainstRateLimiter:"+uhe.getMessage(),uhe);
-        }
-        catch(SocketException se) {
-            log.log(Level.SEVERE, "ValidateAgainstRateLimiter:"+se.getMessage(),se);
 
+        RateLimiterClient client = rateLimiterClient;
+        if(client==null) {
+            return ALWAYS_TRUE;
         }
-        catch(IOException ioe) {
-            log.log(Level.SEVERE, "ValidateAgainstRateLimiter:"+ioe.getMessage(),ioe);
-        }
-        finally
-        {
-            if(ds!=null && !ds.isClosed())
-            {
-                ds.close();
-            }
+
+        String result = client.sendWeighted(OVER_LIMIT_SEARCH_IP+remoteIpAddress, weight);
+        if(result==null) {
+            return ALWAYS_TRUE;
         }
-        return ALWAYS_TRUE;
+        return new RateLimiterResponse(result);
     }
 
     /**
@@ -155,6 +200,17 @@ public class RateLimiterChecker {
      * @return
      */
     public static RateLimiterResponse checkRateLimiter(HttpServletRequest request)
+    {
+        return checkRateLimiter(request, 1);
+    }
+
+    /**
+     *
+     * @param request
+     * @param weight number of requests the request counts as, e.g. the number of searches in a batch of searches
+     * @return
+     */
+    public static RateLimiterResponse checkRateLimiter(HttpServletRequest request, int weight)
     {
         if(!isRateLimiterConfigured())
         {
@@ -173,7 +229,7 @@ public class RateLimiterChecker {
         {
             return ALWAYS_TRUE;
         }
-        return validateAgainstRateLimiter(remoteIpAddress);
+        return validateAgainstRateLimiter(remoteIpAddress, weight);
     }
 
     /**
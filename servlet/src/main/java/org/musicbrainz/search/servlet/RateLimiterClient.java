@@ -0,0 +1,282 @@
+package org.musicbrainz.search.servlet;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Client for the rate limiter server shared by all request threads.
+ *
+ * Requests are sent over a single DatagramChannel and replies are read by one receiving thread, which hands each
+ * reply to the request thread waiting for it by matching the request id the reply starts with. A request thread waits
+ * no longer than the timeout for its reply, so a lost packet or an unresponsive rate limiter cannot hold up requests.
+ */
+public class RateLimiterClient
+{
+    private static final Logger log = Logger.getLogger(RateLimiterClient.class.getName());
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final int MAX_SIZE_OF_RESPONSE_PACKET = 100;
+
+    // Reply of the rate limiter when the request is not over the limit
+    private static final String REPLY_ALLOWED = "ok N";
+
+    private final DatagramChannel channel;
+    private final long timeoutInMs;
+    private final Thread receiver;
+
+    private final AtomicInteger requestId = new AtomicInteger(0);
+    private final ConcurrentMap<Integer, PendingRequest> pendingRequests = new ConcurrentHashMap<Integer, PendingRequest>();
+
+    private final AtomicLong requestCount   = new AtomicLong(0);
+    private final AtomicLong timeoutCount   = new AtomicLong(0);
+    private final AtomicLong lateReplyCount = new AtomicLong(0);
+    private final AtomicLong errorCount     = new AtomicLong(0);
+
+    /**
+     * Waits for the reply to a single request
+     */
+    private static class PendingRequest
+    {
+        private final CountDownLatch replied = new CountDownLatch(1);
+        private volatile String reply;
+    }
+
+    /**
+     * Open the channel to the rate limiter and start receiving replies
+     *
+     * @param rateLimiterAddress
+     * @param timeoutInMs max time to wait for a reply
+     * @throws IOException
+     */
+    public RateLimiterClient(InetSocketAddress rateLimiterAddress, long timeoutInMs) throws IOException
+    {
+        this.timeoutInMs = timeoutInMs;
+        this.channel = DatagramChannel.open();
+        this.channel.connect(rateLimiterAddress);
+
+        this.receiver = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                receiveReplies();
+            }
+        }, "RateLimiterClient-" + rateLimiterAddress);
+        this.receiver.setDaemon(true);
+        this.receiver.start();
+    }
+
+    /**
+     * Send request to the rate limiter and wait for the reply
+     *
+     * @param request request, the request id is added to the front of it
+     * @return the reply with the request id removed, or null if no reply was received within the timeout or the
+     * request could not be sent
+     */
+    public String send(String request)
+    {
+        requestCount.incrementAndGet();
+        Integer id = requestId.incrementAndGet();
+        PendingRequest pendingRequest = new PendingRequest();
+        pendingRequests.put(id, pendingRequest);
+        try
+        {
+            channel.write(ByteBuffer.wrap((id + request).getBytes(CHARSET)));
+            if (pendingRequest.replied.await(timeoutInMs, TimeUnit.MILLISECONDS))
+            {
+                return pendingRequest.reply;
+            }
+            timeoutCount.incrementAndGet();
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException ioe)
+        {
+            errorCount.incrementAndGet();
+            log.log(Level.WARNING, "Unable to send to rate limiter:" + ioe.getMessage(), ioe);
+        }
+        finally
+        {
+            pendingRequests.remove(id);
+        }
+        return null;
+    }
+
+    /**
+     * Send the request once for each of the requests a weighted request counts as, because the rate limiter has no
+     * notion of weight. All are sent at once and share one timeout, rather than waiting for each reply in turn.
+     *
+     * @param request request, the request id is added to the front of each one sent
+     * @param weight number of requests the request counts as
+     * @return the first reply saying the request is over the limit, otherwise the last reply received, or null if no
+     * reply was received within the timeout
+     */
+    public String sendWeighted(String request, int weight)
+    {
+        if (weight <= 1)
+        {
+            return send(request);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMs);
+        Map<Integer, PendingRequest> sent = new LinkedHashMap<Integer, PendingRequest>();
+        String lastReply = null;
+        try
+        {
+            for (int i = 0; i < weight; i++)
+            {
+                requestCount.incrementAndGet();
+                Integer id = requestId.incrementAndGet();
+                PendingRequest pendingRequest = new PendingRequest();
+                pendingRequests.put(id, pendingRequest);
+                sent.put(id, pendingRequest);
+                channel.write(ByteBuffer.wrap((id + request).getBytes(CHARSET)));
+            }
+
+            for (PendingRequest pendingRequest : sent.values())
+            {
+                if (!pendingRequest.replied.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS))
+                {
+                    timeoutCount.incrementAndGet();
+                    continue;
+                }
+                lastReply = pendingRequest.reply;
+                if (!lastReply.startsWith(REPLY_ALLOWED))
+                {
+                    break;
+                }
+            }
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (IOException ioe)
+        {
+            errorCount.incrementAndGet();
+            log.log(Level.WARNING, "Unable to send to rate limiter:" + ioe.getMessage(), ioe);
+        }
+        finally
+        {
+            for (Integer id : sent.keySet())
+            {
+                pendingRequests.remove(id);
+            }
+        }
+        return lastReply;
+    }
+
+    /**
+     * Read replies until the channel is closed, passing each one to the request thread waiting for it
+     */
+    private void receiveReplies()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_SIZE_OF_RESPONSE_PACKET);
+        while (channel.isOpen())
+        {
+            try
+            {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                handleReply(CHARSET.decode(buffer).toString());
+            }
+            catch (ClosedChannelException cce)
+            {
+                break;
+            }
+            catch (IOException ioe)
+            {
+                // i.e ICMP port unreachable if the rate limiter is not running, the request will time out
+                errorCount.incrementAndGet();
+                log.log(Level.FINE, "Unable to receive from rate limiter:" + ioe.getMessage(), ioe);
+            }
+        }
+    }
+
+    /**
+     * Match reply of the form '<requestid> <reply>' to its request
+     *
+     * @param reply
+     */
+    private void handleReply(String reply)
+    {
+        int separator = reply.indexOf(' ');
+        PendingRequest pendingRequest = null;
+        if (separator > 0)
+        {
+            try
+            {
+                pendingRequest = pendingRequests.remove(Integer.valueOf(reply.substring(0, separator)));
+            }
+            catch (NumberFormatException nfe)
+            {
+                // Not a reply to any request
+            }
+        }
+
+        if (pendingRequest == null)
+        {
+            // Request has already timed out
+            lateReplyCount.incrementAndGet();
+            return;
+        }
+        pendingRequest.reply = reply.substring(separator + 1);
+        pendingRequest.replied.countDown();
+    }
+
+    /**
+     * Close the channel, which stops the receiving thread
+     */
+    public void close()
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException ioe)
+        {
+            log.log(Level.WARNING, "Unable to close rate limiter channel:" + ioe.getMessage(), ioe);
+        }
+    }
+
+    public long getTimeoutInMs()
+    {
+        return timeoutInMs;
+    }
+
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    public long getTimeoutCount()
+    {
+        return timeoutCount.get();
+    }
+
+    public long getLateReplyCount()
+    {
+        return lateReplyCount.get();
+    }
+
+    public long getErrorCount()
+    {
+        return errorCount.get();
+    }
+}
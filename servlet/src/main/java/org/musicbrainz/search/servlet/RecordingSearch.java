@@ -28,6 +28,7 @@ public class RecordingSearch extends AbstractSearchServer {
     mmd1Writer = new TrackMmd1XmlWriter();
     setupDefaultFields();
     analyzer = DatabaseIndex.getAnalyzer(RecordingIndexField.class);
+    setStoredFields(RecordingIndexField.RECORDING_STORE);
   }
 
   public RecordingSearch(SearcherManager searcherManager) throws Exception {
@@ -3,9 +3,10 @@ package org.musicbrainz.search.servlet;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
-import org.apache.lucene.search.TermRangeQuery;
 import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.NumericUtils;
 import org.musicbrainz.search.LuceneVersion;
@@ -80,11 +81,11 @@ return tq;
     }
 
     @Override
-    public Query newRangeQuery(String field,
-                               String part1,
-                               String part2,
-                               boolean startInclusive,
-                               boolean endInclusive)
+    protected Query getRangeQuery(String field,
+                                  String part1,
+                                  String part2,
+                                  boolean startInclusive,
+                                  boolean endInclusive) throws ParseException
     {
         if (
                 (field.equals(ReleaseIndexField.NUM_TRACKS.getName())) ||
@@ -94,16 +95,20 @@ return tq;
                 (field.equals(ReleaseIndexField.NUM_DISCIDS_MEDIUM.getName()))
             )
         {
-            BytesRefBuilder bytes1 = new BytesRefBuilder();
-            BytesRefBuilder bytes2 = new BytesRefBuilder();
-            NumericUtils.intToPrefixCoded(Integer.parseInt(part1), 0, bytes1);
-            NumericUtils.intToPrefixCoded(Integer.parseInt(part2), 0, bytes2);
-            part1 = bytes1.toBytesRef().utf8ToString();
-            part2 = bytes2.toBytesRef().utf8ToString();
+            try
+            {
+                return NumericRangeQuery.newIntRange(field,
+                        part1 == null ? null : Integer.valueOf(part1),
+                        part2 == null ? null : Integer.valueOf(part2),
+                        startInclusive, endInclusive);
+            }
+            catch (NumberFormatException nfe)
+            {
+                //The field only has numeric terms so any other range could never match
+                throw new ParseException("Range of " + field + " must be numeric: " + nfe.getMessage());
+            }
         }
-        TermRangeQuery query = (TermRangeQuery)
-                super.newRangeQuery(field, part1, part2, startInclusive, endInclusive);
-        return query;
+        return super.getRangeQuery(field, part1, part2, startInclusive, endInclusive);
 
     }
 }
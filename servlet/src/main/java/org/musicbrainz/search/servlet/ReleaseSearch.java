@@ -27,6 +27,7 @@ public class ReleaseSearch extends AbstractSearchServer {
     mmd1Writer = new ReleaseMmd1XmlWriter();
     setupDefaultFields();
     analyzer = DatabaseIndex.getAnalyzer(ReleaseIndexField.class);
+    setStoredFields(ReleaseIndexField.RELEASE_STORE);
   }
 
   public ReleaseSearch(SearcherManager searcherManager) throws Exception {
@@ -41,11 +41,16 @@ public enum RequestParameter {
     DISMAX("dismax"),
     EXPLAIN("explain"),
     PRETTY("pretty"),
+    CURSOR("cursor"),
+    READY("ready"),
     // For admin only
     INIT ("init"),
     RELOAD_INDEXES ("reload"),
     RATE("rate"),
     GC("gc"),
+    CACHE_STATS("cachestats"),
+    SEARCH_ALL_STATS("searchallstats"),
+    METRICS("metrics"),
     ;
     
     private String name;
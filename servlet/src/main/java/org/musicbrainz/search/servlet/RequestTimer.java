@@ -0,0 +1,81 @@
+package org.musicbrainz.search.servlet;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time spent by a request in each stage of searching and writing the results.
+ *
+ * The timer is attached to the threads working on the request, so the code for each stage can record the time it
+ * took without the timer having to be passed down to it. When a request searches more than one index in parallel the
+ * times of each search are added together.
+ */
+public class RequestTimer
+{
+    public enum Stage
+    {
+        PARSE,
+        SEARCH,
+        LOAD,
+        DESERIALIZE,
+        SERIALIZE,
+        TOTAL,
+    }
+
+    private static final ThreadLocal<RequestTimer> current = new ThreadLocal<RequestTimer>();
+
+    private final AtomicLongArray nanos = new AtomicLongArray(Stage.values().length);
+
+    /**
+     * Attach the timer to the current thread, until detached times recorded by the thread are added to it
+     *
+     * @param timer
+     */
+    public static void attach(RequestTimer timer)
+    {
+        current.set(timer);
+    }
+
+    public static void detach()
+    {
+        current.remove();
+    }
+
+    /**
+     * Add the time since start to the stage of the timer attached to the current thread, if any
+     *
+     * @param stage
+     * @param start value of System.nanoTime() when the stage started
+     */
+    public static void record(Stage stage, long start)
+    {
+        RequestTimer timer = current.get();
+        if (timer != null)
+        {
+            timer.add(stage, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param stage
+     * @return time recorded so far for the stage by the timer attached to the current thread, 0 if none attached
+     */
+    public static long getCurrent(Stage stage)
+    {
+        RequestTimer timer = current.get();
+        return timer != null ? timer.get(stage) : 0;
+    }
+
+    public void add(Stage stage, long nanos)
+    {
+        this.nanos.addAndGet(stage.ordinal(), nanos);
+    }
+
+    /**
+     * @param stage
+     * @return time in nanoseconds, 0 if the request did not go through the stage
+     */
+    public long get(Stage stage)
+    {
+        return nanos.get(stage.ordinal());
+    }
+}
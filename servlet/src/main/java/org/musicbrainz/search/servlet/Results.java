@@ -40,6 +40,8 @@ public class Results implements Comparable<Results>{
     private int offset;
     private int totalHits;
     private ResourceType resourceType;
+    private SearchCursor nextCursor;
+    private boolean isPartial;
 
     public List<Result> results;
 
@@ -110,4 +112,30 @@ public class Results implements Comparable<Results>{
     {
         this.resourceType = resourceType;
     }
+
+    /**
+     * @return cursor for the next page of results, or null if there are no more results
+     */
+    public SearchCursor getNextCursor()
+    {
+        return nextCursor;
+    }
+
+    public void setNextCursor(SearchCursor nextCursor)
+    {
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return true if the search ran out of time, so these are only the best of the hits found before it did
+     */
+    public boolean isPartial()
+    {
+        return isPartial;
+    }
+
+    public void setPartial(boolean isPartial)
+    {
+        this.isPartial = isPartial;
+    }
 }
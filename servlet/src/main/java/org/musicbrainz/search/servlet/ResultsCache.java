@@ -0,0 +1,265 @@
+package org.musicbrainz.search.servlet;
+
+import org.apache.lucene.search.ReferenceManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of rendered search results for one index, so that repeated searches don't have to be searched, loaded and
+ * serialized again.
+ *
+ * The size of the cache is limited by the number of bytes held rather than the number of entries, removing the least
+ * recently used entries when full. Because cached results are only valid for the searcher they came from the cache is
+ * cleared whenever the SearcherManager it has been added to as a listener installs a new searcher.
+ */
+public class ResultsCache implements ReferenceManager.RefreshListener
+{
+    // Approximate memory used by an entry in addition to its key and value
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final long maxSizeInBytes;
+    private final int maxEntrySizeInBytes;
+
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    private long sizeInBytes;
+    private long generation;
+
+    private final AtomicLong hitCount      = new AtomicLong(0);
+    private final AtomicLong missCount     = new AtomicLong(0);
+    private final AtomicLong evictionCount = new AtomicLong(0);
+
+    /**
+     * @param maxSizeInBytes max memory used by cache, no single result is cached if larger than 1/64 of this
+     */
+    public ResultsCache(long maxSizeInBytes)
+    {
+        this.maxSizeInBytes = maxSizeInBytes;
+        this.maxEntrySizeInBytes = (int) Math.min(Integer.MAX_VALUE, maxSizeInBytes / 64);
+    }
+
+    /**
+     * Create key identifying the output of a search
+     *
+     * @param query query with whitespace normalized
+     * @param isDismax
+     * @param offset
+     * @param limit
+     * @param format
+     * @param version
+     * @param isPretty
+     * @param lastUpdated last updated date of index, because it is included in output
+     * @return
+     */
+    public static String createKey(String query, boolean isDismax, int offset, int limit, String format, String version,
+                                   boolean isPretty, Date lastUpdated)
+    {
+        StringBuilder sb = new StringBuilder(query.length() + 48);
+        sb.append(isDismax ? 'd' : 'n').append(isPretty ? 'p' : 'c');
+        sb.append(offset).append(':').append(limit).append(':');
+        sb.append(format).append(':').append(version).append(':');
+        sb.append(lastUpdated != null ? lastUpdated.getTime() : 0).append(':');
+        sb.append(query.trim().replaceAll("\\s+", " "));
+        return sb.toString();
+    }
+
+    /**
+     * @param key
+     * @return rendered results, or null if not cached
+     */
+    public byte[] get(String key)
+    {
+        byte[] value;
+        synchronized (this)
+        {
+            value = entries.get(key);
+        }
+
+        if (value == null)
+        {
+            missCount.incrementAndGet();
+        }
+        else
+        {
+            hitCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Generation of the cache, the cache moves to the next generation every time it is cleared
+     *
+     * @return
+     */
+    public synchronized long getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Add results to the cache, unless the cache has been cleared since the search was started so the results may have
+     * come from a searcher that is no longer current.
+     *
+     * @param key
+     * @param value rendered results
+     * @param generation generation of the cache when the search was started
+     */
+    public synchronized void put(String key, byte[] value, long generation)
+    {
+        if (value == null || value.length > maxEntrySizeInBytes || generation != this.generation)
+        {
+            return;
+        }
+
+        byte[] previous = entries.put(key, value);
+        if (previous != null)
+        {
+            sizeInBytes -= sizeOf(key, previous);
+        }
+        sizeInBytes += sizeOf(key, value);
+
+        Iterator<Map.Entry<String, byte[]>> i = entries.entrySet().iterator();
+        while (sizeInBytes > maxSizeInBytes && i.hasNext())
+        {
+            Map.Entry<String, byte[]> eldest = i.next();
+            sizeInBytes -= sizeOf(eldest.getKey(), eldest.getValue());
+            i.remove();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private static long sizeOf(String key, byte[] value)
+    {
+        return ENTRY_OVERHEAD + key.length() * 2 + value.length;
+    }
+
+    /**
+     * Remove all entries
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+        sizeInBytes = 0;
+        generation++;
+    }
+
+    @Override
+    public void beforeRefresh() throws IOException
+    {
+    }
+
+    @Override
+    public void afterRefresh(boolean didRefresh) throws IOException
+    {
+        if (didRefresh)
+        {
+            clear();
+        }
+    }
+
+    /**
+     * Wrap output stream so that the results written to it are also recorded for adding to the cache
+     *
+     * @param out
+     * @return
+     */
+    public Recorder newRecorder(OutputStream out)
+    {
+        return new Recorder(out, maxEntrySizeInBytes);
+    }
+
+    /**
+     * Records what is written to the output stream, unless too large to be cached
+     */
+    public static class Recorder extends FilterOutputStream
+    {
+        private final int maxSize;
+        private ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+
+        Recorder(OutputStream out, int maxSize)
+        {
+            super(out);
+            this.maxSize = maxSize;
+        }
+
+        private void record(byte[] b, int off, int len)
+        {
+            if (recorded == null)
+            {
+                return;
+            }
+            if (recorded.size() + len > maxSize)
+            {
+                recorded = null;
+                return;
+            }
+            recorded.write(b, off, len);
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            record(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            record(b, off, len);
+        }
+
+        /**
+         * @return what has been written, or null if too large to be cached
+         */
+        public byte[] getBytes()
+        {
+            return recorded != null ? recorded.toByteArray() : null;
+        }
+    }
+
+    public synchronized int getNoOfEntries()
+    {
+        return entries.size();
+    }
+
+    public synchronized long getSizeInBytes()
+    {
+        return sizeInBytes;
+    }
+
+    public long getMaxSizeInBytes()
+    {
+        return maxSizeInBytes;
+    }
+
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    public long getEvictionCount()
+    {
+        return evictionCount.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "entries=" + getNoOfEntries() + " bytes=" + getSizeInBytes() + "/" + getMaxSizeInBytes()
+                + " hits=" + getHitCount() + " misses=" + getMissCount() + " evictions=" + getEvictionCount();
+    }
+}
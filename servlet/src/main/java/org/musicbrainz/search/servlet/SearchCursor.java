@@ -0,0 +1,136 @@
+package org.musicbrainz.search.servlet;
+
+import com.google.common.io.BaseEncoding;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Position in the results of a search, so the next page can be found by only collecting the hits after the last hit of
+ * the previous page rather than collecting all the hits up to the offset again.
+ *
+ * The cursor also holds the position of the next page in the results, so the page can report its offset as it would
+ * have been had it been found by offset.
+ *
+ * Doc ids and scores are only meaningful for the version of the index they came from, so the cursor includes the
+ * version of the index and can no longer be used once the index has been reloaded with changes.
+ */
+public class SearchCursor
+{
+    // Requests the first page of results, with a cursor for the next page
+    public static final String FIRST_PAGE = "*";
+
+    private static final int ENCODED_LENGTH = 20;
+
+    private final long generation;
+    private final int doc;
+    private final float score;
+    private final int offset;
+
+    public SearchCursor(long generation, int doc, float score, int offset)
+    {
+        this.generation = generation;
+        this.doc = doc;
+        this.score = score;
+        this.offset = offset;
+    }
+
+    /**
+     * Thrown when a cursor was created from a different version of the index than the one now being searched
+     */
+    public static class ExpiredException extends Exception
+    {
+        public ExpiredException()
+        {
+            super("Cursor is for an older version of the index");
+        }
+    }
+
+    /**
+     * @param searcher
+     * @return version of the index the searcher is searching
+     */
+    public static long getGeneration(IndexSearcher searcher)
+    {
+        IndexReader reader = searcher.getIndexReader();
+        if (reader instanceof DirectoryReader)
+        {
+            return ((DirectoryReader) reader).getVersion();
+        }
+        return 0;
+    }
+
+    /**
+     * @param cursor as returned by toString(), or FIRST_PAGE
+     * @return cursor, or null for the first page
+     * @throws IllegalArgumentException if not a valid cursor
+     */
+    public static SearchCursor valueOf(String cursor)
+    {
+        if (cursor.equals(FIRST_PAGE))
+        {
+            return null;
+        }
+
+        byte[] bytes = BaseEncoding.base64Url().omitPadding().decode(cursor);
+        if (bytes.length != ENCODED_LENGTH)
+        {
+            throw new IllegalArgumentException("Invalid cursor " + cursor);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new SearchCursor(buffer.getLong(), buffer.getInt(), buffer.getFloat(), buffer.getInt());
+    }
+
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * @return last hit of the previous page
+     */
+    public ScoreDoc getScoreDoc()
+    {
+        return new ScoreDoc(doc, score);
+    }
+
+    /**
+     * @return position in the results of the first hit of the next page
+     */
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof SearchCursor))
+        {
+            return false;
+        }
+        SearchCursor that = (SearchCursor) o;
+        return generation == that.generation && doc == that.doc
+                && Float.floatToIntBits(score) == Float.floatToIntBits(that.score) && offset == that.offset;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * (31 * (31 * (int) (generation ^ (generation >>> 32)) + doc) + Float.floatToIntBits(score)) + offset;
+    }
+
+    /**
+     * @return opaque form of cursor that can be used as a request parameter
+     */
+    @Override
+    public String toString()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_LENGTH);
+        buffer.putLong(generation).putInt(doc).putFloat(score).putInt(offset);
+        return BaseEncoding.base64Url().omitPadding().encode(buffer.array());
+    }
+}
@@ -0,0 +1,164 @@
+package org.musicbrainz.search.servlet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the searches of a search over multiple indexes in parallel, using a fixed number of threads and a bounded queue
+ * so that a burst of requests cannot create an unlimited number of threads.
+ *
+ * All the searches of a request are either queued together or rejected together, when there is no room left in the
+ * queue the request is rejected straight away rather than waiting for room. A caller that no longer wants a search may
+ * cancel it, so only searches that release what they hold themselves if they finish after being cancelled should be
+ * submitted.
+ */
+public class SearchExecutor
+{
+    public static final int DEFAULT_NO_OF_THREADS = Runtime.getRuntime().availableProcessors() * 2;
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 60;
+
+    private final ThreadPoolExecutor executor;
+    private final ArrayBlockingQueue<Runnable> queue;
+
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong timedOutCount = new AtomicLong(0);
+
+    /**
+     * @param noOfThreads  number of searches that can run at the same time
+     * @param maxQueueSize max number of searches waiting for a thread
+     */
+    public SearchExecutor(int noOfThreads, int maxQueueSize)
+    {
+        if (noOfThreads < 1 || maxQueueSize < 1)
+        {
+            throw new IllegalArgumentException("number of threads and max queue size must be positive");
+        }
+        queue = new ArrayBlockingQueue<Runnable>(maxQueueSize);
+        executor = new ThreadPoolExecutor(noOfThreads, noOfThreads, 0L, TimeUnit.MILLISECONDS, queue,
+                new ThreadFactory()
+                {
+                    private final AtomicInteger threadNo = new AtomicInteger();
+
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread thread = new Thread(r, "search-executor-" + threadNo.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Submit all the searches of a request, searches that are still waiting for a thread when the request has used up
+     * its time are not started but fail with a TimeoutException
+     *
+     * Only this method adds to the queue and it is synchronized, so if there is room for all the searches when
+     * checked there is still room when they are submitted.
+     *
+     * @param searches
+     * @param timeoutInMs time allowed for the request
+     * @return futures in the same order as the searches
+     * @throws RejectedExecutionException if there is not enough room in the queue for all the searches
+     */
+    public synchronized <T> List<Future<T>> submitAll(Collection<? extends Callable<T>> searches, long timeoutInMs)
+    {
+        if (executor.isShutdown() || queue.remainingCapacity() < searches.size())
+        {
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("Search executor is saturated");
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMs);
+        List<Future<T>> futures = new ArrayList<Future<T>>(searches.size());
+        for (final Callable<T> search : searches)
+        {
+            futures.add(executor.submit(new Callable<T>()
+            {
+                public T call() throws Exception
+                {
+                    if (System.nanoTime() - deadline > 0)
+                    {
+                        timedOutCount.incrementAndGet();
+                        throw new TimeoutException("Search was not started in time");
+                    }
+                    return search.call();
+                }
+            }));
+        }
+        return futures;
+    }
+
+    /**
+     * Stop the threads, searches still waiting for a thread are cancelled so that no caller waits for them forever
+     */
+    public void shutdown()
+    {
+        for (Runnable next : executor.shutdownNow())
+        {
+            if (next instanceof Future)
+            {
+                ((Future<?>) next).cancel(false);
+            }
+        }
+    }
+
+    public int getNoOfThreads()
+    {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getActiveCount()
+    {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    public int getMaxQueueSize()
+    {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public long getCompletedCount()
+    {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * @return number of requests rejected because the queue was full
+     */
+    public long getRejectedCount()
+    {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return number of searches not started because they waited for a thread for longer than allowed
+     */
+    public long getTimedOutCount()
+    {
+        return timedOutCount.get();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "threads=" + getActiveCount() + "/" + getNoOfThreads() + " queue=" + getQueueSize() + "/"
+                + getMaxQueueSize() + " completed=" + getCompletedCount() + " rejected=" + getRejectedCount()
+                + " timedout=" + getTimedOutCount();
+    }
+}
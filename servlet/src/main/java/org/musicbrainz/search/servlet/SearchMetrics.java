@@ -0,0 +1,285 @@
+package org.musicbrainz.search.servlet;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Latency of each stage of a search for each resource type and response format, and counts of requests that failed
+ * before returning results, so we can see where the time goes and how often searches are turned away.
+ */
+public class SearchMetrics implements SearchMetricsMBean
+{
+    private final static Logger log = Logger.getLogger(SearchMetrics.class.getName());
+
+    public static final String OBJECT_NAME = "org.musicbrainz.search:type=SearchMetrics";
+
+    private static final double[] REPORTED_PERCENTILES = {50, 99};
+
+    // Recorded against any format that is not one of the response formats
+    static final String OTHER_FORMAT = "other";
+
+    private final ConcurrentMap<String, LatencyHistogram[]> histograms
+            = new ConcurrentHashMap<String, LatencyHistogram[]>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong parseErrorCount = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    private ObjectName objectName;
+
+    private static String createKey(String resourceType, String format)
+    {
+        return resourceType + "/" + getFormatName(format);
+    }
+
+    /**
+     * The format comes straight from the request and is not always checked, so only the response formats are kept
+     * apart otherwise every made up format would add histograms that are never removed
+     *
+     * @param format
+     * @return
+     */
+    private static String getFormatName(String format)
+    {
+        if (SearchServerServlet.RESPONSE_XML.equals(format)
+                || SearchServerServlet.RESPONSE_JSON.equals(format)
+                || SearchServerServlet.RESPONSE_JSON_NEW.equals(format))
+        {
+            return format;
+        }
+        return OTHER_FORMAT;
+    }
+
+    private LatencyHistogram[] getHistograms(String resourceType, String format)
+    {
+        String key = createKey(resourceType, format);
+        LatencyHistogram[] stages = histograms.get(key);
+        if (stages == null)
+        {
+            stages = new LatencyHistogram[RequestTimer.Stage.values().length];
+            for (int i = 0; i < stages.length; i++)
+            {
+                stages[i] = new LatencyHistogram();
+            }
+            LatencyHistogram[] existing = histograms.putIfAbsent(key, stages);
+            if (existing != null)
+            {
+                stages = existing;
+            }
+        }
+        return stages;
+    }
+
+    /**
+     * Record the time of each stage the request went through, stages the request skipped (e.g. when the results were
+     * cached) are not recorded so they don't pull down the percentiles of that stage
+     *
+     * @param resourceType name of resource type, or all
+     * @param format       response format
+     * @param timer
+     */
+    public void record(String resourceType, String format, RequestTimer timer)
+    {
+        requestCount.incrementAndGet();
+        LatencyHistogram[] stages = getHistograms(resourceType, format);
+        for (RequestTimer.Stage stage : RequestTimer.Stage.values())
+        {
+            long nanos = timer.get(stage);
+            if (nanos > 0)
+            {
+                stages[stage.ordinal()].record(nanos);
+            }
+        }
+    }
+
+    public void incrementTimeoutCount()
+    {
+        timeoutCount.incrementAndGet();
+    }
+
+    public void incrementParseErrorCount()
+    {
+        parseErrorCount.incrementAndGet();
+    }
+
+    public void incrementRateLimitedCount()
+    {
+        rateLimitedCount.incrementAndGet();
+    }
+
+    public void incrementCoalescedCount()
+    {
+        coalescedCount.incrementAndGet();
+    }
+
+    @Override
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    @Override
+    public long getTimeoutCount()
+    {
+        return timeoutCount.get();
+    }
+
+    @Override
+    public long getParseErrorCount()
+    {
+        return parseErrorCount.get();
+    }
+
+    @Override
+    public long getRateLimitedCount()
+    {
+        return rateLimitedCount.get();
+    }
+
+    @Override
+    public long getCoalescedCount()
+    {
+        return coalescedCount.get();
+    }
+
+    @Override
+    public long getRateLimiterRequestCount()
+    {
+        RateLimiterClient client = RateLimiterChecker.getRateLimiterClient();
+        return client != null ? client.getRequestCount() : 0;
+    }
+
+    @Override
+    public long getRateLimiterTimeoutCount()
+    {
+        RateLimiterClient client = RateLimiterChecker.getRateLimiterClient();
+        return client != null ? client.getTimeoutCount() : 0;
+    }
+
+    @Override
+    public long getRateLimiterLateReplyCount()
+    {
+        RateLimiterClient client = RateLimiterChecker.getRateLimiterClient();
+        return client != null ? client.getLateReplyCount() : 0;
+    }
+
+    @Override
+    public long getRateLimiterErrorCount()
+    {
+        RateLimiterClient client = RateLimiterChecker.getRateLimiterClient();
+        return client != null ? client.getErrorCount() : 0;
+    }
+
+    @Override
+    public double getPercentile(String resourceType, String format, String stage, double percentile)
+    {
+        LatencyHistogram[] stages = histograms.get(createKey(resourceType, format));
+        if (stages == null)
+        {
+            return 0;
+        }
+        return stages[RequestTimer.Stage.valueOf(stage.toUpperCase()).ordinal()].getPercentileMillis(percentile);
+    }
+
+    @Override
+    public String getReport()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("requests:").append(getRequestCount())
+                .append(":timeouts:").append(getTimeoutCount())
+                .append(":parseerrors:").append(getParseErrorCount())
+                .append(":ratelimited:").append(getRateLimitedCount())
+                .append(":coalesced:").append(getCoalescedCount())
+                .append('\n');
+
+        // Only when calling the rate limiter server, the in process rate limiter can't time out or fail
+        RateLimiterClient client = RateLimiterChecker.getRateLimiterClient();
+        if (client != null)
+        {
+            sb.append("ratelimiter:requests:").append(client.getRequestCount())
+                    .append(":timeouts:").append(client.getTimeoutCount())
+                    .append(":latereplies:").append(client.getLateReplyCount())
+                    .append(":errors:").append(client.getErrorCount())
+                    .append('\n');
+        }
+
+        Map<String, LatencyHistogram[]> sorted = new TreeMap<String, LatencyHistogram[]>(histograms);
+        for (Map.Entry<String, LatencyHistogram[]> next : sorted.entrySet())
+        {
+            for (RequestTimer.Stage stage : RequestTimer.Stage.values())
+            {
+                LatencyHistogram histogram = next.getValue()[stage.ordinal()];
+                if (histogram.getCount() == 0)
+                {
+                    continue;
+                }
+                sb.append(next.getKey()).append(':').append(stage.name().toLowerCase())
+                        .append(":count:").append(histogram.getCount())
+                        .append(":mean:").append(String.format("%.2f", histogram.getMeanMillis()));
+                for (double percentile : REPORTED_PERCENTILES)
+                {
+                    sb.append(":p").append((int) percentile).append(':')
+                            .append(String.format("%.2f", histogram.getPercentileMillis(percentile)));
+                }
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getReport();
+    }
+
+    /**
+     * Make the metrics available over JMX, failing to do so is only logged as the metrics are also available from the
+     * servlet
+     */
+    public void register()
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name))
+            {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            objectName = name;
+        }
+        catch (Exception e)
+        {
+            log.log(Level.WARNING, "Unable to register search metrics with JMX:" + e.getMessage(), e);
+        }
+    }
+
+    public void unregister()
+    {
+        if (objectName == null)
+        {
+            return;
+        }
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        }
+        catch (Exception e)
+        {
+            log.log(Level.WARNING, "Unable to unregister search metrics from JMX:" + e.getMessage(), e);
+        }
+        objectName = null;
+    }
+}
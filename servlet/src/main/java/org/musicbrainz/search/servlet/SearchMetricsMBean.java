@@ -0,0 +1,54 @@
+package org.musicbrainz.search.servlet;
+
+/**
+ * Search metrics as made available over JMX
+ */
+public interface SearchMetricsMBean
+{
+    public long getRequestCount();
+
+    public long getTimeoutCount();
+
+    public long getParseErrorCount();
+
+    public long getRateLimitedCount();
+
+    /**
+     * @return number of requests sent the results of an identical search being done at the same time
+     */
+    public long getCoalescedCount();
+
+    /**
+     * @return number of requests sent to the rate limiter server, 0 if it is not used
+     */
+    public long getRateLimiterRequestCount();
+
+    /**
+     * @return number of requests to the rate limiter server not replied to in time, so allowed without a reply
+     */
+    public long getRateLimiterTimeoutCount();
+
+    /**
+     * @return number of replies from the rate limiter server received after the request had timed out
+     */
+    public long getRateLimiterLateReplyCount();
+
+    /**
+     * @return number of requests to the rate limiter server that could not be sent or replied to
+     */
+    public long getRateLimiterErrorCount();
+
+    /**
+     * @return latency percentiles of each stage for each resource type and format
+     */
+    public String getReport();
+
+    /**
+     * @param resourceType name of resource type, or all
+     * @param format       response format
+     * @param stage        name of stage
+     * @param percentile   between 0 and 100
+     * @return latency in milliseconds
+     */
+    public double getPercentile(String resourceType, String format, String stage, double percentile);
+}
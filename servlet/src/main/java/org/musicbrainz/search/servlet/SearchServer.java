@@ -36,6 +36,33 @@ public interface SearchServer {
    */
   public abstract Results search(Query query, int offset, int limit) throws IOException, ParseException;
 
+  /**
+   * Process query from Mbserver before sending to lucene searcher, returning up to limit results after the cursor
+   *
+   * @param query
+   * @param after cursor returned with the previous page of results, or null for the first page
+   * @param limit
+   * @return
+   * @throws IOException
+   * @throws ParseException
+   * @throws SearchCursor.ExpiredException if the index has changed since the cursor was returned
+   */
+  public abstract Results searchAfter(String query, SearchCursor after, int limit)
+      throws IOException, ParseException, SearchCursor.ExpiredException;
+
+  /**
+   * Process query from Mbserver before sending to lucene searcher, only finding the top hits without loading their
+   * documents so that the top hits of more than one index can be merged before loading. The top hits must be
+   * released once finished with.
+   *
+   * @param query
+   * @param noOfHits
+   * @return
+   * @throws IOException
+   * @throws ParseException
+   */
+  public abstract TopHits searchTopHits(String query, int noOfHits) throws IOException, ParseException;
+
   /**
    * Explain the results This method is for debugging and to allow end users to understand why their query is not
    * returning the results they expected so they can refine their query
@@ -29,8 +29,10 @@
 package org.musicbrainz.search.servlet;
 
 import com.google.common.base.Strings;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TimeLimitingCollector.TimeExceededException;
 import org.apache.lucene.store.Directory;
@@ -48,9 +50,13 @@ import java.io.*;
 import java.lang.management.ManagementFactory;
 import java.util.*;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -74,18 +80,72 @@ public class SearchServerServlet extends HttpServlet
 
     final static String TYPE_ALL = "all";
     final static String TYPE_TRACK = "track";
+    final static String TYPE_BATCH = "batch";
+
+    final static String RATE_LIMITER_INPROCESS = "inprocess";
+
+    final static long DEFAULT_SEARCH_ALL_TIMEOUT_IN_MS = 2000;
+
+    final static int DEFAULT_WARMUP_MAX_QUERIES = 1000;
+
+    final static long DEFAULT_COALESCE_MAX_WAIT_IN_MS = 2000;
+
+    final static int DEFAULT_BATCH_MAX_SEARCHES = 50;
+
+    final static long DEFAULT_BATCH_TIMEOUT_IN_MS = 5000;
+
+    // Results larger than this are not shared with identical searches requested at the same time
+    final static int MAX_COALESCED_RESULTS_SIZE = 4 * 1024 * 1024;
+
+    // Cursor for the next page of results when searching with a cursor
+    final static String HEADER_NEXT_CURSOR = "X-Next-Cursor";
+
+    // Set when a search ran out of time and partial_results is enabled, so only the hits found in time are returned
+    final static String HEADER_PARTIAL_RESULTS = "X-Partial-Results";
 
     private boolean isServletInitialized = false;
 
+    // Set once the indexes of every resource type have been loaded and warmed, and cleared while they are being reloaded
+    private volatile boolean isReady = false;
+
     // Enabled as long indexes for all resources are available
     private boolean isSearchAllEnabled = true;
 
-    // When doing search over multiple indexes use this executorservice to run in parallel
-    private final ExecutorService es = Executors.newCachedThreadPool();
+    // When doing search over multiple indexes use this executor to run in parallel
+    private SearchExecutor searchAllExecutor;
+
+    // Time allowed for the searches of a search over multiple indexes to get a thread
+    private long searchAllTimeout = DEFAULT_SEARCH_ALL_TIMEOUT_IN_MS;
+
+    // Whether a search running on the executor can be interrupted when cancelled, not if the indexes are read with
+    // NIOFSDirectory because an interrupted read closes the index file for every other search
+    private volatile boolean isSearchInterruptible = true;
+
+    // Max number of searches in a batch of searches, should not be more than search_all_queue_size
+    private int batchMaxSearches = DEFAULT_BATCH_MAX_SEARCHES;
+
+    // Time allowed for all the searches of a batch of searches, including any time spent waiting for a thread
+    private long batchTimeout = DEFAULT_BATCH_TIMEOUT_IN_MS;
+
+    // Periodically reloads the indexes so that changes committed by the index updater become searchable
+    private ScheduledExecutorService indexRefresher;
 
     private final EnumMap<ResourceType, SearchServer> searchers = new EnumMap<ResourceType, SearchServer>(ResourceType.class);
     private final EnumMap<ResourceType, SearchServer> dismaxSearchers = new EnumMap<ResourceType, SearchServer>(ResourceType.class);
 
+    // Latency of each stage of searches, also available over JMX
+    private final SearchMetrics metrics = new SearchMetrics();
+
+    // Warms the searchers of each index before they are used, and reports how long it took
+    private final EnumMap<ResourceType, WarmingSearcherFactory> warmers = new EnumMap<ResourceType, WarmingSearcherFactory>(ResourceType.class);
+
+    // Rendered results of recent searches for each index, only if results_cache_size has been set
+    private final EnumMap<ResourceType, ResultsCache> resultsCaches = new EnumMap<ResourceType, ResultsCache>(ResourceType.class);
+
+    // Searches currently being done, so identical searches requested at the same time are only done once, unless
+    // coalesce_max_wait has been set to 0
+    private volatile InFlightSearches inFlightSearches;
+
     private final String initMessage = null;
     private static String searchWebPage = "";
     private static boolean isRateLimiterEnabled = false;
@@ -94,6 +154,7 @@ public class SearchServerServlet extends HttpServlet
     @Override
     public void init()
     {
+        metrics.register();
         String init = getServletConfig().getInitParameter("init");
         if (init != null && init.equals("nfio"))
         {
@@ -112,9 +173,12 @@ public class SearchServerServlet extends HttpServlet
      */
     public void init(boolean useMMapDirectory)
     {
+        isReady = false;
 
         searchWebPage = getServletConfig().getInitParameter("search_webpage");
 
+        isSearchInterruptible = useMMapDirectory;
+
         String isAdminRemote = getServletConfig().getInitParameter("remoteadmin_enabled");
         isAdminRemoteEnabled = Boolean.parseBoolean(isAdminRemote);
 
@@ -123,6 +187,103 @@ public class SearchServerServlet extends HttpServlet
 
         String indexDir = getServletConfig().getInitParameter("index_dir");
 
+        long resultsCacheSize = 0;
+        String resultsCacheSizeParam = getServletConfig().getInitParameter("results_cache_size");
+        if (!Strings.isNullOrEmpty(resultsCacheSizeParam))
+        {
+            try
+            {
+                resultsCacheSize = Long.parseLong(resultsCacheSizeParam.trim()) * 1024 * 1024;
+            }
+            catch (NumberFormatException e)
+            {
+                log.warning("Invalid results_cache_size: " + resultsCacheSizeParam);
+            }
+        }
+
+        int queryCacheSize = 0;
+        String queryCacheSizeParam = getServletConfig().getInitParameter("query_cache_size");
+        if (!Strings.isNullOrEmpty(queryCacheSizeParam))
+        {
+            try
+            {
+                queryCacheSize = Integer.parseInt(queryCacheSizeParam.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                log.warning("Invalid query_cache_size: " + queryCacheSizeParam);
+            }
+        }
+
+        boolean isPartialResultsAllowed = Boolean.parseBoolean(getServletConfig().getInitParameter("partial_results"));
+
+        // Only non pretty Xml is streamed one result at a time, enabled unless xml_streaming is false
+        String xmlStreamingParam = getServletConfig().getInitParameter("xml_streaming");
+        ResultsWriter.setXmlStreamingEnabled(Strings.isNullOrEmpty(xmlStreamingParam) || Boolean.parseBoolean(xmlStreamingParam.trim()));
+
+        long coalesceMaxWait = DEFAULT_COALESCE_MAX_WAIT_IN_MS;
+        String coalesceMaxWaitParam = getServletConfig().getInitParameter("coalesce_max_wait");
+        if (!Strings.isNullOrEmpty(coalesceMaxWaitParam))
+        {
+            try
+            {
+                coalesceMaxWait = Long.parseLong(coalesceMaxWaitParam.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                log.warning("Invalid coalesce_max_wait: " + coalesceMaxWaitParam);
+            }
+        }
+        inFlightSearches = coalesceMaxWait > 0 ? new InFlightSearches(coalesceMaxWait, MAX_COALESCED_RESULTS_SIZE) : null;
+
+        String batchMaxSearchesParam = getServletConfig().getInitParameter("batch_max_searches");
+        if (!Strings.isNullOrEmpty(batchMaxSearchesParam))
+        {
+            try
+            {
+                batchMaxSearches = Integer.parseInt(batchMaxSearchesParam.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                log.warning("Invalid batch_max_searches: " + batchMaxSearchesParam);
+            }
+        }
+
+        String batchTimeoutParam = getServletConfig().getInitParameter("batch_timeout");
+        if (!Strings.isNullOrEmpty(batchTimeoutParam))
+        {
+            try
+            {
+                batchTimeout = Long.parseLong(batchTimeoutParam.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                log.warning("Invalid batch_timeout: " + batchTimeoutParam);
+            }
+        }
+
+        String warmUpQueriesDir = getServletConfig().getInitParameter("warmup_queries_dir");
+        int warmUpMaxQueries = DEFAULT_WARMUP_MAX_QUERIES;
+        String warmUpMaxQueriesParam = getServletConfig().getInitParameter("warmup_max_queries");
+        if (!Strings.isNullOrEmpty(warmUpMaxQueriesParam))
+        {
+            try
+            {
+                warmUpMaxQueries = Integer.parseInt(warmUpMaxQueriesParam.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                log.warning("Invalid warmup_max_queries: " + warmUpMaxQueriesParam);
+            }
+        }
+
+        String[] hotFileExtensions = WarmingSearcherFactory.DEFAULT_HOT_FILE_EXTENSIONS;
+        String hotFileExtensionsParam = getServletConfig().getInitParameter("warmup_file_extensions");
+        if (hotFileExtensionsParam != null)
+        {
+            hotFileExtensions = hotFileExtensionsParam.trim().split("\\s*,\\s*");
+        }
+
         if (useMMapDirectory)
         {
             log.info("Start:Loading Indexes from " + indexDir + ",Type:mmap," + "MaxHeap:" + ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax());
@@ -133,8 +294,12 @@ public class SearchServerServlet extends HttpServlet
         }
 
         // Initialize all search servers
+        boolean isAllLoadedAndWarmed = true;
         for (ResourceType resourceType : ResourceType.values())
         {
+            warmers.remove(resourceType);
+            // Results from the old indexes no longer apply, a new cache is only added once the index has loaded
+            resultsCaches.remove(resourceType);
 
             File indexFileDir = new File(indexDir + System.getProperty("file.separator") + resourceType.getIndexName() + "_index");
 
@@ -144,13 +309,43 @@ public class SearchServerServlet extends HttpServlet
             try
             {
                 Directory directory = useMMapDirectory ? new MMapDirectory(indexFileDir) : new NIOFSDirectory(indexFileDir);
-                SearcherManager searcherManager = new SearcherManager(directory, new MusicBrainzSearcherFactory(resourceType));
+                List<String> warmUpQueries = Collections.emptyList();
+                if (!Strings.isNullOrEmpty(warmUpQueriesDir))
+                {
+                    warmUpQueries = WarmingSearcherFactory.loadQueries(new File(warmUpQueriesDir, resourceType.getIndexName() + "_queries.txt"), warmUpMaxQueries);
+                }
+                WarmingSearcherFactory warmer = new WarmingSearcherFactory(resourceType, warmUpQueries, hotFileExtensions);
+                SearcherManager searcherManager = new SearcherManager(directory, warmer);
                 searchServer = resourceType.getSearchServerClass().getConstructor(SearcherManager.class).newInstance(searcherManager);
                 dismaxSearchServer = resourceType.getDismaxSearchServerClass().getConstructor(AbstractSearchServer.class).newInstance(searchServer);
+                if (queryCacheSize > 0)
+                {
+                    searchServer.setQueryCache(new QueryCache(queryCacheSize));
+                    dismaxSearchServer.setQueryCache(new QueryCache(queryCacheSize));
+                }
+                searchServer.setTimeAllowed(getSearchTimeout(resourceType));
+                searchServer.setPartialResultsAllowed(isPartialResultsAllowed);
+
+                // Warm the first searcher before the search server is made available, later searchers are warmed by
+                // the SearcherManager before they are used
+                warmer.setSearchServer(searchServer);
+                if (!warmFirstSearcher(resourceType, warmer, searcherManager))
+                {
+                    isAllLoadedAndWarmed = false;
+                }
+                warmers.put(resourceType, warmer);
 
+                // Only registered once the search server has been created, cleared whenever the index is reloaded
+                if (resultsCacheSize > 0)
+                {
+                    ResultsCache resultsCache = new ResultsCache(resultsCacheSize);
+                    searcherManager.addListener(resultsCache);
+                    resultsCaches.put(resourceType, resultsCache);
+                }
             }
             catch (CorruptIndexException e)
             {
+                isAllLoadedAndWarmed = false;
                 if (resourceType.isUsedBySearchAll())
                 {
                     isSearchAllEnabled = false;
@@ -158,6 +353,7 @@ public class SearchServerServlet extends HttpServlet
             }
             catch (IOException e)
             {
+                isAllLoadedAndWarmed = false;
                 if (resourceType.isUsedBySearchAll())
                 {
                     isSearchAllEnabled = false;
@@ -166,6 +362,7 @@ public class SearchServerServlet extends HttpServlet
             catch (Exception e)
             {
                 log.log(Level.WARNING, "Could not load " + resourceType.getIndexName() + " index: " + e.getMessage(), e);
+                isAllLoadedAndWarmed = false;
                 if (resourceType.isUsedBySearchAll())
                 {
                     isSearchAllEnabled = false;
@@ -192,12 +389,30 @@ public class SearchServerServlet extends HttpServlet
 
         }
         isServletInitialized = true;
+        isReady = isAllLoadedAndWarmed;
+
+        initIndexRefresher(getServletConfig().getInitParameter("index_refresh_interval"));
+        initSearchAllExecutor(getServletConfig().getInitParameter("search_all_threads"),
+                getServletConfig().getInitParameter("search_all_queue_size"),
+                getServletConfig().getInitParameter("search_all_timeout"));
 
     }
 
     @Override
     public void destroy()
     {
+        if (indexRefresher != null)
+        {
+            indexRefresher.shutdownNow();
+            indexRefresher = null;
+        }
+        if (searchAllExecutor != null)
+        {
+            searchAllExecutor.shutdown();
+            searchAllExecutor = null;
+        }
+        RateLimiterChecker.close();
+        metrics.unregister();
 
         // Close all search servers
         for (SearchServer searchServer : searchers.values())
@@ -236,16 +451,180 @@ public class SearchServerServlet extends HttpServlet
     }
 
     /**
-     * Init Rate Limiter
+     * Init Rate Limiter, either calling the rate limiter server or if ratelimitserver_type is inprocess limiting
+     * requests within the servlet
      */
     private void initRateLimiter(String rateLimiterEnabled)
     {
+        String rateLimiterType = getServletConfig().getInitParameter("ratelimitserver_type");
         String rateLimiterHost = getServletConfig().getInitParameter("ratelimitserver_host");
         String rateLimiterPort = getServletConfig().getInitParameter("ratelimitserver_port");
+        String rateLimiterTimeout = getServletConfig().getInitParameter("ratelimitserver_timeout");
         isRateLimiterEnabled = Boolean.parseBoolean(rateLimiterEnabled);
-        if (isRateLimiterEnabled)
+        if (isRateLimiterEnabled && RATE_LIMITER_INPROCESS.equals(rateLimiterType))
+        {
+            RateLimiterChecker.initInProcess(getServletConfig().getInitParameter("ratelimitserver_limit"),
+                    getServletConfig().getInitParameter("ratelimitserver_period"),
+                    getServletConfig().getInitParameter("ratelimitserver_maxclients"));
+        }
+        else if (isRateLimiterEnabled)
+        {
+            RateLimiterChecker.init(rateLimiterHost, rateLimiterPort, rateLimiterTimeout);
+        }
+        else
+        {
+            RateLimiterChecker.close();
+        }
+    }
+
+    /**
+     * Warm the searcher the SearcherManager was created with, failing to warm it doesn't stop the index being used
+     * but the servlet is not reported as ready
+     *
+     * @param resourceType
+     * @param warmer
+     * @param searcherManager
+     * @return true if warmed
+     */
+    private boolean warmFirstSearcher(ResourceType resourceType, WarmingSearcherFactory warmer, SearcherManager searcherManager)
+    {
+        try
+        {
+            IndexSearcher searcher = searcherManager.acquire();
+            try
+            {
+                warmer.warm(searcher);
+            }
+            finally
+            {
+                searcherManager.release(searcher);
+            }
+            return true;
+        }
+        catch (IOException e)
+        {
+            log.log(Level.WARNING, "Could not warm " + resourceType.getIndexName() + " index: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Time allowed for collecting the hits of a search of the resource type, set by search_timeout_<type> for the
+     * resource type or else by search_timeout for all types
+     *
+     * @param resourceType
+     * @return time allowed in milliseconds
+     */
+    private long getSearchTimeout(ResourceType resourceType)
+    {
+        String timeout = getServletConfig().getInitParameter("search_timeout_" + resourceType.getName());
+        if (Strings.isNullOrEmpty(timeout))
+        {
+            timeout = getServletConfig().getInitParameter("search_timeout");
+        }
+        if (Strings.isNullOrEmpty(timeout))
+        {
+            return AbstractSearchServer.DEFAULT_TIME_ALLOWED_IN_MS;
+        }
+
+        try
+        {
+            return Long.parseLong(timeout.trim());
+        }
+        catch (NumberFormatException e)
         {
-            RateLimiterChecker.init(rateLimiterHost, rateLimiterPort);
+            log.warning("Invalid search timeout for " + resourceType.getName() + ": " + timeout);
+            return AbstractSearchServer.DEFAULT_TIME_ALLOWED_IN_MS;
+        }
+    }
+
+    /**
+     * Create the executor used for searching over multiple indexes, unless already created
+     *
+     * @param noOfThreads number of searches that can run at the same time
+     * @param maxQueueSize max number of searches waiting for a thread before further requests are rejected
+     * @param timeout time in milliseconds a request allows its searches to wait for a thread
+     */
+    private void initSearchAllExecutor(String noOfThreads, String maxQueueSize, String timeout)
+    {
+        if (searchAllExecutor != null)
+        {
+            return;
+        }
+
+        int threads = SearchExecutor.DEFAULT_NO_OF_THREADS;
+        int queueSize = SearchExecutor.DEFAULT_MAX_QUEUE_SIZE;
+        try
+        {
+            if (!Strings.isNullOrEmpty(noOfThreads))
+            {
+                threads = Integer.parseInt(noOfThreads.trim());
+            }
+            if (!Strings.isNullOrEmpty(maxQueueSize))
+            {
+                queueSize = Integer.parseInt(maxQueueSize.trim());
+            }
+            if (!Strings.isNullOrEmpty(timeout))
+            {
+                searchAllTimeout = Long.parseLong(timeout.trim());
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            log.warning("Invalid search_all_threads, search_all_queue_size or search_all_timeout: " + e.getMessage());
+        }
+
+        if (threads < 1 || queueSize < 1)
+        {
+            log.warning("Invalid search_all_threads or search_all_queue_size, using defaults");
+            threads = SearchExecutor.DEFAULT_NO_OF_THREADS;
+            queueSize = SearchExecutor.DEFAULT_MAX_QUEUE_SIZE;
+        }
+        log.info("Search over multiple indexes using " + threads + " threads, queue of " + queueSize);
+        searchAllExecutor = new SearchExecutor(threads, queueSize);
+    }
+
+    /**
+     * Init Index Refresher, if an interval (in seconds) has been configured the indexes are reloaded at that interval
+     * so that documents committed by a continuously running index updater can be searched without an explicit reload.
+     */
+    private void initIndexRefresher(String refreshInterval)
+    {
+        if (indexRefresher != null || Strings.isNullOrEmpty(refreshInterval))
+        {
+            return;
+        }
+
+        int interval;
+        try
+        {
+            interval = Integer.parseInt(refreshInterval.trim());
+        }
+        catch (NumberFormatException e)
+        {
+            log.warning("Invalid index_refresh_interval: " + refreshInterval);
+            return;
+        }
+
+        if (interval > 0)
+        {
+            log.info("Reloading indexes every " + interval + " seconds");
+            indexRefresher = Executors.newSingleThreadScheduledExecutor();
+            indexRefresher.scheduleWithFixedDelay(new Runnable()
+            {
+                public void run()
+                {
+                    // Must not throw, otherwise no further reloads would be scheduled
+                    try
+                    {
+                        reloadIndexes();
+                    }
+                    catch (RuntimeException e)
+                    {
+                        log.log(Level.SEVERE, "Caught exception during scheduled reload of indexes: " + e.getMessage(), e);
+                    }
+                }
+            }, interval, interval, TimeUnit.SECONDS);
         }
     }
 
@@ -305,6 +684,31 @@ public class SearchServerServlet extends HttpServlet
         response.getWriter().close();
     }
 
+    /**
+     * Output whether the servlet is ready to take searches and how long warming each index took, so that a load
+     * balancer doesn't send searches to a newly started server before its indexes have been loaded and warmed. Not
+     * ready unless the index of every resource type has been loaded and warmed, or while the indexes are reloaded.
+     *
+     * @param response
+     * @throws IOException
+     */
+    private void outputReadiness(HttpServletResponse response) throws IOException
+    {
+        if (!isReady)
+        {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+
+        StringBuilder sb = new StringBuilder(isReady ? "Ready\n" : "Not Ready\n");
+        for (ResourceType resourceType : ResourceType.values())
+        {
+            WarmingSearcherFactory warmer = warmers.get(resourceType);
+            sb.append(resourceType.getName()).append(':');
+            sb.append(searchers.get(resourceType) == null || warmer == null ? "not loaded" : warmer.toString()).append('\n');
+        }
+        outputConfirmation( response, sb.toString());
+    }
+
     /**
      * Has an admin command been made, if so deal with it now and then return
      *
@@ -368,6 +772,76 @@ public class SearchServerServlet extends HttpServlet
             }
         }
 
+        // Show search over multiple indexes executor statistics
+        String searchAllStats = request.getParameter(RequestParameter.SEARCH_ALL_STATS.getName());
+        if (searchAllStats != null)
+        {
+            if (isRequestFromLocalHost(request))
+            {
+                outputConfirmation( response, String.valueOf(searchAllExecutor));
+                return true ;
+            }
+            else
+            {
+                response.sendError(HttpServletResponse.SC_FORBIDDEN);
+                return true ;
+            }
+        }
+
+        // Show latency of each stage of searches and counts of failed searches
+        String metricsParam = request.getParameter(RequestParameter.METRICS.getName());
+        if (metricsParam != null)
+        {
+            if (isRequestFromLocalHost(request))
+            {
+                outputConfirmation( response, metrics.getReport());
+                return true ;
+            }
+            else
+            {
+                response.sendError(HttpServletResponse.SC_FORBIDDEN);
+                return true ;
+            }
+        }
+
+        // Show results and query cache statistics
+        String cacheStats = request.getParameter(RequestParameter.CACHE_STATS.getName());
+        if (cacheStats != null)
+        {
+            if (isRequestFromLocalHost(request))
+            {
+                StringBuilder sb = new StringBuilder();
+                for (Map.Entry<ResourceType, ResultsCache> next : resultsCaches.entrySet())
+                {
+                    sb.append(next.getKey().getName()).append(':').append(next.getValue()).append('\n');
+                }
+                if (inFlightSearches != null)
+                {
+                    sb.append("inflight:").append(inFlightSearches).append('\n');
+                }
+                for (ResourceType resourceType : ResourceType.values())
+                {
+                    AbstractSearchServer searchServer = (AbstractSearchServer) searchers.get(resourceType);
+                    if (searchServer != null && searchServer.getQueryCache() != null)
+                    {
+                        sb.append(resourceType.getName()).append(":query:").append(searchServer.getQueryCache()).append('\n');
+                    }
+                    AbstractDismaxSearchServer dismaxSearchServer = (AbstractDismaxSearchServer) dismaxSearchers.get(resourceType);
+                    if (dismaxSearchServer != null && dismaxSearchServer.getQueryCache() != null)
+                    {
+                        sb.append(resourceType.getName()).append(":dismaxquery:").append(dismaxSearchServer.getQueryCache()).append('\n');
+                    }
+                }
+                outputConfirmation( response, sb.toString());
+                return true ;
+            }
+            else
+            {
+                response.sendError(HttpServletResponse.SC_FORBIDDEN);
+                return true ;
+            }
+        }
+
         // Force GC
         String gc = request.getParameter(RequestParameter.GC.getName());
         if (gc != null)
@@ -393,6 +867,13 @@ public class SearchServerServlet extends HttpServlet
         String query = "";
         try
         {
+            // Readiness is checked by load balancers, so is available to any machine and before the servlet is initialized
+            if (request.getParameter(RequestParameter.READY.getName()) != null)
+            {
+                outputReadiness(response);
+                return;
+            }
+
             // Check if servlet is initialized ok
             if (!isServletInitialized)
             {
@@ -462,18 +943,9 @@ public class SearchServerServlet extends HttpServlet
                 return;
             }
 
-            if (isRateLimiterEnabled)
+            if (isRateLimited(request, response, 1))
             {
-                RateLimiterChecker.RateLimiterResponse rateLimiterResponse = RateLimiterChecker.checkRateLimiter(request);
-                if (!rateLimiterResponse.isValid())
-                {
-                    if (rateLimiterResponse.getHeaderMsg() != null)
-                    {
-                        response.setHeader(RateLimiterChecker.HEADER_RATE_LIMITED, rateLimiterResponse.getHeaderMsg());
-                    }
-                    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, rateLimiterResponse.getMsg());
-                    return;
-                }
+                return;
             }
 
             query = request.getParameter(RequestParameter.QUERY.getName());
@@ -483,28 +955,7 @@ public class SearchServerServlet extends HttpServlet
                 return;
             }
 
-            // Response Format, first defined by fmt parameter, if not set defined by accept header, if not set default
-            // to Xml. Note if accept header set to json this will set format to RESPONSE_JSON_NEW not RESPONSE_JSON (the
-            // old internal format)
-            String responseFormat = request.getParameter(RequestParameter.FORMAT.getName());
-            if (Strings.isNullOrEmpty(responseFormat))
-            {
-                Enumeration<String> headers = request.getHeaders("Accept");
-                while (headers.hasMoreElements())
-                {
-                    String nextHeader = headers.nextElement();
-                    if (nextHeader.equals("application/json"))
-                    {
-                        responseFormat = RESPONSE_JSON_NEW;
-                        break;
-                    }
-                }
-                // Default to xml if not provided
-                if (responseFormat == null)
-                {
-                    responseFormat = RESPONSE_XML;
-                }
-            }
+            String responseFormat = getResponseFormat(request);
 
             String responseVersion = request.getParameter(RequestParameter.VERSION.getName());
             if (Strings.isNullOrEmpty(responseVersion))
@@ -562,26 +1013,63 @@ public class SearchServerServlet extends HttpServlet
                 isDismax = true;
             }
 
-            try 
+            // Cursor replaces offset, so paging deep into the results costs no more than the first page
+            String cursor = request.getParameter(RequestParameter.CURSOR.getName());
+            if (cursor != null && resourceType == null)
+            {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, ErrorMessage.CURSOR_NOT_SUPPORTED_FOR_TYPE.getMsg(TYPE_ALL));
+                return;
+            }
+
+            RequestTimer timer = new RequestTimer();
+            RequestTimer.attach(timer);
+            long start = System.nanoTime();
+            try 
             {
                 if (resourceType != null)
                 {
-                    doSearch(response, resourceType, query, isDismax, isExplain, isPretty, offset, limit, responseFormat, responseVersion);
+                    doSearch(response, resourceType, query, isDismax, isExplain, isPretty, offset, limit, responseFormat, responseVersion, cursor);
                 }
                 else
                 {
-                    doAllSearch(response, query, isDismax, offset, limit, responseFormat, isPretty);
+                    doAllSearch(response, query, isDismax, offset, limit, responseFormat, isPretty, timer);
                 }
+                timer.add(RequestTimer.Stage.TOTAL, System.nanoTime() - start);
+                metrics.record(resourceType != null ? resourceType.getName() : TYPE_ALL, responseFormat, timer);
             }
             catch (TimeExceededException tee)
             {
                 log.info("Query timeout: " + query);
+                metrics.incrementTimeoutCount();
                 response.sendError(HttpServletResponse.SC_REQUEST_TIMEOUT, ErrorMessage.REQUEST_TIMEOUT_EXCEEDED.getMsg());
                 return;
             }
+            catch (SearchCursor.ExpiredException cee)
+            {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, ErrorMessage.CURSOR_EXPIRED.getMsg());
+                return;
+            }
+            catch (TimeoutException te)
+            {
+                log.info("Query timeout waiting for search thread: " + query);
+                metrics.incrementTimeoutCount();
+                response.sendError(HttpServletResponse.SC_REQUEST_TIMEOUT, ErrorMessage.REQUEST_TIMEOUT_EXCEEDED.getMsg());
+                return;
+            }
+            catch (RejectedExecutionException ree)
+            {
+                log.info("Search rejected, too many searches over multiple indexes: " + query);
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, ErrorMessage.SERVER_BUSY.getMsg());
+                return;
+            }
+            finally
+            {
+                RequestTimer.detach();
+            }
         }
         catch (ParseException pe)
         {
+            metrics.incrementParseErrorCount();
             response.sendError(HttpServletResponse.SC_BAD_REQUEST, ErrorMessage.UNABLE_TO_PARSE_SEARCH.getMsg(query));
             return;
         }
@@ -612,6 +1100,160 @@ public class SearchServerServlet extends HttpServlet
         }
     }
 
+    /**
+     * Batch of searches, the body contains one search per line written as the query string of the equivalent GET
+     * request, and the output of all the searches is returned in one document. The searches are done in parallel and
+     * share one deadline, set by batch_timeout, and the batch counts as one request for each search against the rate
+     * limit.
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException
+    {
+        try
+        {
+            // Check if servlet is initialized ok
+            if (!isServletInitialized)
+            {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ErrorMessage.SERVLET_INIT_FAILED.getMsg(initMessage));
+                return;
+            }
+            // Ensure encoding set to UTF8
+            request.setCharacterEncoding(CHARSET);
+
+            // Read the body before any parameter, otherwise a form encoded body would be consumed as parameters
+            List<BatchSearch.Search> searches;
+            try
+            {
+                searches = BatchSearch.parse(request.getReader(), getBatchMaxSearches());
+            }
+            catch (IllegalArgumentException e)
+            {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                return;
+            }
+
+            String responseFormat = getResponseFormat(request);
+            if (!responseFormat.equals(RESPONSE_XML) && !responseFormat.equals(RESPONSE_JSON) && !responseFormat.equals(RESPONSE_JSON_NEW))
+            {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, ErrorMessage.NO_HANDLER_FOR_TYPE_AND_FORMAT.getMsg(TYPE_BATCH, responseFormat));
+                return;
+            }
+
+            if (isRateLimited(request, response, searches.size()))
+            {
+                return;
+            }
+
+            String responseVersion = request.getParameter(RequestParameter.VERSION.getName());
+            if (Strings.isNullOrEmpty(responseVersion))
+            {
+                responseVersion = WS_VERSION_2;
+            }
+
+            boolean isPretty = "true".equals(request.getParameter(RequestParameter.PRETTY.getName()));
+
+            RequestTimer timer = new RequestTimer();
+            RequestTimer.attach(timer);
+            long start = System.nanoTime();
+            try
+            {
+                doBatchSearch(response, new BatchSearch(searches, responseFormat), responseVersion, isPretty, timer);
+                timer.add(RequestTimer.Stage.TOTAL, System.nanoTime() - start);
+                metrics.record(TYPE_BATCH, responseFormat, timer);
+            }
+            catch (RejectedExecutionException ree)
+            {
+                log.info("Search rejected, too many searches over multiple indexes: batch of " + searches.size());
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, ErrorMessage.SERVER_BUSY.getMsg());
+                return;
+            }
+            finally
+            {
+                RequestTimer.detach();
+            }
+        }
+        catch (Exception e)
+        {
+            log.log(Level.WARNING, "batch:" + e.getMessage(), e);
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+    }
+
+    /**
+     * Every search of a batch counts against the rate limit, so a batch can hold no more searches than the limit
+     * otherwise it would never be allowed
+     *
+     * @return max number of searches in a batch
+     */
+    private int getBatchMaxSearches()
+    {
+        return isRateLimiterEnabled ? Math.min(batchMaxSearches, RateLimiterChecker.getMaxWeight()) : batchMaxSearches;
+    }
+
+    /**
+     * Response Format, first defined by fmt parameter, if not set defined by accept header, if not set default to Xml.
+     * Note if accept header set to json this will set format to RESPONSE_JSON_NEW not RESPONSE_JSON (the old internal
+     * format)
+     *
+     * @param request
+     * @return
+     */
+    private String getResponseFormat(HttpServletRequest request)
+    {
+        String responseFormat = request.getParameter(RequestParameter.FORMAT.getName());
+        if (Strings.isNullOrEmpty(responseFormat))
+        {
+            Enumeration<String> headers = request.getHeaders("Accept");
+            while (headers.hasMoreElements())
+            {
+                String nextHeader = headers.nextElement();
+                if (nextHeader.equals("application/json"))
+                {
+                    responseFormat = RESPONSE_JSON_NEW;
+                    break;
+                }
+            }
+            // Default to xml if not provided
+            if (responseFormat == null)
+            {
+                responseFormat = RESPONSE_XML;
+            }
+        }
+        return responseFormat;
+    }
+
+    /**
+     * Check the request against the rate limiter, if over the limit the error is sent
+     *
+     * @param request
+     * @param response
+     * @param weight number of requests the request counts as
+     * @return true if over the limit so the request should go no further
+     * @throws IOException
+     */
+    private boolean isRateLimited(HttpServletRequest request, HttpServletResponse response, int weight) throws IOException
+    {
+        if (!isRateLimiterEnabled)
+        {
+            return false;
+        }
+
+        RateLimiterChecker.RateLimiterResponse rateLimiterResponse = RateLimiterChecker.checkRateLimiter(request, weight);
+        if (rateLimiterResponse.isValid())
+        {
+            return false;
+        }
+
+        if (rateLimiterResponse.getHeaderMsg() != null)
+        {
+            response.setHeader(RateLimiterChecker.HEADER_RATE_LIMITED, rateLimiterResponse.getHeaderMsg());
+        }
+        metrics.incrementRateLimitedCount();
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, rateLimiterResponse.getMsg());
+        return true;
+    }
+
     /**
      * See http://tickets.musicbrainz.org/browse/SEARCH-411
      *
@@ -633,7 +1275,7 @@ public class SearchServerServlet extends HttpServlet
     }
 
     /**
-     * Normal Search over one index
+     * Normal Search over one index, either from offset or, if cursor is set, after the cursor
      *
      * @param response
      * @param resourceType
@@ -643,10 +1285,13 @@ public class SearchServerServlet extends HttpServlet
      * @param offset
      * @param limit
      * @param responseFormat
-     * @param responseVersion @throws ParseException
+     * @param responseVersion
+     * @param cursor cursor returned with the previous page of results, SearchCursor.FIRST_PAGE for the first page or null if not paging with a cursor
+     * @throws ParseException
      * @throws IOException
+     * @throws SearchCursor.ExpiredException
      */
-    public void doSearch(HttpServletResponse response, ResourceType resourceType, String query, boolean isDismax, boolean isExplain, boolean isPretty, Integer offset, Integer limit, String responseFormat, String responseVersion) throws ParseException, IOException
+    public void doSearch(HttpServletResponse response, ResourceType resourceType, String query, boolean isDismax, boolean isExplain, boolean isPretty, Integer offset, Integer limit, String responseFormat, String responseVersion, String cursor) throws ParseException, IOException, SearchCursor.ExpiredException
     {
 
         SearchServer searchServer;
@@ -685,9 +1330,6 @@ public class SearchServerServlet extends HttpServlet
             */
         }
 
-        long startLucene = System.currentTimeMillis();
-        Results results = searchServer.search(query, offset, limit);
-
         org.musicbrainz.search.servlet.ResultsWriter writer = searchServer.getWriter(responseVersion);
 
         if (writer == null)
@@ -695,37 +1337,358 @@ public class SearchServerServlet extends HttpServlet
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ErrorMessage.NO_HANDLER_FOR_TYPE_AND_FORMAT.getMsg(resourceType, responseFormat));
             return;
         }
-        response.setCharacterEncoding(CHARSET);
-        if (responseFormat.equals(RESPONSE_XML))
+
+        // Output results straight from the cache if the same search has been done since the index was last reloaded,
+        // results of cursor searches are not cached because the next cursor is returned in a header
+        ResultsCache resultsCache = cursor == null ? resultsCaches.get(resourceType) : null;
+        String cacheKey = null;
+        long cacheGeneration = 0;
+        byte[] cachedResults = null;
+        if (resultsCache != null)
         {
-            response.setContentType(writer.getMimeType());
+            cacheKey = ResultsCache.createKey(query, isDismax, offset, limit, responseFormat, responseVersion, isPretty,
+                    writer.getLastUpdateDate());
+            cacheGeneration = resultsCache.getGeneration();
+            cachedResults = resultsCache.get(cacheKey);
         }
-        else
+
+        // Identical searches requested at the same time are only done once, the requests that join a search already
+        // being done wait for it and are sent the same results
+        InFlightSearches inFlightSearches = this.inFlightSearches;
+        InFlightSearches.Search inFlightSearch = null;
+        if (cursor == null && cachedResults == null && inFlightSearches != null)
         {
-            response.setContentType(((ResultsWriter) writer).getJsonMimeType());
+            String key = resourceType.getName() + ':' + (cacheKey != null ? cacheKey : ResultsCache.createKey(query,
+                    isDismax, offset, limit, responseFormat, responseVersion, isPretty, writer.getLastUpdateDate()));
+            inFlightSearch = inFlightSearches.join(key);
+            if (!inFlightSearch.isLeader())
+            {
+                try
+                {
+                    cachedResults = inFlightSearches.await(inFlightSearch);
+                }
+                catch (InterruptedException ie)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                if (cachedResults != null)
+                {
+                    metrics.incrementCoalescedCount();
+                }
+
+                // Otherwise do the search without sharing it
+                inFlightSearch = null;
+            }
         }
 
-        if (writer.getLastUpdateDate() != null)
+        byte[] sharedResults = null;
+        try
         {
-            response.setDateHeader("Last-Modified", writer.getLastUpdateDate().getTime());
+            Results results = null;
+            if (cursor != null)
+            {
+                SearchCursor after;
+                try
+                {
+                    after = SearchCursor.valueOf(cursor);
+                }
+                catch (IllegalArgumentException e)
+                {
+                    response.sendError(HttpServletResponse.SC_BAD_REQUEST, ErrorMessage.INVALID_CURSOR.getMsg(cursor));
+                    return;
+                }
+                results = searchServer.searchAfter(query, after, limit);
+                if (results.getNextCursor() != null)
+                {
+                    response.setHeader(HEADER_NEXT_CURSOR, results.getNextCursor().toString());
+                }
+            }
+            else if (cachedResults == null)
+            {
+                results = searchServer.search(query, offset, limit);
+            }
+
+            if (results != null && results.isPartial())
+            {
+                log.info("Query timeout, returning partial results: " + query);
+                response.setHeader(HEADER_PARTIAL_RESULTS, "true");
+            }
+
+            response.setCharacterEncoding(CHARSET);
+            if (responseFormat.equals(RESPONSE_XML))
+            {
+                response.setContentType(writer.getMimeType());
+            }
+            else
+            {
+                response.setContentType(((ResultsWriter) writer).getJsonMimeType());
+            }
+
+            if (writer.getLastUpdateDate() != null)
+            {
+                response.setDateHeader("Last-Modified", writer.getLastUpdateDate().getTime());
+            }
+
+            if (cachedResults != null)
+            {
+                OutputStream os = response.getOutputStream();
+                try
+                {
+                    os.write(cachedResults);
+                }
+                finally
+                {
+                    os.close();
+                }
+                return;
+            }
+
+            if (inFlightSearch != null)
+            {
+                // Render the results before writing any of them to the client, so that the requests waiting for this
+                // search are released straight away rather than held up by a slow client
+                ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+                PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(rendered, CHARSET)));
+                try
+                {
+                    writeResults(writer, out, results, responseFormat, isPretty);
+                }
+                finally
+                {
+                    out.close();
+                }
+                byte[] renderedResults = rendered.toByteArray();
+
+                // Partial results are not cached or shared, the same search may well complete in time next time
+                if (!results.isPartial())
+                {
+                    sharedResults = renderedResults;
+                    if (resultsCache != null)
+                    {
+                        resultsCache.put(cacheKey, sharedResults, cacheGeneration);
+                    }
+                }
+                inFlightSearches.complete(inFlightSearch, sharedResults);
+                inFlightSearch = null;
+
+                OutputStream os = response.getOutputStream();
+                try
+                {
+                    os.write(renderedResults);
+                }
+                finally
+                {
+                    os.close();
+                }
+                return;
+            }
+
+            OutputStream os = response.getOutputStream();
+            ResultsCache.Recorder recorder = null;
+            if (resultsCache != null)
+            {
+                recorder = resultsCache.newRecorder(os);
+                os = recorder;
+            }
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(os, CHARSET)));
+            try
+            {
+                writeResults(writer, out, results, responseFormat, isPretty);
+            }
+            finally
+            {
+                out.close();
+            }
+
+            // Partial results are not cached or shared, the same search may well complete in time next time
+            if (recorder != null && !out.checkError() && !results.isPartial())
+            {
+                sharedResults = recorder.getBytes();
+                if (resultsCache != null)
+                {
+                    resultsCache.put(cacheKey, sharedResults, cacheGeneration);
+                }
+            }
         }
+        finally
+        {
+            // Always release the requests waiting for this search, even if it failed before completing it
+            if (inFlightSearch != null)
+            {
+                inFlightSearches.complete(inFlightSearch, sharedResults);
+            }
+        }
+    }
+
+    /**
+     * Write the results, recording the time taken as the serialize stage of the request
+     *
+     * Writing also converts the results into the objects that are serialized, the time taken by that is recorded by
+     * the writer as the deserialize stage so it is left out of the serialize stage.
+     *
+     * @param writer
+     * @param out
+     * @param results
+     * @param responseFormat
+     * @param isPretty
+     * @throws IOException
+     */
+    private void writeResults(org.musicbrainz.search.servlet.ResultsWriter writer, PrintWriter out, Results results, String responseFormat, boolean isPretty) throws IOException
+    {
+        long start = System.nanoTime();
+        long deserializeAtStart = RequestTimer.getCurrent(RequestTimer.Stage.DESERIALIZE);
+        writer.write(out, results, responseFormat, isPretty);
+        long deserialize = RequestTimer.getCurrent(RequestTimer.Stage.DESERIALIZE) - deserializeAtStart;
+        RequestTimer.record(RequestTimer.Stage.SERIALIZE, start + deserialize);
+    }
 
+    /**
+     * Batch of searches over one index each, run in parallel on the same executor as searches over multiple indexes
+     *
+     * The output of each search is written as soon as it and the searches before it have finished, so the client can
+     * start reading the first results while later searches are still being done. Searches not finished by the deadline
+     * of the batch, or that fail, are written as an error without failing the whole batch.
+     *
+     * @param response
+     * @param batch
+     * @param responseVersion
+     * @param isPretty
+     * @param timer times of each search are added to this, as they are done by other threads
+     * @throws IOException
+     */
+    private void doBatchSearch(HttpServletResponse response, BatchSearch batch, String responseVersion, boolean isPretty, RequestTimer timer) throws IOException
+    {
+        List<SearchServer> searchServers = new ArrayList<SearchServer>();
+        Collection<Callable<Results>> searches = new ArrayList<Callable<Results>>();
+        for (BatchSearch.Search next : batch.getSearches())
+        {
+            SearchServer searchServer = next.isDismax() ? dismaxSearchers.get(next.getResourceType()) : searchers.get(next.getResourceType());
+            searchServers.add(searchServer);
+            if (searchServer != null)
+            {
+                searches.add(new CallableSearch(searchServer, next.getQuery(), next.getOffset(), next.getLimit(), timer));
+            }
+        }
+
+        // All searches share one deadline, searches still waiting for a thread by then are not started
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchTimeout);
+        List<Future<Results>> results = searchAllExecutor.submitAll(searches, batchTimeout);
+
+        response.setCharacterEncoding(CHARSET);
+        response.setContentType(batch.getMimeType());
         PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), CHARSET)));
+        int resultNo = 0;
         try
         {
-            long startSer = System.currentTimeMillis();
-            writer.write(out, results, responseFormat, isPretty);
-            if (resourceType.getName() == "recording")
-                log.info("lucene:" + (System.currentTimeMillis()-startLucene) + 
-                         " serialize:" + (System.currentTimeMillis()-startSer) +
-                         " query " + query);
+            batch.writeStart(out);
+            for (int i = 0; i < batch.size(); i++)
+            {
+                BatchSearch.Search search = batch.getSearches().get(i);
+                SearchServer searchServer = searchServers.get(i);
+                if (searchServer == null)
+                {
+                    batch.writeError(out, i, ErrorMessage.INDEX_NOT_AVAILABLE_FOR_TYPE.getMsg(search.getResourceType()));
+                    continue;
+                }
+
+                Future<Results> result = results.get(resultNo++);
+                try
+                {
+                    Results next = result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    org.musicbrainz.search.servlet.ResultsWriter writer = searchServer.getWriter(responseVersion);
+                    if (writer == null)
+                    {
+                        batch.writeError(out, i, ErrorMessage.NO_HANDLER_FOR_TYPE_AND_FORMAT.getMsg(search.getResourceType(), batch.getResponseFormat()));
+                        continue;
+                    }
+
+                    // Written to a buffer first so that a search failing part way through leaves the batch well formed
+                    StringWriter sw = new StringWriter();
+                    PrintWriter searchOut = new PrintWriter(sw);
+                    writeResults(writer, searchOut, next, batch.getResponseFormat(), isPretty);
+                    searchOut.close();
+                    if (next.isPartial())
+                    {
+                        log.info("Query timeout, returning partial results: " + search.getQuery());
+                    }
+                    batch.writeResults(out, i, sw.toString(), next.isPartial());
+                }
+                catch (TimeoutException te)
+                {
+                    log.info("Query timeout in batch: " + search.getQuery());
+                    metrics.incrementTimeoutCount();
+                    cancelSearch(result);
+                    batch.writeError(out, i, ErrorMessage.REQUEST_TIMEOUT_EXCEEDED.getMsg());
+                }
+                catch (InterruptedException ie)
+                {
+                    Thread.currentThread().interrupt();
+                    batch.writeError(out, i, ErrorMessage.REQUEST_TIMEOUT_EXCEEDED.getMsg());
+                }
+                catch (ExecutionException ee)
+                {
+                    batch.writeError(out, i, getBatchErrorMsg(ee.getCause(), search.getQuery()));
+                }
+                catch (IOException ioe)
+                {
+                    log.log(Level.WARNING, search.getQuery() + ":" + ioe.getMessage(), ioe);
+                    batch.writeError(out, i, ioe.getMessage());
+                }
+                out.flush();
+            }
+            batch.writeEnd(out);
         }
         finally
         {
+            // Searches not waited for, e.g. because writing to the client failed, are no longer wanted
+            for (Future<Results> next : results)
+            {
+                cancelSearch(next);
+            }
             out.close();
         }
     }
 
+    /**
+     * Cancel a search submitted to the executor that is no longer wanted, a search still waiting for a thread is never
+     * started and a running search is interrupted unless that isn't safe for the indexes. Only for searches that
+     * release what they hold themselves if they finish after being cancelled.
+     *
+     * @param search
+     */
+    private void cancelSearch(Future<?> search)
+    {
+        search.cancel(isSearchInterruptible);
+    }
+
+    /**
+     * Error for a search of a batch that failed, the same as would be sent for the search on its own
+     *
+     * @param cause what the search threw
+     * @param query
+     * @return
+     */
+    private String getBatchErrorMsg(Throwable cause, String query)
+    {
+        if (cause instanceof TimeExceededException || cause instanceof TimeoutException)
+        {
+            log.info("Query timeout in batch: " + query);
+            metrics.incrementTimeoutCount();
+            return ErrorMessage.REQUEST_TIMEOUT_EXCEEDED.getMsg();
+        }
+        if (cause instanceof ParseException)
+        {
+            metrics.incrementParseErrorCount();
+            return ErrorMessage.UNABLE_TO_PARSE_SEARCH.getMsg(query);
+        }
+        if (cause instanceof NullPointerException && isUnescapedBackslashIssue(cause.getStackTrace(), query))
+        {
+            return ErrorMessage.UNABLE_TO_PARSE_SEARCH_SLASHES_ARE_REGEXP.getMsg(query);
+        }
+        log.log(Level.WARNING, query + ":" + cause.getMessage(), cause);
+        return cause.getMessage();
+    }
+
     /**
      * Search over multiple different indexes and return merged result
      *
@@ -736,9 +1699,10 @@ public class SearchServerServlet extends HttpServlet
      * @param limit
      * @param responseFormat @throws ParseException
      * @param isPretty
+     * @param timer times of the searches of each index are added to this, as they are done by other threads
      * @throws IOException
      */
-    private void doAllSearch(HttpServletResponse response, String query, boolean isDismax, Integer offset, Integer limit, String responseFormat, boolean isPretty) throws Exception
+    private void doAllSearch(HttpServletResponse response, String query, boolean isDismax, Integer offset, Integer limit, String responseFormat, boolean isPretty, RequestTimer timer) throws Exception
     {
         SearchServer artistSearch = isDismax ? dismaxSearchers.get(ResourceType.ARTIST) : searchers.get(ResourceType.ARTIST);
         SearchServer releaseSearch = isDismax ? dismaxSearchers.get(ResourceType.RELEASE) : searchers.get(ResourceType.RELEASE);
@@ -747,28 +1711,82 @@ public class SearchServerServlet extends HttpServlet
         SearchServer recordingSearch = isDismax ? dismaxSearchers.get(ResourceType.RECORDING) : searchers.get(ResourceType.RECORDING);
         SearchServer workSearch = isDismax ? dismaxSearchers.get(ResourceType.WORK) : searchers.get(ResourceType.WORK);
 
-        Collection<Callable<Results>> searches = new ArrayList<Callable<Results>>();
-        searches.add(new CallableSearch(artistSearch, query, offset, limit));
-        searches.add(new CallableSearch(releaseSearch, query, offset, limit));
-        searches.add(new CallableSearch(releaseGroupSearch, query, offset, limit));
-        searches.add(new CallableSearch(labelSearch, query, offset, limit));
-        searches.add(new CallableSearch(recordingSearch, query, offset, limit));
-        searches.add(new CallableSearch(workSearch, query, offset, limit));
+        // Only find the top hits of each index, so the documents are only loaded once merged for those actually output
+        List<CallableTopHitsSearch> searches = new ArrayList<CallableTopHitsSearch>();
+        searches.add(new CallableTopHitsSearch(artistSearch, query, offset + limit, timer));
+        searches.add(new CallableTopHitsSearch(releaseSearch, query, offset + limit, timer));
+        searches.add(new CallableTopHitsSearch(releaseGroupSearch, query, offset + limit, timer));
+        searches.add(new CallableTopHitsSearch(labelSearch, query, offset + limit, timer));
+        searches.add(new CallableTopHitsSearch(recordingSearch, query, offset + limit, timer));
+        searches.add(new CallableTopHitsSearch(workSearch, query, offset + limit, timer));
 
         // Run each search in parallel then merge results
-        List<Future<Results>> results = es.invokeAll(searches);
+        List<Future<TopHits>> topHits = searchAllExecutor.submitAll(searches, searchAllTimeout);
+        List<Results> results;
+        try
+        {
+            // Top hits are returned in same order as they were submitted
+            List<TopHits> allTopHits = new ArrayList<TopHits>();
+            for (Future<TopHits> next : topHits)
+            {
+                allTopHits.add(next.get());
+            }
+            results = TopHits.mergeAndLoad(allTopHits, offset, limit);
+        }
+        catch (ExecutionException e)
+        {
+            // Rethrow what the search threw so it is reported the same way as for a search over one index
+            if (e.getCause() instanceof Exception)
+            {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+        finally
+        {
+            // Release the searchers of every search that succeeded, and cancel the searches still being done if
+            // another failed rather than waiting for them, they release their own searchers when they finish
+            for (int i = 0; i < topHits.size(); i++)
+            {
+                if (searches.get(i).abandon())
+                {
+                    try
+                    {
+                        // Already returned so this only waits for the executor to hand it over
+                        Uninterruptibles.getUninterruptibly(topHits.get(i)).release();
+                    }
+                    catch (ExecutionException e)
+                    {
+                        // Search failed so has no searcher to release
+                    }
+                }
+                else
+                {
+                    cancelSearch(topHits.get(i));
+                }
+            }
+        }
         Results allResults = new Results();
-        // Results are returned in same order as they were submitted
-        Results artistResults = results.get(0).get();
-        Results releaseResults = results.get(1).get();
-        Results releaseGroupResults = results.get(2).get();
-        Results labelResults = results.get(3).get();
-        Results recordingResults = results.get(4).get();
-        Results workResults = results.get(5).get();
+        Results artistResults = results.get(0);
+        Results releaseResults = results.get(1);
+        Results releaseGroupResults = results.get(2);
+        Results labelResults = results.get(3);
+        Results recordingResults = results.get(4);
+        Results workResults = results.get(5);
 
         AllWriter writer = new AllWriter(offset, limit, artistResults, releaseResults, releaseGroupResults, labelResults, recordingResults, workResults);
         response.setCharacterEncoding(CHARSET);
 
+        for (Results next : results)
+        {
+            if (next.isPartial())
+            {
+                log.info("Query timeout, returning partial results: " + query);
+                response.setHeader(HEADER_PARTIAL_RESULTS, "true");
+                break;
+            }
+        }
+
         if (responseFormat.equals(RESPONSE_XML))
         {
             response.setContentType(writer.getMimeType());
@@ -786,7 +1804,7 @@ public class SearchServerServlet extends HttpServlet
         PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), CHARSET)));
         try
         {
-            writer.write(out, allResults, responseFormat, isPretty);
+            writeResults(writer, out, allResults, responseFormat, isPretty);
         }
         finally
         {
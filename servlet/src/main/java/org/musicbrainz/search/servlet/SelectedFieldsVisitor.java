@@ -0,0 +1,81 @@
+package org.musicbrainz.search.servlet;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.StoredFieldVisitor;
+
+/**
+ * Loads only the selected stored fields of a document, the values of other fields are skipped without being decoded.
+ *
+ * Each selected field is expected to have a single value, so once all of them have been found the rest of the stored
+ * fields of the document aren't visited at all. Selected fields the document doesn't have are left out, as they would
+ * be by IndexSearcher.doc().
+ */
+public class SelectedFieldsVisitor extends StoredFieldVisitor {
+
+  private final Set<String> fields;
+  private final Document doc = new Document();
+  private int noOfFieldsFound;
+
+  /**
+   * @param fields names of the fields to load
+   */
+  public SelectedFieldsVisitor(Set<String> fields) {
+    this.fields = fields;
+  }
+
+  @Override
+  public Status needsField(FieldInfo fieldInfo) throws IOException {
+    if (noOfFieldsFound == fields.size()) {
+      return Status.STOP;
+    }
+    return fields.contains(fieldInfo.name) ? Status.YES : Status.NO;
+  }
+
+  @Override
+  public void binaryField(FieldInfo fieldInfo, byte[] value) throws IOException {
+    doc.add(new StoredField(fieldInfo.name, value));
+    noOfFieldsFound++;
+  }
+
+  @Override
+  public void stringField(FieldInfo fieldInfo, String value) throws IOException {
+    doc.add(new StoredField(fieldInfo.name, value));
+    noOfFieldsFound++;
+  }
+
+  @Override
+  public void intField(FieldInfo fieldInfo, int value) {
+    doc.add(new StoredField(fieldInfo.name, value));
+    noOfFieldsFound++;
+  }
+
+  @Override
+  public void longField(FieldInfo fieldInfo, long value) {
+    doc.add(new StoredField(fieldInfo.name, value));
+    noOfFieldsFound++;
+  }
+
+  @Override
+  public void floatField(FieldInfo fieldInfo, float value) {
+    doc.add(new StoredField(fieldInfo.name, value));
+    noOfFieldsFound++;
+  }
+
+  @Override
+  public void doubleField(FieldInfo fieldInfo, double value) {
+    doc.add(new StoredField(fieldInfo.name, value));
+    noOfFieldsFound++;
+  }
+
+  /**
+   * @return document containing the fields loaded
+   */
+  public Document getDocument() {
+    return doc;
+  }
+}
@@ -55,6 +55,7 @@ public class SeriesSearch extends AbstractSearchServer {
     resultsWriter = new SeriesWriter();
     setupDefaultFields();
     analyzer = DatabaseIndex.getAnalyzer(SeriesIndexField.class);
+    setStoredFields(SeriesIndexField.SERIES_STORE);
   }
 
   public SeriesSearch(SearcherManager searcherManager) throws Exception {
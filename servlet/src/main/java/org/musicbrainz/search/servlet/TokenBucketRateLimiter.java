@@ -0,0 +1,174 @@
+package org.musicbrainz.search.servlet;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In process alternative to the rate limiter server, limiting each ip address to a number of requests per period
+ * using a token bucket per ip address.
+ *
+ * Buckets are held in a number of stripes, each stripe has its own lock so requests from different ip addresses rarely
+ * wait for one another. Each stripe holds a limited number of buckets, discarding the least recently used bucket when
+ * full, so memory use is bounded however many ip addresses make requests. A discarded bucket would have been full
+ * again anyway unless the ip address is making requests while hundreds of thousands of other addresses are.
+ *
+ * Replies take the same form as the rate limiter server's so they can be passed to RateLimiterResponse.
+ */
+public class TokenBucketRateLimiter
+{
+    private static final int NO_OF_STRIPES = 64;
+
+    private static final String REPLY_ALLOWED      = "ok N";
+    private static final String REPLY_OVER_LIMIT   = "ok Y %.2f %d %d";
+
+    private final int limit;
+    private final int periodInSeconds;
+    private final double tokensPerNano;
+    private final Stripe[] stripes;
+
+    /**
+     * Tokens remaining for one ip address, one token is used for each request
+     */
+    private static class Bucket
+    {
+        private double tokens;
+        private long   lastRefill;
+
+        private Bucket(double tokens, long lastRefill)
+        {
+            this.tokens = tokens;
+            this.lastRefill = lastRefill;
+        }
+    }
+
+    /**
+     * Least recently used buckets, discarding the eldest when full
+     */
+    private static class Stripe extends LinkedHashMap<String, Bucket>
+    {
+        private final int maxSize;
+
+        private Stripe(int maxSize)
+        {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest)
+        {
+            return size() > maxSize;
+        }
+    }
+
+    /**
+     * @param limit           max number of requests an ip address can make in period
+     * @param periodInSeconds
+     * @param maxIpAddresses  max number of ip addresses to hold buckets for
+     */
+    public TokenBucketRateLimiter(int limit, int periodInSeconds, int maxIpAddresses)
+    {
+        if (limit < 1 || periodInSeconds < 1 || maxIpAddresses < 1)
+        {
+            throw new IllegalArgumentException("limit, period and max ip addresses must be positive");
+        }
+        this.limit = limit;
+        this.periodInSeconds = periodInSeconds;
+        this.tokensPerNano = (double) limit / TimeUnit.SECONDS.toNanos(periodInSeconds);
+        this.stripes = new Stripe[NO_OF_STRIPES];
+        int maxSizeOfStripe = Math.max(1, maxIpAddresses / NO_OF_STRIPES);
+        for (int i = 0; i < stripes.length; i++)
+        {
+            stripes[i] = new Stripe(maxSizeOfStripe);
+        }
+    }
+
+    /**
+     * Use a token for a request from the ip address
+     *
+     * @param remoteIpAddress
+     * @return reply in the form of the rate limiter server, 'ok N' if the request is allowed, 'ok Y' followed by the
+     * current rate, limit and period if it is over the limit
+     */
+    public String check(String remoteIpAddress)
+    {
+        return check(remoteIpAddress, System.nanoTime());
+    }
+
+    String check(String remoteIpAddress, long now)
+    {
+        return checkWeighted(remoteIpAddress, 1, now);
+    }
+
+    /**
+     * Use a token for each of the requests a request counts as, e.g. for each search of a batch of searches. A request
+     * counting as more than the limit is never allowed, so the servlet doesn't accept batches larger than the limit.
+     *
+     * @param remoteIpAddress
+     * @param weight number of requests the request counts as
+     * @return reply in the form of the rate limiter server
+     */
+    public String checkWeighted(String remoteIpAddress, int weight)
+    {
+        return checkWeighted(remoteIpAddress, weight, System.nanoTime());
+    }
+
+    String checkWeighted(String remoteIpAddress, int weight, long now)
+    {
+        double cost = Math.max(1, weight);
+        Stripe stripe = stripes[(remoteIpAddress.hashCode() & 0x7fffffff) % stripes.length];
+        double tokens;
+        synchronized (stripe)
+        {
+            Bucket bucket = stripe.get(remoteIpAddress);
+            if (bucket == null)
+            {
+                bucket = new Bucket(limit, now);
+                stripe.put(remoteIpAddress, bucket);
+            }
+            else
+            {
+                bucket.tokens = Math.min(limit, bucket.tokens + (now - bucket.lastRefill) * tokensPerNano);
+                bucket.lastRefill = now;
+            }
+
+            if (bucket.tokens >= cost)
+            {
+                bucket.tokens -= cost;
+                return REPLY_ALLOWED;
+            }
+            tokens = bucket.tokens;
+        }
+
+        // Rate is the number of requests made in the last period, including this one
+        return String.format(Locale.US, REPLY_OVER_LIMIT, limit + cost - tokens, limit, periodInSeconds);
+    }
+
+    /**
+     * @return number of ip addresses buckets are currently held for
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Stripe stripe : stripes)
+        {
+            synchronized (stripe)
+            {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public int getLimit()
+    {
+        return limit;
+    }
+
+    public int getPeriodInSeconds()
+    {
+        return periodInSeconds;
+    }
+}
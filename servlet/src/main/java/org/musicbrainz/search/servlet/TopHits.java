@@ -0,0 +1,147 @@
+package org.musicbrainz.search.servlet;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Top hits found in one index when searching more than one index, only holding doc ids and scores so that documents
+ * are only loaded for the hits that are still in the top hits once the hits from all the indexes have been merged.
+ *
+ * Doc ids are only valid for the searcher they were found with, so the searcher is held until released.
+ */
+public class TopHits
+{
+    private final AbstractSearchServer searchServer;
+    private final IndexSearcher searcher;
+    private final TopDocs topDocs;
+
+    public TopHits(AbstractSearchServer searchServer, IndexSearcher searcher, TopDocs topDocs)
+    {
+        this.searchServer = searchServer;
+        this.searcher = searcher;
+        this.topDocs = topDocs;
+    }
+
+    public TopDocs getTopDocs()
+    {
+        return topDocs;
+    }
+
+    /**
+     * @return true if the search of this index ran out of time before all hits were collected
+     */
+    public boolean isPartial()
+    {
+        return topDocs instanceof AbstractSearchServer.PartialTopDocs;
+    }
+
+    /**
+     * Load the documents for some of the hits
+     *
+     * @param scoreDocs hits to load, in the order they should be returned
+     * @param offset    offset of the merged results these hits are part of
+     * @return
+     * @throws IOException
+     */
+    public Results loadResults(ScoreDoc[] scoreDocs, int offset) throws IOException
+    {
+        Results results = searchServer.processResults(searcher,
+                new TopDocs(topDocs.totalHits, scoreDocs, topDocs.getMaxScore()), 0);
+        results.setOffset(offset);
+        results.setPartial(isPartial());
+        return results;
+    }
+
+    /**
+     * Release the searcher, the hits can no longer be loaded
+     *
+     * @throws IOException
+     */
+    public void release() throws IOException
+    {
+        searchServer.getSearcherManager().release(searcher);
+    }
+
+    /**
+     * Merge the top hits from each index into a single list ordered by score and load the documents of the hits from
+     * offset up to limit of that list, so each index only loads the documents that will actually be output.
+     *
+     * @param topHits top offset + limit hits of each index
+     * @param offset
+     * @param limit
+     * @return results for each index, in the same order as topHits
+     * @throws IOException
+     */
+    public static List<Results> mergeAndLoad(List<TopHits> topHits, int offset, int limit) throws IOException
+    {
+        TopDocs[] topDocs = new TopDocs[topHits.size()];
+        for (int i = 0; i < topDocs.length; i++)
+        {
+            topDocs[i] = topHits.get(i).getTopDocs();
+        }
+
+        ScoreDoc[][] selected = select(topDocs, offset, limit);
+        List<Results> results = new ArrayList<Results>(topHits.size());
+        for (int i = 0; i < selected.length; i++)
+        {
+            results.add(topHits.get(i).loadResults(selected[i], offset));
+        }
+        return results;
+    }
+
+    /**
+     * Select the hits from offset up to limit when all the hits are ordered by score, hits with the same score are
+     * ordered by index then by their order within the index
+     *
+     * @param topDocs top hits of each index
+     * @param offset
+     * @param limit
+     * @return selected hits of each index, in their original order
+     */
+    static ScoreDoc[][] select(TopDocs[] topDocs, int offset, int limit)
+    {
+        List<List<ScoreDoc>> selected = new ArrayList<List<ScoreDoc>>(topDocs.length);
+        int[] next = new int[topDocs.length];
+        for (int i = 0; i < topDocs.length; i++)
+        {
+            selected.add(new ArrayList<ScoreDoc>());
+        }
+
+        for (int position = 0; position < offset + limit; position++)
+        {
+            // Find the best hit not yet taken from any index
+            int best = -1;
+            for (int i = 0; i < topDocs.length; i++)
+            {
+                ScoreDoc[] scoreDocs = topDocs[i].scoreDocs;
+                if (next[i] < scoreDocs.length
+                        && (best == -1 || scoreDocs[next[i]].score > topDocs[best].scoreDocs[next[best]].score))
+                {
+                    best = i;
+                }
+            }
+
+            if (best == -1)
+            {
+                break;
+            }
+            if (position >= offset)
+            {
+                selected.get(best).add(topDocs[best].scoreDocs[next[best]]);
+            }
+            next[best]++;
+        }
+
+        ScoreDoc[][] result = new ScoreDoc[topDocs.length][];
+        for (int i = 0; i < topDocs.length; i++)
+        {
+            result[i] = selected.get(i).toArray(new ScoreDoc[selected.get(i).size()]);
+        }
+        return result;
+    }
+}
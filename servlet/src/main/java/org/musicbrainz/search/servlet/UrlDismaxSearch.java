@@ -48,7 +48,7 @@ public class UrlDismaxSearch extends AbstractDismaxSearchServer {
   protected Query parseQuery(String query) throws ParseException {
     // Treat all as text
     query = QueryParser.escape(query);
-    QueryParser parser = realSearchServer.getParser();
+    QueryParser parser = realSearchServer.getThreadLocalParser();
     return parser.parse(query);
   }
 
@@ -25,6 +25,7 @@ public class UrlSearch extends AbstractSearchServer {
     resultsWriter = new UrlWriter();
     setupDefaultFields();
     analyzer = DatabaseIndex.getAnalyzer(UrlIndexField.class);
+    setStoredFields(UrlIndexField.URL_STORE);
   }
 
   public UrlSearch(SearcherManager searcherManager) throws Exception {
@@ -0,0 +1,257 @@
+package org.musicbrainz.search.servlet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+
+/**
+ * Warms each new searcher before it is used for searches, so that the first searches after the indexes have been
+ * loaded don't have to wait for the index files to be paged in.
+ *
+ * Warming reads through the hot files of each segment not already read, such as the term dictionary, and then replays
+ * a list of recent queries against the searcher loading the documents found. Queries can only be parsed once the
+ * search server has been set, the first searcher is created before the search server exists so it has to be warmed
+ * by calling warm() once the search server has been set, later searchers are warmed before the SearcherManager
+ * makes them available.
+ */
+public class WarmingSearcherFactory extends MusicBrainzSearcherFactory {
+
+  private static final Logger log = Logger.getLogger(WarmingSearcherFactory.class.getName());
+
+  // Term index and dictionary, the files used by every search
+  public static final String[] DEFAULT_HOT_FILE_EXTENSIONS = {"tip", "tim"};
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final ResourceType resourceType;
+  private final List<String> queries;
+  private final Set<String> hotFileExtensions;
+
+  // Files already read, index files are never changed once written so they only need to be read once. Only the files
+  // of the last searcher warmed are kept, so that the set doesn't grow and a file name reused once the index has been
+  // rebuilt is read again
+  private final Set<String> touchedFiles = new HashSet<String>();
+
+  private volatile AbstractSearchServer searchServer;
+  private volatile boolean isWarmed = false;
+  private volatile long warmUpTime;
+  private volatile int warmUpQueryCount;
+
+  /**
+   * @param resourceType
+   * @param queries queries to replay, may be empty
+   * @param hotFileExtensions extensions of the files to read through
+   */
+  public WarmingSearcherFactory(ResourceType resourceType, List<String> queries, String[] hotFileExtensions) {
+    super(resourceType);
+    this.resourceType = resourceType;
+    this.queries = queries;
+    this.hotFileExtensions = new HashSet<String>();
+    Collections.addAll(this.hotFileExtensions, hotFileExtensions);
+  }
+
+  /**
+   * Load the queries to replay from a file containing one query per line, blank lines and lines starting with # are
+   * ignored
+   *
+   * @param file
+   * @param maxQueries only the first maxQueries queries are loaded
+   * @return queries, or an empty list if the file doesn't exist
+   * @throws IOException
+   */
+  public static List<String> loadQueries(File file, int maxQueries) throws IOException {
+    List<String> queries = new ArrayList<String>();
+    if (!file.exists()) {
+      return queries;
+    }
+
+    BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      String line;
+      while (queries.size() < maxQueries && (line = in.readLine()) != null) {
+        line = line.trim();
+        if (line.length() > 0 && !line.startsWith("#")) {
+          queries.add(line);
+        }
+      }
+    } finally {
+      in.close();
+    }
+    return queries;
+  }
+
+  /**
+   * @param searchServer search server used to parse the queries replayed
+   */
+  public void setSearchServer(AbstractSearchServer searchServer) {
+    this.searchServer = searchServer;
+  }
+
+  @Override
+  public IndexSearcher newSearcher(IndexReader reader) throws IOException {
+    IndexSearcher searcher = super.newSearcher(reader);
+    if (searchServer != null) {
+      warm(searcher);
+    }
+    return searcher;
+  }
+
+  /**
+   * Read through the hot files of the searcher and replay the queries against it
+   *
+   * @param searcher
+   * @throws IOException
+   */
+  public void warm(IndexSearcher searcher) throws IOException {
+    long start = System.currentTimeMillis();
+    touchHotFiles(searcher.getIndexReader());
+    int count = replayQueries(searcher);
+
+    warmUpTime = System.currentTimeMillis() - start;
+    warmUpQueryCount = count;
+    isWarmed = true;
+    log.info("Warmed " + resourceType.getIndexName() + " index:" + count + " queries in " + warmUpTime + " ms");
+  }
+
+  /**
+   * Read each hot file once, so that when memory mapped its pages are in the page cache
+   *
+   * @param reader
+   * @throws IOException
+   */
+  private void touchHotFiles(IndexReader reader) throws IOException {
+    Set<String> readerFiles = new HashSet<String>();
+    byte[] buffer = null;
+    for (AtomicReaderContext context : reader.leaves()) {
+      if (!(context.reader() instanceof SegmentReader)) {
+        continue;
+      }
+
+      SegmentReader segmentReader = (SegmentReader) context.reader();
+      Directory directory = segmentReader.directory();
+      for (String fileName : segmentReader.getSegmentInfo().files()) {
+        if (!hotFileExtensions.contains(IndexFileNames.getExtension(fileName))) {
+          continue;
+        }
+        readerFiles.add(fileName);
+        synchronized (touchedFiles) {
+          if (!touchedFiles.add(fileName)) {
+            continue;
+          }
+        }
+
+        if (buffer == null) {
+          buffer = new byte[BUFFER_SIZE];
+        }
+        IndexInput in = directory.openInput(fileName, IOContext.READONCE);
+        try {
+          long remaining = in.length();
+          while (remaining > 0) {
+            int length = (int) Math.min(buffer.length, remaining);
+            in.readBytes(buffer, 0, length);
+            remaining -= length;
+          }
+        } finally {
+          in.close();
+        }
+      }
+    }
+
+    synchronized (touchedFiles) {
+      touchedFiles.retainAll(readerFiles);
+    }
+  }
+
+  /**
+   * @return names of the files read warming searchers that are still part of the last searcher warmed
+   */
+  Set<String> getTouchedFiles() {
+    synchronized (touchedFiles) {
+      return new HashSet<String>(touchedFiles);
+    }
+  }
+
+  /**
+   * Search for each query and load the documents found, as a search request would
+   *
+   * @param searcher
+   * @return number of queries replayed
+   * @throws IOException
+   */
+  private int replayQueries(IndexSearcher searcher) throws IOException {
+    AbstractSearchServer server = searchServer;
+    if (server == null) {
+      return 0;
+    }
+
+    int count = 0;
+    for (String query : queries) {
+      // Skip queries that can't be parsed, as searching for them would have failed
+      Query parsedQuery;
+      try {
+        parsedQuery = server.parseQuery(query);
+      } catch (ParseException e) {
+        continue;
+      } catch (RuntimeException e) {
+        continue;
+      }
+
+      TopDocs topDocs = searcher.search(parsedQuery, SearchServerServlet.DEFAULT_MATCHES_LIMIT);
+      for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+        server.loadDocument(searcher, scoreDoc.doc);
+      }
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * @return true once a searcher has been warmed
+   */
+  public boolean isWarmed() {
+    return isWarmed;
+  }
+
+  /**
+   * @return time taken to warm the last searcher warmed, in milliseconds
+   */
+  public long getWarmUpTime() {
+    return warmUpTime;
+  }
+
+  /**
+   * @return number of queries replayed warming the last searcher warmed
+   */
+  public int getWarmUpQueryCount() {
+    return warmUpQueryCount;
+  }
+
+  @Override
+  public String toString() {
+    if (!isWarmed) {
+      return "not warmed";
+    }
+    return "warmed " + warmUpQueryCount + " queries in " + warmUpTime + " ms";
+  }
+}
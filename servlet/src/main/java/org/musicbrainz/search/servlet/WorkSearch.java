@@ -26,6 +26,7 @@ public class WorkSearch extends AbstractSearchServer {
     resultsWriter = new WorkWriter();
     setupDefaultFields();
     analyzer = DatabaseIndex.getAnalyzer(WorkIndexField.class);
+    setStoredFields(WorkIndexField.WORK_STORE);
   }
 
   public WorkSearch(SearcherManager searcherManager) throws Exception {
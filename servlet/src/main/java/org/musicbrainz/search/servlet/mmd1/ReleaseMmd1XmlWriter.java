@@ -69,7 +69,7 @@ public class ReleaseMmd1XmlWriter extends Mmd1XmlWriter {
             release.getOtherAttributes().put(getScore(), String.valueOf(result.getNormalizedScore()));
 
             org.musicbrainz.mmd2.Release releasev2
-                    = (org.musicbrainz.mmd2.Release) MMDSerializer.unserialize(doc.get(ReleaseIndexField.RELEASE_STORE), org.musicbrainz.mmd2.Release.class);
+                    = (org.musicbrainz.mmd2.Release) MMDSerializer.unserialize(doc, ReleaseIndexField.RELEASE_STORE, org.musicbrainz.mmd2.Release.class);
             release.setId(releasev2.getId());
             release.getType().add(StringUtils.capitalize(releasev2.getReleaseGroup().getType()));
 
@@ -59,7 +59,7 @@ public class TrackMmd1XmlWriter extends Mmd1XmlWriter {
 
 
             org.musicbrainz.mmd2.Recording recordingv2
-                    = (org.musicbrainz.mmd2.Recording) MMDSerializer.unserialize(doc.get(RecordingIndexField.RECORDING_STORE), org.musicbrainz.mmd2.Recording.class);
+                    = (org.musicbrainz.mmd2.Recording) MMDSerializer.unserialize(doc, RecordingIndexField.RECORDING_STORE, org.musicbrainz.mmd2.Recording.class);
 
             track.setId(recordingv2.getId());
 
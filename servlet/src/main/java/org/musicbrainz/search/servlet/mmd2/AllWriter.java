@@ -49,6 +49,16 @@ public class AllWriter extends ResultsWriter {
     public void write(Metadata metadata, Results results) throws IOException {
     }
 
+    /**
+     * Results are merged from the individual results passed to the constructor, so cannot be streamed
+     *
+     * @return false
+     */
+    @Override
+    protected boolean isStreamable() {
+        return false;
+    }
+
 
     public Metadata write(Results results) throws IOException {
 
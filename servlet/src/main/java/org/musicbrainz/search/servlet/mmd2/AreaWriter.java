@@ -82,7 +82,7 @@ public class AreaWriter extends ResultsWriter {
     public void write(List list, Result result) throws IOException {
         MbDocument doc = result.getDoc();
         //TODO DefAreaElementInner not defined as @Xmlrootelement so we have to wrap in list
-        AreaList areaList = (AreaList) MMDSerializer.unserialize(doc.get(AreaIndexField.AREA_STORE), AreaList.class);
+        AreaList areaList = (AreaList) MMDSerializer.unserialize(doc, AreaIndexField.AREA_STORE, AreaList.class);
         DefAreaElementInner area= areaList.getArea().get(0);
         area.setScore(result.getNormalizedScore());
         list.add(area);
@@ -83,7 +83,7 @@ public class ArtistWriter extends ResultsWriter {
      */
     public void write(List list, Result result) throws IOException {
         MbDocument doc = result.getDoc();
-        Artist artist = (Artist) MMDSerializer.unserialize(doc.get(ArtistIndexField.ARTIST_STORE), Artist.class);
+        Artist artist = (Artist) MMDSerializer.unserialize(doc, ArtistIndexField.ARTIST_STORE, Artist.class);
         artist.setScore(result.getNormalizedScore());
         list.add(artist);
     }
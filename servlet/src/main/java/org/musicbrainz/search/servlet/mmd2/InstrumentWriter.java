@@ -81,7 +81,7 @@ public class InstrumentWriter extends ResultsWriter {
      */
     public void write(List list, Result result) throws IOException {
         MbDocument doc = result.getDoc();
-        Instrument instrument = (Instrument) MMDSerializer.unserialize(doc.get(InstrumentIndexField.INSTRUMENT_STORE), Instrument.class);
+        Instrument instrument = (Instrument) MMDSerializer.unserialize(doc, InstrumentIndexField.INSTRUMENT_STORE, Instrument.class);
         instrument.setScore(result.getNormalizedScore());
         list.add(instrument);
     }
@@ -81,7 +81,7 @@ public class PlaceWriter extends ResultsWriter {
      */
     public void write(List list, Result result) throws IOException {
         MbDocument doc = result.getDoc();
-        Place place = (Place) MMDSerializer.unserialize(doc.get(PlaceIndexField.PLACE_STORE), Place.class);
+        Place place = (Place) MMDSerializer.unserialize(doc, PlaceIndexField.PLACE_STORE, Place.class);
         place.setScore(result.getNormalizedScore());
         list.add(place);
     }
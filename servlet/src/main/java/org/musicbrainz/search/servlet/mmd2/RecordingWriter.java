@@ -90,7 +90,7 @@ public class RecordingWriter extends ResultsWriter {
     public void write(List list, Result result) throws IOException
     {
         MbDocument doc = result.getDoc();
-        Recording recording = (Recording) MMDSerializer.unserialize(doc.get(RecordingIndexField.RECORDING_STORE), Recording.class);
+        Recording recording = (Recording) MMDSerializer.unserialize(doc, RecordingIndexField.RECORDING_STORE, Recording.class);
         recording.setScore(result.getNormalizedScore());
         list.add(recording);
     }
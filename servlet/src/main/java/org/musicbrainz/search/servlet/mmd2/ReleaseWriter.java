@@ -84,7 +84,7 @@ public class ReleaseWriter extends ResultsWriter {
      */
     public void write(List list, Result result) throws IOException {
         MbDocument doc = result.getDoc();
-        Release release = (Release) MMDSerializer.unserialize(doc.get(ReleaseIndexField.RELEASE_STORE), Release.class);
+        Release release = (Release) MMDSerializer.unserialize(doc, ReleaseIndexField.RELEASE_STORE, Release.class);
         release.setScore(result.getNormalizedScore());
         list.add(release);
     }
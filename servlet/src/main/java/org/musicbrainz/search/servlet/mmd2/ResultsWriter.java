@@ -37,7 +37,11 @@ import org.eclipse.persistence.jaxb.JAXBContextFactory;
 import org.eclipse.persistence.jaxb.JAXBContextProperties;
 import org.musicbrainz.mmd2.Metadata;
 import org.musicbrainz.mmd2.ObjectFactory;
+import org.musicbrainz.search.index.FragmentIndexField;
+import org.musicbrainz.search.index.StreamingXMLStreamWriter;
 import org.musicbrainz.search.servlet.ErrorMessage;
+import org.musicbrainz.search.servlet.RequestTimer;
+import org.musicbrainz.search.servlet.Result;
 import org.musicbrainz.search.servlet.Results;
 import org.musicbrainz.search.servlet.SearchServerServlet;
 
@@ -47,10 +51,12 @@ import javax.xml.bind.Marshaller;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.TimeZone;
 
@@ -61,6 +67,12 @@ public abstract class ResultsWriter extends org.musicbrainz.search.servlet.Resul
     static final JSONJAXBContext        internalJsoncontext     = initInternalJsonContext();
     static final JAXBContext            jsonContext             = initJsonContext();
 
+    //Depth of the xxx-list element within metadata
+    private static final int            LIST_DEPTH              = 2;
+
+    //Set by the xml_streaming init parameter, only non pretty Xml is ever streamed
+    private static volatile boolean     isXmlStreamingEnabled   = true;
+
     public String getMimeType() {
           return "application/xml; charset=UTF-8";
       }
@@ -142,6 +154,153 @@ public abstract class ResultsWriter extends org.musicbrainz.search.servlet.Resul
 
     }
 
+    /**
+     * Can be overridden to return false if the results cannot be written one at a time because the writer
+     * does not create the metadata from the results passed to write(Results)
+     *
+     * @return true if Xml output can be streamed
+     */
+    protected boolean isStreamable() {
+        return true;
+    }
+
+    /**
+     * Enable or disable writing non pretty Xml one result at a time. Json is never streamed, whatever this is set
+     * to, because the Jersey and MOXy marshallers have to see the whole list to write its array wrapper.
+     *
+     * @param isEnabled
+     */
+    public static void setXmlStreamingEnabled(boolean isEnabled) {
+        isXmlStreamingEnabled = isEnabled;
+    }
+
+    public static boolean isXmlStreamingEnabled() {
+        return isXmlStreamingEnabled;
+    }
+
+    /**
+     * Write the results into metadata, recording the time taken as the deserialize stage of the request
+     *
+     * @param results
+     * @return
+     * @throws IOException
+     */
+    private Metadata writeTimed(Results results) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return write(results);
+        }
+        finally {
+            RequestTimer.record(RequestTimer.Stage.DESERIALIZE, start);
+        }
+    }
+
+    private void writeTimed(Metadata metadata, Results results) throws IOException {
+        long start = System.nanoTime();
+        try {
+            write(metadata, results);
+        }
+        finally {
+            RequestTimer.record(RequestTimer.Stage.DESERIALIZE, start);
+        }
+    }
+
+    /**
+     * Write the results to the writer one at a time rather than creating the metadata for all results first, so
+     * the first results can be sent to the client before the rest have been converted and we never hold all of the
+     * unserialized results in memory at once.
+     *
+     * Each result is marshalled within its own metadata, StreamingXMLStreamWriter removes the repeated
+     * metadata and list elements so the output is exactly the same as if all results were marshalled together.
+     *
+     * If the index was built with pre-rendered fragments the fragment is written instead of marshalling the result,
+     * results without a fragment (e.g. added by the updater) are still marshalled. Fragments are only Xml.
+     *
+     * Only used for non pretty Xml when enabled by setXmlStreamingEnabled(), the json formats always marshal the
+     * complete metadata.
+     *
+     * @param m
+     * @param out
+     * @param results
+     * @throws IOException
+     * @throws JAXBException
+     * @throws XMLStreamException
+     */
+    private void writeStreaming(Marshaller m, PrintWriter out, Results results)
+            throws IOException, JAXBException, XMLStreamException {
+
+        StreamingXMLStreamWriter xsw = new StreamingXMLStreamWriter(out, LIST_DEPTH);
+        if (results.results.isEmpty()) {
+            m.marshal(writeTimed(results), xsw);
+            return;
+        }
+
+        ObjectFactory of = new ObjectFactory();
+        Results single = new Results();
+        single.setMaxScore(results.getMaxScore());
+        single.setOffset(results.getOffset());
+        single.setTotalHits(results.getTotalHits());
+        single.setResourceType(results.getResourceType());
+
+        boolean isHeadWritten = false;
+        Iterator<Result> i = results.results.iterator();
+        while (i.hasNext()) {
+            Result result = i.next();
+            boolean isLast = !i.hasNext();
+            String fragment = result.getDoc().get(FragmentIndexField.XML);
+            String scoreOffset = result.getDoc().get(FragmentIndexField.XML_SCORE_OFFSET);
+            if (scoreOffset == null) {
+                fragment = null;
+            }
+
+            //Marshall the result, or if we have a fragment but haven't yet output the head just the metadata
+            //and list elements without any result
+            single.results.clear();
+            if (fragment == null) {
+                single.results.add(result);
+            }
+            if (fragment == null || !isHeadWritten) {
+                Metadata metadata;
+                if (!isHeadWritten) {
+                    metadata = writeTimed(single);
+                }
+                else {
+                    metadata = of.createMetadata();
+                    writeTimed(metadata, single);
+                }
+                xsw.setOutput(!isHeadWritten, isLast && fragment == null);
+                m.marshal(metadata, xsw);
+                isHeadWritten = true;
+            }
+
+            if (fragment != null) {
+                result.setNormalizedScore(results.getMaxScore());
+                writeFragment(xsw, fragment, Integer.parseInt(scoreOffset), result.getNormalizedScore());
+                if (isLast) {
+                    Metadata metadata = of.createMetadata();
+                    writeTimed(metadata, single);
+                    xsw.setOutput(false, true);
+                    m.marshal(metadata, xsw);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write pre-rendered fragment with the actual score written at the offset recorded for it
+     *
+     * @param xsw
+     * @param fragment
+     * @param scoreOffset
+     * @param score
+     * @throws XMLStreamException
+     */
+    private void writeFragment(StreamingXMLStreamWriter xsw, String fragment, int scoreOffset, int score) throws XMLStreamException {
+        xsw.writeFragment(fragment.substring(0, scoreOffset));
+        xsw.writeFragment("score=\"" + score + "\"");
+        xsw.writeFragment(fragment.substring(scoreOffset));
+    }
+
     /**
      * Write the results to provider writer in required format
      *
@@ -156,21 +315,29 @@ public abstract class ResultsWriter extends org.musicbrainz.search.servlet.Resul
         if(outputFormat.equals(SearchServerServlet.RESPONSE_XML)) {
 
             try {
-                Metadata metadata = write(results);
                 Marshaller m = context.createMarshaller();
                 m.setProperty("com.sun.xml.bind.namespacePrefixMapper", prefixMapper);
                 if(isPretty) {
                     m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+                    m.marshal(writeTimed(results), out);
+                }
+                else if(isXmlStreamingEnabled && isStreamable()) {
+                    writeStreaming(m, out, results);
+                }
+                else {
+                    m.marshal(writeTimed(results), out);
                 }
-                m.marshal(metadata, out);
             }
             catch (JAXBException je) {
                 throw new IOException(je);
             }
+            catch (XMLStreamException xe) {
+                throw new IOException(xe);
+            }
         }
         else if(outputFormat.equals(SearchServerServlet.RESPONSE_JSON_NEW)) {
             try {
-                Metadata metadata = write(results);
+                Metadata metadata = writeTimed(results);
                 adjustForJson(metadata);
                 Marshaller m = jsonContext.createMarshaller();
                 if(isPretty) {
@@ -184,7 +351,7 @@ public abstract class ResultsWriter extends org.musicbrainz.search.servlet.Resul
         }
         else if(outputFormat.equals(SearchServerServlet.RESPONSE_JSON)) {
             try {
-                Metadata metadata = write(results);
+                Metadata metadata = writeTimed(results);
                 adjustForJson(metadata);
                 JSONMarshaller m = internalJsoncontext.createJSONMarshaller();
                 if(isPretty) {
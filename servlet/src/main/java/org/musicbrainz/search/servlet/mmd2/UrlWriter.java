@@ -81,7 +81,7 @@ public class UrlWriter extends ResultsWriter {
      */
     public void write(List list, Result result) throws IOException {
         MbDocument doc = result.getDoc();
-        Url url = (Url) MMDSerializer.unserialize(doc.get(UrlIndexField.URL_STORE), Url.class);
+        Url url = (Url) MMDSerializer.unserialize(doc, UrlIndexField.URL_STORE, Url.class);
         url.setScore(result.getNormalizedScore());
         list.add(url);
     }
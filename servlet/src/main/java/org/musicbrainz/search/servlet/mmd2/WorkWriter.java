@@ -89,7 +89,7 @@ public class WorkWriter extends ResultsWriter
      */
     public void write(List list, Result result) throws IOException {
         MbDocument doc = result.getDoc();
-        Work work = (Work) MMDSerializer.unserialize(doc.get(WorkIndexField.WORK_STORE), Work.class);
+        Work work = (Work) MMDSerializer.unserialize(doc, WorkIndexField.WORK_STORE, Work.class);
         work.setScore(result.getNormalizedScore());
         list.add(work);
     }
@@ -0,0 +1,104 @@
+package org.musicbrainz.search.servlet;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchSearchTest {
+
+    private static List<BatchSearch.Search> parse(String body, int maxSearches) throws Exception {
+        return BatchSearch.parse(new BufferedReader(new StringReader(body)), maxSearches);
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        List<BatchSearch.Search> searches = parse(
+                "type=recording&query=recording%3A%22Bad+Moon%22+AND+artist%3Afred&limit=5\n"
+                        + "\n"
+                        + "type=track&query=fred&offset=10&limit=500&dismax=true\r\n"
+                        + "type=artist&query=fred&fmt=json", 10);
+        assertEquals(3, searches.size());
+
+        assertEquals(ResourceType.RECORDING, searches.get(0).getResourceType());
+        assertEquals("recording:\"Bad Moon\" AND artist:fred", searches.get(0).getQuery());
+        assertEquals(0, searches.get(0).getOffset());
+        assertEquals(5, searches.get(0).getLimit());
+        assertFalse(searches.get(0).isDismax());
+
+        assertEquals(ResourceType.RECORDING, searches.get(1).getResourceType());
+        assertEquals(10, searches.get(1).getOffset());
+        assertEquals(SearchServerServlet.MAX_MATCHES_LIMIT, searches.get(1).getLimit());
+        assertTrue(searches.get(1).isDismax());
+
+        assertEquals(ResourceType.ARTIST, searches.get(2).getResourceType());
+        assertEquals(SearchServerServlet.DEFAULT_MATCHES_LIMIT, searches.get(2).getLimit());
+    }
+
+    @Test
+    public void testParseInvalid() throws Exception {
+        assertInvalid("\n\n", 10, ErrorMessage.NO_BATCH_SEARCHES.getMsg());
+        assertInvalid("type=artist&query=a\ntype=artist&query=b\ntype=artist&query=c", 2,
+                ErrorMessage.TOO_MANY_BATCH_SEARCHES.getMsg(2));
+        assertInvalid("type=artist&query=a\ntype=all&query=b", 10,
+                ErrorMessage.INVALID_BATCH_SEARCH.getMsg(2, ErrorMessage.UNKNOWN_RESOURCE_TYPE.getMsg("all")));
+        assertInvalid("type=artist", 10,
+                ErrorMessage.INVALID_BATCH_SEARCH.getMsg(1, ErrorMessage.NO_QUERY_PARAMETER.getMsg()));
+        assertInvalid("type=artist&query=a&limit=ten", 10, "Invalid search on line 1:");
+    }
+
+    private static void assertInvalid(String body, int maxSearches, String expectedMsg) throws Exception {
+        try {
+            parse(body, maxSearches);
+            fail("Expected " + expectedMsg);
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(expectedMsg));
+        }
+    }
+
+    @Test
+    public void testWriteXml() throws Exception {
+        BatchSearch batch = new BatchSearch(parse("type=artist&query=fred\ntype=recording&query=fred", 10),
+                SearchServerServlet.RESPONSE_XML);
+        StringWriter sw = new StringWriter();
+        PrintWriter out = new PrintWriter(sw);
+        batch.writeStart(out);
+        batch.writeResults(out, 0, "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?><metadata/>", false);
+        batch.writeError(out, 1, "Unable to parse search:\"a<b\"");
+        batch.writeEnd(out);
+        out.close();
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<batch count=\"2\">\n"
+                + "<search no=\"0\" type=\"artist\"><metadata/></search>\n"
+                + "<search no=\"1\" type=\"recording\" error=\"Unable to parse search:&quot;a&lt;b&quot;\"/>\n"
+                + "</batch>\n", sw.toString());
+        assertEquals(BatchSearch.MIME_TYPE_XML, batch.getMimeType());
+    }
+
+    @Test
+    public void testWriteJson() throws Exception {
+        BatchSearch batch = new BatchSearch(parse("type=artist&query=fred\ntype=recording&query=fred", 10),
+                SearchServerServlet.RESPONSE_JSON_NEW);
+        StringWriter sw = new StringWriter();
+        PrintWriter out = new PrintWriter(sw);
+        batch.writeStart(out);
+        batch.writeResults(out, 0, "{\"count\":0}\n", true);
+        batch.writeError(out, 1, "Unable to parse search:\"a\\b\"");
+        batch.writeEnd(out);
+        out.close();
+        assertEquals("{\"count\":2,\"searches\":["
+                + "{\"search\":0,\"type\":\"artist\",\"partial\":true,\"results\":{\"count\":0}},"
+                + "{\"search\":1,\"type\":\"recording\",\"error\":\"Unable to parse search:\\\"a\\\\b\\\"\"}"
+                + "]}", sw.toString());
+        assertEquals(BatchSearch.MIME_TYPE_JSON, batch.getMimeType());
+    }
+}
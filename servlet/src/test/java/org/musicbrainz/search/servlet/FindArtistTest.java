@@ -10,6 +10,9 @@ import java.io.StringWriter;
 import java.math.BigInteger;
 import java.util.Date;
 
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
@@ -197,7 +200,7 @@ public class FindArtistTest {
     }
 
     protected String getArtistId(MbDocument doc) {
-        Artist artist = (Artist) MMDSerializer.unserialize(doc.get(ArtistIndexField.ARTIST_STORE), Artist.class);
+        Artist artist = (Artist) MMDSerializer.unserialize(doc, ArtistIndexField.ARTIST_STORE, Artist.class);
         return artist.getId();
     }
 
@@ -629,6 +632,30 @@ public class FindArtistTest {
         assertTrue(output.contains("\"score\":31"));
     }
 
+    /**
+     * Xml is streamed one result at a time, check identical to marshalling all results at once
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testOutputXmlMultipleStreamedSameAsMetadata() throws Exception {
+        Results res = ss.search("artist:\"Farming Incident\" OR artist:\"Echo & The Bunnymen\"", 0, 2);
+
+        ResultsWriter writer = ss.getMmd2Writer();
+        StringWriter sw = new StringWriter();
+        PrintWriter pr = new PrintWriter(sw);
+        writer.write(pr, res, SearchServerServlet.RESPONSE_XML);
+        pr.close();
+
+        Marshaller m = JAXBContext.newInstance("org.musicbrainz.mmd2").createMarshaller();
+        m.setProperty("com.sun.xml.bind.namespacePrefixMapper", new ResultsWriter.PreferredMapper());
+        StringWriter expected = new StringWriter();
+        m.marshal(writer.write(res), expected);
+
+        assertEquals(expected.toString(), sw.toString());
+        assertTrue(sw.toString().contains("count=\"2\""));
+    }
+
     /**
      * @throws Exception
      */
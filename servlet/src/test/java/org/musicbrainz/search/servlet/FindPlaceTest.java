@@ -3,6 +3,7 @@ package org.musicbrainz.search.servlet;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.store.RAMDirectory;
 import org.junit.Before;
@@ -313,6 +314,11 @@ public class FindPlaceTest {
         assertEquals(0, res.getTotalHits());
     }
 
+    @Test(expected = ParseException.class)
+    public void testFindPlaceByNonNumericLatRange() throws Exception {
+        ss.search("lat:[north TO south]", 0, 10);
+    }
+
     @Test
     public void testFindPlaceByTag() throws Exception {
         Results res = ss.search("tag:desert", 0, 10);
@@ -11,6 +11,7 @@ import java.util.Date;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.BytesRef;
@@ -216,7 +217,7 @@ public class FindRecordingTest {
     }
 
     protected String getRecordingId(MbDocument doc) {
-        Recording recording = (Recording) MMDSerializer.unserialize(doc.get(RecordingIndexField.RECORDING_STORE), Recording.class);
+        Recording recording = (Recording) MMDSerializer.unserialize(doc, RecordingIndexField.RECORDING_STORE, Recording.class);
         return recording.getId();
     }
 
@@ -418,6 +419,29 @@ public class FindRecordingTest {
         assertEquals("7ca7782b-a602-448b-b108-bb881a7be2d6", getRecordingId(res.results.get(0).getDoc()));
     }
 
+    @Test
+    public void testFindRecordingByOpenEndedDurationRange() throws Exception {
+        Results res = ss.search("dur:[230000 TO *]", 0, 10);
+        assertEquals(1, res.getTotalHits());
+        assertEquals("7ca7782b-a602-448b-b108-bb881a7be2d6", getRecordingId(res.results.get(0).getDoc()));
+    }
+
+    @Test
+    public void testFindRecordingByDurationRangeNoMatch() throws Exception {
+        Results res = ss.search("dur:[200000 TO 210000]", 0, 10);
+        assertEquals(0, res.getTotalHits());
+    }
+
+    /**
+     * Durations only have numeric terms, so a range that is not numeric is rejected rather than never matching
+     *
+     * @throws Exception
+     */
+    @Test(expected = ParseException.class)
+    public void testFindRecordingByNonNumericDurationRange() throws Exception {
+        ss.search("dur:[short TO long]", 0, 10);
+    }
+
     @Test
     public void testFindRecordingByQdur() throws Exception {
         Results res = ss.search("qdur:117", 0, 10);
@@ -312,7 +312,7 @@ public class FindReleaseTest {
     }
 
     protected String getReleaseId(MbDocument doc) {
-        Release release = (Release) MMDSerializer.unserialize(doc.get(ReleaseIndexField.RELEASE_STORE), Release.class);
+        Release release = (Release) MMDSerializer.unserialize(doc, ReleaseIndexField.RELEASE_STORE, Release.class);
         return release.getId();
     }
 
@@ -0,0 +1,97 @@
+package org.musicbrainz.search.servlet;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InFlightSearchesTest {
+
+    @Test
+    public void testDuplicatesShareResults() throws Exception {
+        final InFlightSearches inFlight = new InFlightSearches(10000, 1024);
+        InFlightSearches.Search leader = inFlight.join("recording:fred");
+        assertTrue(leader.isLeader());
+
+        final int noOfDuplicates = 5;
+        final CountDownLatch joined = new CountDownLatch(noOfDuplicates);
+        ExecutorService es = Executors.newFixedThreadPool(noOfDuplicates);
+        List<Future<byte[]>> duplicates = new ArrayList<Future<byte[]>>();
+        for (int i = 0; i < noOfDuplicates; i++) {
+            duplicates.add(es.submit(new Callable<byte[]>() {
+                public byte[] call() throws Exception {
+                    InFlightSearches.Search search = inFlight.join("recording:fred");
+                    joined.countDown();
+                    assertFalse(search.isLeader());
+                    return inFlight.await(search);
+                }
+            }));
+        }
+        joined.await();
+        inFlight.complete(leader, new byte[]{1, 2, 3});
+
+        for (Future<byte[]> duplicate : duplicates) {
+            assertArrayEquals(new byte[]{1, 2, 3}, duplicate.get());
+        }
+        es.shutdown();
+        assertEquals(1, inFlight.getLeaderCount());
+        assertEquals(noOfDuplicates, inFlight.getCoalescedCount());
+        assertEquals(0, inFlight.getNoOfSearches());
+
+        // Once complete the same search is done again
+        assertTrue(inFlight.join("recording:fred").isLeader());
+    }
+
+    @Test
+    public void testDifferentSearchesNotShared() throws Exception {
+        InFlightSearches inFlight = new InFlightSearches(10000, 1024);
+        assertTrue(inFlight.join("recording:fred").isLeader());
+        assertTrue(inFlight.join("recording:Fred").isLeader());
+        assertTrue(inFlight.join("artist:fred").isLeader());
+        assertEquals(3, inFlight.getNoOfSearches());
+    }
+
+    @Test
+    public void testWaitIsBounded() throws Exception {
+        InFlightSearches inFlight = new InFlightSearches(50, 1024);
+        InFlightSearches.Search leader = inFlight.join("recording:fred");
+        InFlightSearches.Search duplicate = inFlight.join("recording:fred");
+
+        long start = System.currentTimeMillis();
+        assertNull(inFlight.await(duplicate));
+        assertTrue(System.currentTimeMillis() - start >= 50);
+        assertEquals(1, inFlight.getTimeoutCount());
+        assertEquals(0, inFlight.getCoalescedCount());
+
+        inFlight.complete(leader, new byte[]{1});
+        assertEquals(0, inFlight.getNoOfSearches());
+    }
+
+    @Test
+    public void testFailedOrTooLargeResultsNotShared() throws Exception {
+        InFlightSearches inFlight = new InFlightSearches(10000, 2);
+        InFlightSearches.Search leader = inFlight.join("recording:fred");
+        InFlightSearches.Search duplicate = inFlight.join("recording:fred");
+        inFlight.complete(leader, null);
+        assertNull(inFlight.await(duplicate));
+
+        leader = inFlight.join("recording:fred");
+        duplicate = inFlight.join("recording:fred");
+        inFlight.complete(leader, new byte[]{1, 2, 3});
+        assertNull(inFlight.await(duplicate));
+
+        assertEquals(2, inFlight.getUnsharedCount());
+        assertEquals(0, inFlight.getCoalescedCount());
+    }
+}
@@ -0,0 +1,130 @@
+package org.musicbrainz.search.servlet;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TimeLimitingCollector;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Before;
+import org.junit.Test;
+import org.musicbrainz.search.LuceneVersion;
+import org.musicbrainz.search.MbDocument;
+import org.musicbrainz.search.index.AnnotationIndexField;
+import org.musicbrainz.search.index.DatabaseIndex;
+import org.musicbrainz.search.type.AnnotationType;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test searches that run out of time, which return the hits collected in time marked as partial when partial results
+ * are allowed
+ */
+public class PartialResultsTest {
+
+    private static final int NO_OF_DOCS = 5;
+
+    private AbstractSearchServer ss;
+    private AbstractDismaxSearchServer sd;
+
+    @Before
+    public void setUp() throws Exception {
+        RAMDirectory ramDir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(ramDir, new IndexWriterConfig(LuceneVersion.LUCENE_VERSION,
+                DatabaseIndex.getAnalyzer(AnnotationIndexField.class)));
+        for (int i = 0; i < NO_OF_DOCS; i++) {
+            MbDocument doc = new MbDocument();
+            doc.addField(AnnotationIndexField.TYPE, AnnotationType.ARTIST.getName());
+            doc.addField(AnnotationIndexField.NAME, "Pieds nus " + i);
+            doc.addField(AnnotationIndexField.ENTITY, "bdb24cb5-404b-4f60-bba4-7b730325ae" + (10 + i));
+            doc.addField(AnnotationIndexField.TEXT, "love");
+            writer.addDocument(doc.getLuceneDocument());
+        }
+        writer.close();
+
+        ss = new AnnotationSearch(new SearcherManager(ramDir, new MusicBrainzSearcherFactory(ResourceType.ANNOTATION)));
+        sd = new AnnotationDismaxSearch(ss);
+    }
+
+    /**
+     * Runs a search out of time, a negative time allowed has already been exceeded when the first hit is offered to
+     * the collector so no hits at all are collected
+     */
+    private void setOutOfTime() {
+        ss.setTimeAllowed(-1);
+    }
+
+    /**
+     * @return the results written as the only search of a batch, as the servlet writes the results of each search
+     */
+    private String writeBatch(Results res, String responseFormat) throws Exception {
+        BatchSearch batch = new BatchSearch(BatchSearch.parse(
+                new BufferedReader(new StringReader("type=annotation&query=love")), 1), responseFormat);
+        StringWriter output = new StringWriter();
+        PrintWriter pr = new PrintWriter(output);
+        ss.getMmd2Writer().write(pr, res, responseFormat);
+        pr.close();
+
+        StringWriter sw = new StringWriter();
+        PrintWriter out = new PrintWriter(sw);
+        batch.writeStart(out);
+        batch.writeResults(out, 0, output.toString(), res.isPartial());
+        batch.writeEnd(out);
+        out.close();
+        return sw.toString();
+    }
+
+    @Test
+    public void testSearchInTimeNotPartial() throws Exception {
+        Results res = ss.search("love", 0, 10);
+        assertFalse(res.isPartial());
+        assertEquals(NO_OF_DOCS, res.getTotalHits());
+        assertEquals(NO_OF_DOCS, res.results.size());
+
+        String output = writeBatch(res, SearchServerServlet.RESPONSE_XML);
+        assertTrue(output, output.contains("<search no=\"0\" type=\"annotation\">"));
+        assertTrue(output, output.contains("count=\"" + NO_OF_DOCS + "\""));
+        assertFalse(output, output.contains("partial"));
+    }
+
+    @Test(expected = TimeLimitingCollector.TimeExceededException.class)
+    public void testSearchOutOfTimeFailsWhenPartialResultsNotAllowed() throws Exception {
+        setOutOfTime();
+        ss.search("love", 0, 10);
+    }
+
+    @Test
+    public void testSearchOutOfTimeReturnsPartialResults() throws Exception {
+        setOutOfTime();
+        ss.setPartialResultsAllowed(true);
+        Results res = ss.search("love", 0, 10);
+        assertTrue(res.isPartial());
+        assertEquals(0, res.getTotalHits());
+        assertEquals(0, res.results.size());
+
+        res = sd.search("Pieds nus", 0, 10);
+        assertTrue(res.isPartial());
+        assertEquals(0, res.results.size());
+    }
+
+    @Test
+    public void testPartialResultsWrittenAsPartial() throws Exception {
+        setOutOfTime();
+        ss.setPartialResultsAllowed(true);
+        Results res = ss.search("love", 0, 10);
+
+        String output = writeBatch(res, SearchServerServlet.RESPONSE_XML);
+        assertTrue(output, output.contains("<search no=\"0\" type=\"annotation\" partial=\"true\">"));
+        assertTrue(output, output.contains("count=\"0\""));
+
+        output = writeBatch(res, SearchServerServlet.RESPONSE_JSON_NEW);
+        assertTrue(output, output.contains("{\"search\":0,\"type\":\"annotation\",\"partial\":true,\"results\":"));
+        assertTrue(output, output.contains("\"count\":0"));
+    }
+}
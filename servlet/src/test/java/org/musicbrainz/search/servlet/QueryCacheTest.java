@@ -0,0 +1,60 @@
+package org.musicbrainz.search.servlet;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Test;
+import org.musicbrainz.search.LuceneVersion;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class QueryCacheTest {
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        QueryCache cache = new QueryCache(10);
+        Query query = new TermQuery(new Term("artist", "fred"));
+        assertNull(cache.get("artist:fred"));
+        cache.put("artist:fred", query);
+        assertSame(query, cache.get("artist:fred"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWhenFull() throws Exception {
+        QueryCache cache = new QueryCache(10);
+        for (int i = 0; i < 100; i++) {
+            cache.put("artist:fred" + i, new TermQuery(new Term("artist", "fred" + i)));
+            //Keep using the first one
+            cache.get("artist:fred0");
+        }
+        assertEquals(10, cache.getNoOfEntries());
+        assertEquals(new TermQuery(new Term("artist", "fred0")), cache.get("artist:fred0"));
+        assertNull(cache.get("artist:fred1"));
+        assertEquals(new TermQuery(new Term("artist", "fred99")), cache.get("artist:fred99"));
+    }
+
+    @Test
+    public void testReusedDismaxParserGivesSameQuery() throws Exception {
+        Map<String, DismaxAlias.AliasField> fieldBoosts = new HashMap<String, DismaxAlias.AliasField>(2);
+        fieldBoosts.put("label", new DismaxAlias.AliasField(true, 1.3f));
+        fieldBoosts.put("code", new DismaxAlias.AliasField(false, 1.1f));
+        DismaxAlias dismaxAlias = new DismaxAlias();
+        dismaxAlias.setFields(fieldBoosts);
+        dismaxAlias.setTie(0.1f);
+
+        StandardAnalyzer analyzer = new StandardAnalyzer(LuceneVersion.LUCENE_VERSION);
+        DismaxSearcher dismaxSearcher = new DismaxSearcher(dismaxAlias);
+        Query first = dismaxSearcher.parseQuery("warp records", analyzer);
+        dismaxSearcher.parseQuery("ninja tune", analyzer);
+        assertEquals(first, dismaxSearcher.parseQuery("warp records", analyzer));
+        assertEquals(first.toString(), new DismaxSearcher(dismaxAlias).parseQuery("warp records", analyzer).toString());
+    }
+}
@@ -0,0 +1,190 @@
+package org.musicbrainz.search.servlet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the rate limiter client against a local stand in for the rate limiter server, the tests decide when and
+ * how the stand in replies to each request it has received.
+ */
+public class RateLimiterClientTest {
+
+    private static final long TIMEOUT_IN_MS = 200;
+
+    private DatagramSocket server;
+    private BlockingQueue<DatagramPacket> received;
+    private Thread serverThread;
+    private RateLimiterClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+        received = new LinkedBlockingQueue<DatagramPacket>();
+        serverThread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    while (true) {
+                        DatagramPacket packet = new DatagramPacket(new byte[100], 100);
+                        server.receive(packet);
+                        received.add(packet);
+                    }
+                } catch (Exception e) {
+                    //Closed
+                }
+            }
+        });
+        serverThread.start();
+        client = new RateLimiterClient(new InetSocketAddress("127.0.0.1", server.getLocalPort()), TIMEOUT_IN_MS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.close();
+        serverThread.join();
+    }
+
+    private DatagramPacket nextRequest() throws Exception {
+        DatagramPacket packet = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(packet);
+        return packet;
+    }
+
+    private static String getMessage(DatagramPacket packet) throws Exception {
+        return new String(packet.getData(), packet.getOffset(), packet.getLength(), "UTF-8");
+    }
+
+    private static String getRequestId(DatagramPacket packet) throws Exception {
+        String message = getMessage(packet);
+        return message.substring(0, message.indexOf(' '));
+    }
+
+    private void reply(DatagramPacket request, String reply) throws Exception {
+        byte[] data = (getRequestId(request) + " " + reply).getBytes("UTF-8");
+        SocketAddress address = request.getSocketAddress();
+        server.send(new DatagramPacket(data, data.length, address));
+    }
+
+    private Future<String> sendInBackground(ExecutorService es, final String request) {
+        return es.submit(new Callable<String>() {
+            public String call() {
+                return client.send(request);
+            }
+        });
+    }
+
+    @Test
+    public void testReply() throws Exception {
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        Future<String> result = sendInBackground(es, " over_limit search ip=127.0.0.1");
+        DatagramPacket request = nextRequest();
+        assertTrue(getMessage(request).endsWith(" over_limit search ip=127.0.0.1"));
+        reply(request, "ok N 1 22 10");
+
+        assertEquals("ok N 1 22 10", result.get(5, TimeUnit.SECONDS));
+        assertEquals(1, client.getRequestCount());
+        assertEquals(0, client.getTimeoutCount());
+        es.shutdown();
+    }
+
+    @Test
+    public void testNoReplyTimesOut() throws Exception {
+        long start = System.currentTimeMillis();
+        assertNull(client.send(" over_limit search ip=127.0.0.1"));
+        assertTrue(System.currentTimeMillis() - start >= TIMEOUT_IN_MS);
+        assertEquals(1, client.getTimeoutCount());
+    }
+
+    @Test
+    public void testLateReplyIsCounted() throws Exception {
+        assertNull(client.send(" over_limit search ip=127.0.0.1"));
+        reply(nextRequest(), "ok N 1 22 10");
+
+        long end = System.currentTimeMillis() + 5000;
+        while (client.getLateReplyCount() == 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, client.getLateReplyCount());
+        assertEquals(1, client.getTimeoutCount());
+    }
+
+    @Test
+    public void testRepliesMatchedToRequests() throws Exception {
+        ExecutorService es = Executors.newFixedThreadPool(2);
+        Future<String> result1 = sendInBackground(es, " over_limit search ip=1.1.1.1");
+        Future<String> result2 = sendInBackground(es, " over_limit search ip=2.2.2.2");
+        List<DatagramPacket> requests = new ArrayList<DatagramPacket>();
+        requests.add(nextRequest());
+        requests.add(nextRequest());
+
+        //Reply in reverse order, giving each request a reply that identifies which ip it was for
+        for (int i = requests.size() - 1; i >= 0; i--) {
+            String message = getMessage(requests.get(i));
+            reply(requests.get(i), "ok N " + message.substring(message.indexOf("ip=") + 3));
+        }
+
+        assertEquals("ok N 1.1.1.1", result1.get(5, TimeUnit.SECONDS));
+        assertEquals("ok N 2.2.2.2", result2.get(5, TimeUnit.SECONDS));
+        assertEquals(0, client.getLateReplyCount());
+        es.shutdown();
+    }
+
+    @Test
+    public void testWeightedRequestsSentAtOnce() throws Exception {
+        ExecutorService es = Executors.newSingleThreadExecutor();
+        Future<String> result = es.submit(new Callable<String>() {
+            public String call() {
+                return client.sendWeighted(" over_limit search ip=127.0.0.1", 3);
+            }
+        });
+
+        //All sent before any reply
+        List<DatagramPacket> requests = new ArrayList<DatagramPacket>();
+        for (int i = 0; i < 3; i++) {
+            requests.add(nextRequest());
+        }
+        reply(requests.get(0), "ok N 1 22 10");
+        reply(requests.get(1), "ok Y 23 22 10");
+
+        //Refused without waiting for the last reply
+        assertEquals("ok Y 23 22 10", result.get(TIMEOUT_IN_MS / 2, TimeUnit.MILLISECONDS));
+        assertEquals(3, client.getRequestCount());
+        es.shutdown();
+    }
+
+    @Test
+    public void testWeightedRequestsShareTimeout() throws Exception {
+        long start = System.currentTimeMillis();
+        assertNull(client.sendWeighted(" over_limit search ip=127.0.0.1", 5));
+        assertTrue(System.currentTimeMillis() - start < TIMEOUT_IN_MS * 3);
+        assertEquals(5, client.getTimeoutCount());
+    }
+
+    @Test
+    public void testClosedClientFailsOpen() throws Exception {
+        client.close();
+        assertNull(client.send(" over_limit search ip=127.0.0.1"));
+        assertEquals(1, client.getErrorCount());
+    }
+}
@@ -0,0 +1,97 @@
+package org.musicbrainz.search.servlet;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResultsCacheTest {
+
+    private static String key(String query) {
+        return ResultsCache.createKey(query, false, 0, 25, "xml", "2", false, new Date(0));
+    }
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        ResultsCache cache = new ResultsCache(64 * 1024);
+        assertNull(cache.get(key("fred")));
+        cache.put(key("fred"), new byte[]{1, 2, 3}, cache.getGeneration());
+        assertArrayEquals(new byte[]{1, 2, 3}, cache.get(key("fred")));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testKeyNormalizesWhitespace() throws Exception {
+        assertEquals(key("artist:fred AND type:group"), key("  artist:fred \t AND  type:group "));
+        assertFalse(key("fred").equals(key("Fred")));
+        assertFalse(key("fred").equals(ResultsCache.createKey("fred", true, 0, 25, "xml", "2", false, new Date(0))));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWhenFull() throws Exception {
+        ResultsCache cache = new ResultsCache(64 * 1024);
+        for (int i = 0; i < 100; i++) {
+            cache.put(key("query" + i), new byte[1000], cache.getGeneration());
+            //Keep using the first one
+            cache.get(key("query0"));
+        }
+        assertEquals(100 - cache.getNoOfEntries(), cache.getEvictionCount());
+        assertTrue(cache.getSizeInBytes() <= cache.getMaxSizeInBytes());
+        assertEquals(1000, cache.get(key("query0")).length);
+        assertNull(cache.get(key("query1")));
+        assertEquals(1000, cache.get(key("query99")).length);
+    }
+
+    @Test
+    public void testTooLargeNotCached() throws Exception {
+        ResultsCache cache = new ResultsCache(64 * 1024);
+        cache.put(key("fred"), new byte[1025], cache.getGeneration());
+        assertNull(cache.get(key("fred")));
+    }
+
+    @Test
+    public void testClearedOnRefresh() throws Exception {
+        ResultsCache cache = new ResultsCache(64 * 1024);
+        cache.put(key("fred"), new byte[]{1}, cache.getGeneration());
+
+        //No new searcher
+        cache.afterRefresh(false);
+        assertArrayEquals(new byte[]{1}, cache.get(key("fred")));
+
+        cache.afterRefresh(true);
+        assertNull(cache.get(key("fred")));
+        assertEquals(0, cache.getSizeInBytes());
+    }
+
+    @Test
+    public void testResultsFromBeforeRefreshNotCached() throws Exception {
+        ResultsCache cache = new ResultsCache(64 * 1024);
+        long generation = cache.getGeneration();
+        cache.afterRefresh(true);
+        cache.put(key("fred"), new byte[]{1}, generation);
+        assertNull(cache.get(key("fred")));
+    }
+
+    @Test
+    public void testRecorder() throws Exception {
+        ResultsCache cache = new ResultsCache(64 * 1024);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResultsCache.Recorder recorder = cache.newRecorder(out);
+        recorder.write(new byte[]{1, 2});
+        recorder.write(3);
+        assertArrayEquals(new byte[]{1, 2, 3}, out.toByteArray());
+        assertArrayEquals(new byte[]{1, 2, 3}, recorder.getBytes());
+
+        //Stops recording once too large to be cached but still writes everything
+        recorder.write(new byte[1024]);
+        assertEquals(1027, out.size());
+        assertNull(recorder.getBytes());
+    }
+}
@@ -399,6 +399,63 @@ public class SearchAll2Test
 
     }
 
+    @Test
+    public void testSearchAllMergesTopHitsBeforeLoading() throws Exception
+    {
+        RequestTimer timer = new RequestTimer();
+        Collection<Callable<TopHits>> searches = new ArrayList<Callable<TopHits>>();
+        searches.add(new CallableTopHitsSearch(artistSearch, "dark", 2, timer));
+        searches.add(new CallableTopHitsSearch(releaseSearch, "dark", 2, timer));
+        searches.add(new CallableTopHitsSearch(releaseGroupSearch, "dark", 2, timer));
+        searches.add(new CallableTopHitsSearch(labelSearch, "dark", 2, timer));
+        searches.add(new CallableTopHitsSearch(recordingSearch, "dark", 2, timer));
+        searches.add(new CallableTopHitsSearch(workSearch, "dark", 2, timer));
+
+        ExecutorService es = Executors.newCachedThreadPool();
+        List<TopHits> topHits = new ArrayList<TopHits>();
+        for (Future<TopHits> next : es.invokeAll(searches))
+        {
+            topHits.add(next.get());
+        }
+        assertTrue(timer.get(RequestTimer.Stage.SEARCH) > 0);
+
+        // Only the label and the best artist are in the top two, so only they are loaded
+        List<Results> results = TopHits.mergeAndLoad(topHits, 0, 2);
+        for (TopHits next : topHits)
+        {
+            next.release();
+        }
+        assertEquals(3, results.get(0).getTotalHits());
+        assertEquals(1, results.get(0).results.size());
+        assertEquals(1, results.get(3).getTotalHits());
+        assertEquals(1, results.get(3).results.size());
+
+        AllWriter writer = new AllWriter(0, 2, results.get(0), results.get(1), results.get(2), results.get(3),
+                results.get(4), results.get(5));
+        StringWriter sw = new StringWriter();
+        PrintWriter pr = new PrintWriter(sw);
+        writer.write(pr,new Results(),"xml",true);
+        pr.close();
+        String output = sw.toString();
+        assertTrue(output.contains("<entity-list count=\"4\" offset=\"0\">"));
+        assertTrue(output.contains("<label id=\"a539bb1e-f2e1-4b45-9db8-8053841e7504\" type=\"holding\" ext:score=\"100\">"));
+
+        // Offset applies to the merged hits rather than to each index
+        topHits.clear();
+        for (Future<TopHits> next : es.invokeAll(searches))
+        {
+            topHits.add(next.get());
+        }
+        results = TopHits.mergeAndLoad(topHits, 1, 1);
+        for (TopHits next : topHits)
+        {
+            next.release();
+        }
+        assertEquals(1, results.get(0).results.size());
+        assertEquals(0, results.get(3).results.size());
+        assertEquals(1, results.get(0).getOffset());
+    }
+
     @Test
     public void testSearchAllJson() throws Exception
     {
@@ -0,0 +1,158 @@
+package org.musicbrainz.search.servlet;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Before;
+import org.junit.Test;
+import org.musicbrainz.search.LuceneVersion;
+import org.musicbrainz.search.MbDocument;
+import org.musicbrainz.search.index.AnnotationIndexField;
+import org.musicbrainz.search.index.DatabaseIndex;
+import org.musicbrainz.search.type.AnnotationType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class SearchCursorTest {
+
+    private static final int NO_OF_DOCS = 12;
+
+    private RAMDirectory ramDir;
+    private AbstractSearchServer ss;
+
+    @Before
+    public void setUp() throws Exception {
+        ramDir = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(ramDir, new IndexWriterConfig(LuceneVersion.LUCENE_VERSION,
+                DatabaseIndex.getAnalyzer(AnnotationIndexField.class)));
+        // Text of different lengths so searching it gives different scores, and some the same score
+        for (int i = 0; i < NO_OF_DOCS; i++) {
+            MbDocument doc = new MbDocument();
+            doc.addField(AnnotationIndexField.TYPE, AnnotationType.ARTIST.getName());
+            doc.addField(AnnotationIndexField.NAME, "Artist " + i);
+            doc.addField(AnnotationIndexField.ENTITY, "bdb24cb5-404b-4f60-bba4-7b730325ae" + (10 + i));
+            StringBuilder text = new StringBuilder("love");
+            for (int j = 0; j < i % 4; j++) {
+                text.append(" and other things");
+            }
+            doc.addField(AnnotationIndexField.TEXT, text.toString());
+            writer.addDocument(doc.getLuceneDocument());
+        }
+        writer.close();
+
+        ss = new AnnotationSearch(new SearcherManager(ramDir, new MusicBrainzSearcherFactory(ResourceType.ANNOTATION)));
+    }
+
+    private static String getEntity(Result result) {
+        return result.getDoc().get(AnnotationIndexField.ENTITY);
+    }
+
+    @Test
+    public void testEncodeAndDecode() throws Exception {
+        SearchCursor cursor = new SearchCursor(1234567890123L, 42, 3.75f, 50);
+        String encoded = cursor.toString();
+        assertFalse(encoded.contains("="));
+        assertFalse(encoded.contains("/"));
+        assertFalse(encoded.contains("+"));
+
+        SearchCursor decoded = SearchCursor.valueOf(encoded);
+        assertEquals(cursor, decoded);
+        assertEquals(1234567890123L, decoded.getGeneration());
+        assertEquals(42, decoded.getScoreDoc().doc);
+        assertEquals(3.75f, decoded.getScoreDoc().score, 0.0f);
+        assertEquals(50, decoded.getOffset());
+    }
+
+    @Test
+    public void testFirstPage() throws Exception {
+        assertNull(SearchCursor.valueOf(SearchCursor.FIRST_PAGE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCharacters() throws Exception {
+        SearchCursor.valueOf("not a cursor!");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLength() throws Exception {
+        SearchCursor.valueOf("AAAA");
+    }
+
+    @Test
+    public void testSearchAfterReturnsSameResultsAsOffset() throws Exception {
+        for (String query : new String[]{"*:*", "text:love"}) {
+            Results all = ss.search(query, 0, 100);
+            assertEquals(NO_OF_DOCS, all.results.size());
+            List<Result> paged = new ArrayList<Result>();
+            SearchCursor cursor = null;
+            do {
+                Results res = ss.searchAfter(query, cursor, 5);
+                assertEquals(all.getTotalHits(), res.getTotalHits());
+                assertEquals(paged.size(), res.getOffset());
+                paged.addAll(res.results);
+                cursor = res.getNextCursor();
+            } while (cursor != null);
+
+            assertEquals(all.results.size(), paged.size());
+            for (int i = 0; i < paged.size(); i++) {
+                assertEquals(query + " " + i, getEntity(all.results.get(i)), getEntity(paged.get(i)));
+                assertEquals(query + " " + i, all.results.get(i).getScore(), paged.get(i).getScore(), 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void testSearchAfterCursorFromEncodedForm() throws Exception {
+        Results res = ss.searchAfter("text:love", null, 4);
+        assertEquals(4, res.results.size());
+        assertNotNull(res.getNextCursor());
+        SearchCursor cursor = SearchCursor.valueOf(res.getNextCursor().toString());
+        assertEquals(res.getNextCursor(), cursor);
+        assertEquals(4, cursor.getOffset());
+
+        Results next = ss.searchAfter("text:love", cursor, 4);
+        assertEquals(4, next.getOffset());
+        assertEquals(getEntity(ss.search("text:love", 4, 4).results.get(0)), getEntity(next.results.get(0)));
+    }
+
+    @Test
+    public void testNoCursorAfterLastPage() throws Exception {
+        Results res = ss.searchAfter("text:love", null, NO_OF_DOCS);
+        assertEquals(NO_OF_DOCS, res.results.size());
+        assertNotNull(res.getNextCursor());
+
+        res = ss.searchAfter("text:love", res.getNextCursor(), NO_OF_DOCS);
+        assertEquals(0, res.results.size());
+        assertEquals(NO_OF_DOCS, res.getOffset());
+        assertNull(res.getNextCursor());
+    }
+
+    @Test
+    public void testSearchAfterCursorExpiredByIndexChange() throws Exception {
+        SearchCursor cursor = ss.searchAfter("*:*", null, 1).getNextCursor();
+
+        IndexWriter writer = new IndexWriter(ramDir, new IndexWriterConfig(LuceneVersion.LUCENE_VERSION,
+                DatabaseIndex.getAnalyzer(AnnotationIndexField.class)));
+        MbDocument doc = new MbDocument();
+        doc.addField(AnnotationIndexField.TYPE, AnnotationType.ARTIST.getName());
+        doc.addField(AnnotationIndexField.NAME, "Sigur Ros");
+        writer.addDocument(doc.getLuceneDocument());
+        writer.close();
+        ss.reloadIndex();
+
+        try {
+            ss.searchAfter("*:*", cursor, 1);
+            fail();
+        } catch (SearchCursor.ExpiredException e) {
+            // Expected
+        }
+    }
+}
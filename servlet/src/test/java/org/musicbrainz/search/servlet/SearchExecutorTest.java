@@ -0,0 +1,100 @@
+package org.musicbrainz.search.servlet;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SearchExecutorTest {
+
+    private SearchExecutor executor;
+    private final CountDownLatch blocked = new CountDownLatch(1);
+
+    @After
+    public void tearDown() throws Exception {
+        blocked.countDown();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static List<Callable<Integer>> searches(int noOfSearches) {
+        List<Callable<Integer>> searches = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < noOfSearches; i++) {
+            final int result = i;
+            searches.add(new Callable<Integer>() {
+                public Integer call() {
+                    return result;
+                }
+            });
+        }
+        return searches;
+    }
+
+    private List<Callable<Integer>> blockingSearches(int noOfSearches) {
+        List<Callable<Integer>> searches = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < noOfSearches; i++) {
+            searches.add(new Callable<Integer>() {
+                public Integer call() throws Exception {
+                    blocked.await();
+                    return 0;
+                }
+            });
+        }
+        return searches;
+    }
+
+    @Test
+    public void testResultsInSameOrderAsSearches() throws Exception {
+        executor = new SearchExecutor(2, 6);
+        List<Future<Integer>> futures = executor.submitAll(searches(6), 5000);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(Integer.valueOf(i), futures.get(i).get());
+        }
+    }
+
+    @Test
+    public void testRejectedWhenQueueFull() throws Exception {
+        executor = new SearchExecutor(1, 6);
+        executor.submitAll(blockingSearches(1), 5000);
+        executor.submitAll(blockingSearches(4), 5000);
+        try {
+            executor.submitAll(searches(3), 5000);
+            fail();
+        } catch (RejectedExecutionException e) {
+            assertEquals(1, executor.getRejectedCount());
+        }
+
+        //Room for all searches of a smaller request
+        executor.submitAll(searches(2), 5000);
+        assertEquals(1, executor.getRejectedCount());
+        assertTrue(executor.toString().contains("rejected=1"));
+    }
+
+    @Test
+    public void testNotStartedAfterTimeout() throws Exception {
+        executor = new SearchExecutor(1, 6);
+        executor.submitAll(blockingSearches(1), 5000);
+        List<Future<Integer>> futures = executor.submitAll(searches(1), 50);
+        Thread.sleep(100);
+        blocked.countDown();
+        try {
+            futures.get(0).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+            assertEquals(1, executor.getTimedOutCount());
+        }
+    }
+}
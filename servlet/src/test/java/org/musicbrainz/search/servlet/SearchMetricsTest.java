@@ -0,0 +1,93 @@
+package org.musicbrainz.search.servlet;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SearchMetricsTest {
+
+    @Test
+    public void testBucketsCoverEveryLatency() throws Exception {
+        for (long micros = 0; micros < 100000; micros++) {
+            int bucket = LatencyHistogram.getBucket(micros);
+            assertTrue(LatencyHistogram.getLowestMicros(bucket) <= micros);
+            assertTrue(LatencyHistogram.getLowestMicros(bucket + 1) > micros);
+        }
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMillis(50), 0);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMeanMillis(), 0.01);
+        // Within the accuracy of the buckets
+        assertEquals(50, histogram.getPercentileMillis(50), 50 / 8.0);
+        assertEquals(99, histogram.getPercentileMillis(99), 99 / 8.0);
+    }
+
+    @Test
+    public void testRecordOnlyStagesRequestWentThrough() throws Exception {
+        SearchMetrics metrics = new SearchMetrics();
+        RequestTimer timer = new RequestTimer();
+        RequestTimer.attach(timer);
+        try {
+            RequestTimer.record(RequestTimer.Stage.SEARCH, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(20));
+        } finally {
+            RequestTimer.detach();
+        }
+        // Not attached so not recorded
+        RequestTimer.record(RequestTimer.Stage.SEARCH, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(20));
+        timer.add(RequestTimer.Stage.TOTAL, TimeUnit.MILLISECONDS.toNanos(30));
+        metrics.record("recording", "xml", timer);
+        metrics.incrementTimeoutCount();
+
+        assertEquals(20, metrics.getPercentile("recording", "xml", "search", 50), 20 / 8.0);
+        assertEquals(30, metrics.getPercentile("recording", "xml", "total", 50), 30 / 8.0);
+        String report = metrics.getReport();
+        assertTrue(report.contains("requests:1:timeouts:1:parseerrors:0:ratelimited:0"));
+        assertTrue(report.contains("recording/xml:search:count:1"));
+        assertFalse(report.contains("recording/xml:load"));
+    }
+
+    @Test
+    public void testUnknownFormatsRecordedTogether() throws Exception {
+        SearchMetrics metrics = new SearchMetrics();
+        RequestTimer timer = new RequestTimer();
+        timer.add(RequestTimer.Stage.TOTAL, TimeUnit.MILLISECONDS.toNanos(30));
+        metrics.record("artist", "made-up", timer);
+        metrics.record("artist", "also-made-up", timer);
+        metrics.record("artist", null, timer);
+
+        String report = metrics.getReport();
+        assertTrue(report.contains("artist/" + SearchMetrics.OTHER_FORMAT + ":total:count:3"));
+        assertFalse(report.contains("made-up"));
+        assertEquals(30, metrics.getPercentile("artist", "made-up", "total", 50), 30 / 8.0);
+    }
+
+        @Test
+    public void testRateLimiterClientCountsReported() throws Exception {
+        SearchMetrics metrics = new SearchMetrics();
+        RateLimiterChecker.init("127.0.0.1", "2000", "10");
+        try {
+            RateLimiterClient client = RateLimiterChecker.getRateLimiterClient();
+            assertTrue(client != null);
+            // Nothing is listening so the request is never replied to
+            client.send(" over_limit search ip=127.0.0.1");
+            assertEquals(1, metrics.getRateLimiterRequestCount());
+            assertTrue(metrics.getRateLimiterTimeoutCount() + metrics.getRateLimiterErrorCount() > 0);
+            assertTrue(metrics.getReport().contains("ratelimiter:requests:1:timeouts:"));
+        } finally {
+            RateLimiterChecker.close();
+        }
+        assertEquals(0, metrics.getRateLimiterRequestCount());
+        assertFalse(metrics.getReport().contains("ratelimiter:"));
+    }
+}
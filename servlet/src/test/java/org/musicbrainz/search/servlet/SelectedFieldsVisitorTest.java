@@ -0,0 +1,140 @@
+package org.musicbrainz.search.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Before;
+import org.junit.Test;
+import org.musicbrainz.search.LuceneVersion;
+import org.musicbrainz.search.MbDocument;
+import org.musicbrainz.search.analysis.MusicbrainzSimilarity;
+import org.musicbrainz.search.index.ArtistIndexField;
+import org.musicbrainz.search.index.DatabaseIndex;
+import org.musicbrainz.search.index.FragmentIndexField;
+import org.musicbrainz.search.index.MetaIndexField;
+
+public class SelectedFieldsVisitorTest {
+
+  private RAMDirectory ramDir;
+
+  @Before
+  public void setUp() throws Exception {
+    ramDir = new RAMDirectory();
+    Analyzer analyzer = DatabaseIndex.getAnalyzer(ArtistIndexField.class);
+    IndexWriterConfig writerConfig = new IndexWriterConfig(LuceneVersion.LUCENE_VERSION, analyzer);
+    writerConfig.setSimilarity(new MusicbrainzSimilarity());
+    IndexWriter writer = new IndexWriter(ramDir, writerConfig);
+    {
+      MbDocument doc = new MbDocument();
+      doc.addField(ArtistIndexField.ARTIST_ID, "4302e264-1cf0-4d1f-aca7-2a6f89e34b36");
+      doc.addField(ArtistIndexField.ARTIST, "Farming Incident");
+      doc.addField(ArtistIndexField.SORTNAME, "Incident, Farming");
+      doc.addField(ArtistIndexField.TAG, "thrash");
+      doc.addField(ArtistIndexField.TAG, "güth");
+      doc.addField(ArtistIndexField.ARTIST_STORE, "<artist/>");
+      doc.addField(FragmentIndexField.XML, "<artist id=\"4302e264-1cf0-4d1f-aca7-2a6f89e34b36\" />");
+      doc.addField(FragmentIndexField.XML_SCORE_OFFSET, 50);
+      writer.addDocument(doc.getLuceneDocument());
+    }
+
+    {
+      MbDocument doc = new MbDocument();
+      doc.addField(MetaIndexField.META, MetaIndexField.META_VALUE);
+      doc.addNumericField(MetaIndexField.LAST_UPDATED, new Date().getTime());
+      writer.addDocument(doc.getLuceneDocument());
+    }
+    writer.close();
+  }
+
+  @Test
+  public void testOnlySelectedFieldsLoaded() throws Exception {
+    DirectoryReader reader = DirectoryReader.open(ramDir);
+    try {
+      Set<String> fields = new HashSet<String>(Arrays.asList(ArtistIndexField.ARTIST_STORE.getName(),
+          ArtistIndexField.ARTIST_ID.getName()));
+      SelectedFieldsVisitor visitor = new SelectedFieldsVisitor(fields);
+      reader.document(0, visitor);
+      Document doc = visitor.getDocument();
+
+      assertEquals(2, doc.getFields().size());
+      assertEquals("<artist/>", doc.get(ArtistIndexField.ARTIST_STORE.getName()));
+      assertEquals("4302e264-1cf0-4d1f-aca7-2a6f89e34b36", doc.get(ArtistIndexField.ARTIST_ID.getName()));
+      assertNull(doc.get(ArtistIndexField.ARTIST.getName()));
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testMissingFieldsLeftOut() throws Exception {
+    DirectoryReader reader = DirectoryReader.open(ramDir);
+    try {
+      Set<String> fields = new HashSet<String>(Arrays.asList(ArtistIndexField.ARTIST_STORE.getName()));
+      SelectedFieldsVisitor visitor = new SelectedFieldsVisitor(fields);
+      reader.document(1, visitor);
+      assertEquals(0, visitor.getDocument().getFields().size());
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testSearchServerLoadsStoredFields() throws Exception {
+    SearcherManager searcherManager = new SearcherManager(ramDir, new MusicBrainzSearcherFactory(ResourceType.ARTIST));
+    AbstractSearchServer searchServer = new ArtistSearch(searcherManager);
+    assertEquals(new HashSet<String>(Arrays.asList(ArtistIndexField.ARTIST_STORE.getName())),
+        searchServer.getStoredFields());
+
+    IndexSearcher searcher = searcherManager.acquire();
+    try {
+      //Index has fragments so they are loaded as well
+      MbDocument doc = searchServer.loadDocument(searcher, 0);
+      assertEquals(3, doc.getLuceneDocument().getFields().size());
+      assertEquals("<artist/>", doc.get(ArtistIndexField.ARTIST_STORE));
+      assertEquals("50", doc.get(FragmentIndexField.XML_SCORE_OFFSET));
+      assertEquals(0, doc.getValues(ArtistIndexField.TAG).length);
+    } finally {
+      searcherManager.release(searcher);
+    }
+  }
+
+  @Test
+  public void testSearchServerWithoutFragments() throws Exception {
+    RAMDirectory noFragmentsDir = new RAMDirectory();
+    IndexWriterConfig writerConfig = new IndexWriterConfig(LuceneVersion.LUCENE_VERSION,
+        DatabaseIndex.getAnalyzer(ArtistIndexField.class));
+    IndexWriter writer = new IndexWriter(noFragmentsDir, writerConfig);
+    {
+      MbDocument doc = new MbDocument();
+      doc.addField(ArtistIndexField.ARTIST_ID, "4302e264-1cf0-4d1f-aca7-2a6f89e34b36");
+      doc.addField(ArtistIndexField.ARTIST_STORE, "<artist/>");
+      doc.addField(ArtistIndexField.TAG, "thrash");
+      writer.addDocument(doc.getLuceneDocument());
+    }
+    writer.close();
+
+    SearcherManager searcherManager = new SearcherManager(noFragmentsDir, new MusicBrainzSearcherFactory(ResourceType.ARTIST));
+    AbstractSearchServer searchServer = new ArtistSearch(searcherManager);
+    IndexSearcher searcher = searcherManager.acquire();
+    try {
+      MbDocument doc = searchServer.loadDocument(searcher, 0);
+      assertEquals(1, doc.getLuceneDocument().getFields().size());
+      assertEquals("<artist/>", doc.get(ArtistIndexField.ARTIST_STORE));
+    } finally {
+      searcherManager.release(searcher);
+    }
+  }
+}
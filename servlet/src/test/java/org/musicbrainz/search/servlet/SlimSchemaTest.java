@@ -0,0 +1,253 @@
+package org.musicbrainz.search.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Date;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Before;
+import org.junit.Test;
+import org.musicbrainz.mmd2.*;
+import org.musicbrainz.search.LuceneVersion;
+import org.musicbrainz.search.MbDocument;
+import org.musicbrainz.search.analysis.MusicbrainzSimilarity;
+import org.musicbrainz.search.index.*;
+import org.musicbrainz.search.servlet.mmd2.ResultsWriter;
+
+/**
+ * Test that search results are output the same whether the index was built with the slim schema or not
+ */
+public class SlimSchemaTest {
+
+    private RAMDirectory slimRamDir;
+    private AbstractSearchServer ss;
+    private AbstractSearchServer slim;
+    private AbstractSearchServer releaseSs;
+    private AbstractSearchServer releaseSlim;
+
+    @Before
+    public void setUp() throws Exception {
+        RAMDirectory ramDir = new RAMDirectory();
+        slimRamDir = new RAMDirectory();
+        addArtists(ramDir, null);
+        addArtists(slimRamDir, new ArtistIndex().getSlimSchema());
+
+        ss = new ArtistSearch(new SearcherManager(ramDir, new MusicBrainzSearcherFactory(ResourceType.ARTIST)));
+        slim = new ArtistSearch(new SearcherManager(slimRamDir, new MusicBrainzSearcherFactory(ResourceType.ARTIST)));
+
+        RAMDirectory releaseRamDir = new RAMDirectory();
+        RAMDirectory slimReleaseRamDir = new RAMDirectory();
+        addReleases(releaseRamDir, null);
+        addReleases(slimReleaseRamDir, new ReleaseIndex().getSlimSchema());
+        releaseSs = new ReleaseSearch(new SearcherManager(releaseRamDir,
+                new MusicBrainzSearcherFactory(ResourceType.RELEASE)));
+        releaseSlim = new ReleaseSearch(new SearcherManager(slimReleaseRamDir,
+                new MusicBrainzSearcherFactory(ResourceType.RELEASE)));
+    }
+
+    private void addArtists(RAMDirectory ramDir, SlimSchema slimSchema) throws Exception {
+        ObjectFactory of = new ObjectFactory();
+        Analyzer analyzer = DatabaseIndex.getAnalyzer(ArtistIndexField.class);
+        IndexWriterConfig writerConfig = new IndexWriterConfig(LuceneVersion.LUCENE_VERSION, analyzer);
+        writerConfig.setSimilarity(new MusicbrainzSimilarity());
+        IndexWriter writer = new IndexWriter(ramDir, writerConfig);
+
+        {
+            MbDocument doc = new MbDocument();
+            doc.addField(ArtistIndexField.ID, "1");
+            doc.addField(ArtistIndexField.ARTIST_ID, "4302e264-1cf0-4d1f-aca7-2a6f89e34b36");
+            doc.addField(ArtistIndexField.ARTIST, "Farming Incident");
+            doc.addField(ArtistIndexField.SORTNAME, "Incident, Farming");
+            doc.addField(ArtistIndexField.TYPE, "Group");
+            doc.addField(ArtistIndexField.COUNTRY, "AF");
+            doc.addField(ArtistIndexField.TAG, "thrash");
+            doc.addField(ArtistIndexField.IPI, "1001");
+            doc.addField(ArtistIndexField.IPI, "1002");
+
+            Artist artist = of.createArtist();
+            artist.setId("4302e264-1cf0-4d1f-aca7-2a6f89e34b36");
+            artist.setName("Farming Incident");
+            artist.setSortName("Incident, Farming");
+            artist.setType("Group");
+            artist.setCountry("AF");
+            IpiList ipiList = of.createIpiList();
+            ipiList.getIpi().add("1001");
+            ipiList.getIpi().add("1002");
+            artist.setIpiList(ipiList);
+            doc.addField(ArtistIndexField.ARTIST_STORE, MMDSerializer.serialize(artist));
+            writer.addDocument(apply(slimSchema, doc));
+        }
+
+        {
+            MbDocument doc = new MbDocument();
+            doc.addField(ArtistIndexField.ID, "2");
+            doc.addField(ArtistIndexField.ARTIST_ID, "ccd4879c-5e88-4385-b131-bf65296bf245");
+            doc.addField(ArtistIndexField.ARTIST, "Echo & The Bunnymen");
+            doc.addField(ArtistIndexField.SORTNAME, "Echo & The Bunnymen");
+            doc.addField(ArtistIndexField.TYPE, "Group");
+            doc.addField(ArtistIndexField.ALIAS, "Echo And The Bunnymen");
+            doc.addField(ArtistIndexField.TAG, "thrash");
+
+            Artist artist = of.createArtist();
+            artist.setId("ccd4879c-5e88-4385-b131-bf65296bf245");
+            artist.setName("Echo & The Bunnymen");
+            artist.setSortName("Echo & The Bunnymen");
+            artist.setType("Group");
+            doc.addField(ArtistIndexField.ARTIST_STORE, MMDSerializer.serialize(artist));
+            writer.addDocument(apply(slimSchema, doc));
+        }
+
+        {
+            MbDocument doc = new MbDocument();
+            doc.addField(MetaIndexField.META, MetaIndexField.META_VALUE);
+            doc.addNumericField(MetaIndexField.LAST_UPDATED, new Date().getTime());
+            writer.addDocument(apply(slimSchema, doc));
+        }
+        writer.close();
+    }
+
+    /**
+     * Releases with a different number of mediums, so fields added once per medium such as format have different
+     * lengths and their norms decide the order of the results
+     */
+    private void addReleases(RAMDirectory ramDir, SlimSchema slimSchema) throws Exception {
+        Analyzer analyzer = DatabaseIndex.getAnalyzer(ReleaseIndexField.class);
+        IndexWriterConfig writerConfig = new IndexWriterConfig(LuceneVersion.LUCENE_VERSION, analyzer);
+        writerConfig.setSimilarity(new MusicbrainzSimilarity());
+        IndexWriter writer = new IndexWriter(ramDir, writerConfig);
+
+        addRelease(writer, slimSchema, "1d9e8ed6-3893-4d3b-aa7d-6cd79609e386", "Our Glorious 5 Year Plan",
+                "Jewel Case", "CD", "CD", "Vinyl", "DVD");
+        addRelease(writer, slimSchema, "0011c128-b1f2-300e-88cc-c33c30dce704", "Epics", "Digipak", "CD");
+        addRelease(writer, slimSchema, "c3b8dbc9-c1ff-4743-9015-8d762819134e", "Plan B", "Jewel Case", "Vinyl", "CD");
+
+        MbDocument doc = new MbDocument();
+        doc.addField(MetaIndexField.META, MetaIndexField.META_VALUE);
+        doc.addNumericField(MetaIndexField.LAST_UPDATED, new Date().getTime());
+        writer.addDocument(apply(slimSchema, doc));
+        writer.close();
+    }
+
+    private void addRelease(IndexWriter writer, SlimSchema slimSchema, String id, String title, String packaging,
+                            String... formats) throws Exception {
+        ObjectFactory of = new ObjectFactory();
+        MbDocument doc = new MbDocument();
+        doc.addField(ReleaseIndexField.RELEASE_ID, id);
+        doc.addField(ReleaseIndexField.RELEASE, title);
+        doc.addField(ReleaseIndexField.SCRIPT, "Latn");
+        doc.addField(ReleaseIndexField.PACKAGING, packaging);
+        doc.addField(ReleaseIndexField.STATUS, "Official");
+        for (String format : formats) {
+            doc.addField(ReleaseIndexField.FORMAT, format);
+        }
+
+        Release release = of.createRelease();
+        release.setId(id);
+        release.setTitle(title);
+        release.setStatus("Official");
+        doc.addField(ReleaseIndexField.RELEASE_STORE, MMDSerializer.serialize(release));
+        writer.addDocument(apply(slimSchema, doc));
+    }
+
+    private Document apply(SlimSchema slimSchema, MbDocument doc) {
+        return slimSchema != null ? slimSchema.apply(doc.getLuceneDocument()) : doc.getLuceneDocument();
+    }
+
+    private String output(AbstractSearchServer searchServer, String query, String format) throws Exception {
+        Results res = searchServer.search(query, 0, 10);
+        ResultsWriter writer = searchServer.getMmd2Writer();
+        StringWriter sw = new StringWriter();
+        PrintWriter pr = new PrintWriter(sw);
+        writer.write(pr, res, format);
+        pr.close();
+        return sw.toString();
+    }
+
+    @Test
+    public void testOnlyFieldsReadBackStored() throws Exception {
+        DirectoryReader reader = DirectoryReader.open(slimRamDir);
+        try {
+            Document doc = reader.document(0);
+            assertEquals("4302e264-1cf0-4d1f-aca7-2a6f89e34b36", doc.get(ArtistIndexField.ARTIST_ID.getName()));
+            assertEquals("Farming Incident", doc.get(ArtistIndexField.ARTIST.getName()));
+            assertNull(doc.get(ArtistIndexField.SORTNAME.getName()));
+            assertNull(doc.get(ArtistIndexField.ID.getName()));
+
+            Document meta = reader.document(2);
+            assertEquals(MetaIndexField.META_VALUE, meta.get(MetaIndexField.META.getName()));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testOutputUnchanged() throws Exception {
+        String[] queries = {"thrash", "tag:thrash", "type:group", "ipi:1001", "arid:ccd4879c-5e88-4385-b131-bf65296bf245",
+                "sortname:incident", "echo"};
+        String[] formats = {SearchServerServlet.RESPONSE_XML, SearchServerServlet.RESPONSE_JSON,
+                SearchServerServlet.RESPONSE_JSON_NEW};
+        for (String query : queries) {
+            for (String format : formats) {
+                assertEquals(query + " " + format, output(ss, query, format), output(slim, query, format));
+            }
+        }
+    }
+
+    @Test
+    public void testExplainUnchanged() throws Exception {
+        assertEquals(ss.explain("thrash", 0, 10), slim.explain("thrash", 0, 10));
+    }
+
+    @Test
+    public void testReleaseScoresAndOrderUnchanged() throws Exception {
+        String[] queries = {"format:cd", "format:vinyl", "format:cd OR packaging:\"jewel case\"", "script:latn",
+                "plan OR format:dvd"};
+        for (String query : queries) {
+            Results res = releaseSs.search(query, 0, 10);
+            Results slimRes = releaseSlim.search(query, 0, 10);
+            assertTrue(query, res.results.size() > 1);
+            assertEquals(query, res.results.size(), slimRes.results.size());
+            for (int i = 0; i < res.results.size(); i++) {
+                assertEquals(query, res.results.get(i).getDoc().get(ReleaseIndexField.RELEASE_ID),
+                        slimRes.results.get(i).getDoc().get(ReleaseIndexField.RELEASE_ID));
+                assertEquals(query, res.results.get(i).getScore(), slimRes.results.get(i).getScore(), 0.0f);
+            }
+            assertEquals(query, releaseSs.explain(query, 0, 10), releaseSlim.explain(query, 0, 10));
+        }
+
+        // Scores differ between the releases, so the order depends on the norms of the format field
+        Results res = releaseSs.search("format:cd", 0, 10);
+        assertTrue(res.results.get(0).getScore() != res.results.get(res.results.size() - 1).getScore());
+    }
+
+    @Test
+    public void testUpdatedByIdentifierField() throws Exception {
+        IndexWriterConfig writerConfig = new IndexWriterConfig(LuceneVersion.LUCENE_VERSION,
+                DatabaseIndex.getAnalyzer(ArtistIndexField.class));
+        ThreadedIndexWriter writer = new ThreadedIndexWriter(slimRamDir, writerConfig, 1, 10);
+        writer.setUpdateField(ArtistIndexField.ID.getName());
+        writer.setSlimSchema(new ArtistIndex().getSlimSchema());
+
+        MbDocument doc = new MbDocument();
+        doc.addField(ArtistIndexField.ID, "2");
+        doc.addField(ArtistIndexField.ARTIST_ID, "ccd4879c-5e88-4385-b131-bf65296bf245");
+        doc.addField(ArtistIndexField.ARTIST, "Echo and the Bunnymen");
+        doc.addField(ArtistIndexField.ARTIST_STORE, "<artist/>");
+        writer.addDocument(doc.getLuceneDocument());
+        writer.close();
+
+        slim.reloadIndex();
+        assertEquals(1, slim.search("arid:ccd4879c-5e88-4385-b131-bf65296bf245", 0, 10).getTotalHits());
+        assertEquals(1, slim.search("artist:\"echo and the bunnymen\"", 0, 10).getTotalHits());
+    }
+}
@@ -0,0 +1,75 @@
+package org.musicbrainz.search.servlet;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testOverLimit() throws Exception {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(2, 10, 1000);
+        assertEquals("ok N", rateLimiter.check("1.1.1.1", 0));
+        assertEquals("ok N", rateLimiter.check("1.1.1.1", 0));
+        assertEquals("ok Y 3.00 2 10", rateLimiter.check("1.1.1.1", 0));
+
+        RateLimiterChecker.RateLimiterResponse response
+                = new RateLimiterChecker.RateLimiterResponse(rateLimiter.check("1.1.1.1", 0));
+        assertFalse(response.isValid());
+        assertEquals("3.00 2 10", response.getHeaderMsg());
+        assertTrue(response.getMsg().contains("you are limited to making 2 requests per 10 seconds"));
+    }
+
+    @Test
+    public void testTokensRefilled() throws Exception {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(2, 10, 1000);
+        assertEquals("ok N", rateLimiter.check("1.1.1.1", 0));
+        assertEquals("ok N", rateLimiter.check("1.1.1.1", 0));
+        assertEquals("ok Y 2.60 2 10", rateLimiter.check("1.1.1.1", 2 * SECOND));
+
+        //One token refilled every five seconds
+        assertEquals("ok N", rateLimiter.check("1.1.1.1", 6 * SECOND));
+        assertTrue(rateLimiter.check("1.1.1.1", 6 * SECOND).startsWith("ok Y"));
+
+        //Never refilled beyond the limit
+        assertEquals("ok N", rateLimiter.check("1.1.1.1", 1000 * SECOND));
+        assertEquals("ok N", rateLimiter.check("1.1.1.1", 1000 * SECOND));
+        assertTrue(rateLimiter.check("1.1.1.1", 1000 * SECOND).startsWith("ok Y"));
+    }
+
+    @Test
+    public void testWeighted() throws Exception {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(10, 10, 1000);
+        assertEquals("ok N", rateLimiter.checkWeighted("1.1.1.1", 6, 0));
+        assertEquals("ok Y 12.00 10 10", rateLimiter.checkWeighted("1.1.1.1", 6, 0));
+        assertEquals("ok N", rateLimiter.checkWeighted("1.1.1.1", 4, 0));
+        assertTrue(rateLimiter.check("1.1.1.1", 0).startsWith("ok Y"));
+
+        //Charged in full, so more than the limit is never allowed
+        assertEquals("ok Y 50.00 10 10", rateLimiter.checkWeighted("2.2.2.2", 50, 0));
+        assertEquals("ok N", rateLimiter.checkWeighted("2.2.2.2", 10, 0));
+    }
+
+    @Test
+    public void testIpAddressesLimitedSeparately() throws Exception {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(1, 10, 1000);
+        assertEquals("ok N", rateLimiter.check("1.1.1.1", 0));
+        assertTrue(rateLimiter.check("1.1.1.1", 0).startsWith("ok Y"));
+        assertEquals("ok N", rateLimiter.check("2.2.2.2", 0));
+    }
+
+    @Test
+    public void testNoOfIpAddressesBounded() throws Exception {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(1, 10, 640);
+        for (int i = 0; i < 10000; i++) {
+            rateLimiter.check("10.0." + (i / 256) + "." + (i % 256), 0);
+        }
+        assertTrue(rateLimiter.size() <= 640);
+    }
+}
@@ -0,0 +1,71 @@
+package org.musicbrainz.search.servlet;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TopHitsTest {
+
+    private static TopDocs topDocs(float... scores) {
+        ScoreDoc[] scoreDocs = new ScoreDoc[scores.length];
+        for (int i = 0; i < scores.length; i++) {
+            scoreDocs[i] = new ScoreDoc(i, scores[i]);
+        }
+        return new TopDocs(scores.length, scoreDocs, scores.length > 0 ? scores[0] : Float.NaN);
+    }
+
+    private static String docs(ScoreDoc[] scoreDocs) {
+        StringBuilder sb = new StringBuilder();
+        for (ScoreDoc scoreDoc : scoreDocs) {
+            sb.append(scoreDoc.doc).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    @Test
+    public void testSelectsBestHitsAcrossIndexes() throws Exception {
+        TopDocs[] topDocs = new TopDocs[]{
+                topDocs(9.0f, 5.0f, 1.0f),
+                topDocs(8.0f, 7.0f, 6.0f),
+                topDocs(),
+        };
+        ScoreDoc[][] selected = TopHits.select(topDocs, 0, 3);
+        assertEquals("0", docs(selected[0]));
+        assertEquals("0 1", docs(selected[1]));
+        assertEquals("", docs(selected[2]));
+    }
+
+    @Test
+    public void testOffsetAppliesToMergedHits() throws Exception {
+        TopDocs[] topDocs = new TopDocs[]{
+                topDocs(9.0f, 5.0f, 1.0f),
+                topDocs(8.0f, 7.0f, 6.0f),
+        };
+
+        //Hits in merged order are 9 8 7 6 5 1
+        ScoreDoc[][] selected = TopHits.select(topDocs, 2, 3);
+        assertEquals("1", docs(selected[0]));
+        assertEquals("1 2", docs(selected[1]));
+
+        selected = TopHits.select(topDocs, 5, 3);
+        assertEquals("2", docs(selected[0]));
+        assertEquals("", docs(selected[1]));
+
+        selected = TopHits.select(topDocs, 10, 3);
+        assertEquals("", docs(selected[0]));
+        assertEquals("", docs(selected[1]));
+    }
+
+    @Test
+    public void testEqualScoresOrderedByIndex() throws Exception {
+        TopDocs[] topDocs = new TopDocs[]{
+                topDocs(5.0f, 5.0f),
+                topDocs(5.0f),
+        };
+        ScoreDoc[][] selected = TopHits.select(topDocs, 0, 2);
+        assertEquals("0 1", docs(selected[0]));
+        assertEquals("", docs(selected[1]));
+    }
+}
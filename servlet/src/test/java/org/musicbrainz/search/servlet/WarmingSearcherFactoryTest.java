@@ -0,0 +1,184 @@
+package org.musicbrainz.search.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Before;
+import org.junit.Test;
+import org.musicbrainz.search.LuceneVersion;
+import org.musicbrainz.search.MbDocument;
+import org.musicbrainz.search.analysis.MusicbrainzSimilarity;
+import org.musicbrainz.search.index.ArtistIndexField;
+import org.musicbrainz.search.index.DatabaseIndex;
+import org.musicbrainz.search.index.MetaIndexField;
+
+public class WarmingSearcherFactoryTest {
+
+  private RAMDirectory ramDir;
+
+  @Before
+  public void setUp() throws Exception {
+    ramDir = new RAMDirectory();
+    addArtist("4302e264-1cf0-4d1f-aca7-2a6f89e34b36", "Farming Incident");
+  }
+
+  private void addArtist(String id, String name) throws Exception {
+    Analyzer analyzer = DatabaseIndex.getAnalyzer(ArtistIndexField.class);
+    IndexWriterConfig writerConfig = new IndexWriterConfig(LuceneVersion.LUCENE_VERSION, analyzer);
+    writerConfig.setSimilarity(new MusicbrainzSimilarity());
+    writerConfig.setUseCompoundFile(false);
+    IndexWriter writer = new IndexWriter(ramDir, writerConfig);
+    {
+      MbDocument doc = new MbDocument();
+      doc.addField(ArtistIndexField.ARTIST_ID, id);
+      doc.addField(ArtistIndexField.ARTIST, name);
+      doc.addField(ArtistIndexField.SORTNAME, name);
+      doc.addField(ArtistIndexField.TAG, "thrash");
+      writer.addDocument(doc.getLuceneDocument());
+    }
+
+    {
+      MbDocument doc = new MbDocument();
+      doc.addField(MetaIndexField.META, MetaIndexField.META_VALUE);
+      doc.addNumericField(MetaIndexField.LAST_UPDATED, new Date().getTime());
+      writer.addDocument(doc.getLuceneDocument());
+    }
+    writer.close();
+  }
+
+  @Test
+  public void testWarmFirstSearcher() throws Exception {
+    List<String> queries = Arrays.asList("farming", "tag:thrash", "artist:\"farming incident\"", "(((");
+    WarmingSearcherFactory warmer = new WarmingSearcherFactory(ResourceType.ARTIST, queries,
+        WarmingSearcherFactory.DEFAULT_HOT_FILE_EXTENSIONS);
+    SearcherManager searcherManager = new SearcherManager(ramDir, warmer);
+
+    // Can't replay queries until there is a search server to parse them
+    assertFalse(warmer.isWarmed());
+
+    AbstractSearchServer searchServer = new ArtistSearch(searcherManager);
+    warmer.setSearchServer(searchServer);
+    IndexSearcher searcher = searcherManager.acquire();
+    try {
+      warmer.warm(searcher);
+    } finally {
+      searcherManager.release(searcher);
+    }
+
+    assertTrue(warmer.isWarmed());
+    assertEquals(3, warmer.getWarmUpQueryCount());
+    assertEquals(1, searchServer.search("farming", 0, 10).getTotalHits());
+  }
+
+  @Test
+  public void testWarmRefreshedSearcher() throws Exception {
+    List<String> queries = Arrays.asList("bunnymen");
+    WarmingSearcherFactory warmer = new WarmingSearcherFactory(ResourceType.ARTIST, queries,
+        WarmingSearcherFactory.DEFAULT_HOT_FILE_EXTENSIONS);
+    SearcherManager searcherManager = new SearcherManager(ramDir, warmer);
+    AbstractSearchServer searchServer = new ArtistSearch(searcherManager);
+    warmer.setSearchServer(searchServer);
+
+    addArtist("ccd4879c-5e88-4385-b131-bf65296bf245", "Echo & The Bunnymen");
+    assertFalse(warmer.isWarmed());
+    searchServer.reloadIndex();
+
+    // Warmed by the SearcherManager before it was made available
+    assertTrue(warmer.isWarmed());
+    assertEquals(1, warmer.getWarmUpQueryCount());
+    assertEquals(1, searchServer.search("bunnymen", 0, 10).getTotalHits());
+  }
+
+  private void forceMerge() throws Exception {
+    IndexWriterConfig writerConfig = new IndexWriterConfig(LuceneVersion.LUCENE_VERSION,
+        DatabaseIndex.getAnalyzer(ArtistIndexField.class));
+    writerConfig.setUseCompoundFile(false);
+    IndexWriter writer = new IndexWriter(ramDir, writerConfig);
+    writer.forceMerge(1);
+    writer.close();
+  }
+
+  private void warm(WarmingSearcherFactory warmer, SearcherManager searcherManager) throws Exception {
+    searcherManager.maybeRefreshBlocking();
+    IndexSearcher searcher = searcherManager.acquire();
+    try {
+      warmer.warm(searcher);
+    } finally {
+      searcherManager.release(searcher);
+    }
+  }
+
+  /**
+   * @return hot files of the last commit to the index
+   */
+  private Set<String> getCommittedHotFiles() throws Exception {
+    SegmentInfos segmentInfos = new SegmentInfos();
+    segmentInfos.read(ramDir);
+    List<String> hotFileExtensions = Arrays.asList(WarmingSearcherFactory.DEFAULT_HOT_FILE_EXTENSIONS);
+    Set<String> files = new HashSet<String>();
+    for (SegmentCommitInfo segmentCommitInfo : segmentInfos) {
+      for (String fileName : segmentCommitInfo.files()) {
+        if (hotFileExtensions.contains(fileName.substring(fileName.lastIndexOf('.') + 1))) {
+          files.add(fileName);
+        }
+      }
+    }
+    return files;
+  }
+
+  @Test
+  public void testTouchedFilesOnlyOfLastSearcherWarmed() throws Exception {
+    WarmingSearcherFactory warmer = new WarmingSearcherFactory(ResourceType.ARTIST, Arrays.<String>asList(),
+        WarmingSearcherFactory.DEFAULT_HOT_FILE_EXTENSIONS);
+    SearcherManager searcherManager = new SearcherManager(ramDir, warmer);
+    warm(warmer, searcherManager);
+    Set<String> firstFiles = warmer.getTouchedFiles();
+    assertFalse(firstFiles.isEmpty());
+    assertEquals(getCommittedHotFiles(), firstFiles);
+
+    // New segment added alongside the first
+    addArtist("ccd4879c-5e88-4385-b131-bf65296bf245", "Echo & The Bunnymen");
+    warm(warmer, searcherManager);
+    assertTrue(warmer.getTouchedFiles().containsAll(firstFiles));
+    assertEquals(getCommittedHotFiles(), warmer.getTouchedFiles());
+
+    // Both segments merged into one, so the files of the first segment are no longer kept
+    forceMerge();
+    warm(warmer, searcherManager);
+    Set<String> mergedFiles = warmer.getTouchedFiles();
+    assertEquals(getCommittedHotFiles(), mergedFiles);
+    mergedFiles.retainAll(firstFiles);
+    assertTrue(mergedFiles.isEmpty());
+  }
+
+  @Test
+  public void testLoadQueries() throws Exception {
+    File file = File.createTempFile("artist_queries", ".txt");
+    file.deleteOnExit();
+    Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    out.write("# recent artist queries\nfarming\n\n  tag:thrash  \n東京\nbunnymen\n");
+    out.close();
+
+    assertEquals(Arrays.asList("farming", "tag:thrash", "東京"), WarmingSearcherFactory.loadQueries(file, 3));
+    assertEquals(0, WarmingSearcherFactory.loadQueries(new File(file.getPath() + ".missing"), 3).size());
+  }
+}
@@ -0,0 +1,200 @@
+package org.musicbrainz.search.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.util.Date;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.musicbrainz.mmd2.*;
+import org.musicbrainz.search.LuceneVersion;
+import org.musicbrainz.search.MbDocument;
+import org.musicbrainz.search.analysis.MusicbrainzSimilarity;
+import org.musicbrainz.search.index.*;
+import org.musicbrainz.search.servlet.mmd2.ResultsWriter;
+
+/**
+ * Test that Xml written from pre-rendered fragments is exactly the same as Xml written by marshalling the stored
+ * entities, the same artists are indexed with and without fragments.
+ */
+public class XmlFragmentTest {
+
+    private static final String ALL_ARTISTS = "tag:thrash";
+
+    private AbstractSearchServer marshalled;
+    private AbstractSearchServer prerendered;
+
+    @Before
+    public void setUp() throws Exception {
+        ResultsWriter.setXmlStreamingEnabled(true);
+
+        RAMDirectory ramDir = new RAMDirectory();
+        RAMDirectory prerenderedRamDir = new RAMDirectory();
+        addArtists(ramDir, false);
+        addArtists(prerenderedRamDir, true);
+
+        marshalled = new ArtistSearch(new SearcherManager(ramDir, new MusicBrainzSearcherFactory(ResourceType.ARTIST)));
+        prerendered = new ArtistSearch(new SearcherManager(prerenderedRamDir,
+                new MusicBrainzSearcherFactory(ResourceType.ARTIST)));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ResultsWriter.setXmlStreamingEnabled(true);
+    }
+
+    private void addArtists(RAMDirectory ramDir, boolean isPrerendered) throws Exception {
+        ObjectFactory of = new ObjectFactory();
+        Analyzer analyzer = DatabaseIndex.getAnalyzer(ArtistIndexField.class);
+        IndexWriterConfig writerConfig = new IndexWriterConfig(LuceneVersion.LUCENE_VERSION, analyzer);
+        writerConfig.setSimilarity(new MusicbrainzSimilarity());
+        IndexWriter writer = new IndexWriter(ramDir, writerConfig);
+
+        {
+            MbDocument doc = new MbDocument();
+            doc.addField(ArtistIndexField.ARTIST_ID, "4302e264-1cf0-4d1f-aca7-2a6f89e34b36");
+            doc.addField(ArtistIndexField.ARTIST, "Farming Incident");
+            doc.addField(ArtistIndexField.TAG, "thrash");
+            doc.addField(ArtistIndexField.TAG, "güth");
+
+            Artist artist = of.createArtist();
+            artist.setId("4302e264-1cf0-4d1f-aca7-2a6f89e34b36");
+            artist.setName("Farming Incident");
+            artist.setSortName("Incident, Farming");
+            artist.setType("Group");
+            artist.setDisambiguation("the real one");
+            LifeSpan lifespan = of.createLifeSpan();
+            lifespan.setBegin("1999-04");
+            lifespan.setEnded("true");
+            artist.setLifeSpan(lifespan);
+            TagList tagList = of.createTagList();
+            Tag tag = of.createTag();
+            tag.setName("thrash");
+            tag.setCount(BigInteger.valueOf(5));
+            tagList.getTag().add(tag);
+            tag = of.createTag();
+            tag.setName("güth");
+            tag.setCount(BigInteger.valueOf(11));
+            tagList.getTag().add(tag);
+            artist.setTagList(tagList);
+            IpiList ipiList = of.createIpiList();
+            ipiList.getIpi().add("1001");
+            ipiList.getIpi().add("1002");
+            artist.setIpiList(ipiList);
+            addArtist(writer, doc, artist, isPrerendered);
+        }
+
+        //Never pre-rendered, as if added by the updater, so fragments and marshalled results are mixed
+        {
+            MbDocument doc = new MbDocument();
+            doc.addField(ArtistIndexField.ARTIST_ID, "ccd4879c-5e88-4385-b131-bf65296bf245");
+            doc.addField(ArtistIndexField.ARTIST, "Echo & The Bunnymen");
+            doc.addField(ArtistIndexField.TAG, "thrash");
+
+            Artist artist = of.createArtist();
+            artist.setId("ccd4879c-5e88-4385-b131-bf65296bf245");
+            artist.setName("Echo & The Bunnymen");
+            artist.setSortName("Echo & The Bunnymen");
+            artist.setType("Group");
+            addArtist(writer, doc, artist, false);
+        }
+
+        {
+            MbDocument doc = new MbDocument();
+            doc.addField(ArtistIndexField.ARTIST_ID, "dde4879c-5e88-4385-b131-bf65296bf245");
+            doc.addField(ArtistIndexField.ARTIST, "Siobhán <Lynch>");
+            doc.addField(ArtistIndexField.TAG, "thrash");
+            doc.addField(ArtistIndexField.TAG, "thrash metal");
+
+            Artist artist = of.createArtist();
+            artist.setId("dde4879c-5e88-4385-b131-bf65296bf245");
+            artist.setName("Siobhán <Lynch>");
+            artist.setSortName("Lynch, Siobhán");
+            artist.setType("Person");
+            Gender gender = new Gender();
+            gender.setContent("female");
+            artist.setGender(gender);
+            addArtist(writer, doc, artist, isPrerendered);
+        }
+
+        {
+            MbDocument doc = new MbDocument();
+            doc.addField(MetaIndexField.META, MetaIndexField.META_VALUE);
+            doc.addNumericField(MetaIndexField.LAST_UPDATED, new Date().getTime());
+            writer.addDocument(doc.getLuceneDocument());
+        }
+        writer.close();
+    }
+
+    private void addArtist(IndexWriter writer, MbDocument doc, Artist artist, boolean isPrerendered) throws Exception {
+        doc.addField(ArtistIndexField.ARTIST_STORE, MMDSerializer.serialize(artist));
+        if (isPrerendered) {
+            ObjectFactory of = new ObjectFactory();
+            artist.setScore(MMDSerializer.SCORE_PLACEHOLDER);
+            ArtistList artistList = of.createArtistList();
+            artistList.getArtist().add(artist);
+            Metadata metadata = of.createMetadata();
+            metadata.setArtistList(artistList);
+            MMDSerializer.addXmlFragment(doc, metadata);
+        }
+        writer.addDocument(doc.getLuceneDocument());
+    }
+
+    private String output(AbstractSearchServer searchServer, String query, int offset, int limit) throws Exception {
+        Results res = searchServer.search(query, offset, limit);
+        ResultsWriter writer = searchServer.getMmd2Writer();
+        StringWriter sw = new StringWriter();
+        PrintWriter pr = new PrintWriter(sw);
+        writer.write(pr, res, SearchServerServlet.RESPONSE_XML);
+        pr.close();
+        return sw.toString();
+    }
+
+    @Test
+    public void testFragmentsLoaded() throws Exception {
+        Results res = prerendered.search("arid:4302e264-1cf0-4d1f-aca7-2a6f89e34b36", 0, 10);
+        assertEquals(1, res.results.size());
+        assertNotNull(res.results.get(0).getDoc().get(FragmentIndexField.XML));
+
+        res = prerendered.search("arid:ccd4879c-5e88-4385-b131-bf65296bf245", 0, 10);
+        assertEquals(1, res.results.size());
+        assertNull(res.results.get(0).getDoc().get(FragmentIndexField.XML));
+    }
+
+    @Test
+    public void testOutputSameAsMarshalled() throws Exception {
+        String[] queries = {ALL_ARTISTS, "artist:farming", "artist:echo", "tag:metal", "type:person", "nothing"};
+        for (String query : queries) {
+            assertEquals(query, output(marshalled, query, 0, 10), output(prerendered, query, 0, 10));
+        }
+    }
+
+    @Test
+    public void testOutputSameAsMarshalledWhenPaged() throws Exception {
+        for (int offset = 0; offset < 3; offset++) {
+            assertEquals(ALL_ARTISTS + " " + offset, output(marshalled, ALL_ARTISTS, offset, 1),
+                    output(prerendered, ALL_ARTISTS, offset, 1));
+        }
+    }
+
+    @Test
+    public void testOutputSameAsMarshalledWithoutStreaming() throws Exception {
+        String streamed = output(prerendered, ALL_ARTISTS, 0, 10);
+        assertTrue(streamed.contains("count=\"3\""));
+
+        ResultsWriter.setXmlStreamingEnabled(false);
+        assertEquals(output(marshalled, ALL_ARTISTS, 0, 10), streamed);
+    }
+}
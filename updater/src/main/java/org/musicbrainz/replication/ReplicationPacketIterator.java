@@ -24,10 +24,8 @@ public class ReplicationPacketIterator implements Iterator<ReplicationPacket> {
 	 * 
 	 */
 	public ReplicationPacketIterator(final ReplicationInformation initialReplicationInfo, boolean useLocalDatabase) {
-		this.currentReplicationPosition = initialReplicationInfo;
-		this.currentReplicationPosition.replicationSequence = initialReplicationInfo.replicationSequence;
-		this.currentReplicationPosition.schemaSequence = initialReplicationInfo.schemaSequence;
-		this.currentReplicationPosition.changeSequence = initialReplicationInfo.changeSequence;
+		// Copied so that iterating doesn't modify the replication information of the index
+		this.currentReplicationPosition = new ReplicationInformation(initialReplicationInfo);
 		this.useLocalDatabase = useLocalDatabase;
 	}
 
@@ -5,12 +5,14 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
@@ -48,10 +50,12 @@ public class LiveDataFeedIndexUpdater {
 	private final Logger LOGGER = Logger.getLogger(LiveDataFeedIndexUpdater.class.getName());
 
 	private Connection mainDbConn;
+	// Temporary tables used by multiple indexes, created on mainDbConn by each update that finds changes
+	private CommonTables commonTables;
 
 	private LiveDataFeedIndexUpdaterOptions options;
 	private List<DatabaseIndex> indexes;
-	private final Map<DatabaseIndex, IndexWriter> indexWriters = new HashMap<DatabaseIndex, IndexWriter>();
+	private final Map<DatabaseIndex, ThreadedIndexWriter> indexWriters = new HashMap<DatabaseIndex, ThreadedIndexWriter>();
 	private final Map<DatabaseIndex, ReplicationInformation> indexReplicationInfos = new HashMap<DatabaseIndex, ReplicationInformation>();
 	private final Map<DatabaseIndex, ChangesAnalyzer> indexChangesAnalyzers = new HashMap<DatabaseIndex, ChangesAnalyzer>();
 
@@ -105,13 +109,14 @@ public class LiveDataFeedIndexUpdater {
 		for (DatabaseIndex index : indexes) {
 
 			// Initialize index writer
-			IndexWriter indexWriter = createWriterForIndex(index, options);
+			ThreadedIndexWriter indexWriter = createWriterForIndex(index, options);
 			indexWriters.put(index, indexWriter);
 
 			// Load replication information
 			IndexReader indexReader = DirectoryReader.open(indexWriter, true);
 			ReplicationInformation replicationInfo = index.readReplicationInformationFromIndex(indexReader);
 			indexReplicationInfos.put(index, replicationInfo);
+			indexReader.close();
 
 			// Initialize the changes analyzer
 			DatabaseIndexDependencies dependencies = new DatabaseIndexDependencies(index.getName());
@@ -142,96 +147,169 @@ public class LiveDataFeedIndexUpdater {
 			return;
 		}
 
-		// Step 1: Load all replication packets and analyze changes to determine what need to be reindexed
-		List<ReplicationInformation> list = new ArrayList<ReplicationInformation>(indexReplicationInfos.values());
-		Collections.sort(list);
-		ReplicationInformation earliestReplicationInformation = list.get(0);
+		try {
+			// Step 1: Load all replication packets and analyze changes to determine what need to be reindexed
+			List<ReplicationInformation> list = new ArrayList<ReplicationInformation>(indexReplicationInfos.values());
+			Collections.sort(list);
+			ReplicationInformation earliestReplicationInformation = list.get(0);
+
+			Integer lastChangeSequence = earliestReplicationInformation.changeSequence;
+			ReplicationPacketIterator itPacket = new ReplicationPacketIterator(earliestReplicationInformation, true);
+			itPacket.setDatabaseConnection(mainDbConn);
+			while (itPacket.hasNext()) {
+
+				ReplicationPacket packet = itPacket.next();
+				LOGGER.info("Loading packet #" + packet.getReplicationSequence());
+
+				for (DatabaseIndex index : indexes) {
+
+					// SchemaSequence of packet should match the packet's one
+					if (indexReplicationInfos.get(index).schemaSequence != packet.getSchemaSequence()) {
+						LOGGER.fine("Ignoring packet #" + packet.getReplicationSequence() + " for index " + index.getName()
+								+ ": SCHEMA sequence mismatches");
+						// Check if this packet hasn't already been processed for this index (by comparing replication information)
+					} else if (indexReplicationInfos.get(index).compareTo(itPacket.getCurrentReplicationPosition()) > 0) {
+						LOGGER.fine("Ignoring packet #" + packet.getReplicationSequence() + " for index " + index.getName()
+								+ ": already indexed");
+						// Otherwise process the packet to find changes
+					} else {
+						LOGGER.fine("Analyzing packet #" + packet.getReplicationSequence() + " for index " + index.getName());
+						try {
+							indexChangesAnalyzers.get(index).analyze(packet, lastChangeSequence);
+						} catch (InvalidReplicationChangeException e) {
+							LOGGER.severe("Aborting: " + e.getMessage());
+							return;
+						}
+					}
+				}
 
-		Integer lastChangeSequence = earliestReplicationInformation.changeSequence;
-		ReplicationPacketIterator itPacket = new ReplicationPacketIterator(earliestReplicationInformation, true);
-		itPacket.setDatabaseConnection(LiveDataFeedIndexUpdaterOptions.getInstance().getMainDatabaseConnection());
-		while (itPacket.hasNext()) {
+				lastChangeSequence = packet.getMaxChangeId();
+			}
 
-			ReplicationPacket packet = itPacket.next();
-			LOGGER.info("Loading packet #" + packet.getReplicationSequence());
+			// Step 2: Create temporary tables, used by multiple indexes, if changes has been found
+			boolean changesExist = false;
+			for (ChangesAnalyzer changesAnalyzer : indexChangesAnalyzers.values()) {
+				if (changesAnalyzer.hasChanges()) {
+					changesExist = true;
+					break;
+				}
+			}
+			if (changesExist) {
+				List<String> indexesToBeBuilt = new ArrayList<String>();
+				for (DatabaseIndex index : indexes) {
+					indexesToBeBuilt.add(index.getName());
+				}
+				// Kept for the life of the connection, so tables that could not be dropped by a failed update are
+				// dropped before being created again
+				if (commonTables == null) {
+					commonTables = new CommonTables(mainDbConn, indexesToBeBuilt);
+				}
+				commonTables.createTemporaryTables(true);
+			}
 
+			// Step 3: Update the existing indexes from found changes
 			for (DatabaseIndex index : indexes) {
 
-				// SchemaSequence of packet should match the packet's one
-				if (indexReplicationInfos.get(index).schemaSequence != packet.getSchemaSequence()) {
-					LOGGER.fine("Ignoring packet #" + packet.getReplicationSequence() + " for index " + index.getName()
-							+ ": SCHEMA sequence mismatches");
-					// Check if this packet hasn't already been processed for this index (by comparing replication information)
-				} else if (indexReplicationInfos.get(index).compareTo(itPacket.getCurrentReplicationPosition()) > 0) {
-					LOGGER.fine("Ignoring packet #" + packet.getReplicationSequence() + " for index " + index.getName()
-							+ ": already indexed");
-					// Otherwise process the packet to find changes
-				} else {
-					LOGGER.fine("Analyzing packet #" + packet.getReplicationSequence() + " for index " + index.getName());
-					try {
-						indexChangesAnalyzers.get(index).analyze(packet, lastChangeSequence);
-					} catch (InvalidReplicationChangeException e) {
-						LOGGER.severe("Aborting: " + e.getMessage());
-						return;
-					}
-				}
-			}
+				clock.start();
+				LOGGER.info("Started updating index: " + index.getName());
 
-			lastChangeSequence = packet.getMaxChangeId();
-		}
+				ThreadedIndexWriter indexWriter = indexWriters.get(index);
+				ReplicationInformation replicationInfo = indexReplicationInfos.get(index);
+				ChangesAnalyzer changesAnalyzer = indexChangesAnalyzers.get(index);
+
+				try {
+					updateDatabaseIndex(index, indexWriter, replicationInfo, changesAnalyzer, itPacket.getCurrentReplicationPosition());
+				} catch (DatabaseSchemaChangedException e) {
+					LOGGER.severe("DatabaseSchemaChangedException: " + e.getMessage());
+				}
 
-		// Step 2: Create temporary tables, used by multiple indexes, if changes has been found
-		boolean changesExist = false;
-		for (ChangesAnalyzer changesAnalyzer : indexChangesAnalyzers.values()) {
-			if (changesAnalyzer.hasChanges()) {
-				changesExist = true;
-				break;
+				clock.stop();
+				LOGGER.fine("Finished updating index: " + index.getName() + " in " + Float.toString(clock.getTime() / 1000) + " seconds");
+				clock.reset();
 			}
-		}
-		if (changesExist) {
-			List<String> indexesToBeBuilt = new ArrayList<String>();
-			for (DatabaseIndex index : indexes) {
-				indexesToBeBuilt.add(index.getName());
+		} finally {
+			// Changes found are discarded even if the update failed, the packets are analyzed again by the next update
+			for (ChangesAnalyzer changesAnalyzer : indexChangesAnalyzers.values()) {
+				changesAnalyzer.reset();
+			}
+			// Temporary tables have to be dropped so they can be created again by the next update on this connection
+			if (commonTables != null) {
+				try {
+					commonTables.dropTables();
+				} catch (SQLException e) {
+					LOGGER.log(Level.WARNING, "Could not drop temporary tables: " + e.getMessage(), e);
+				}
 			}
-			CommonTables commonTables = new CommonTables(mainDbConn, indexesToBeBuilt);
-			commonTables.createTemporaryTables(true);
 		}
+	}
 
-		// Step 3: Update the existing indexes from found changes
-		for (DatabaseIndex index : indexes) {
-
-			clock.start();
-			LOGGER.info("Started updating index: " + index.getName());
-
-			IndexWriter indexWriter = indexWriters.get(index);
-			ReplicationInformation replicationInfo = indexReplicationInfos.get(index);
-			ChangesAnalyzer changesAnalyzer = indexChangesAnalyzers.get(index);
-
+	/**
+	 * Keep applying new replication packets as they become available, until the thread is interrupted
+	 * 
+	 * Index writers are kept open between updates and each update is committed, so a search server refreshing its
+	 * searchers regularly sees changes shortly after the replication packet has been published.
+	 * 
+	 * @param interval seconds to wait between updates
+	 */
+	public void updateContinuously(int interval) {
+		while (!Thread.currentThread().isInterrupted()) {
 			try {
-				updateDatabaseIndex(index, indexWriter, replicationInfo, changesAnalyzer, itPacket.getCurrentReplicationPosition());
-			} catch (DatabaseSchemaChangedException e) {
-				LOGGER.severe("DatabaseSchemaChangedException: " + e.getMessage());
+				update();
+			} catch (Exception e) {
+				// Try again at next interval, the packets will be applied then
+				LOGGER.log(Level.SEVERE, "Update failed: " + e.getMessage(), e);
 			}
 
-			changesAnalyzer.reset();
-
-			clock.stop();
-			LOGGER.fine("Finished updating index: " + index.getName() + " in " + Float.toString(clock.getTime() / 1000) + " seconds");
-			clock.reset();
+			try {
+				Thread.sleep(interval * 1000L);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
 		}
-
+		LOGGER.info("Stopped updating");
 	}
 
-	private IndexWriter createWriterForIndex(DatabaseIndex index, LiveDataFeedIndexUpdaterOptions options) throws IOException {
+	private ThreadedIndexWriter createWriterForIndex(DatabaseIndex index, LiveDataFeedIndexUpdaterOptions options) throws IOException {
 		IndexWriterConfig writerConfig = new IndexWriterConfig(LuceneVersion.LUCENE_VERSION, index.getAnalyzer());
 
 		String path = options.getIndexesDir() + index.getFilename();
-		IndexWriter indexWriter = new ThreadedIndexWriter(FSDirectory.open(new File(path)), writerConfig, Runtime.getRuntime()
+		ThreadedIndexWriter indexWriter = new ThreadedIndexWriter(FSDirectory.open(new File(path)), writerConfig, Runtime.getRuntime()
 				.availableProcessors(), 10);
+		// Reindexed documents replace the existing document with the same id
+		indexWriter.setUpdateField(index.getIdentifierField().getName());
+		// Indexes built with --slim have to be updated with the same schema
+		if (options.isSlimSchema()) {
+			indexWriter.setSlimSchema(index.getSlimSchema());
+		}
 
 		return indexWriter;
 	}
 
+	/**
+	 * Group ids into ranges so that ids close to each other can be reindexed using one set of queries rather than
+	 * a set of queries for each id
+	 * 
+	 * @param ids
+	 * @param maxSpan max number of ids covered by a range
+	 * @return ranges as {min, max} in id order
+	 */
+	static List<int[]> groupIntoRanges(Collection<Integer> ids, int maxSpan) {
+		List<Integer> sortedIds = new ArrayList<Integer>(ids);
+		Collections.sort(sortedIds);
+
+		List<int[]> ranges = new ArrayList<int[]>();
+		int[] range = null;
+		for (Integer id : sortedIds) {
+			if (range != null && id - range[0] < maxSpan) {
+				range[1] = id;
+			} else {
+				range = new int[] { id, id };
+				ranges.add(range);
+			}
+		}
+		return ranges;
+	}
+
 	/**
 	 * Update an index built from database using Data Replication packets
 	 * 
@@ -240,7 +318,7 @@ public class LiveDataFeedIndexUpdater {
 	 * @throws SQLException
 	 * @throws DatabaseSchemaChangedException
 	 */
-	private void updateDatabaseIndex(DatabaseIndex index, IndexWriter indexWriter, ReplicationInformation currentReplicationInfo,
+	private void updateDatabaseIndex(DatabaseIndex index, ThreadedIndexWriter indexWriter, ReplicationInformation currentReplicationInfo,
 			ChangesAnalyzer changesAnalyzer, ReplicationInformation newReplicationInfo) throws IOException, SQLException,
 			DatabaseSchemaChangedException {
 
@@ -263,22 +341,35 @@ public class LiveDataFeedIndexUpdater {
 		// Index new (or udpated) ones
 		if (!changesAnalyzer.getInsertedOrUpdatedIds().isEmpty()) {
 			index.init(indexWriter, true);
-
-			for (Integer id : changesAnalyzer.getInsertedOrUpdatedIds()) {
-				LOGGER.fine("Reindexing " + index.getName() + " #" + id.toString());
-				term = new Term(index.getIdentifierField().getName(), id.toString());
-				query = new TermQuery(term);
-				indexWriter.deleteDocuments(query);
-				index.indexData(indexWriter, id, id);
+			try {
+				indexWriter.takeAddedValues();
+				for (int[] range : groupIntoRanges(changesAnalyzer.getInsertedOrUpdatedIds(), options.getBatchSpan())) {
+					LOGGER.fine("Reindexing " + index.getName() + " #" + range[0] + "..." + range[1]);
+					index.indexData(indexWriter, range[0], range[1]);
+
+					// A changed id that no longer produces a document isn't replaced, so has to be deleted
+					Set<String> reindexedIds = indexWriter.takeAddedValues();
+					for (Integer id : changesAnalyzer.getInsertedOrUpdatedIds()) {
+						if (id >= range[0] && id <= range[1] && !reindexedIds.contains(id.toString())) {
+							LOGGER.fine("Deleting " + index.getName() + " #" + id.toString());
+							term = new Term(index.getIdentifierField().getName(), id.toString());
+							indexWriter.deleteDocuments(new TermQuery(term));
+						}
+					}
+				}
+			} finally {
+				index.destroy();
 			}
-			index.destroy();
 		}
 
 		// Only update the index if we've processed some database changes
 		if (currentReplicationInfo.compareTo(newReplicationInfo) != 0) {
 
 			index.updateMetaInformation(indexWriter, newReplicationInfo);
+			// Documents are added by the writer's own threads, they must all have been added before committing
+			indexWriter.waitForQueuedDocuments();
 			indexWriter.commit();
+			indexReplicationInfos.put(index, new ReplicationInformation(newReplicationInfo));
 			// TODO: index don't need to be optimized on each update, it's way too resource intensive
 			// => disabled for now, need to be done on a regular basis that should determined
 			// indexWriter.optimize();
@@ -287,12 +378,11 @@ public class LiveDataFeedIndexUpdater {
 			int dbRows = index.getNoOfRows(Integer.MAX_VALUE);
 			IndexReader indexReader = DirectoryReader.open(indexWriter, true);
 			LOGGER.info(dbRows + " rows in database, " + (indexReader.maxDoc() - 1) + " lucene documents");
+			indexReader.close();
 		} else {
 			LOGGER.info("No changes found");
 		}
 
-		indexWriter.close();
-
 	}
 
 	/**
@@ -326,9 +416,26 @@ public class LiveDataFeedIndexUpdater {
 			System.exit(1);
 		}
 
-		LiveDataFeedIndexUpdater updater = new LiveDataFeedIndexUpdater(options);
+		final LiveDataFeedIndexUpdater updater = new LiveDataFeedIndexUpdater(options);
 		updater.init();
-		updater.update();
+		if (options.isDaemon()) {
+			// Stop cleanly on shutdown so that the index writers are closed
+			final Thread updateThread = Thread.currentThread();
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				@Override
+				public void run() {
+					updateThread.interrupt();
+					try {
+						updateThread.join();
+					} catch (InterruptedException ie) {
+						// Exiting anyway
+					}
+				}
+			});
+			updater.updateContinuously(options.getInterval());
+		} else {
+			updater.update();
+		}
 		updater.destroy();
 	}
 
@@ -23,5 +23,17 @@ public class LiveDataFeedIndexUpdaterOptions extends IndexOptions {
     @Option(name="--verbose", usage="More verbosity")
     private boolean verbose = false;
     public boolean isVerbose() { return verbose; }
+
+    @Option(name="--batchspan", usage="Changed ids within this many of each other are reindexed together using one set of queries, any unchanged ids between them are reindexed as well. (default: 100)")
+    private int batchSpan = 100;
+    public int getBatchSpan() { return Math.max(1, batchSpan); }
+
+    @Option(name="--daemon", usage="Keep running, checking for new replication packets and applying them every interval")
+    private boolean daemon = false;
+    public boolean isDaemon() { return daemon; }
+
+    @Option(name="--interval", usage="Seconds to wait between checks for new replication packets when running as a daemon. (default: 60)")
+    private int interval = 60;
+    public int getInterval() { return Math.max(1, interval); }
 	
 }
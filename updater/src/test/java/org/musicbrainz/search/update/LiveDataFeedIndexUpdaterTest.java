@@ -0,0 +1,37 @@
+package org.musicbrainz.search.update;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class LiveDataFeedIndexUpdaterTest extends TestCase {
+
+	public void testGroupIntoRanges() throws Exception {
+		List<int[]> ranges = LiveDataFeedIndexUpdater.groupIntoRanges(
+				new HashSet<Integer>(Arrays.asList(250, 5, 1, 3, 100, 101, 199)), 100);
+
+		assertEquals(3, ranges.size());
+		assertEquals(1, ranges.get(0)[0]);
+		assertEquals(5, ranges.get(0)[1]);
+		assertEquals(100, ranges.get(1)[0]);
+		assertEquals(199, ranges.get(1)[1]);
+		assertEquals(250, ranges.get(2)[0]);
+		assertEquals(250, ranges.get(2)[1]);
+	}
+
+	public void testGroupIntoRangesOfOne() throws Exception {
+		List<int[]> ranges = LiveDataFeedIndexUpdater.groupIntoRanges(Arrays.asList(2, 1, 3), 1);
+
+		assertEquals(3, ranges.size());
+		assertEquals(1, ranges.get(0)[0]);
+		assertEquals(1, ranges.get(0)[1]);
+		assertEquals(3, ranges.get(2)[0]);
+	}
+
+	public void testGroupNoIds() throws Exception {
+		assertTrue(LiveDataFeedIndexUpdater.groupIntoRanges(Collections.<Integer>emptySet(), 100).isEmpty());
+	}
+}